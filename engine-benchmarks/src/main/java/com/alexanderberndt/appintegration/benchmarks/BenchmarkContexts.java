@@ -0,0 +1,54 @@
+package com.alexanderberndt.appintegration.benchmarks;
+
+import com.alexanderberndt.appintegration.engine.context.TaskContext;
+import com.alexanderberndt.appintegration.engine.logging.LogAppender;
+import com.alexanderberndt.appintegration.engine.logging.TaskLogger;
+import com.alexanderberndt.appintegration.engine.logging.appender.Slf4jLogAppender;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
+import com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory;
+import com.alexanderberndt.appintegration.engine.testsupport.TestApplication;
+import com.alexanderberndt.appintegration.engine.testsupport.TestExternalResourceCache;
+import com.alexanderberndt.appintegration.engine.testsupport.TestGlobalContext;
+import com.alexanderberndt.appintegration.pipeline.configuration.Ranking;
+import com.alexanderberndt.appintegration.utils.DataMap;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.util.Collections;
+
+import static com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory.SYSTEM_RESOURCE_LOADER_NAME;
+
+/**
+ * Creates the contexts to call single tasks outside of a pipeline.
+ */
+final class BenchmarkContexts {
+
+    static final String APP_ID = "benchmark-app";
+
+    private BenchmarkContexts() {
+    }
+
+    @Nonnull
+    static TestGlobalContext createGlobalContext() {
+        final TestAppIntegrationFactory factory = new TestAppIntegrationFactory();
+        factory.registerApplication(new TestApplication(APP_ID, "benchmark/application-info.json",
+                SYSTEM_RESOURCE_LOADER_NAME, "simple", Collections.emptyList(), null));
+        return new TestGlobalContext(APP_ID, factory, new TestExternalResourceCache(), new Slf4jLogAppender());
+    }
+
+    @Nonnull
+    static TaskContext createTaskContext(@Nonnull TestGlobalContext context, @Nonnull LogAppender logAppender,
+                                         @Nonnull String taskId, @Nonnull ExternalResourceType resourceType) {
+        final TaskLogger taskLogger = new TaskLogger(logAppender, taskId, taskId);
+        return context.createTaskContext(taskLogger, Ranking.PIPELINE_EXECUTION, taskId, resourceType, new DataMap());
+    }
+
+    @Nonnull
+    static ExternalResource createResource(@Nonnull TestGlobalContext context, @Nonnull String path,
+                                           @Nonnull ExternalResourceType resourceType, @Nonnull byte[] content) {
+        return context.getResourceFactory().createExternalResource(URI.create("http://localhost/" + APP_ID + "/" + path),
+                resourceType, new ByteArrayInputStream(content), null);
+    }
+}
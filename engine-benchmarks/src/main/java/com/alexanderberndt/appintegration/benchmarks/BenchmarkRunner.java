@@ -0,0 +1,130 @@
+package com.alexanderberndt.appintegration.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs the benchmarks with fixed defaults, so that the results of different releases are comparable. Any JMH
+ * command-line option (e.g. an include-regex or <code>-f</code>) overrides the defaults, and the JMH help- and
+ * list-options (e.g. <code>-l</code>) work as usual.
+ * <p>
+ * Besides the JMH json-result (<code>&lt;dir&gt;/&lt;version&gt;.json</code>), a sorted summary with one line per
+ * benchmark and parameter-set is written (<code>&lt;dir&gt;/&lt;version&gt;.txt</code>), which can be compared with
+ * <code>diff</code> between releases. The version and directory are set with the system-properties
+ * <code>benchmarks.version</code> and <code>benchmarks.dir</code>.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException, CommandLineOptionException {
+        final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        if (commandLineOptions.shouldHelp()) {
+            commandLineOptions.showHelp();
+            return;
+        }
+        if (commandLineOptions.shouldListProfilers()) {
+            commandLineOptions.listProfilers();
+            return;
+        }
+        if (commandLineOptions.shouldListResultFormats()) {
+            commandLineOptions.listResultFormats();
+            return;
+        }
+
+        final OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLineOptions);
+        if (commandLineOptions.getIncludes().isEmpty()) {
+            options.include(BenchmarkRunner.class.getPackage().getName() + ".*Benchmark");
+        }
+        if (commandLineOptions.shouldList() || commandLineOptions.shouldListWithParams()) {
+            final Runner runner = new Runner(options.build());
+            if (commandLineOptions.shouldListWithParams()) {
+                runner.listWithParams(commandLineOptions);
+            } else {
+                runner.list();
+            }
+            return;
+        }
+
+        final Path outputDir = Paths.get(System.getProperty("benchmarks.dir", "target/benchmarks"));
+        final String version = System.getProperty("benchmarks.version", "current");
+        Files.createDirectories(outputDir);
+        if (!commandLineOptions.getForkCount().hasValue()) {
+            options.forks(1);
+        }
+        if (!commandLineOptions.getWarmupIterations().hasValue()) {
+            options.warmupIterations(3).warmupTime(TimeValue.seconds(2));
+        }
+        if (!commandLineOptions.getMeasurementIterations().hasValue()) {
+            options.measurementIterations(5).measurementTime(TimeValue.seconds(2));
+        }
+        if (commandLineOptions.getProfilers().isEmpty()) {
+            // allocation-rate per operation
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!commandLineOptions.getResult().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON).result(outputDir.resolve(version + ".json").toString());
+        }
+
+        final Collection<RunResult> results = new Runner(options.build()).run();
+        writeSummary(outputDir.resolve(version + ".txt"), results);
+    }
+
+    static void writeSummary(@Nonnull Path file, @Nonnull Collection<RunResult> results) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        for (RunResult runResult : results) {
+            final BenchmarkResult aggregatedResult = runResult.getAggregatedResult();
+            final String benchmark = runResult.getParams().getBenchmark();
+            final Map<String, String> params = new TreeMap<>();
+            for (String key : runResult.getParams().getParamsKeys()) {
+                params.put(key, runResult.getParams().getParam(key));
+            }
+            lines.add(formatLine(benchmark, params, aggregatedResult.getPrimaryResult()));
+            for (Result<?> secondaryResult : aggregatedResult.getSecondaryResults().values()) {
+                if (secondaryResult.getLabel().endsWith(".norm")) {
+                    // only the normalized allocation (bytes/op) is independent of the throughput
+                    lines.add(formatLine(benchmark + ":" + secondaryResult.getLabel(), params, secondaryResult));
+                }
+            }
+        }
+        Collections.sort(lines);
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+    }
+
+    @Nonnull
+    private static String formatLine(@Nonnull String benchmark, @Nonnull Map<String, String> params, @Nonnull Result<?> result) {
+        return String.format(Locale.ROOT, "%s\t%s\t%.3f\t± %.3f\t%s",
+                benchmark, params, result.getScore(), result.getScoreError(), result.getScoreUnit());
+    }
+}
@@ -0,0 +1,69 @@
+package com.alexanderberndt.appintegration.benchmarks;
+
+import com.alexanderberndt.appintegration.engine.context.TaskContext;
+import com.alexanderberndt.appintegration.engine.logging.appender.Slf4jLogAppender;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
+import com.alexanderberndt.appintegration.engine.testsupport.TestGlobalContext;
+import com.alexanderberndt.appintegration.pipeline.configuration.ConfigurationException;
+import com.alexanderberndt.appintegration.pipeline.configuration.PipelineConfiguration;
+import com.alexanderberndt.appintegration.pipeline.configuration.Ranking;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the lookup of configuration values, directly in the {@link PipelineConfiguration} and via the
+ * {@link TaskContext} (incl. namespace parsing and the logging of the effective configuration).
+ */
+@State(Scope.Benchmark)
+public class ConfigurationBenchmark {
+
+    private static final int NAMESPACE_COUNT = 20;
+
+    private static final int KEY_COUNT = 10;
+
+    private static final String TASK_ID = "task-7";
+
+    private PipelineConfiguration configuration;
+
+    private TaskContext taskContext;
+
+    @Setup
+    public void setup() throws ConfigurationException {
+        final TestGlobalContext context = BenchmarkContexts.createGlobalContext();
+        configuration = context.getProcessingParams();
+        for (int i = 0; i < NAMESPACE_COUNT; i++) {
+            final String namespace = "task-" + i;
+            for (int k = 0; k < KEY_COUNT; k++) {
+                final String key = "key-" + k;
+                configuration.setValue(namespace, key, Ranking.TASK_DEFAULT, ExternalResourceType.ANY, "default-" + k);
+                configuration.setValue(namespace, key, Ranking.PIPELINE_DEFINITION, ExternalResourceType.CSS, "css-" + k);
+            }
+        }
+        configuration.setReadOnly();
+
+        taskContext = BenchmarkContexts.createTaskContext(context, new Slf4jLogAppender(), TASK_ID, ExternalResourceType.CSS);
+        taskContext.setValue("key-3", "execution-3");
+    }
+
+    @Benchmark
+    public Object pipelineConfigurationGetValue() {
+        return configuration.getValue(TASK_ID, "key-5", ExternalResourceType.CSS);
+    }
+
+    @Benchmark
+    public String taskContextGetValue() {
+        return taskContext.getValue("key-5", String.class);
+    }
+
+    @Benchmark
+    public String taskContextGetQualifiedValue() {
+        return taskContext.getValue("task-12:key-5", String.class);
+    }
+
+    @Benchmark
+    public String taskContextGetExecutionValue() {
+        return taskContext.getValue("key-3", String.class);
+    }
+}
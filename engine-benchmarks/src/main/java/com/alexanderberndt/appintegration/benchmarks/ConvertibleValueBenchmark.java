@@ -0,0 +1,75 @@
+package com.alexanderberndt.appintegration.benchmarks;
+
+import com.alexanderberndt.appintegration.engine.resources.conversion.ConvertibleValue;
+import com.alexanderberndt.appintegration.engine.resources.conversion.TextParser;
+import com.alexanderberndt.appintegration.engine.resources.conversion.TextParserSupplier;
+import com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Measures the conversions of {@link ConvertibleValue} between input-stream, reader and parsed html document.
+ */
+@State(Scope.Benchmark)
+public class ConvertibleValueBenchmark {
+
+    @Param({"10", "1000"})
+    public int components;
+
+    private TextParserSupplier textParserSupplier;
+
+    private byte[] content;
+
+    private Document document;
+
+    @Setup
+    public void setup() throws IOException {
+        final List<TextParser> textParsers = new TestAppIntegrationFactory().getAllTextParsers();
+        textParserSupplier = () -> textParsers;
+        content = Fixtures.html(components).getBytes(StandardCharsets.UTF_8);
+        document = createValue().convertTo(Document.class).get();
+    }
+
+    @Benchmark
+    public long inputStreamToReader() throws IOException {
+        return Fixtures.readFully(createValue().convertToReaderValue().get());
+    }
+
+    @Benchmark
+    public long readerToInputStream() throws IOException {
+        final ConvertibleValue<Reader> readerValue = createValue().convertToReaderValue();
+        try (InputStream in = readerValue.convertToInputStreamValue().get()) {
+            long count = 0;
+            while (in.read() >= 0) {
+                count++;
+            }
+            return count;
+        }
+    }
+
+    @Benchmark
+    public Document inputStreamToDocument() throws IOException {
+        return createValue().convertTo(Document.class).get();
+    }
+
+    @Benchmark
+    public long documentToReader() throws IOException {
+        final ConvertibleValue<Document> documentValue = new ConvertibleValue<>(document, StandardCharsets.UTF_8, textParserSupplier);
+        return Fixtures.readFully(documentValue.convertToReaderValue().get());
+    }
+
+    private ConvertibleValue<InputStream> createValue() {
+        return new ConvertibleValue<>(new ByteArrayInputStream(content), StandardCharsets.UTF_8, textParserSupplier);
+    }
+}
@@ -0,0 +1,136 @@
+package com.alexanderberndt.appintegration.benchmarks;
+
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Random;
+
+/**
+ * Generates the fixture data for the benchmarks. All data is created from a fixed seed, so every run (and every
+ * release) measures exactly the same input.
+ */
+public final class Fixtures {
+
+    public static final long SEED = 20201019L;
+
+    public static final int SMALL_SIZE = 4 * 1024;
+
+    public static final int LARGE_SIZE = 4 * 1024 * 1024;
+
+    private static final String[] WORDS = {
+            "Alex", "application", "integration", "snippet", "resource", "cache", "pipeline", "task",
+            "lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit"};
+
+    private Fixtures() {
+    }
+
+    public static int parseSize(@Nonnull String sizeName) {
+        switch (sizeName) {
+            case "small":
+                return SMALL_SIZE;
+            case "large":
+                return LARGE_SIZE;
+            default:
+                throw new IllegalArgumentException("Unknown fixture size " + sizeName);
+        }
+    }
+
+    /**
+     * Text with lines of varying length (between 10 and 120 chars), until the size is reached.
+     */
+    @Nonnull
+    public static String text(int size) {
+        final Random random = new Random(SEED);
+        final StringBuilder sb = new StringBuilder(size + 128);
+        while (sb.length() < size) {
+            final int lineLength = 10 + random.nextInt(110);
+            final int lineStart = sb.length();
+            while (sb.length() - lineStart < lineLength) {
+                sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Stylesheet with the given number of rules, each referencing an image.
+     */
+    @Nonnull
+    public static String css(int ruleCount) {
+        final Random random = new Random(SEED);
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < ruleCount; i++) {
+            sb.append(".component-").append(i).append(" {\n")
+                    .append("    color: #").append(String.format("%06x", random.nextInt(0x1000000))).append(";\n")
+                    .append("    margin: ").append(random.nextInt(32)).append("px;\n")
+                    .append("    background-image: url(\"../images/image-").append(i).append(".png\");\n")
+                    .append("}\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Html page in the format expected by the {@link com.alexanderberndt.appintegration.tasks.process.html.ExtractHtmlSnippetTask},
+     * i.e. with a marked snippet, static scripts and stylesheets. Around the snippet are the given number of
+     * components, which are not part of the snippet.
+     */
+    @Nonnull
+    public static String html(int componentCount) {
+        final Random random = new Random(SEED);
+        final StringBuilder sb = new StringBuilder();
+        sb.append("<!DOCTYPE html>\n<html>\n<head>\n<title>Benchmark</title>\n");
+        for (int i = 0; i < 3; i++) {
+            sb.append("<link rel=\"stylesheet\" data-app-integration=\"static\" href=\"css/styles-").append(i).append(".css\">\n");
+        }
+        sb.append("</head>\n<body>\n");
+        for (int i = 0; i < componentCount; i++) {
+            sb.append("<div class=\"component-").append(i).append("\"><h2>").append(WORDS[random.nextInt(WORDS.length)])
+                    .append("</h2><p>").append(text(20 + random.nextInt(200)).replace('\n', ' ')).append("</p></div>\n");
+            if (i == componentCount / 2) {
+                sb.append("<div data-app-integration=\"html-snippet\"><form action=\"subscribe\">")
+                        .append("<input type=\"text\" name=\"email\"><button>Subscribe</button></form></div>\n");
+            }
+        }
+        for (int i = 0; i < 3; i++) {
+            sb.append("<script type=\"text/javascript\" data-app-integration=\"static\" src=\"js/script-").append(i).append(".js\"></script>\n");
+        }
+        sb.append("</body>\n</html>\n");
+        return sb.toString();
+    }
+
+    /**
+     * Reads the content completely (as the tasks might apply their filters lazily).
+     *
+     * @return number of bytes
+     */
+    public static long readFully(@Nonnull ExternalResource resource) throws IOException {
+        final byte[] buffer = new byte[8192];
+        long count = 0;
+        try (InputStream in = resource.getContentAsInputStream()) {
+            for (int len = in.read(buffer); len >= 0; len = in.read(buffer)) {
+                count += len;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads the reader completely.
+     *
+     * @return number of chars
+     */
+    public static long readFully(@Nonnull Reader reader) throws IOException {
+        final char[] buffer = new char[8192];
+        long count = 0;
+        try (Reader in = reader) {
+            for (int len = in.read(buffer); len >= 0; len = in.read(buffer)) {
+                count += len;
+            }
+        }
+        return count;
+    }
+}
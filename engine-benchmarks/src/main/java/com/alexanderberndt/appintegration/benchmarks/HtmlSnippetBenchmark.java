@@ -0,0 +1,58 @@
+package com.alexanderberndt.appintegration.benchmarks;
+
+import com.alexanderberndt.appintegration.engine.context.TaskContext;
+import com.alexanderberndt.appintegration.engine.logging.appender.Slf4jLogAppender;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
+import com.alexanderberndt.appintegration.engine.resourcetypes.html.HtmlParser;
+import com.alexanderberndt.appintegration.engine.testsupport.TestGlobalContext;
+import com.alexanderberndt.appintegration.tasks.process.html.ExtractHtmlSnippetTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Measures the html parsing, and the snippet extraction of the {@link ExtractHtmlSnippetTask}.
+ */
+@State(Scope.Benchmark)
+public class HtmlSnippetBenchmark {
+
+    @Param({"10", "1000"})
+    public int components;
+
+    private final HtmlParser htmlParser = new HtmlParser();
+
+    private final ExtractHtmlSnippetTask extractHtmlSnippetTask = new ExtractHtmlSnippetTask();
+
+    private TestGlobalContext context;
+
+    private String html;
+
+    private byte[] content;
+
+    @Setup
+    public void setup() {
+        context = BenchmarkContexts.createGlobalContext();
+        html = Fixtures.html(components);
+        content = html.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Object parse() throws IOException {
+        return htmlParser.parse(new StringReader(html));
+    }
+
+    @Benchmark
+    public long extractSnippet() throws IOException {
+        final ExternalResource resource = BenchmarkContexts.createResource(context, "snippet.html", ExternalResourceType.HTML_SNIPPET, content);
+        final TaskContext taskContext = BenchmarkContexts.createTaskContext(context, new Slf4jLogAppender(), "extract-snippet", resource.getType());
+        extractHtmlSnippetTask.process(taskContext, resource);
+        return Fixtures.readFully(resource.getContentAsReader());
+    }
+}
@@ -0,0 +1,73 @@
+package com.alexanderberndt.appintegration.benchmarks;
+
+import com.alexanderberndt.appintegration.engine.context.TaskContext;
+import com.alexanderberndt.appintegration.engine.logging.appender.Slf4jLogAppender;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
+import com.alexanderberndt.appintegration.engine.testsupport.TestGlobalContext;
+import com.alexanderberndt.appintegration.pipeline.configuration.ConfigurationException;
+import com.alexanderberndt.appintegration.pipeline.configuration.Ranking;
+import com.alexanderberndt.appintegration.pipeline.task.ProcessingTask;
+import com.alexanderberndt.appintegration.tasks.filter.RegexReplaceFilter;
+import com.alexanderberndt.appintegration.tasks.filter.SearchReplaceFilter;
+import com.alexanderberndt.appintegration.tasks.filter.TextSnippetExtractor;
+import com.alexanderberndt.appintegration.tasks.utils.LineFilterReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Measures the {@link LineFilterReader} based filter-tasks on small and multi-MB text.
+ */
+@State(Scope.Benchmark)
+public class LineFilterReaderBenchmark {
+
+    @Param({"search-replace", "regex-replace", "text-snippet"})
+    public String filter;
+
+    @Param({"small", "large"})
+    public String size;
+
+    private TestGlobalContext context;
+
+    private ProcessingTask task;
+
+    private byte[] content;
+
+    @Setup
+    public void setup() throws ConfigurationException {
+        context = BenchmarkContexts.createGlobalContext();
+        context.getProcessingParams().setValue(filter, "regex", Ranking.PIPELINE_DEFINITION, ExternalResourceType.ANY, "\\bAlex\\b");
+        context.getProcessingParams().setValue(filter, "replacement", Ranking.PIPELINE_DEFINITION, ExternalResourceType.ANY, "Berndt");
+
+        switch (filter) {
+            case "search-replace":
+                task = new SearchReplaceFilter();
+                break;
+            case "regex-replace":
+                task = new RegexReplaceFilter();
+                break;
+            case "text-snippet":
+                task = new TextSnippetExtractor();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown filter " + filter);
+        }
+
+        final String text = "--- start ---\n" + Fixtures.text(Fixtures.parseSize(size)) + "--- end ---\n";
+        content = text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public long filter() throws IOException {
+        final ExternalResource resource = BenchmarkContexts.createResource(context, "text/content.txt", ExternalResourceType.PLAIN_TEXT, content);
+        final TaskContext taskContext = BenchmarkContexts.createTaskContext(context, new Slf4jLogAppender(), filter, resource.getType());
+        task.process(taskContext, resource);
+        return Fixtures.readFully(resource.getContentAsReader());
+    }
+}
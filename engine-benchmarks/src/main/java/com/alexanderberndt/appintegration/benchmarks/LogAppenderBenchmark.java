@@ -0,0 +1,99 @@
+package com.alexanderberndt.appintegration.benchmarks;
+
+import com.alexanderberndt.appintegration.engine.logging.IntegrationLogger;
+import com.alexanderberndt.appintegration.engine.logging.LogAppender;
+import com.alexanderberndt.appintegration.engine.logging.LogStatus;
+import com.alexanderberndt.appintegration.engine.logging.ResourceLogger;
+import com.alexanderberndt.appintegration.engine.logging.TaskLogger;
+import com.alexanderberndt.appintegration.engine.logging.appender.JsonLinesLogAppender;
+import com.alexanderberndt.appintegration.engine.logging.appender.SamplingLogAppender;
+import com.alexanderberndt.appintegration.engine.logging.appender.Slf4jLogAppender;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures the log-appenders with the entries of a typical resource (one resource-logger with two task-loggers).
+ * The entries are on info level, so the sampling appender shows the cost of dropped entries.
+ * The json-lines output is discarded, so only the serialization is measured. The variants with 8 and 32 threads
+ * share one appender, like the parallel requests of a prefetch, and show the contention of the appender.
+ */
+@State(Scope.Benchmark)
+public class LogAppenderBenchmark {
+
+    @Param({"slf4j", "json-lines", "json-lines-gzip", "sampling"})
+    public String appender;
+
+    private LogAppender logAppender;
+
+    private IntegrationLogger integrationLogger;
+
+    @Setup
+    public void setup() {
+        switch (appender) {
+            case "slf4j":
+                logAppender = new Slf4jLogAppender();
+                break;
+            case "json-lines":
+                logAppender = new JsonLinesLogAppender(index -> new NullOutputStream());
+                break;
+            case "json-lines-gzip":
+                logAppender = new JsonLinesLogAppender(index -> new NullOutputStream(), 0, true);
+                break;
+            case "sampling":
+                logAppender = new SamplingLogAppender(new JsonLinesLogAppender(index -> new NullOutputStream()), LogStatus.WARNING);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown appender " + appender);
+        }
+        integrationLogger = new IntegrationLogger(logAppender);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        logAppender.close();
+    }
+
+    @Benchmark
+    public ResourceLogger logResource() {
+        return log();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public ResourceLogger logResource8Threads() {
+        return log();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public ResourceLogger logResource32Threads() {
+        return log();
+    }
+
+    private ResourceLogger log() {
+        final ResourceLogger resourceLogger = integrationLogger.createResourceLogger("http://localhost/app/css/styles-" + ThreadLocalRandom.current().nextInt(100) + ".css");
+        resourceLogger.setLoadStatus("OK");
+
+        final TaskLogger loadLogger = resourceLogger.createTaskLogger("load", "Download Task");
+        loadLogger.addInfo("Downloaded %d bytes", 12345);
+        loadLogger.setProperty("etag", "\"abc123\"");
+
+        final TaskLogger filterLogger = resourceLogger.createTaskLogger("regex-replace", "Regex Replace");
+        filterLogger.addInfo("%s = %s", "regex-replace:regex", "url\\(");
+        filterLogger.addInfo("%s = %s", "regex-replace:replacement", "url(/ext/app/");
+        filterLogger.addInfo("Replaced %d of %d references", 9, 10);
+
+        resourceLogger.setSize("12 KB");
+        resourceLogger.setTime("3 ms");
+        return resourceLogger;
+    }
+}
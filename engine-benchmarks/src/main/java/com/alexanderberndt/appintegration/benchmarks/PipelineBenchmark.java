@@ -0,0 +1,96 @@
+package com.alexanderberndt.appintegration.benchmarks;
+
+import com.alexanderberndt.appintegration.engine.logging.appender.Slf4jLogAppender;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceRef;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
+import com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationEngine;
+import com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory;
+import com.alexanderberndt.appintegration.engine.testsupport.TestApplication;
+import com.alexanderberndt.appintegration.engine.testsupport.TestExternalResourceCache;
+import com.alexanderberndt.appintegration.engine.testsupport.TestGlobalContext;
+import com.alexanderberndt.appintegration.engine.testsupport.TestLoadingTask;
+import com.alexanderberndt.appintegration.pipeline.ProcessingPipeline;
+import com.alexanderberndt.appintegration.pipeline.builder.simple.SimplePipelineBuilder;
+import com.alexanderberndt.appintegration.tasks.cache.ReadFromCacheTask;
+import com.alexanderberndt.appintegration.tasks.cache.StoreInCacheTask;
+import com.alexanderberndt.appintegration.tasks.filter.RegexReplaceFilter;
+import com.alexanderberndt.appintegration.tasks.filter.SearchReplaceFilter;
+import com.alexanderberndt.appintegration.tasks.prepare.ResourceTypeByFileExtensionTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.EnumSet;
+
+import static com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory.SYSTEM_RESOURCE_LOADER_NAME;
+
+/**
+ * Measures {@link ProcessingPipeline#loadAndProcessResourceRef} for a typical static-resource pipeline (type detection,
+ * cache lookup, two line-filters and cache write). The content is read completely, as the filters are applied lazily.
+ */
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+
+    private static final String APP_ID = "benchmark-app";
+
+    private static final String PIPELINE_NAME = "benchmark";
+
+    @Param({"css/styles.css", "images/logo.png"})
+    public String path;
+
+    private TestAppIntegrationEngine engine;
+
+    private TestGlobalContext sharedContext;
+
+    private ProcessingPipeline sharedPipeline;
+
+    private URI resourceUri;
+
+    @Setup
+    public void setup() {
+        final ProcessingPipeline pipeline = new SimplePipelineBuilder()
+                .addPreparationTask("check-type", new ResourceTypeByFileExtensionTask())
+                .addPreparationTask("read-from-cache", new ReadFromCacheTask())
+                .addLoadingTask("load", new TestLoadingTask(Fixtures.css(500)))
+                .addProcessingTask("regex-replace", new RegexReplaceFilter(), EnumSet.of(ExternalResourceType.TEXT), null)
+                .withTaskParam("regex", "url\\(\"\\.\\./images/")
+                .withTaskParam("replacement", "url(\"/ext/" + APP_ID + "/images/")
+                .addProcessingTask("search-replace", new SearchReplaceFilter(), EnumSet.of(ExternalResourceType.TEXT), null)
+                .addProcessingTask("store-in-cache", new StoreInCacheTask())
+                .build();
+
+        final TestAppIntegrationFactory factory = new TestAppIntegrationFactory();
+        factory.registerApplication(new TestApplication(APP_ID, "benchmark/application-info.json",
+                SYSTEM_RESOURCE_LOADER_NAME, PIPELINE_NAME, Collections.emptyList(), null));
+        factory.registerPipeline(PIPELINE_NAME, pipeline);
+
+        engine = new TestAppIntegrationEngine(factory, Slf4jLogAppender::new);
+        sharedContext = new TestGlobalContext(APP_ID, factory, new TestExternalResourceCache(), new Slf4jLogAppender());
+        sharedPipeline = sharedContext.getProcessingPipeline();
+        resourceUri = sharedContext.getApplicationInfoUri().resolve(path);
+    }
+
+    /**
+     * Processing only, with an already initialized context (as during a prefetch).
+     */
+    @Benchmark
+    public long loadAndProcessResourceRef() throws IOException {
+        final ExternalResource resource = sharedPipeline.loadAndProcessResourceRef(sharedContext,
+                new ExternalResourceRef(resourceUri, ExternalResourceType.ANY));
+        return Fixtures.readFully(resource);
+    }
+
+    /**
+     * Runtime request, which creates a new context (and initializes the pipeline configuration) per request.
+     */
+    @Benchmark
+    public long getStaticResource() throws IOException {
+        return Fixtures.readFully(engine.getStaticResource(APP_ID, path));
+    }
+}
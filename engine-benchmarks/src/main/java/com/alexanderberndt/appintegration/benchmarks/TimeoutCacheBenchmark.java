@@ -0,0 +1,62 @@
+package com.alexanderberndt.appintegration.benchmarks;
+
+import com.alexanderberndt.appintegration.utils.TimeoutCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures the {@link TimeoutCache} like the resolved snippet-urls on the render path: a lookup, and a put on a
+ * miss. With more keys than the max-size, most puts run into the eviction of a full cache.
+ */
+@State(Scope.Benchmark)
+public class TimeoutCacheBenchmark {
+
+    // same as the snippet-url cache of the engine
+    private static final int MAX_SIZE = 10000;
+
+    @Param({"1000", "100000"})
+    public int keys;
+
+    private TimeoutCache<Integer, String> cache;
+
+    private Integer[] keyObjects;
+
+    @Setup
+    public void setup() {
+        cache = TimeoutCache.builder().maxSize(MAX_SIZE).build();
+        keyObjects = new Integer[keys];
+        for (int i = 0; i < keys; i++) {
+            keyObjects[i] = i;
+        }
+        for (int i = 0; i < Math.min(keys, MAX_SIZE); i++) {
+            cache.put(keyObjects[i], "/content/snippet-" + i + ".html");
+        }
+    }
+
+    @Benchmark
+    public String getOrPut() {
+        return lookup();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String getOrPut8Threads() {
+        return lookup();
+    }
+
+    private String lookup() {
+        final Integer key = keyObjects[ThreadLocalRandom.current().nextInt(keys)];
+        final String value = cache.get(key);
+        if (value != null) {
+            return value;
+        }
+        cache.put(key, "/content/snippet.html");
+        return null;
+    }
+}
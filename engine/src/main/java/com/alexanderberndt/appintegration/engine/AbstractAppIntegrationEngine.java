@@ -9,13 +9,13 @@ import com.alexanderberndt.appintegration.engine.resourcetypes.appinfo.Applicati
 import com.alexanderberndt.appintegration.engine.resourcetypes.appinfo.ComponentInfoJson;
 import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
 import com.alexanderberndt.appintegration.pipeline.ProcessingPipeline;
-import com.alexanderberndt.appintegration.utils.HashMapWithTimeout;
+import com.alexanderberndt.appintegration.utils.TimeoutCache;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.text.StringSubstitutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.net.URI;
@@ -23,23 +23,39 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 public abstract class AbstractAppIntegrationEngine<I extends ApplicationInstance, C extends GlobalContext<I, C>> {
 
     private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
-    // Cache for instance to URI of html-snippet mapping (grouped by application id)
-    private final Map<String, Map<I, URI>> instanceToSnippetUriMapCache = Collections.synchronizedMap(new HashMap<>());
+    // application-info.json is refreshed in the background after 4 minutes, and is served stale for max. 30 minutes
+    // (only with background operations, otherwise it is reloaded after 5 minutes)
+    private static final long APPLICATION_INFO_TIMEOUT_MILLIS = 1000L * 60L * 5L;
+    private static final long APPLICATION_INFO_REFRESH_AHEAD_MILLIS = 1000L * 60L * 4L;
+    private static final long APPLICATION_INFO_MAX_STALE_MILLIS = 1000L * 60L * 30L;
 
     // Cache for application-infos.json objects
-    private final Map<URI, ApplicationInfoJson> applicationInfoCache = Collections.synchronizedMap(new HashMapWithTimeout<>());
+    private final TimeoutCache<URI, ApplicationInfoJson> applicationInfoCache = TimeoutCache.builder()
+            .timeout(APPLICATION_INFO_TIMEOUT_MILLIS)
+            .refreshAhead(APPLICATION_INFO_REFRESH_AHEAD_MILLIS, null)
+            .staleRetention(APPLICATION_INFO_MAX_STALE_MILLIS)
+            .build();
+
+    private static final int SNIPPET_URI_CACHE_MAX_SIZE = 10000;
+
+    // Cache for resolved html-snippet URIs (by application-info, component-id and context)
+    private final TimeoutCache<SnippetUriKey, URI> snippetUriCache = TimeoutCache.builder()
+            .maxSize(SNIPPET_URI_CACHE_MAX_SIZE)
+            .build();
 
     /* Runtime methods */
 
     protected ExternalResource getHtmlSnippet(@Nonnull C context, @Nonnull I instance) {
 
         final ApplicationInfoJson applicationInfoJson = getApplicationInfo(context, false);
-        final URI snippetUri = getSnippetUri(context, instance, applicationInfoJson, false);
+        final URI snippetUri = getSnippetUri(context, instance, applicationInfoJson);
 
         final ProcessingPipeline pipeline = context.getProcessingPipeline();
         final ExternalResourceRef snippetRef = new ExternalResourceRef(snippetUri, ExternalResourceType.HTML_SNIPPET);
@@ -50,8 +66,12 @@ public abstract class AbstractAppIntegrationEngine<I extends ApplicationInstance
 
     protected ExternalResource getStaticResource(@Nonnull C context, @Nonnull String relativePath) {
 
+        final URI resourceUri = resolveStaticResourceUri(context.getApplicationInfoUri(), relativePath);
+        if (resourceUri == null) {
+            throw new AppIntegrationException("Path " + relativePath + " is outside of application " + context.getApplicationId());
+        }
+
         final ProcessingPipeline pipeline = context.getProcessingPipeline();
-        final URI resourceUri = context.getApplicationInfoUri().resolve(relativePath).normalize();
         final ExternalResourceRef snippetRef = new ExternalResourceRef(resourceUri, ExternalResourceType.ANY);
         final ExternalResource snippetRes = pipeline.loadAndProcessResourceRef(context, snippetRef);
 
@@ -59,9 +79,41 @@ public abstract class AbstractAppIntegrationEngine<I extends ApplicationInstance
 
     }
 
+    /**
+     * Resolves a path relative to the application base-path (the folder of the application-info.json). Only paths
+     * inside of the base-path are accepted, so that no other resources of the origin (e.g. by <code>../</code>) or
+     * other hosts (e.g. by <code>//host/</code>) can be requested.
+     *
+     * @return the normalized uri, or <code>null</code> if the path points outside of the base-path
+     */
+    @Nullable
+    public static URI resolveStaticResourceUri(@Nonnull URI applicationInfoUri, @Nonnull String relativePath) {
+        // encoded dots, slashes or backslashes might be decoded by the origin to escape the base-path
+        final String lowerCasePath = relativePath.toLowerCase(Locale.ROOT);
+        if (relativePath.contains("\\")
+                || lowerCasePath.contains("%2e") || lowerCasePath.contains("%2f") || lowerCasePath.contains("%5c")) {
+            return null;
+        }
+
+        final URI baseUri = applicationInfoUri.resolve(".");
+        final URI resourceUri;
+        try {
+            resourceUri = baseUri.resolve(relativePath).normalize();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        final boolean isInsideBase = Objects.equals(baseUri.getScheme(), resourceUri.getScheme())
+                && Objects.equals(baseUri.getRawAuthority(), resourceUri.getRawAuthority())
+                && (resourceUri.getRawPath() != null) && resourceUri.getRawPath().startsWith(baseUri.getRawPath());
+        return isInsideBase ? resourceUri : null;
+    }
+
     protected boolean isDynamicPath(@Nonnull C context, String relativePath) {
+        if (relativePath == null) {
+            return false;
+        }
         for (String dynamicPath : getDynamicPaths(context)) {
-            if (dynamicPath.startsWith(relativePath)) {
+            if (relativePath.startsWith(StringUtils.removeStart(dynamicPath, "/"))) {
                 return true;
             }
         }
@@ -78,61 +130,154 @@ public abstract class AbstractAppIntegrationEngine<I extends ApplicationInstance
     /* Prefetch methods */
 
 
-    protected void prefetch(C context, List<I> applicationInstanceList) {
+    /**
+     * Prefetches all given instances, and writes them as a new version to the cache.
+     *
+     * @return true, if the new version was committed (false, if the cache was locked by another prefetch)
+     */
+    protected boolean prefetch(C context, List<I> applicationInstanceList) {
+        return prefetch(context, applicationInstanceList, () -> false);
+    }
+
+    /**
+     * Prefetches all given instances, and writes them as a new version to the cache. The cancellation-flag is
+     * checked before every resource, so that a prefetch can be stopped without interrupting its thread (which
+     * would break the I/O of some caches). The caller has to roll back the long-running write.
+     *
+     * @return true, if the new version was committed (false, if the cache was locked by another prefetch)
+     */
+    protected boolean prefetch(C context, List<I> applicationInstanceList, @Nonnull BooleanSupplier isCancelled) {
+        return prefetchInBatches(context, batchConsumer -> batchConsumer.accept(applicationInstanceList), isCancelled);
+    }
 
-        LOG.info("prefetch {} instances for application {}", applicationInstanceList.size(), context.getApplicationId());
+    /**
+     * Prefetches instances, which are supplied in batches (e.g. by a paged query), and writes them as a new version
+     * to the cache. The snippets of a batch are loaded as soon as the batch arrives, so the instances don't need
+     * to be collected before. The referenced resources are loaded after the last batch. A prefetch without any
+     * instance is aborted (and the caller has to roll back the long-running write).
+     *
+     * @param instanceBatches passes every batch of instances to the given consumer
+     * @return true, if the new version was committed (false, if the cache was locked by another prefetch)
+     */
+    protected boolean prefetchInBatches(C context, @Nonnull Consumer<Consumer<List<I>>> instanceBatches, @Nonnull BooleanSupplier isCancelled) {
+
+        LOG.info("prefetch application {}", context.getApplicationId());
 
         final String curJobName = "prefetch_" + DateTimeFormatter.ISO_DATE_TIME.format(LocalDateTime.now());
         if (!context.getExternalResourceCache().startLongRunningWrite(curJobName)) {
             context.getIntegrationLog().addWarning("Couldn't lock resource-cache. Abort prefetch-operation!");
-            return;
+            return false;
         }
 
         // load application-properties.json
         final ApplicationInfoJson applicationInfo = getApplicationInfo(context, true);
 
-        // resolve url for all instances (some may resolve to the same url)
-        final Set<URI> resolvedSnippetsSet = new LinkedHashSet<>();
-        for (final I instance : applicationInstanceList) {
-            final URI snippetUri = getSnippetUri(context, instance, applicationInfo, true);
-            resolvedSnippetsSet.add(snippetUri);
-        }
-
         final ProcessingPipeline pipeline = context.getProcessingPipeline();
         final ExternalResourcesSet referencedResourcesSet = new ExternalResourcesSet();
-        for (URI snippetUri : resolvedSnippetsSet) {
-            final ExternalResourceRef snippetRef = new ExternalResourceRef(snippetUri, ExternalResourceType.HTML_SNIPPET);
-            try {
-                final ExternalResource snippetRes = pipeline.loadAndProcessResourceRef(context, snippetRef);
-                referencedResourcesSet.addAll(snippetRes.getReferencedResources());
+        final PrefetchResult prefetchResult = new PrefetchResult();
+        final Map<URI, List<I>> snippetInstancesMap = new LinkedHashMap<>();
+        instanceBatches.accept(instanceBatch -> {
+            final List<URI> newSnippetUris = resolveSnippetUris(context, instanceBatch, applicationInfo, snippetInstancesMap);
+            LOG.debug("resolved batch of {} instances to {} new snippet urls", instanceBatch.size(), newSnippetUris.size());
+
+            for (URI snippetUri : newSnippetUris) {
+                checkCancelled(isCancelled);
+                final ExternalResourceRef snippetRef = new ExternalResourceRef(snippetUri, ExternalResourceType.HTML_SNIPPET);
+                try {
+                    final ExternalResource snippetRes = pipeline.loadAndProcessResourceRef(context, snippetRef);
+                    referencedResourcesSet.addAll(snippetRes.getReferencedResources());
+                    prefetchResult.addSnippet(snippetRef);
+                } catch (AppIntegrationException e) {
+                    LOG.error("cannot load", e);
+                }
+                // outside of the try-block, so that a lost cache-lock aborts the prefetch
                 context.getExternalResourceCache().continueLongRunningWrite();
-            } catch (AppIntegrationException e) {
-                LOG.error("cannot load", e);
             }
+        });
+        LOG.info("resolved {} instances to {} distinct snippet urls",
+                snippetInstancesMap.values().stream().mapToInt(List::size).sum(), snippetInstancesMap.size());
+        if (snippetInstancesMap.isEmpty()) {
+            // an empty version would replace the current one (e.g. if the discovery failed)
+            throw new AppIntegrationException("Found no instances of application " + context.getApplicationId()
+                    + ", so the current version of the cache is kept");
         }
 
 
         // load all referenced resources (which may could load more)
         while (referencedResourcesSet.hasMoreUnprocessed()) {
+            checkCancelled(isCancelled);
             final ExternalResourceRef resourceRef = referencedResourcesSet.nextUnprocessed();
             final ExternalResource resource;
             try {
                 resource = pipeline.loadAndProcessResourceRef(context, resourceRef);
                 referencedResourcesSet.addAll(resource.getReferencedResources());
-                context.getExternalResourceCache().continueLongRunningWrite();
+                prefetchResult.addResource(new ExternalResourceRef(resource.getUri(), resource.getType()));
             } catch (AppIntegrationException e) {
                 LOG.error("cannot load", e);
             }
+            context.getExternalResourceCache().continueLongRunningWrite();
+        }
 
+        // post-process the complete prefetch (e.g. rewrite references), before the new version becomes visible
+        for (PrefetchPostProcessor postProcessor : context.getPrefetchPostProcessorList()) {
+            checkCancelled(isCancelled);
+            postProcessor.postProcess(context, prefetchResult);
+            context.getExternalResourceCache().continueLongRunningWrite();
         }
 
         context.getExternalResourceCache().commitLongRunningWrite();
+        afterPrefetchCommit(context, snippetInstancesMap, context.getExternalResourceCache().getChangedResourceUris());
+        return true;
+    }
 
+    /**
+     * Hook, which is called after a prefetch committed a new cache version (e.g. to invalidate caches of changed
+     * pages and resources).
+     *
+     * @param context             context of the prefetch
+     * @param snippetInstancesMap resolved snippet-uris, with the instances using them
+     * @param changedUris         uris of all resources, which were added or changed compared to the previous version
+     */
+    protected void afterPrefetchCommit(@Nonnull C context, @Nonnull Map<URI, List<I>> snippetInstancesMap, @Nonnull Set<URI> changedUris) {
+        // nothing to do by default
+    }
 
+    /**
+     * Resolves the snippet-urls of a batch of instances (many instances may share the same context).
+     *
+     * @return the snippet-urls, which were not resolved by a previous batch
+     */
+    @Nonnull
+    private List<URI> resolveSnippetUris(@Nonnull C context, @Nonnull List<I> instanceList, @Nonnull ApplicationInfoJson applicationInfo,
+                                         @Nonnull Map<URI, List<I>> snippetInstancesMap) {
+        final List<URI> newSnippetUris = new ArrayList<>();
+        for (final Map.Entry<String, Map<Map<String, String>, List<I>>> entry : getDistinctContextMaps(context, instanceList).entrySet()) {
+            for (final Map.Entry<Map<String, String>, List<I>> contextEntry : entry.getValue().entrySet()) {
+                final URI snippetUri = getSnippetUri(context, context.getApplicationId(), entry.getKey(), contextEntry.getKey(), applicationInfo);
+                snippetInstancesMap.computeIfAbsent(snippetUri, uri -> {
+                    newSnippetUris.add(uri);
+                    return new ArrayList<>();
+                }).addAll(contextEntry.getValue());
+            }
+        }
+        return newSnippetUris;
     }
 
     /* Helper methods */
 
+    /**
+     * Aborts a long-running operation (e.g. prefetch), if it was cancelled or the current thread was interrupted
+     * (e.g. because the max. runtime was exceeded).
+     */
+    protected static void checkCancelled(@Nonnull BooleanSupplier isCancelled) {
+        if (isCancelled.getAsBoolean()) {
+            throw new AppIntegrationException("Operation was cancelled (e.g. max. runtime exceeded)");
+        }
+        if (Thread.interrupted()) {
+            throw new AppIntegrationException("Operation was interrupted (e.g. max. runtime exceeded)");
+        }
+    }
+
     protected void groupInstancesByApplicationId(@Nonnull List<I> instanceList, @Nonnull BiConsumer<String, List<I>> consumer) {
 
         final Map<String, List<I>> instanceMap = new HashMap<>();
@@ -158,72 +303,128 @@ public abstract class AbstractAppIntegrationEngine<I extends ApplicationInstance
 
 
 
-    /* Management methods ??? */
+    /* Management methods */
+
+    /**
+     * Invalidates the cached application-info.json and resolved snippet-URIs of an application, e.g. after
+     * a new version was prefetched. The application-info.json is only marked as expired, so that it is still
+     * served while it is refreshed (or if the refresh fails).
+     */
+    protected void invalidateApplicationCaches(@Nonnull C context) {
+        final String applicationId = context.getApplicationId();
+        LOG.debug("invalidate caches of application {}", applicationId);
+        applicationInfoCache.expire(context.getApplicationInfoUri());
+        snippetUriCache.removeIf((key, uri) -> key.applicationId.equals(applicationId));
+    }
 
 
 
     /* Internal methods */
 
+    /**
+     * Returns the application-info.json. A cached version is returned (even if it is already expired, but
+     * not longer than the max. stale period), and a refresh is started in the background if it is due.
+     * Only requests for an application without any cached version have to wait for the load (and
+     * concurrent loads of the same application-info.json are only executed once). Without background
+     * operations (see {@link #runInBackground(GlobalContext, Consumer)}), an expired version is reloaded
+     * by the request instead, and the stale version is only served if this reload fails.
+     */
     @Nonnull
-    private ApplicationInfoJson getApplicationInfo(@Nonnull C context, boolean forceReload) {
+    protected ApplicationInfoJson getApplicationInfo(@Nonnull C context, boolean forceReload) {
 
         final URI appInfoUri = context.getApplicationInfoUri();
 
         // try from cache
-        if (!forceReload) {
-            final ApplicationInfoJson cachedAppInfoJson = applicationInfoCache.get(appInfoUri);
-            if (cachedAppInfoJson != null) {
-                return cachedAppInfoJson;
+        final TimeoutCache.Entry<ApplicationInfoJson> cachedEntry = applicationInfoCache.getEntry(appInfoUri);
+        if (!forceReload && (cachedEntry != null)) {
+            final boolean isRefreshing = cachedEntry.isRefreshDue() && (applicationInfoCache.isLoading(appInfoUri)
+                    || runInBackground(context, backgroundContext -> refreshApplicationInfo(backgroundContext, appInfoUri)));
+            // an expired version is only served, while it is refreshed
+            if (!cachedEntry.isExpired() || isRefreshing) {
+                return cachedEntry.getValue();
             }
         }
 
         // load
-        synchronized (this) {
-
-            if (forceReload) {
-                this.applicationInfoCache.remove(appInfoUri);
-            }
-            try {
-                final ExternalResourceRef appInfoResourceRef = new ExternalResourceRef(appInfoUri, ExternalResourceType.APPLICATION_PROPERTIES);
-                final ProcessingPipeline pipeline = context.getProcessingPipeline();
-                final ExternalResource loadedAppInfoResource = pipeline.loadAndProcessResourceRef(context, appInfoResourceRef);
-                final ApplicationInfoJson appInfoJson = loadedAppInfoResource.getContentAsParsedObject(ApplicationInfoJson.class);
-                Objects.requireNonNull(appInfoJson);
-                applicationInfoCache.put(appInfoUri, appInfoJson);
-                return appInfoJson;
-            } catch (IOException e) {
-                throw new AppIntegrationException("Cannot load application-info.json", e);
+        try {
+            final ApplicationInfoJson appInfoJson = applicationInfoCache.reload(appInfoUri, uri -> loadApplicationInfo(context, uri));
+            return Objects.requireNonNull(appInfoJson);
+        } catch (RuntimeException e) {
+            // a prefetch (forced reload) must not continue with an outdated version
+            if (!forceReload && (cachedEntry != null)) {
+                LOG.warn("Failed to reload {}, serving the stale version instead", appInfoUri, e);
+                return cachedEntry.getValue();
             }
+            throw e;
         }
     }
 
+    private void refreshApplicationInfo(@Nonnull C context, @Nonnull URI appInfoUri) {
+        try {
+            applicationInfoCache.reload(appInfoUri, uri -> loadApplicationInfo(context, uri));
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to refresh {}, keep serving the cached version", appInfoUri, e);
+        }
+    }
 
-    private URI getSnippetUri(@Nonnull C context, @Nonnull I instance, @Nonnull ApplicationInfoJson applicationInfoJson, boolean forceReload) {
+    @Nonnull
+    private ApplicationInfoJson loadApplicationInfo(@Nonnull C context, @Nonnull URI appInfoUri) {
+        try {
+            final ExternalResourceRef appInfoResourceRef = new ExternalResourceRef(appInfoUri, ExternalResourceType.APPLICATION_PROPERTIES);
+            final ProcessingPipeline pipeline = context.getProcessingPipeline();
+            final ExternalResource loadedAppInfoResource = pipeline.loadAndProcessResourceRef(context, appInfoResourceRef);
+            final ApplicationInfoJson appInfoJson = loadedAppInfoResource.getContentAsParsedObject(ApplicationInfoJson.class);
+            return Objects.requireNonNull(appInfoJson);
+        } catch (IOException e) {
+            throw new AppIntegrationException("Cannot load application-info.json", e);
+        }
+    }
 
-        if (!forceReload) {
-            final URI cachedSnippetUri = Optional.of(instanceToSnippetUriMapCache)
-                    .map(snippetUriCache -> snippetUriCache.get(instance.getApplicationId()))
-                    .map(innerSnippetUriCache -> innerSnippetUriCache.get(instance))
-                    .orElse(null);
-            if (cachedSnippetUri != null) {
-                return cachedSnippetUri;
-            }
+    /**
+     * Runs an operation in the background, e.g. the refresh of the application-info.json. Implementations with
+     * an own thread-pool should run it asynchronously with a new context (as the calling context could be closed
+     * before). This default implementation has no thread-pool, and doesn't run the operation at all - so that
+     * it isn't run by the calling request. Engines without background operations therefore don't refresh ahead,
+     * and reload an expired application-info.json within the request (see
+     * {@link #getApplicationInfo(GlobalContext, boolean)}).
+     *
+     * @param callingContext context of the calling request
+     * @param operation      operation to run
+     * @return true, if the operation was scheduled
+     */
+    protected boolean runInBackground(@Nonnull C callingContext, @Nonnull Consumer<C> operation) {
+        return false;
+    }
+
+
+    private URI getSnippetUri(@Nonnull C context, @Nonnull I instance, @Nonnull ApplicationInfoJson applicationInfoJson) {
+        final Map<String, String> contextMap = getContextMap(context, instance);
+        return getSnippetUri(context, instance.getApplicationId(), instance.getComponentId(), contextMap, applicationInfoJson);
+    }
+
+    private URI getSnippetUri(@Nonnull C context, @Nonnull String applicationId, @Nonnull String componentId,
+                              @Nonnull Map<String, String> contextMap, @Nonnull ApplicationInfoJson applicationInfoJson) {
+
+        final SnippetUriKey cacheKey = new SnippetUriKey(applicationId, componentId, applicationInfoJson, contextMap);
+        final URI cachedSnippetUri = snippetUriCache.get(cacheKey);
+        if (cachedSnippetUri != null) {
+            return cachedSnippetUri;
         }
 
-        final ComponentInfoJson componentInfo = applicationInfoJson.getComponents().get(instance.getComponentId());
+        final ComponentInfoJson componentInfo = applicationInfoJson.getComponents().get(componentId);
         if (componentInfo == null) {
             throw new AppIntegrationException(
-                    String.format("Unknown component %s for application %s", instance.getComponentId(), instance.getApplicationId()));
+                    String.format("Unknown component %s for application %s", componentId, applicationId));
         }
 
-        final String snippetUrl = resolveStringWithContextVariables(context, instance, componentInfo.getUrl());
-        final URI appInfoUri = context.getApplicationInfoUri();
-        return appInfoUri.resolve(snippetUrl).normalize();
+        final String snippetUrl = componentInfo.getCompiledUrl().resolve(contextMap);
+        final URI snippetUri = context.getApplicationInfoUri().resolve(snippetUrl).normalize();
+        snippetUriCache.put(cacheKey, snippetUri);
+        return snippetUri;
     }
 
-    private String resolveStringWithContextVariables(@Nonnull final C context, @Nonnull final I instance, @Nonnull final String inputString) {
-
-        // evaluate context
+    @Nonnull
+    private Map<String, String> getContextMap(@Nonnull final C context, @Nonnull final I instance) {
         final Map<String, String> contextMap = new HashMap<>();
         for (final ContextProvider<I> contextProvider : context.getContextProviderList()) {
             final Map<String, String> curCtxMap = contextProvider.getContext(instance);
@@ -231,12 +432,84 @@ public abstract class AbstractAppIntegrationEngine<I extends ApplicationInstance
                 contextMap.putAll(curCtxMap);
             }
         }
-        final String resolvedString = StringSubstitutor.replace(inputString, contextMap);
-        if (StringUtils.containsAny(resolvedString, '$', '{', '}')) {
-            throw new AppIntegrationException(String.format(
-                    "Could not fully resolve template \"%s\". It remained \"%s\".", inputString, resolvedString));
-        } else {
-            return resolvedString;
+        return contextMap;
+    }
+
+    /**
+     * Calculates the context-maps of all instances with the batch-methods of the context-providers, and
+     * returns the distinct context-maps (with their instances) grouped by component-id.
+     */
+    @Nonnull
+    private Map<String, Map<Map<String, String>, List<I>>> getDistinctContextMaps(@Nonnull final C context, @Nonnull final List<I> instanceList) {
+        final List<Map<String, String>> contextMapList = new ArrayList<>(instanceList.size());
+        for (int i = 0; i < instanceList.size(); i++) {
+            contextMapList.add(new HashMap<>());
+        }
+
+        for (final ContextProvider<I> contextProvider : context.getContextProviderList()) {
+            final List<Map<String, String>> curCtxMapList = contextProvider.getContexts(instanceList);
+            if (curCtxMapList.size() != instanceList.size()) {
+                throw new AppIntegrationException(String.format("Context-provider %s returned %d contexts for %d instances",
+                        contextProvider.getClass().getName(), curCtxMapList.size(), instanceList.size()));
+            }
+            for (int i = 0; i < instanceList.size(); i++) {
+                final Map<String, String> curCtxMap = curCtxMapList.get(i);
+                if (curCtxMap != null) {
+                    contextMapList.get(i).putAll(curCtxMap);
+                }
+            }
+        }
+
+        final Map<String, Map<Map<String, String>, List<I>>> distinctContextsMap = new LinkedHashMap<>();
+        for (int i = 0; i < instanceList.size(); i++) {
+            final I instance = instanceList.get(i);
+            distinctContextsMap.computeIfAbsent(instance.getComponentId(), componentId -> new LinkedHashMap<>())
+                    .computeIfAbsent(contextMapList.get(i), contextMap -> new ArrayList<>())
+                    .add(instance);
+        }
+        return distinctContextsMap;
+    }
+
+
+    /**
+     * Key of the snippet-uri cache. The application-info is compared by identity, so that a reloaded
+     * application-info never hits the entries of an older one.
+     */
+    private static final class SnippetUriKey {
+
+        private final String applicationId;
+
+        private final String componentId;
+
+        private final ApplicationInfoJson applicationInfo;
+
+        private final Map<String, String> contextMap;
+
+        private final int hash;
+
+        private SnippetUriKey(String applicationId, String componentId, ApplicationInfoJson applicationInfo, Map<String, String> contextMap) {
+            this.applicationId = applicationId;
+            this.componentId = componentId;
+            this.applicationInfo = applicationInfo;
+            this.contextMap = contextMap;
+            this.hash = Objects.hash(applicationId, componentId, System.identityHashCode(applicationInfo), contextMap);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final SnippetUriKey that = (SnippetUriKey) o;
+            return (hash == that.hash)
+                    && (applicationInfo == that.applicationInfo)
+                    && applicationId.equals(that.applicationId)
+                    && componentId.equals(that.componentId)
+                    && contextMap.equals(that.contextMap);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
         }
     }
 
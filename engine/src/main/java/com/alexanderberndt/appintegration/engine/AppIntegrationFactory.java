@@ -14,6 +14,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -31,6 +32,11 @@ public interface AppIntegrationFactory<I extends ApplicationInstance, C extends
     @Nonnull
     List<TextParser> getAllTextParsers();
 
+    @Nonnull
+    default Map<String, PrefetchPostProcessor> getAllPrefetchPostProcessors() {
+        return Collections.emptyMap();
+    }
+
     /**
      * Create a new instance of an processing pipeline, and updates the context with the default task configuration
      * and logging information.
@@ -58,6 +64,11 @@ public interface AppIntegrationFactory<I extends ApplicationInstance, C extends
         return getAllContextProvider().get(providerName);
     }
 
+    @Nullable
+    default PrefetchPostProcessor getPrefetchPostProcessor(@Nonnull final String postProcessorName) {
+        return getAllPrefetchPostProcessors().get(postProcessorName);
+    }
+
     @Nonnull
     default ExternalResourceFactory getExternalResourceFactory() {
         final TextParserSupplier supplier = this::getAllTextParsers;
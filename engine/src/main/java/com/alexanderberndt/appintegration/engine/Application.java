@@ -1,7 +1,10 @@
 package com.alexanderberndt.appintegration.engine;
 
+import com.alexanderberndt.appintegration.engine.logging.LogStatus;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +53,16 @@ public interface Application {
     @Nonnull
     String getProcessingPipelineName();
 
+    /**
+     * List of post-processors, which are applied to a prefetch before it is committed (e.g. <code>fingerprint</code>).
+     *
+     * @return list of post-processors (in the order of execution)
+     */
+    @Nonnull
+    default List<String> getPrefetchPostProcessorNames() {
+        return Collections.emptyList();
+    }
+
     @Nullable
     default Map<String, Object> getGlobalProperties() {
         return null;
@@ -62,4 +75,24 @@ public interface Application {
         return FetchingMode.PREFETCH_AND_LIVE_LOAD;
     }
 
+    /**
+     * Minimal status of entries, which are written to the integration-log on the runtime path
+     * (e.g. <code>getHtmlSnippet</code>), unless the request was chosen for sampling.
+     *
+     * @return minimal log-level
+     */
+    @Nonnull
+    default LogStatus getIntegrationLogLevel() {
+        return LogStatus.INFO;
+    }
+
+    /**
+     * Share of runtime requests (between 0.0 and 1.0), for which the full integration-log is written.
+     *
+     * @return sample-rate
+     */
+    default double getIntegrationLogSampleRate() {
+        return 1.0;
+    }
+
 }
@@ -1,6 +1,9 @@
 package com.alexanderberndt.appintegration.engine;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -23,4 +26,21 @@ public interface ContextProvider<I extends ApplicationInstance> {
     @Nullable
     Map<String, String> getContext(I instance);
 
+    /**
+     * Calculates the key-value maps for many instances at once (e.g. for prefetch). Implementations should
+     * override it, if they can share work between instances (e.g. all instances of the same page). The default
+     * implementation calls {@link #getContext(ApplicationInstance)} for every instance.
+     *
+     * @param instances Application instances
+     * @return context maps, in the same order and size as the instances (elements could be null)
+     */
+    @Nonnull
+    default List<Map<String, String>> getContexts(@Nonnull List<I> instances) {
+        final List<Map<String, String>> contextList = new ArrayList<>(instances.size());
+        for (I instance : instances) {
+            contextList.add(getContext(instance));
+        }
+        return contextList;
+    }
+
 }
@@ -7,6 +7,9 @@ import com.alexanderberndt.appintegration.engine.resources.ExternalResourceRef;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.InputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Set;
 import java.util.function.Supplier;
 
 public interface ExternalResourceCache {
@@ -19,6 +22,51 @@ public interface ExternalResourceCache {
     @Nullable
     ExternalResource getCachedResource(@Nonnull ExternalResourceRef resourceRef, @Nonnull ExternalResourceFactory resourceFactory);
 
+    /**
+     * Returns a resource, which was stored by the running long-running write (e.g. to post-process it before the
+     * commit). In contrast, {@link #getCachedResource(ExternalResourceRef, ExternalResourceFactory)} returns the
+     * resource of the committed version.
+     *
+     * @return the stored resource, or <code>null</code> if it wasn't stored by this write (or the cache doesn't
+     * support it)
+     */
+    @Nullable
+    default ExternalResource getWrittenResource(@Nonnull ExternalResourceRef resourceRef, @Nonnull ExternalResourceFactory resourceFactory) {
+        return null;
+    }
+
+    /**
+     * Stores an additional rendition (e.g. a gzip-compressed variant) of a resource, which was stored before by
+     * {@link #storeResource(ExternalResource)} (in the same version).
+     *
+     * @return false, if the cache doesn't support renditions
+     */
+    default boolean storeRendition(@Nonnull URI uri, @Nonnull String renditionName, @Nonnull InputStream content) {
+        return false;
+    }
+
+    /**
+     * Returns the names of the renditions, which were stored for a resource by the running long-running write. A
+     * resource stored again with changed content loses its renditions, so they must be stored again as well.
+     *
+     * @return names of the renditions, or an empty set if the resource wasn't stored by this write (or the cache
+     * doesn't support renditions)
+     */
+    @Nonnull
+    default Set<String> getWrittenRenditionNames(@Nonnull URI uri) {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Returns a rendition of a cached resource.
+     *
+     * @return supplier for the content, or <code>null</code> if there is no such rendition
+     */
+    @Nullable
+    default Supplier<InputStream> getCachedRendition(@Nonnull URI uri, @Nonnull String renditionName) {
+        return null;
+    }
+
     boolean isLongRunningWrite();
 
     boolean startLongRunningWrite(@Nullable String nameHint);
@@ -29,4 +77,15 @@ public interface ExternalResourceCache {
 
     void rollbackLongRunningWrite();
 
+    /**
+     * URIs of all resources, which were added or changed by the last committed long-running write (compared
+     * to the previous version).
+     *
+     * @return changed uris, or an empty set if the cache doesn't track changes
+     */
+    @Nonnull
+    default Set<URI> getChangedResourceUris() {
+        return Collections.emptySet();
+    }
+
 }
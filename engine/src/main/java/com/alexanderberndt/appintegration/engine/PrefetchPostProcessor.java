@@ -0,0 +1,24 @@
+package com.alexanderberndt.appintegration.engine;
+
+import com.alexanderberndt.appintegration.engine.context.GlobalContext;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Post-processes all resources of a prefetch, after they were loaded and stored, but before the new version of the
+ * cache is committed (e.g. to rewrite references between resources). The resources are read with
+ * {@link ExternalResourceCache#getWrittenResource}, and changed resources must be stored again with
+ * {@link ExternalResourceCache#storeResource}.
+ * <p>
+ * An application selects its post-processors by name (see {@link Application#getPrefetchPostProcessorNames()}),
+ * and they are executed in the given order.
+ */
+@FunctionalInterface
+public interface PrefetchPostProcessor {
+
+    /**
+     * @param context        context of the prefetch (with a running long-running write)
+     * @param prefetchResult snippets and resources, which were prefetched
+     */
+    void postProcess(@Nonnull GlobalContext<?, ?> context, @Nonnull PrefetchResult prefetchResult);
+}
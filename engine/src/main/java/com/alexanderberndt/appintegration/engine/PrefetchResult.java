@@ -0,0 +1,45 @@
+package com.alexanderberndt.appintegration.engine;
+
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceRef;
+
+import javax.annotation.Nonnull;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snippets and referenced resources, which were successfully loaded by a prefetch (in the order of loading).
+ */
+public class PrefetchResult {
+
+    private final Map<URI, ExternalResourceRef> snippetRefMap = new LinkedHashMap<>();
+
+    private final Map<URI, ExternalResourceRef> resourceRefMap = new LinkedHashMap<>();
+
+    public void addSnippet(@Nonnull ExternalResourceRef snippetRef) {
+        snippetRefMap.putIfAbsent(snippetRef.getUri(), snippetRef);
+    }
+
+    public void addResource(@Nonnull ExternalResourceRef resourceRef) {
+        resourceRefMap.putIfAbsent(resourceRef.getUri(), resourceRef);
+    }
+
+    /**
+     * @return html-snippets, in the order of the instances
+     */
+    @Nonnull
+    public List<ExternalResourceRef> getSnippetRefs() {
+        return Collections.unmodifiableList(new ArrayList<>(snippetRefMap.values()));
+    }
+
+    /**
+     * @return all resources referenced by the snippets (directly or indirectly), but not the snippets itself
+     */
+    @Nonnull
+    public List<ExternalResourceRef> getResourceRefs() {
+        return Collections.unmodifiableList(new ArrayList<>(resourceRefMap.values()));
+    }
+}
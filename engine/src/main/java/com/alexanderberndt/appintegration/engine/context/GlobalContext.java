@@ -51,6 +51,8 @@ public abstract class GlobalContext<I extends ApplicationInstance, C extends Glo
 
     private final LazyValue<List<ContextProvider<I>>> contextProviderListLazyValue = new LazyValue<>();
 
+    private final LazyValue<List<PrefetchPostProcessor>> prefetchPostProcessorListLazyValue = new LazyValue<>();
+
 
     protected GlobalContext(
             @Nonnull String applicationId,
@@ -171,6 +173,31 @@ public abstract class GlobalContext<I extends ApplicationInstance, C extends Glo
                 });
     }
 
+    @Nonnull
+    public List<PrefetchPostProcessor> getPrefetchPostProcessorList() {
+        return prefetchPostProcessorListLazyValue.getLazy(
+                () -> {
+                    final List<String> notFoundPostProcessors = new ArrayList<>();
+                    final List<PrefetchPostProcessor> postProcessors = new ArrayList<>();
+
+                    for (String postProcessorName : getApplication().getPrefetchPostProcessorNames()) {
+                        final PrefetchPostProcessor postProcessor = factory.getPrefetchPostProcessor(postProcessorName);
+                        if (postProcessor != null) {
+                            postProcessors.add(postProcessor);
+                        } else {
+                            notFoundPostProcessors.add(postProcessorName);
+                        }
+                    }
+                    if (notFoundPostProcessors.isEmpty()) {
+                        return postProcessors;
+                    } else {
+                        throw new AppIntegrationException(String.format(
+                                "The requested prefetch post-processors %s for application %s are not available",
+                                notFoundPostProcessors, applicationId));
+                    }
+                });
+    }
+
 
     @Nonnull
     public PipelineConfiguration getProcessingParams() {
@@ -16,6 +16,7 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.lang.invoke.MethodHandles;
+import java.net.URI;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -73,6 +74,10 @@ public class TaskContext {
         this.executionDataMap = executionDataMap;
     }
 
+    public void addInfo(@Nonnull String message, Object... args) {
+        taskLogger.addInfo(taskNamespace + ": " + message, args);
+    }
+
     public void addWarning(@Nonnull String message, Object... args) {
         taskLogger.addWarning(taskNamespace + ": " + message, args);
     }
@@ -96,6 +101,16 @@ public class TaskContext {
         return globalContext.getExternalResourceCache();
     }
 
+    @Nonnull
+    public String getApplicationId() {
+        return globalContext.getApplicationId();
+    }
+
+    @Nonnull
+    public URI getApplicationInfoUri() {
+        return globalContext.getApplicationInfoUri();
+    }
+
 
     public Object getValue(@Nonnull String key) {
         final NamespaceKey nk = parseNamespaceKey(key, false,
@@ -6,12 +6,16 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.IllegalFormatException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import static com.alexanderberndt.appintegration.engine.logging.LogStatus.*;
 
 
 public abstract class AbstractLogger {
 
+    private static final AtomicReferenceFieldUpdater<AbstractLogger, Object> LOG_ENTRY_HANDLE_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(AbstractLogger.class, Object.class, "logEntryHandle");
+
     @Nullable
     protected final AbstractLogger parentLogger;
 
@@ -21,6 +25,10 @@ public abstract class AbstractLogger {
     @Nullable
     protected String loggerInstanceName;
 
+    // log-entry, which the appender created for this logger (so the appender needs no lookup-map)
+    @Nullable
+    private volatile Object logEntryHandle;
+
     private AbstractLogger(@Nullable AbstractLogger parentLogger, @Nonnull LogAppender appender) {
         this.parentLogger = parentLogger;
         this.appender = appender;
@@ -52,19 +60,28 @@ public abstract class AbstractLogger {
     }
 
     public void addInfo(@Nonnull String message, Object... args) {
-        appender.appendLogEntry(this, INFO, format(message, args));
+        addEntry(INFO, message, args);
     }
 
     public void addWarning(@Nonnull String message, Object... args) {
-        appender.appendLogEntry(this, WARNING, format(message, args));
+        addEntry(WARNING, message, args);
     }
 
     public void addError(@Nonnull String message, Object... args) {
-        appender.appendLogEntry(this, ERROR, format(message, args));
+        addEntry(ERROR, message, args);
+    }
+
+    private void addEntry(@Nonnull LogStatus status, @Nonnull String message, Object... args) {
+        // format the message only, if it is really logged
+        if (!appender.isSuppressed(status)) {
+            appender.appendLogEntry(this, status, format(message, args));
+        }
     }
 
     public void setSummary(@Nonnull LogStatus status, @Nonnull String message, Object... args) {
-        appender.setLoggerSummary(this, status, format(message, args));
+        if (!appender.isSuppressed(status)) {
+            appender.setLoggerSummary(this, status, format(message, args));
+        }
     }
 
     public void setStatus(@Nonnull LogStatus status) {
@@ -94,4 +111,14 @@ public abstract class AbstractLogger {
         return parentLogger;
     }
 
+    // only accessible for appenders via LogEntryBindingAppender
+    @Nullable
+    final Object getLogEntryHandle() {
+        return logEntryHandle;
+    }
+
+    final boolean bindLogEntryHandle(@Nonnull Object handle) {
+        return LOG_ENTRY_HANDLE_UPDATER.compareAndSet(this, null, handle);
+    }
+
 }
@@ -15,4 +15,15 @@ public interface LogAppender extends Closeable {
 
     void appendLogEntry(@Nonnull AbstractLogger logger, LogStatus status, String message);
 
+    /**
+     * Checks, if entries (or summaries) with the given status would be dropped anyway. This allows the loggers
+     * to skip the formatting of such messages.
+     *
+     * @param status status of the entry
+     * @return true, if entries with this status are not logged
+     */
+    default boolean isSuppressed(@Nonnull LogStatus status) {
+        return false;
+    }
+
 }
@@ -0,0 +1,29 @@
+package com.alexanderberndt.appintegration.engine.logging;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Base-class for log-appenders, which store their log-entry directly at the logger (instead of a lookup-map).
+ * The handles are only accessible for sub-classes, so that they don't leak into the public API of the loggers.
+ * <p>
+ * A logger has only one handle, as it has only one appender. An appender, which delegates to several binding
+ * appenders (e.g. to write the same log twice), must use separate loggers for each of them, as only the first
+ * appender could bind its log-entry.
+ */
+public abstract class LogEntryBindingAppender implements LogAppender {
+
+    @Nullable
+    protected static Object getLogEntryHandle(@Nonnull AbstractLogger logger) {
+        return logger.getLogEntryHandle();
+    }
+
+    /**
+     * Binds the log-entry of the appender to the logger. This can only be done once.
+     *
+     * @return true, if the handle was bound, or false if another handle was already bound before
+     */
+    protected static boolean bindLogEntryHandle(@Nonnull AbstractLogger logger, @Nonnull Object handle) {
+        return logger.bindLogEntryHandle(handle);
+    }
+}
@@ -1,7 +1,7 @@
 package com.alexanderberndt.appintegration.engine.logging.appender;
 
 import com.alexanderberndt.appintegration.engine.logging.AbstractLogger;
-import com.alexanderberndt.appintegration.engine.logging.LogAppender;
+import com.alexanderberndt.appintegration.engine.logging.LogEntryBindingAppender;
 import com.alexanderberndt.appintegration.engine.logging.LogStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,19 +9,20 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.lang.invoke.MethodHandles;
-import java.util.*;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
-public abstract class AbstractLogAppender<T extends AbstractLogAppender.LogEntry<T>> implements LogAppender {
+/**
+ * Base-class for log-appenders, which build up a tree of log-entries. It doesn't use any locks: the log-entry
+ * of a logger is stored directly at the logger (see {@link LogEntryBindingAppender}) and the
+ * root-entries are kept in a lock-free queue. Sub-classes are responsible, that their log-entries can be
+ * modified concurrently (messages of one logger must keep their order).
+ */
+public abstract class AbstractLogAppender<T extends AbstractLogAppender.LogEntry<T>> extends LogEntryBindingAppender {
 
     private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
-    protected final List<T> rootLoggersList = new ArrayList<>();
-
-    private final Map<AbstractLogger, T> loggerToLogEntryMap = new WeakHashMap<>();
-
-    private AbstractLogger lastLogger;
-
-    private T lastLogEntry;
+    protected final Queue<T> rootLoggersList = new ConcurrentLinkedQueue<>();
 
     @Nullable
     protected abstract T createNewLogEntry(@Nullable T parentEntry, @Nonnull AbstractLogger logger);
@@ -29,37 +30,32 @@ public abstract class AbstractLogAppender<T extends AbstractLogAppender.LogEntry
     protected abstract void createNewLogMessage(@Nullable T parentEntry, @Nullable LogStatus status, @Nullable String message);
 
     @Nullable
-    private T getLogEntry(@Nonnull AbstractLogger logger) {
-        if (logger == lastLogger) {
-            return lastLogEntry;
-        } else {
-            final T logEntry = loggerToLogEntryMap.get(logger);
-            if (logEntry != null) {
-                lastLogger = logger;
-                lastLogEntry = logEntry;
-            }
-            return logEntry;
+    private T getLogEntry(@Nullable AbstractLogger logger) {
+        final Object handle = (logger != null) ? getLogEntryHandle(logger) : null;
+        if (handle instanceof LogEntryHolder) {
+            @SuppressWarnings("unchecked") final LogEntryHolder<T> holder = (LogEntryHolder<T>) handle;
+            return (holder.appender == this) ? holder.logEntry : null;
         }
+        return null;
     }
 
     @Override
-    public synchronized void appendLogger(@Nonnull AbstractLogger logger) {
+    public void appendLogger(@Nonnull AbstractLogger logger) {
 
         LOG.debug("appendLogger({})", logger.getLoggerName());
 
-        if (loggerToLogEntryMap.containsKey(logger)) {
+        // bind first, so that only the winning thread creates the log-entry (which registers it at its parent)
+        final LogEntryHolder<T> holder = new LogEntryHolder<>(this);
+        if (!bindLogEntryHandle(logger, holder)) {
             LOG.warn("appendLogger({}) failed, logger was already appended!", logger.getLoggerName());
             return;
         }
 
-        final T parentLogEntry = Optional.of(logger)
-                .map(AbstractLogger::getParentLogger)
-                .map(this::getLogEntry)
-                .orElse(null);
+        final T parentLogEntry = getLogEntry(logger.getParentLogger());
 
         final T newLogEntry = this.createNewLogEntry(parentLogEntry, logger);
         if (newLogEntry != null) {
-            loggerToLogEntryMap.put(logger, newLogEntry);
+            holder.logEntry = newLogEntry;
             if (parentLogEntry == null) {
                 rootLoggersList.add(newLogEntry);
                 if (logger.getParentLogger() != null) {
@@ -67,14 +63,11 @@ public abstract class AbstractLogAppender<T extends AbstractLogAppender.LogEntry
                             logger.getParentLogger().getLoggerName(), logger.getLoggerName());
                 }
             }
-
-            lastLogger = logger;
-            lastLogEntry = newLogEntry;
         }
     }
 
     @Override
-    public synchronized void setLoggerSummary(@Nonnull AbstractLogger logger, LogStatus status, String message) {
+    public void setLoggerSummary(@Nonnull AbstractLogger logger, LogStatus status, String message) {
         LOG.debug("setLoggerSummary({}, {}, {})", logger.getLoggerName(), status, message);
         final T logEntry = getLogEntry(logger);
         if (logEntry != null) {
@@ -96,7 +89,7 @@ public abstract class AbstractLogAppender<T extends AbstractLogAppender.LogEntry
     }
 
     @Override
-    public synchronized void setLoggerProperty(@Nonnull AbstractLogger logger, @Nonnull String key, String value) {
+    public void setLoggerProperty(@Nonnull AbstractLogger logger, @Nonnull String key, String value) {
         LOG.debug("setLoggerProperty({}, {} = {})", logger.getLoggerName(), key, value);
         final T logEntry = getLogEntry(logger);
         if (logEntry != null) {
@@ -107,7 +100,7 @@ public abstract class AbstractLogAppender<T extends AbstractLogAppender.LogEntry
     }
 
     @Override
-    public synchronized void appendLogEntry(@Nonnull AbstractLogger logger, LogStatus status, String message) {
+    public void appendLogEntry(@Nonnull AbstractLogger logger, LogStatus status, String message) {
         LOG.debug("appendLogEntry({}, {}, {})", logger.getLoggerName(), status, message);
         final T logEntry = getLogEntry(logger);
         if (logEntry != null) {
@@ -117,6 +110,23 @@ public abstract class AbstractLogAppender<T extends AbstractLogAppender.LogEntry
         }
     }
 
+    /**
+     * Handle, which is bound to the logger before its log-entry is created. Until then (or if the creation
+     * failed), the logger has no log-entry.
+     */
+    private static final class LogEntryHolder<T> {
+
+        @Nonnull
+        private final AbstractLogAppender<?> appender;
+
+        @Nullable
+        private volatile T logEntry;
+
+        private LogEntryHolder(@Nonnull AbstractLogAppender<?> appender) {
+            this.appender = appender;
+        }
+    }
+
     public interface LogEntry<T extends LogEntry<T>> {
 
         void setSummary(LogStatus status, String message);
@@ -0,0 +1,239 @@
+package com.alexanderberndt.appintegration.engine.logging.appender;
+
+import com.alexanderberndt.appintegration.engine.logging.AbstractLogger;
+import com.alexanderberndt.appintegration.engine.logging.LogStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Log-appender, which streams every log event as one line of JSON (JSON-lines). Nothing is kept in memory
+ * besides the id bound to every logger, so the heap stays flat even for very long running prefetch jobs.
+ * Every event carries the id of its logger (and a new logger the id of its parent), so that the tree
+ * can be re-constructed later with the {@link JsonLinesLogReader}.
+ * <p>
+ * The output can be rotated after a given number of (uncompressed) bytes, and can optionally be gzip'ed.
+ */
+public class JsonLinesLogAppender extends AbstractLogAppender<JsonLinesLogAppender.JsonLinesLogEntry> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final int BUFFER_SIZE = 8192;
+
+    @Nonnull
+    private final OutputStreamSupplier outputStreamSupplier;
+
+    private final long maxFileSize;
+
+    private final boolean gzip;
+
+    private OutputStream outputStream;
+
+    private int fileIndex = 0;
+
+    private long bytesWritten = 0;
+
+    private final AtomicLong lastLoggerId = new AtomicLong();
+
+    private boolean closed = false;
+
+    /**
+     * @param outputStreamSupplier supplier for the output-streams of the (rotated) log-files
+     * @param maxFileSize          number of uncompressed bytes after which a new file is started, or 0 to never rotate
+     * @param gzip                 true, if the output should be gzip'ed
+     */
+    public JsonLinesLogAppender(@Nonnull OutputStreamSupplier outputStreamSupplier, long maxFileSize, boolean gzip) {
+        this.outputStreamSupplier = outputStreamSupplier;
+        this.maxFileSize = maxFileSize;
+        this.gzip = gzip;
+    }
+
+    public JsonLinesLogAppender(@Nonnull OutputStreamSupplier outputStreamSupplier) {
+        this(outputStreamSupplier, 0, false);
+    }
+
+    /**
+     * Creates an appender writing to the given file. Rotated files get the file-index as suffix,
+     * e.g. <code>prefetch.jsonl</code>, <code>prefetch.jsonl.1</code>, <code>prefetch.jsonl.2</code>
+     * (plus <code>.gz</code>, if gzip'ed).
+     */
+    @Nonnull
+    public static JsonLinesLogAppender forFile(@Nonnull Path file, long maxFileSize, boolean gzip) {
+        return new JsonLinesLogAppender(index -> Files.newOutputStream(getFile(file, index, gzip)), maxFileSize, gzip);
+    }
+
+    @Nonnull
+    public static Path getFile(@Nonnull Path file, int index, boolean gzip) {
+        final String fileName = file.getFileName().toString()
+                + ((index > 0) ? "." + index : "")
+                + (gzip ? ".gz" : "");
+        return file.resolveSibling(fileName);
+    }
+
+    @Nonnull
+    @Override
+    protected JsonLinesLogEntry createNewLogEntry(@Nullable JsonLinesLogEntry parentEntry, @Nonnull AbstractLogger logger) {
+        final JsonLinesLogEntry newLogEntry = new JsonLinesLogEntry(lastLoggerId.incrementAndGet());
+        final JsonLinesEvent event = new JsonLinesEvent(JsonLinesEvent.LOGGER, newLogEntry.id);
+        event.parent = (parentEntry != null) ? parentEntry.id : null;
+        event.type = logger.getType();
+        writeEvent(event);
+        return newLogEntry;
+    }
+
+    @Override
+    protected void createNewLogMessage(@Nullable JsonLinesLogEntry parentEntry, @Nullable LogStatus status, @Nullable String message) {
+        if (parentEntry != null) {
+            final JsonLinesEvent event = new JsonLinesEvent(JsonLinesEvent.MESSAGE, parentEntry.id);
+            event.status = status;
+            event.message = message;
+            writeEvent(event);
+        }
+    }
+
+    protected synchronized void writeEvent(@Nonnull JsonLinesEvent event) {
+        if (closed) {
+            LOG.warn("Cannot write log-event to already closed appender!");
+            return;
+        }
+        try {
+            if ((outputStream == null) || ((maxFileSize > 0) && (bytesWritten >= maxFileSize))) {
+                rotate();
+            }
+            final byte[] line = objectMapper.writeValueAsBytes(event);
+            outputStream.write(line);
+            outputStream.write('\n');
+            bytesWritten += line.length + 1;
+        } catch (IOException e) {
+            LOG.error("Failed to write log-event", e);
+        }
+    }
+
+    private void rotate() throws IOException {
+        if (outputStream != null) {
+            outputStream.close();
+            fileIndex++;
+        }
+        final OutputStream rawOutputStream = outputStreamSupplier.createOutputStream(fileIndex);
+        outputStream = gzip
+                ? new GZIPOutputStream(rawOutputStream, BUFFER_SIZE)
+                : new BufferedOutputStream(rawOutputStream, BUFFER_SIZE);
+        bytesWritten = 0;
+    }
+
+    public synchronized void flush() throws IOException {
+        if (outputStream != null) {
+            outputStream.flush();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        LOG.info("close()");
+        closed = true;
+        if (outputStream != null) {
+            outputStream.close();
+            outputStream = null;
+        }
+    }
+
+    public interface OutputStreamSupplier {
+        OutputStream createOutputStream(int fileIndex) throws IOException;
+    }
+
+
+    protected class JsonLinesLogEntry implements AbstractLogAppender.LogEntry<JsonLinesLogEntry> {
+
+        private final long id;
+
+        public JsonLinesLogEntry(long id) {
+            this.id = id;
+        }
+
+        @Override
+        public void setSummary(LogStatus status, String message) {
+            final JsonLinesEvent event = new JsonLinesEvent(JsonLinesEvent.SUMMARY, id);
+            event.status = status;
+            event.message = message;
+            writeEvent(event);
+        }
+
+        @Override
+        public void setStatus(LogStatus status) {
+            final JsonLinesEvent event = new JsonLinesEvent(JsonLinesEvent.STATUS, id);
+            event.status = status;
+            writeEvent(event);
+        }
+
+        @Override
+        public void setProperty(String key, String value) {
+            final JsonLinesEvent event = new JsonLinesEvent(JsonLinesEvent.PROPERTY, id);
+            event.key = key;
+            event.value = value;
+            writeEvent(event);
+        }
+    }
+
+
+    /**
+     * One line of the log. The field <code>id</code> is always the id of the logger the event belongs to.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonPropertyOrder({"event", "id", "parent", "type", "status", "message", "key", "value"})
+    protected static class JsonLinesEvent {
+
+        public static final String LOGGER = "logger";
+        public static final String SUMMARY = "summary";
+        public static final String STATUS = "status";
+        public static final String PROPERTY = "property";
+        public static final String MESSAGE = "message";
+
+        @JsonProperty
+        String event;
+
+        @JsonProperty
+        long id;
+
+        @JsonProperty
+        Long parent;
+
+        @JsonProperty
+        String type;
+
+        @JsonProperty
+        LogStatus status;
+
+        @JsonProperty
+        String message;
+
+        @JsonProperty
+        String key;
+
+        @JsonProperty
+        String value;
+
+        public JsonLinesEvent() {
+        }
+
+        public JsonLinesEvent(String event, long id) {
+            this.event = event;
+            this.id = id;
+        }
+    }
+}
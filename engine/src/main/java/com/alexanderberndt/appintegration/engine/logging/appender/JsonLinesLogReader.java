@@ -0,0 +1,114 @@
+package com.alexanderberndt.appintegration.engine.logging.appender;
+
+import com.alexanderberndt.appintegration.engine.logging.appender.JsonLinesLogAppender.JsonLinesEvent;
+import com.alexanderberndt.appintegration.engine.logging.appender.JsonLogAppender.JsonLogEntry;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Re-constructs the log-tree from the output of the {@link JsonLinesLogAppender}, and writes it in the same
+ * format as the {@link JsonLogAppender} does (which is the format the logviewer expects).
+ */
+public final class JsonLinesLogReader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private JsonLinesLogReader() {
+    }
+
+    /**
+     * Converts all (rotated) files written by {@link JsonLinesLogAppender#forFile(Path, long, boolean)}.
+     */
+    public static void convertFiles(@Nonnull Path file, boolean gzip, @Nonnull Writer writer) throws IOException {
+        final List<Reader> readerList = new ArrayList<>();
+        try {
+            int index = 0;
+            Path curFile = JsonLinesLogAppender.getFile(file, index, gzip);
+            while (Files.exists(curFile)) {
+                final InputStream inputStream = Files.newInputStream(curFile);
+                readerList.add(new InputStreamReader(gzip ? new GZIPInputStream(inputStream) : inputStream, StandardCharsets.UTF_8));
+                curFile = JsonLinesLogAppender.getFile(file, ++index, gzip);
+            }
+            convert(readerList, writer);
+        } finally {
+            for (Reader reader : readerList) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the given JSON-lines inputs (in order of their rotation), and writes the log-tree to the writer.
+     */
+    public static void convert(@Nonnull List<? extends Reader> readerList, @Nonnull Writer writer) throws IOException {
+        objectMapper.writer(new DefaultPrettyPrinter()).writeValue(writer, readTree(readerList));
+    }
+
+    @Nonnull
+    static List<JsonLogEntry> readTree(@Nonnull List<? extends Reader> readerList) throws IOException {
+        final List<JsonLogEntry> rootEntries = new ArrayList<>();
+        final Map<Long, JsonLogEntry> entryMap = new HashMap<>();
+        for (Reader reader : readerList) {
+            final BufferedReader bufferedReader = new BufferedReader(reader);
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                if (StringUtils.isNotBlank(line)) {
+                    processEvent(objectMapper.readValue(line, JsonLinesEvent.class), entryMap, rootEntries);
+                }
+            }
+        }
+        return rootEntries;
+    }
+
+    private static void processEvent(JsonLinesEvent event, Map<Long, JsonLogEntry> entryMap, List<JsonLogEntry> rootEntries) {
+
+        if (JsonLinesEvent.LOGGER.equals(event.event)) {
+            final JsonLogEntry newEntry = new JsonLogEntry(event.type);
+            entryMap.put(event.id, newEntry);
+            final JsonLogEntry parentEntry = (event.parent != null) ? entryMap.get(event.parent) : null;
+            if (parentEntry != null) {
+                parentEntry.registerSubEntry(newEntry);
+            } else {
+                rootEntries.add(newEntry);
+            }
+            return;
+        }
+
+        final JsonLogEntry entry = entryMap.get(event.id);
+        if (entry == null) {
+            LOG.warn("Skipping {}-event for unknown logger {}", event.event, event.id);
+            return;
+        }
+
+        switch (StringUtils.defaultString(event.event)) {
+            case JsonLinesEvent.SUMMARY:
+                entry.setSummary(event.status, event.message);
+                break;
+            case JsonLinesEvent.STATUS:
+                entry.setStatus(event.status);
+                break;
+            case JsonLinesEvent.PROPERTY:
+                entry.setProperty(event.key, event.value);
+                break;
+            case JsonLinesEvent.MESSAGE:
+                entry.registerSubEntry(new JsonLogEntry("message", event.status, event.message));
+                break;
+            default:
+                LOG.warn("Skipping unknown event {}", event.event);
+        }
+    }
+}
@@ -15,7 +15,12 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.Writer;
 import java.lang.invoke.MethodHandles;
-import java.util.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 public class JsonLogAppender extends AbstractLogAppender<JsonLogAppender.JsonLogEntry> {
 
@@ -66,20 +71,29 @@ public class JsonLogAppender extends AbstractLogAppender<JsonLogAppender.JsonLog
     @JsonPropertyOrder({"type", "status", "message", "properties", "entries"})
     protected static class JsonLogEntry implements AbstractLogAppender.LogEntry<JsonLogEntry> {
 
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<JsonLogEntry, Map> PROPERTY_MAP_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(JsonLogEntry.class, Map.class, "propertyMap");
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<JsonLogEntry, Queue> SUB_ENTRIES_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(JsonLogEntry.class, Queue.class, "subEntries");
+
         @JsonProperty
         private final String type;
 
         @JsonProperty
-        private LogStatus status;
+        private volatile LogStatus status;
 
         @JsonProperty
-        private String message;
+        private volatile String message;
 
+        // created lazily, as most entries (e.g. messages) never get properties or sub-entries
         @JsonProperty("properties")
-        private Map<String, String> propertyMap;
+        private volatile Map<String, String> propertyMap;
 
         @JsonProperty("entries")
-        private List<JsonLogEntry> subEntries;
+        private volatile Queue<JsonLogEntry> subEntries;
 
         public JsonLogEntry(String type) {
             this.type = type;
@@ -101,14 +115,15 @@ public class JsonLogAppender extends AbstractLogAppender<JsonLogAppender.JsonLog
 
         public void setProperty(String key, String value) {
             if (this.propertyMap == null) {
-                this.propertyMap = new HashMap<>();
+                // synchronized instead of concurrent, as null-values must be kept
+                PROPERTY_MAP_UPDATER.compareAndSet(this, null, Collections.synchronizedMap(new HashMap<>()));
             }
             this.propertyMap.put(key, value);
         }
 
         public void registerSubEntry(@Nonnull JsonLogEntry subEntry) {
             if (this.subEntries == null) {
-                this.subEntries = new ArrayList<>();
+                SUB_ENTRIES_UPDATER.compareAndSet(this, null, new ConcurrentLinkedQueue<>());
             }
             this.subEntries.add(subEntry);
         }
@@ -0,0 +1,105 @@
+package com.alexanderberndt.appintegration.engine.logging.appender;
+
+import com.alexanderberndt.appintegration.engine.Application;
+import com.alexanderberndt.appintegration.engine.logging.AbstractLogger;
+import com.alexanderberndt.appintegration.engine.logging.LogAppender;
+import com.alexanderberndt.appintegration.engine.logging.LogStatus;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Log-appender for requests, which were not chosen for sampling. It only passes log-entries with a minimal
+ * status to the delegate. Loggers, properties and entries below this level are dropped. The loggers are
+ * appended lazily to the delegate, i.e. only if one of them (or one of its child-loggers) gets an entry.
+ */
+public class SamplingLogAppender implements LogAppender {
+
+    @Nonnull
+    private final LogAppender delegate;
+
+    @Nonnull
+    private final LogStatus minLevel;
+
+    private final Set<AbstractLogger> appendedLoggers = ConcurrentHashMap.newKeySet();
+
+    public SamplingLogAppender(@Nonnull LogAppender delegate, @Nonnull LogStatus minLevel) {
+        this.delegate = delegate;
+        this.minLevel = minLevel;
+    }
+
+    /**
+     * Creates the log-appender for one runtime-request of the application. If the request is chosen for
+     * sampling (or the application logs everything), then the delegate itself is returned.
+     */
+    @Nonnull
+    public static LogAppender forApplication(@Nonnull Application application, @Nonnull LogAppender delegate) {
+        final LogStatus minLevel = application.getIntegrationLogLevel();
+        if ((minLevel == LogStatus.INFO) || (ThreadLocalRandom.current().nextDouble() < application.getIntegrationLogSampleRate())) {
+            return delegate;
+        } else {
+            return new SamplingLogAppender(delegate, minLevel);
+        }
+    }
+
+    @Override
+    public boolean isSuppressed(@Nonnull LogStatus status) {
+        return (status.compareTo(minLevel) < 0) || delegate.isSuppressed(status);
+    }
+
+    @Override
+    public void appendLogger(@Nonnull AbstractLogger logger) {
+        // appended lazily by ensureAppended()
+    }
+
+    @Override
+    public void setLoggerSummary(@Nonnull AbstractLogger logger, LogStatus status, String message) {
+        if ((status != null) && !isSuppressed(status)) {
+            ensureAppended(logger);
+            delegate.setLoggerSummary(logger, status, message);
+        }
+    }
+
+    @Override
+    public void setLoggerStatus(@Nonnull AbstractLogger logger, LogStatus status) {
+        if ((status != null) && !isSuppressed(status)) {
+            ensureAppended(logger);
+            delegate.setLoggerStatus(logger, status);
+        }
+    }
+
+    @Override
+    public void setLoggerProperty(@Nonnull AbstractLogger logger, @Nonnull String key, String value) {
+        if (appendedLoggers.contains(logger)) {
+            delegate.setLoggerProperty(logger, key, value);
+        }
+    }
+
+    @Override
+    public void appendLogEntry(@Nonnull AbstractLogger logger, LogStatus status, String message) {
+        if ((status != null) && !isSuppressed(status)) {
+            ensureAppended(logger);
+            delegate.appendLogEntry(logger, status, message);
+        }
+    }
+
+    private void ensureAppended(@Nonnull AbstractLogger logger) {
+        if (!appendedLoggers.contains(logger)) {
+            final AbstractLogger parentLogger = logger.getParentLogger();
+            if (parentLogger != null) {
+                ensureAppended(parentLogger);
+            }
+            if (appendedLoggers.add(logger)) {
+                delegate.appendLogger(logger);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
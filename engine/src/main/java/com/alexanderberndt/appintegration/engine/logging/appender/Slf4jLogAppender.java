@@ -7,39 +7,68 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.lang.invoke.MethodHandles;
 
+/**
+ * Log-appender for the runtime path, which writes entries and summaries to SLF4J (with the level according
+ * to their status). The logger structure and properties are only written on debug level.
+ */
 public class Slf4jLogAppender implements LogAppender {
 
     private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
     public Slf4jLogAppender() {
-        LOG.info("New Slf4jLogAppender created...");
+        LOG.debug("New Slf4jLogAppender created...");
     }
 
     @Override
     public void appendLogger(@Nonnull AbstractLogger logger) {
-        LOG.info("append {}", logger.getLoggerName());
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("append {}", logger.getLoggerName());
+        }
     }
 
     @Override
     public void setLoggerSummary(@Nonnull AbstractLogger logger, LogStatus status, String message) {
-        getLogMethod(status).log("set summary {}: {} - {}", logger.getLoggerName(), status, message);
+        if (!isSuppressed(status)) {
+            getLogMethod(status).log("set summary {}: {} - {}", logger.getLoggerName(), status, message);
+        }
     }
 
     @Override
     public void setLoggerStatus(@Nonnull AbstractLogger logger, LogStatus status) {
-        getLogMethod(status).log("set status for {}: {}", logger.getLoggerName(), status);
+        if (!isSuppressed(status)) {
+            getLogMethod(status).log("set status for {}: {}", logger.getLoggerName(), status);
+        }
     }
 
     @Override
     public void setLoggerProperty(@Nonnull AbstractLogger logger, @Nonnull String key, String value) {
-        LOG.info("set property for {}: {} = {}", logger.getLoggerName(), key, value);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("set property for {}: {} = {}", logger.getLoggerName(), key, value);
+        }
     }
 
     @Override
     public void appendLogEntry(@Nonnull AbstractLogger logger, LogStatus status, String message) {
-        getLogMethod(status).log("append entry for {}: {} - {}", logger.getLoggerName(), status, message);
+        if (!isSuppressed(status)) {
+            getLogMethod(status).log("append entry for {}: {} - {}", logger.getLoggerName(), status, message);
+        }
+    }
+
+    @Override
+    public boolean isSuppressed(@Nullable LogStatus status) {
+        switch ((status != null) ? status : LogStatus.INFO) {
+            case ERROR:
+            case FAILED:
+                return !LOG.isErrorEnabled();
+            case WARNING:
+                return !LOG.isWarnEnabled();
+            case INFO:
+            default:
+                return !LOG.isInfoEnabled();
+        }
     }
 
     @Override
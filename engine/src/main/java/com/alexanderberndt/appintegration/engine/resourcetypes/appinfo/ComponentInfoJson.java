@@ -1,5 +1,6 @@
 package com.alexanderberndt.appintegration.engine.resourcetypes.appinfo;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class ComponentInfoJson {
@@ -13,6 +14,9 @@ public class ComponentInfoJson {
     @JsonProperty
     private String dialog;
 
+    @JsonIgnore
+    private volatile UrlTemplate compiledUrl;
+
     public String getName() {
         return name;
     }
@@ -27,6 +31,20 @@ public class ComponentInfoJson {
 
     public void setUrl(String url) {
         this.url = url;
+        this.compiledUrl = null;
+    }
+
+    /**
+     * Url as pre-compiled template (compiled on first use).
+     */
+    @JsonIgnore
+    public UrlTemplate getCompiledUrl() {
+        UrlTemplate template = this.compiledUrl;
+        if ((template == null) && (url != null)) {
+            template = UrlTemplate.compile(url);
+            this.compiledUrl = template;
+        }
+        return template;
     }
 
     public String getDialog() {
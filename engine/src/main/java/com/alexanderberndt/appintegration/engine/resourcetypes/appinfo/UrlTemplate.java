@@ -0,0 +1,116 @@
+package com.alexanderberndt.appintegration.engine.resourcetypes.appinfo;
+
+import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-compiled url-template (e.g. <code>/subscribe.${newsletterId}.${language:-en}.html</code>). The template is
+ * parsed once into literal and variable parts, so that resolving it is a simple concatenation. Variables
+ * can define a default value with <code>:-</code>.
+ */
+public final class UrlTemplate {
+
+    private static final String VARIABLE_PREFIX = "${";
+    private static final String VARIABLE_SUFFIX = "}";
+    private static final String DEFAULT_VALUE_DELIMITER = ":-";
+
+    @Nonnull
+    private final String template;
+
+    // literals are strings, and variables are Variable objects
+    private final Object[] parts;
+
+    private final int estimatedLength;
+
+    private UrlTemplate(@Nonnull String template, @Nonnull List<Object> partList) {
+        this.template = template;
+        this.parts = partList.toArray();
+        this.estimatedLength = template.length() + 16;
+    }
+
+    @Nonnull
+    public static UrlTemplate compile(@Nonnull String template) {
+        final List<Object> partList = new ArrayList<>();
+        int pos = 0;
+        while (pos < template.length()) {
+            final int startPos = template.indexOf(VARIABLE_PREFIX, pos);
+            final int endPos = (startPos >= 0) ? template.indexOf(VARIABLE_SUFFIX, startPos + VARIABLE_PREFIX.length()) : -1;
+            if ((startPos < 0) || (endPos < 0)) {
+                partList.add(template.substring(pos));
+                break;
+            }
+            if (startPos > pos) {
+                partList.add(template.substring(pos, startPos));
+            }
+            final String expression = template.substring(startPos + VARIABLE_PREFIX.length(), endPos);
+            if (expression.contains(DEFAULT_VALUE_DELIMITER)) {
+                partList.add(new Variable(
+                        StringUtils.substringBefore(expression, DEFAULT_VALUE_DELIMITER),
+                        StringUtils.substringAfter(expression, DEFAULT_VALUE_DELIMITER)));
+            } else {
+                partList.add(new Variable(expression, null));
+            }
+            pos = endPos + VARIABLE_SUFFIX.length();
+        }
+        return new UrlTemplate(template, partList);
+    }
+
+    /**
+     * Resolves the template with the given context variables.
+     *
+     * @throws AppIntegrationException if a variable is undefined, or the resolved string still contains placeholders
+     */
+    @Nonnull
+    public String resolve(@Nonnull Map<String, String> contextMap) {
+        final StringBuilder result = new StringBuilder(estimatedLength);
+        for (Object part : parts) {
+            if (part instanceof Variable) {
+                final Variable variable = (Variable) part;
+                final String value = contextMap.get(variable.name);
+                if (value != null) {
+                    result.append(value);
+                } else if (variable.defaultValue != null) {
+                    result.append(variable.defaultValue);
+                } else {
+                    result.append(VARIABLE_PREFIX).append(variable.name).append(VARIABLE_SUFFIX);
+                }
+            } else {
+                result.append((String) part);
+            }
+        }
+
+        final String resolvedString = result.toString();
+        if (StringUtils.containsAny(resolvedString, '$', '{', '}')) {
+            throw new AppIntegrationException(String.format(
+                    "Could not fully resolve template \"%s\". It remained \"%s\".", template, resolvedString));
+        }
+        return resolvedString;
+    }
+
+    @Nonnull
+    public String getTemplate() {
+        return template;
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+
+    private static final class Variable {
+
+        private final String name;
+
+        private final String defaultValue;
+
+        private Variable(String name, String defaultValue) {
+            this.name = name;
+            this.defaultValue = defaultValue;
+        }
+    }
+}
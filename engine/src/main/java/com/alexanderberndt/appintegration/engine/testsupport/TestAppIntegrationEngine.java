@@ -8,9 +8,11 @@ import com.alexanderberndt.appintegration.engine.logging.appender.Slf4jLogAppend
 import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
 
 import javax.annotation.Nonnull;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 public class TestAppIntegrationEngine extends AbstractAppIntegrationEngine<TestAppInstance, TestGlobalContext> implements AppIntegrationEngine<TestAppInstance> {
@@ -21,7 +23,7 @@ public class TestAppIntegrationEngine extends AbstractAppIntegrationEngine<TestA
     @Nonnull
     private final Supplier<LogAppender> appenderSupplier;
 
-    private final Map<String, TestExternalResourceCache> resourceCacheMap = new HashMap<>();
+    private final Map<String, TestExternalResourceCache> resourceCacheMap = new ConcurrentHashMap<>();
 
     public TestAppIntegrationEngine() {
         this(new TestAppIntegrationFactory(), Slf4jLogAppender::new);
@@ -59,6 +61,16 @@ public class TestAppIntegrationEngine extends AbstractAppIntegrationEngine<TestA
                         super.prefetch(createGlobalContext(applicationId), groupedInstanceList));
     }
 
+    public void prefetch(@Nonnull List<TestAppInstance> applicationInstanceList, @Nonnull BooleanSupplier isCancelled) {
+        groupInstancesByApplicationId(applicationInstanceList,
+                (applicationId, groupedInstanceList) ->
+                        super.prefetch(createGlobalContext(applicationId), groupedInstanceList, isCancelled));
+    }
+
+    public void prefetchInBatches(@Nonnull String applicationId, @Nonnull Consumer<Consumer<List<TestAppInstance>>> instanceBatches) {
+        super.prefetchInBatches(createGlobalContext(applicationId), instanceBatches, () -> false);
+    }
+
     public TestExternalResourceCache getExternalResourceCache(String applicationId) {
         return resourceCacheMap.computeIfAbsent(applicationId, id -> new TestExternalResourceCache());
     }
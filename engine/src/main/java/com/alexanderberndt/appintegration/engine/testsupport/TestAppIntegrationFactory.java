@@ -3,6 +3,7 @@ package com.alexanderberndt.appintegration.engine.testsupport;
 import com.alexanderberndt.appintegration.engine.AppIntegrationFactory;
 import com.alexanderberndt.appintegration.engine.Application;
 import com.alexanderberndt.appintegration.engine.ContextProvider;
+import com.alexanderberndt.appintegration.engine.PrefetchPostProcessor;
 import com.alexanderberndt.appintegration.engine.ResourceLoader;
 import com.alexanderberndt.appintegration.engine.loader.HttpResourceLoader;
 import com.alexanderberndt.appintegration.engine.loader.SystemResourceLoader;
@@ -12,6 +13,9 @@ import com.alexanderberndt.appintegration.engine.resourcetypes.appinfo.Applicati
 import com.alexanderberndt.appintegration.engine.resourcetypes.html.HtmlParser;
 import com.alexanderberndt.appintegration.pipeline.ProcessingPipeline;
 import com.alexanderberndt.appintegration.pipeline.SystemResourcePipelineFactory;
+import com.alexanderberndt.appintegration.tasks.prefetch.BundlePostProcessor;
+import com.alexanderberndt.appintegration.tasks.prefetch.FingerprintPostProcessor;
+import com.alexanderberndt.appintegration.tasks.prefetch.InlineResourcesPostProcessor;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -34,6 +38,8 @@ public class TestAppIntegrationFactory implements AppIntegrationFactory<TestAppI
 
     private final List<TextParser> textParsers;
 
+    private final Map<String, PrefetchPostProcessor> prefetchPostProcessorMap;
+
     private final Map<String, ProcessingPipeline> customProcessingPipelinesMap = new HashMap<>();
 
     public TestAppIntegrationFactory() {
@@ -50,6 +56,11 @@ public class TestAppIntegrationFactory implements AppIntegrationFactory<TestAppI
         textParsers.add(new StringConverter());
         textParsers.add(new ApplicationInfoJsonParser());
         textParsers.add(new HtmlParser());
+
+        prefetchPostProcessorMap = new HashMap<>();
+        prefetchPostProcessorMap.put("bundle", new BundlePostProcessor());
+        prefetchPostProcessorMap.put("fingerprint", new FingerprintPostProcessor());
+        prefetchPostProcessorMap.put("inline-resources", new InlineResourcesPostProcessor());
     }
 
     @Override
@@ -95,6 +106,12 @@ public class TestAppIntegrationFactory implements AppIntegrationFactory<TestAppI
         return textParsers;
     }
 
+    @Nonnull
+    @Override
+    public Map<String, PrefetchPostProcessor> getAllPrefetchPostProcessors() {
+        return Collections.unmodifiableMap(prefetchPostProcessorMap);
+    }
+
     public void registerPipeline(String pipelineName, ProcessingPipeline pipeline) {
         customProcessingPipelinesMap.put(pipelineName, pipeline);
     }
@@ -4,6 +4,7 @@ import com.alexanderberndt.appintegration.engine.Application;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -27,6 +28,9 @@ public class TestApplication implements Application {
     @Nullable
     private final Map<String, Object> globalProperties;
 
+    @Nonnull
+    private List<String> prefetchPostProcessorNames = Collections.emptyList();
+
     public TestApplication(@Nonnull String applicationId,
                            @Nonnull String applicationInfoUrl,
                            @Nonnull String resourceLoaderName,
@@ -81,4 +85,14 @@ public class TestApplication implements Application {
     public Map<String, Object> getGlobalProperties() {
         return globalProperties;
     }
+
+    @Nonnull
+    @Override
+    public List<String> getPrefetchPostProcessorNames() {
+        return prefetchPostProcessorNames;
+    }
+
+    public void setPrefetchPostProcessorNames(@Nonnull List<String> prefetchPostProcessorNames) {
+        this.prefetchPostProcessorNames = prefetchPostProcessorNames;
+    }
 }
@@ -16,20 +16,33 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+/**
+ * In-memory cache for tests. It's backed by concurrent maps, so it can also be used by concurrent requests
+ * (e.g. in a load-test). Only the start, commit and rollback of a long-running write are synchronized.
+ */
 public class TestExternalResourceCache implements ExternalResourceCache {
 
-    private String readVersionId;
+    private volatile String readVersionId;
 
-    private String writeVersionId;
+    private volatile String writeVersionId;
 
-    private final Map<CacheKey, CacheValue> resourceCache = new LinkedHashMap<>();
+    private final Map<CacheKey, CacheValue> resourceCache = new ConcurrentHashMap<>();
+
+    // keys in the order of their first store, so that tests can check the order of the cached resources
+    private final Queue<CacheKey> keyOrder = new ConcurrentLinkedQueue<>();
+
+    private final Set<URI> changedUris = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
 
     @Nonnull
     @Override
@@ -43,7 +56,18 @@ public class TestExternalResourceCache implements ExternalResourceCache {
             throw new AppIntegrationException("Couldn't read content of resource", e);
         }
         final CacheValue value = new CacheValue(tempContent.toByteArray(), new DataMap(resource.getMetadataMap()));
-        resourceCache.put(key, value);
+        if (this.writeVersionId != null) {
+            final CacheValue previousValue = resourceCache.get(new CacheKey(resource.getUri(), this.readVersionId));
+            if ((previousValue == null) || !Arrays.equals(previousValue.content, value.content)) {
+                changedUris.add(resource.getUri());
+            } else {
+                // stored again with the previous content (e.g. by a post-processor)
+                changedUris.remove(resource.getUri());
+            }
+        }
+        if (resourceCache.put(key, value) == null) {
+            keyOrder.add(key);
+        }
 
         return () -> new ByteArrayInputStream(value.content);
     }
@@ -60,21 +84,63 @@ public class TestExternalResourceCache implements ExternalResourceCache {
         if (value == null) {
             value = resourceCache.get(new CacheKey(resourceRef.getUri(), null));
             if (value == null) {
+                missCount.increment();
                 return null;
             }
         }
+        hitCount.increment();
         return resourceFactory.createExternalResource(resourceRef, new ByteArrayInputStream(value.content), value.metadata);
     }
 
+    @Nullable
+    @Override
+    public ExternalResource getWrittenResource(@Nonnull ExternalResourceRef resourceRef, @Nonnull ExternalResourceFactory resourceFactory) {
+        final CacheValue value = (this.writeVersionId != null) ? resourceCache.get(new CacheKey(resourceRef.getUri(), this.writeVersionId)) : null;
+        return (value != null) ? resourceFactory.createExternalResource(resourceRef, new ByteArrayInputStream(value.content), value.metadata) : null;
+    }
+
+    @Override
+    public boolean storeRendition(@Nonnull URI uri, @Nonnull String renditionName, @Nonnull InputStream content) {
+        final CacheValue value = resourceCache.get(new CacheKey(uri, this.writeVersionId));
+        if (value == null) {
+            throw new AppIntegrationException("Cannot store rendition " + renditionName + ", as resource " + uri + " is not stored");
+        }
+        try {
+            value.renditions.put(renditionName, IOUtils.toByteArray(content));
+        } catch (IOException e) {
+            throw new AppIntegrationException("Couldn't read content of rendition", e);
+        }
+        return true;
+    }
+
+    @Nonnull
+    @Override
+    public Set<String> getWrittenRenditionNames(@Nonnull URI uri) {
+        final CacheValue value = (this.writeVersionId != null) ? resourceCache.get(new CacheKey(uri, this.writeVersionId)) : null;
+        return (value != null) ? new HashSet<>(value.renditions.keySet()) : Collections.emptySet();
+    }
+
+    @Nullable
+    @Override
+    public Supplier<InputStream> getCachedRendition(@Nonnull URI uri, @Nonnull String renditionName) {
+        CacheValue value = resourceCache.get(new CacheKey(uri, this.readVersionId));
+        if (value == null) {
+            value = resourceCache.get(new CacheKey(uri, null));
+        }
+        final byte[] renditionContent = (value != null) ? value.renditions.get(renditionName) : null;
+        return (renditionContent != null) ? () -> new ByteArrayInputStream(renditionContent) : null;
+    }
+
     @Override
     public boolean isLongRunningWrite() {
         return (this.writeVersionId != null);
     }
 
     @Override
-    public boolean startLongRunningWrite(@Nullable String nameHint) {
+    public synchronized boolean startLongRunningWrite(@Nullable String nameHint) {
         if (this.writeVersionId == null) {
             this.writeVersionId = nameHint;
+            this.changedUris.clear();
             return true;
         } else {
             return false;
@@ -89,7 +155,7 @@ public class TestExternalResourceCache implements ExternalResourceCache {
     }
 
     @Override
-    public void commitLongRunningWrite() {
+    public synchronized void commitLongRunningWrite() {
         if (this.writeVersionId != null) {
             this.readVersionId = this.writeVersionId;
             this.writeVersionId = null;
@@ -99,7 +165,7 @@ public class TestExternalResourceCache implements ExternalResourceCache {
     }
 
     @Override
-    public void rollbackLongRunningWrite() {
+    public synchronized void rollbackLongRunningWrite() {
         if (this.writeVersionId != null) {
             this.writeVersionId = null;
         } else {
@@ -107,13 +173,31 @@ public class TestExternalResourceCache implements ExternalResourceCache {
         }
     }
 
+    @Nonnull
+    @Override
+    public Set<URI> getChangedResourceUris() {
+        return Collections.unmodifiableSet(changedUris);
+    }
+
     public List<URI> getCacheKeys() {
-        return resourceCache.keySet().stream()
+        return keyOrder.stream()
                 .filter(key -> (key.versionId == null) || StringUtils.equals(readVersionId, key.versionId))
                 .map(key -> key.uri)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * @return number of calls to {@link #getCachedResource(ExternalResourceRef, ExternalResourceFactory)}, which
+     * found a resource
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
     private static class CacheKey {
 
         @Nonnull
@@ -150,6 +234,8 @@ public class TestExternalResourceCache implements ExternalResourceCache {
         @Nonnull
         private final DataMap metadata;
 
+        private final Map<String, byte[]> renditions = new ConcurrentHashMap<>();
+
         public CacheValue(@Nonnull byte[] content, @Nonnull DataMap metadata) {
             this.content = content;
             this.metadata = metadata;
@@ -17,6 +17,10 @@ public class TestLoadingTask implements LoadingTask {
         this.content = content.getBytes();
     }
 
+    public TestLoadingTask(@Nonnull byte[] content) {
+        this.content = content;
+    }
+
     @Override
     public ExternalResource load(TaskContext context, ExternalResourceRef resourceRef) {
         return context.getResourceFactory().createExternalResource(resourceRef, new ByteArrayInputStream(content));
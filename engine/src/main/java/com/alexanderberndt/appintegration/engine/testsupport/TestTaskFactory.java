@@ -4,14 +4,20 @@ import com.alexanderberndt.appintegration.pipeline.TaskFactory;
 import com.alexanderberndt.appintegration.pipeline.task.LoadingTask;
 import com.alexanderberndt.appintegration.pipeline.task.PreparationTask;
 import com.alexanderberndt.appintegration.pipeline.task.ProcessingTask;
+import com.alexanderberndt.appintegration.tasks.cache.OptimizeImageTask;
+import com.alexanderberndt.appintegration.tasks.cache.PrecompressTask;
 import com.alexanderberndt.appintegration.tasks.cache.ReadFromCacheTask;
 import com.alexanderberndt.appintegration.tasks.cache.StoreInCacheTask;
 import com.alexanderberndt.appintegration.tasks.load.DownloadTask;
 import com.alexanderberndt.appintegration.tasks.prepare.PropertiesTask;
 import com.alexanderberndt.appintegration.tasks.process.AddReferencedResourceTask;
 import com.alexanderberndt.appintegration.tasks.process.FileSizeValidationTask;
+import com.alexanderberndt.appintegration.tasks.process.MinifyTask;
 import com.alexanderberndt.appintegration.tasks.process.RegexValidationTask;
+import com.alexanderberndt.appintegration.tasks.process.css.CssReferencesTask;
 import com.alexanderberndt.appintegration.tasks.process.html.ExtractHtmlSnippetTask;
+import com.alexanderberndt.appintegration.tasks.process.html.InlineResourcesTask;
+import com.alexanderberndt.appintegration.tasks.process.js.JsReferencesTask;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -34,7 +40,13 @@ public class TestTaskFactory implements TaskFactory {
         registerTask(new RegexValidationTask());
         registerTask(new StoreInCacheTask());
         registerTask(new ReadFromCacheTask());
+        registerTask(new PrecompressTask());
+        registerTask(new OptimizeImageTask());
+        registerTask(new CssReferencesTask());
+        registerTask(new JsReferencesTask());
         registerTask(new ExtractHtmlSnippetTask());
+        registerTask(new MinifyTask());
+        registerTask(new InlineResourcesTask());
     }
 
     @Nullable
@@ -20,16 +20,22 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.lang.invoke.MethodHandles;
-import java.util.Collections;
-import java.util.List;
-import java.util.Optional;
+import java.net.URI;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 import static com.alexanderberndt.appintegration.pipeline.configuration.Ranking.PIPELINE_EXECUTION;
 
 /**
  * Processing Instance.
+ * <p>
+ * Preparation and processing tasks are dispatched by the resource-type: For every type, the pipeline pre-computes
+ * the tasks, whose file-types match (incl. the type-hierarchy). So tasks, which don't apply to a resource, don't
+ * even get a task-context. If a task changes the resource-type, the remaining tasks are dispatched by the new type.
  */
 public class ProcessingPipeline {
 
@@ -44,6 +50,13 @@ public class ProcessingPipeline {
     @Nonnull
     private final List<TaskWrapper<ProcessingTask>> processingTasks;
 
+    // dispatch-tables: indexes of the applicable tasks per resource-type
+    @Nonnull
+    private final Map<ExternalResourceType, int[]> preparationTaskDispatchTable;
+
+    @Nonnull
+    private final Map<ExternalResourceType, int[]> processingTaskDispatchTable;
+
     public ProcessingPipeline(
             @Nullable List<TaskWrapper<PreparationTask>> preparationTasks,
             @Nonnull TaskWrapper<LoadingTask> loadingTask,
@@ -51,6 +64,19 @@ public class ProcessingPipeline {
         this.preparationTasks = Optional.ofNullable(preparationTasks).orElse(Collections.emptyList());
         this.loadingTask = loadingTask;
         this.processingTasks = Optional.ofNullable(processingTasks).orElse(Collections.emptyList());
+        this.preparationTaskDispatchTable = createDispatchTable(this.preparationTasks);
+        this.processingTaskDispatchTable = createDispatchTable(this.processingTasks);
+    }
+
+    @Nonnull
+    private static <T> Map<ExternalResourceType, int[]> createDispatchTable(@Nonnull List<TaskWrapper<T>> taskList) {
+        final Map<ExternalResourceType, int[]> dispatchTable = new EnumMap<>(ExternalResourceType.class);
+        for (ExternalResourceType resourceType : ExternalResourceType.values()) {
+            dispatchTable.put(resourceType, IntStream.range(0, taskList.size())
+                    .filter(i -> taskList.get(i).appliesTo(resourceType))
+                    .toArray());
+        }
+        return dispatchTable;
     }
 
     public void initContextWithTaskDefaults(@Nonnull GlobalContext<?, ?> context) {
@@ -109,14 +135,12 @@ public class ProcessingPipeline {
         stopWatch.start();
 
         // preparation tasks
-        for (TaskWrapper<PreparationTask> taskWrapper : preparationTasks) {
-            final ExternalResourceType resourceType = resourceRef.getExpectedType();
-            applyWithContext(taskWrapper, context, log, PIPELINE_EXECUTION, resourceType, processingData,
-                    taskContext -> {
-                        taskWrapper.getTask().prepare(taskContext, resourceRef);
-                        return null;
-                    });
-        }
+        dispatch(preparationTasks, preparationTaskDispatchTable, resourceRef::getExpectedType, resourceRef.getUri(),
+                taskWrapper -> applyWithContext(taskWrapper, context, log, PIPELINE_EXECUTION, resourceRef.getExpectedType(), processingData,
+                        taskContext -> {
+                            taskWrapper.getTask().prepare(taskContext, resourceRef);
+                            return null;
+                        }));
 
         // loading task
         final ExternalResource resource =
@@ -124,20 +148,53 @@ public class ProcessingPipeline {
                         taskContext -> loadingTask.getTask().load(taskContext, resourceRef));
 
         // processing tasks
-        for (TaskWrapper<ProcessingTask> taskWrapper : processingTasks) {
-            final ExternalResourceType resourceType = resource.getType();
-            applyWithContext(taskWrapper, context, log, PIPELINE_EXECUTION, resourceType, processingData,
-                    taskContext -> {
-                        taskWrapper.getTask().process(taskContext, resource);
-                        return null;
-                    });
-        }
+        dispatch(processingTasks, processingTaskDispatchTable, resource::getType, resource.getUri(),
+                taskWrapper -> applyWithContext(taskWrapper, context, log, PIPELINE_EXECUTION, resource.getType(), processingData,
+                        taskContext -> {
+                            taskWrapper.getTask().process(taskContext, resource);
+                            return null;
+                        }));
 
         log.setTime(String.format("%,d ms", stopWatch.getTime(TimeUnit.MILLISECONDS)));
         return resource;
     }
 
 
+    /**
+     * Calls all tasks, which apply to the current resource-type and the uri (in the order of the pipeline).
+     */
+    private static <T> void dispatch(
+            @Nonnull List<TaskWrapper<T>> taskList,
+            @Nonnull Map<ExternalResourceType, int[]> dispatchTable,
+            @Nonnull Supplier<ExternalResourceType> resourceTypeSupplier,
+            @Nonnull URI uri,
+            @Nonnull Consumer<TaskWrapper<T>> taskConsumer) {
+
+        ExternalResourceType resourceType = resourceTypeSupplier.get();
+        int[] taskIndexes = dispatchTable.get(resourceType);
+        int lastIndex = -1;
+        int pos = 0;
+        while (pos < taskIndexes.length) {
+            final int index = taskIndexes[pos++];
+            if (index <= lastIndex) {
+                // already passed (after the resource-type changed)
+                continue;
+            }
+            final TaskWrapper<T> taskWrapper = taskList.get(index);
+            if (taskWrapper.appliesTo(uri)) {
+                taskConsumer.accept(taskWrapper);
+            }
+            lastIndex = index;
+
+            final ExternalResourceType newResourceType = resourceTypeSupplier.get();
+            if (newResourceType != resourceType) {
+                resourceType = newResourceType;
+                taskIndexes = dispatchTable.get(resourceType);
+                pos = 0;
+            }
+        }
+    }
+
     protected <T, R> R applyWithContext(
             @Nonnull TaskWrapper<T> taskWrapper,
             @Nonnull GlobalContext<?, ?> context,
@@ -1,9 +1,15 @@
 package com.alexanderberndt.appintegration.pipeline;
 
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
 import com.alexanderberndt.appintegration.utils.DataMap;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.net.URI;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 public class TaskWrapper<T> {
 
@@ -19,11 +25,26 @@ public class TaskWrapper<T> {
     @Nullable
     private final DataMap configuration;
 
+    // resource-types (incl. their specializations), the task applies to - or null for all types
+    @Nullable
+    private final Set<ExternalResourceType> fileTypes;
+
+    // pattern for the resource-uri, the task applies to - or null for all uris
+    @Nullable
+    private final Pattern filter;
+
     public TaskWrapper(@Nonnull String id, @Nonnull String name, @Nonnull T task, @Nullable DataMap configuration) {
+        this(id, name, task, configuration, null, null);
+    }
+
+    public TaskWrapper(@Nonnull String id, @Nonnull String name, @Nonnull T task, @Nullable DataMap configuration,
+                       @Nullable Set<ExternalResourceType> fileTypes, @Nullable Pattern filter) {
         this.id = id;
         this.name = name;
         this.task = task;
         this.configuration = configuration;
+        this.fileTypes = ((fileTypes != null) && !fileTypes.isEmpty()) ? Collections.unmodifiableSet(EnumSet.copyOf(fileTypes)) : null;
+        this.filter = filter;
     }
 
     @Nonnull
@@ -45,4 +66,37 @@ public class TaskWrapper<T> {
     public DataMap getConfiguration() {
         return configuration;
     }
+
+    @Nullable
+    public Set<ExternalResourceType> getFileTypes() {
+        return fileTypes;
+    }
+
+    @Nullable
+    public Pattern getFilter() {
+        return filter;
+    }
+
+    /**
+     * Checks, if the task applies to the resource-type (i.e. the type is one of the file-types, or a
+     * specialization of it).
+     */
+    public boolean appliesTo(@Nonnull ExternalResourceType resourceType) {
+        if (fileTypes == null) {
+            return true;
+        }
+        for (ExternalResourceType fileType : fileTypes) {
+            if (resourceType.isSameOrSpecializationOf(fileType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks, if the resource-uri matches the filter.
+     */
+    public boolean appliesTo(@Nonnull URI uri) {
+        return (filter == null) || filter.matcher(uri.toString()).find();
+    }
 }
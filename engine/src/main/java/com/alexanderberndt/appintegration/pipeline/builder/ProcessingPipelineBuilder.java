@@ -1,5 +1,6 @@
 package com.alexanderberndt.appintegration.pipeline.builder;
 
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
 import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
 import com.alexanderberndt.appintegration.pipeline.ProcessingPipeline;
 import com.alexanderberndt.appintegration.pipeline.TaskFactory;
@@ -14,6 +15,8 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.*;
 import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 public class ProcessingPipelineBuilder {
 
@@ -72,7 +75,45 @@ public class ProcessingPipelineBuilder {
         }
 
         final DataMap configuration = (taskDef != null) ? taskDef.getConfiguration() : null;
-        return new TaskWrapper<>(taskId, taskName, task, configuration);
+        final Set<ExternalResourceType> fileTypes = (taskDef != null) ? parseFileTypes(taskId, taskDef.getFileTypes()) : null;
+        final Pattern filter = (taskDef != null) ? compileFilter(taskId, taskDef.getFilter()) : null;
+        return new TaskWrapper<>(taskId, taskName, task, configuration, fileTypes, filter);
+    }
+
+    /**
+     * Parses a comma-separated list of resource-types (e.g. <code>html, text</code>).
+     *
+     * @return set of types, or <code>null</code> if the task applies to all types
+     */
+    @Nullable
+    static Set<ExternalResourceType> parseFileTypes(@Nonnull String taskId, @Nullable String fileTypes) {
+        if (StringUtils.isBlank(fileTypes)) {
+            return null;
+        }
+        final Set<ExternalResourceType> typeSet = EnumSet.noneOf(ExternalResourceType.class);
+        for (String fileType : StringUtils.split(fileTypes, ',')) {
+            final ExternalResourceType type = ExternalResourceType.parse(fileType.trim());
+            if (type == null) {
+                throw new AppIntegrationException("Cannot create pipeline, as task " + taskId + " has an unknown file-type " + fileType.trim());
+            }
+            typeSet.add(type);
+        }
+        return typeSet;
+    }
+
+    /**
+     * Compiles the filter, which is a regular expression for the resource-uri (e.g. <code>/static/.*\.js$</code>).
+     */
+    @Nullable
+    static Pattern compileFilter(@Nonnull String taskId, @Nullable String filter) {
+        if (StringUtils.isBlank(filter)) {
+            return null;
+        }
+        try {
+            return Pattern.compile(filter.trim());
+        } catch (PatternSyntaxException e) {
+            throw new AppIntegrationException("Cannot create pipeline, as task " + taskId + " has an invalid filter " + filter, e);
+        }
     }
 
 }
@@ -1,5 +1,6 @@
 package com.alexanderberndt.appintegration.pipeline.builder.simple;
 
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
 import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
 import com.alexanderberndt.appintegration.pipeline.ProcessingPipeline;
 import com.alexanderberndt.appintegration.pipeline.TaskWrapper;
@@ -9,9 +10,12 @@ import com.alexanderberndt.appintegration.pipeline.task.ProcessingTask;
 import com.alexanderberndt.appintegration.utils.DataMap;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 public class SimplePipelineBuilder {
 
@@ -52,9 +56,19 @@ public class SimplePipelineBuilder {
     }
 
     public SimplePipelineBuilder addProcessingTask(@Nonnull String taskId, @Nonnull ProcessingTask task) {
+        return addProcessingTask(taskId, task, null, null);
+    }
+
+    /**
+     * Adds a processing task, which is only called for the given resource-types (incl. specializations) and
+     * resource-uris matching the filter.
+     */
+    public SimplePipelineBuilder addProcessingTask(@Nonnull String taskId, @Nonnull ProcessingTask task,
+                                                   @Nullable Set<ExternalResourceType> fileTypes, @Nullable String filter) {
         if (loadingTask != null) {
             this.currentTaskConfig = new DataMap();
-            processingTasks.add(new TaskWrapper<>(taskId, taskId, task, this.currentTaskConfig));
+            processingTasks.add(new TaskWrapper<>(taskId, taskId, task, this.currentTaskConfig, fileTypes,
+                    (filter != null) ? Pattern.compile(filter) : null));
             return this;
         } else {
             throw new AppIntegrationException(String.format("Task %s cannot be added. A LoadingTask must be added before any ProcessingTasks.", taskId));
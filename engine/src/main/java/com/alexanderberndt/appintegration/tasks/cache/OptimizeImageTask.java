@@ -0,0 +1,274 @@
+package com.alexanderberndt.appintegration.tasks.cache;
+
+import com.alexanderberndt.appintegration.engine.ExternalResourceCache;
+import com.alexanderberndt.appintegration.engine.context.TaskContext;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
+import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
+import com.alexanderberndt.appintegration.pipeline.task.ProcessingTask;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Recompresses JPEG and PNG images (without any metadata, like EXIF or color-profiles), and optionally creates
+ * resized renditions (e.g. for <code>srcset</code>). The original image is kept, and the results are stored as
+ * renditions next to it. Must run after {@link StoreInCacheTask}.
+ * <p>
+ * The images are encoded on a small worker pool (pure Java, via {@link ImageIO}), while the renditions are stored
+ * by the calling thread, as the caches aren't thread-safe. By default, this happens only while prefetching.
+ */
+@Component
+public class OptimizeImageTask implements ProcessingTask {
+
+    public static final String OPTIMIZED_RENDITION = "optimized";
+
+    /**
+     * Prefix of the resized renditions, followed by the width (e.g. <code>w640</code>).
+     */
+    public static final String WIDTH_RENDITION_PREFIX = "w";
+
+    /**
+     * Quality of JPEG images in percent (PNG images are always compressed lossless).
+     */
+    public static final String JPEG_QUALITY_PROP = "jpeg-quality";
+
+    /**
+     * Comma-separated list of widths for resized renditions (e.g. <code>320,640,1280</code>). Images are never
+     * scaled up.
+     */
+    public static final String WIDTHS_PROP = "widths";
+
+    public static final String MIN_SAVINGS_PROP = "min-savings";
+
+    /**
+     * Larger images are skipped, as decoding them needs too much memory.
+     */
+    public static final String MAX_PIXELS_PROP = "max-pixels";
+
+    public static final String PREFETCH_ONLY_PROP = "prefetch-only";
+
+    private static final int WORKER_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+    private final ExecutorService workerPool = Executors.newFixedThreadPool(WORKER_THREADS, runnable -> {
+        final Thread thread = new Thread(runnable, "aem-app-integration-image-optimizer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Deactivate
+    protected void deactivate() {
+        workerPool.shutdownNow();
+    }
+
+    @Override
+    public void declareTaskPropertiesAndDefaults(TaskContext taskContext) {
+        taskContext.setValue(JPEG_QUALITY_PROP, 80);
+        taskContext.setValue(WIDTHS_PROP, "");
+        taskContext.setValue(MIN_SAVINGS_PROP, 5);
+        taskContext.setValue(MAX_PIXELS_PROP, 25_000_000);
+        taskContext.setValue(PREFETCH_ONLY_PROP, true);
+    }
+
+    @Override
+    public void process(@Nonnull TaskContext taskContext, @Nonnull ExternalResource resource) {
+        if (resource.getType().isSameOrSpecializationOf(ExternalResourceType.TEXT)) {
+            return;
+        }
+        final ExternalResourceCache cache = taskContext.getExternalResourceCache();
+        if (taskContext.getValue(PREFETCH_ONLY_PROP, true) && !cache.isLongRunningWrite()) {
+            return;
+        }
+
+        try {
+            final byte[] content;
+            try (InputStream in = resource.getContentAsInputStream()) {
+                content = IOUtils.toByteArray(in);
+            }
+            // the content was consumed, so set it again for later tasks
+            resource.setContent(new ByteArrayInputStream(content));
+
+            final ImageFormat format = ImageFormat.detect(content);
+            final BufferedImage image = (format != null) ? readImage(taskContext, content) : null;
+            if (image == null) {
+                return;
+            }
+            final float jpegQuality = taskContext.getValue(JPEG_QUALITY_PROP, Integer.class) / 100f;
+
+            // encode all renditions in parallel, but store them in order
+            final Future<byte[]> optimizedFuture = workerPool.submit(() -> encode(image, format, jpegQuality));
+            final Map<Integer, Future<byte[]>> resizedFutureMap = new LinkedHashMap<>();
+            for (int width : parseWidths(taskContext.getValue(WIDTHS_PROP, String.class))) {
+                if (width < image.getWidth()) {
+                    resizedFutureMap.put(width, workerPool.submit(() -> encode(resize(image, width, format), format, jpegQuality)));
+                }
+            }
+
+            final byte[] optimizedContent = optimizedFuture.get();
+            final long savingsPercent = 100L - (100L * optimizedContent.length / content.length);
+            if (savingsPercent < taskContext.getValue(MIN_SAVINGS_PROP, Integer.class)) {
+                taskContext.addInfo("Skip optimized rendition, as it saves only %d%%", savingsPercent);
+            } else if (cache.storeRendition(resource.getUri(), OPTIMIZED_RENDITION, new ByteArrayInputStream(optimizedContent))) {
+                taskContext.addInfo("Stored optimized rendition with %d bytes (saved %d bytes, %d%%)",
+                        optimizedContent.length, content.length - optimizedContent.length, savingsPercent);
+            }
+
+            for (Map.Entry<Integer, Future<byte[]>> entry : resizedFutureMap.entrySet()) {
+                final byte[] resizedContent = entry.getValue().get();
+                final String renditionName = WIDTH_RENDITION_PREFIX + entry.getKey();
+                if (cache.storeRendition(resource.getUri(), renditionName, new ByteArrayInputStream(resizedContent))) {
+                    taskContext.addInfo("Stored rendition %s with %d bytes", renditionName, resizedContent.length);
+                }
+            }
+
+        } catch (IOException | ExecutionException e) {
+            throw new AppIntegrationException("Cannot optimize image " + resource.getUri(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppIntegrationException("Interrupted while optimizing image " + resource.getUri(), e);
+        }
+    }
+
+    /**
+     * @return the decoded image, or <code>null</code> if it cannot be decoded (or is too large)
+     */
+    @Nullable
+    private static BufferedImage readImage(@Nonnull TaskContext taskContext, @Nonnull byte[] content) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(content))) {
+            final Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            final ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                final long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > taskContext.getValue(MAX_PIXELS_PROP, Integer.class)) {
+                    taskContext.addWarning("Skip image with %d pixels, as it's too large", pixels);
+                    return null;
+                }
+                return reader.read(0);
+            } catch (IOException e) {
+                // e.g. CMYK-JPEGs aren't supported by ImageIO
+                taskContext.addWarning("Cannot decode image: %s", e.getMessage());
+                return null;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    @Nonnull
+    private static byte[] encode(@Nonnull BufferedImage image, @Nonnull ImageFormat format, float jpegQuality) throws IOException {
+        final ImageWriter writer = ImageIO.getImageWritersByFormatName(format.formatName).next();
+        final ImageWriteParam param = writer.getDefaultWriteParam();
+        if (param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            // for PNG, the quality controls only the deflate-level (0 is the best compression)
+            param.setCompressionQuality((format == ImageFormat.JPEG) ? jpegQuality : 0f);
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(imageOut);
+            // without metadata, only the pixels are written
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Scales down an image in steps of at most 50%, as a single bilinear step would skip pixels.
+     */
+    @Nonnull
+    private static BufferedImage resize(@Nonnull BufferedImage image, int width, @Nonnull ImageFormat format) {
+        final int imageType = (format == ImageFormat.JPEG) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage result = image;
+        do {
+            final int stepWidth = Math.max(width, result.getWidth() / 2);
+            final int stepHeight = Math.max(1, Math.round((float) image.getHeight() * stepWidth / image.getWidth()));
+            final BufferedImage scaled = new BufferedImage(stepWidth, stepHeight, imageType);
+            final Graphics2D graphics = scaled.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(result, 0, 0, stepWidth, stepHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            result = scaled;
+        } while (result.getWidth() > width);
+        return result;
+    }
+
+    @Nonnull
+    private static TreeSet<Integer> parseWidths(@Nullable String widths) {
+        final TreeSet<Integer> widthSet = new TreeSet<>();
+        for (String width : StringUtils.split(StringUtils.defaultString(widths), ", ")) {
+            try {
+                final int value = Integer.parseInt(width);
+                if (value > 0) {
+                    widthSet.add(value);
+                }
+            } catch (NumberFormatException e) {
+                throw new AppIntegrationException("Invalid width " + width + " in " + WIDTHS_PROP, e);
+            }
+        }
+        return widthSet;
+    }
+
+    private enum ImageFormat {
+
+        JPEG("jpeg", new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}),
+        PNG("png", new byte[]{(byte) 0x89, 'P', 'N', 'G'});
+
+        private final String formatName;
+
+        private final byte[] signature;
+
+        ImageFormat(String formatName, byte[] signature) {
+            this.formatName = formatName;
+            this.signature = signature;
+        }
+
+        @Nullable
+        private static ImageFormat detect(@Nonnull byte[] content) {
+            for (ImageFormat format : values()) {
+                if ((content.length > format.signature.length)
+                        && Arrays.equals(format.signature, Arrays.copyOf(content, format.signature.length))) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+}
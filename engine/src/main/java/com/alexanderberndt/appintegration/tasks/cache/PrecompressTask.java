@@ -0,0 +1,93 @@
+package com.alexanderberndt.appintegration.tasks.cache;
+
+import com.alexanderberndt.appintegration.engine.ExternalResourceCache;
+import com.alexanderberndt.appintegration.engine.context.TaskContext;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
+import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
+import com.alexanderberndt.appintegration.pipeline.task.ProcessingTask;
+import org.apache.commons.io.IOUtils;
+import org.osgi.service.component.annotations.Component;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores a gzip-compressed rendition of text resources in the cache, so that they are compressed only once per
+ * version (instead of per request). Must run after {@link StoreInCacheTask}.
+ */
+@Component
+public class PrecompressTask implements ProcessingTask {
+
+    public static final String GZIP_RENDITION = "gzip";
+
+    public static final String MIN_SIZE_PROP = "min-size";
+
+    public static final String MIN_SAVINGS_PROP = "min-savings";
+
+    @Override
+    public void declareTaskPropertiesAndDefaults(TaskContext taskContext) {
+        taskContext.setValue(MIN_SIZE_PROP, 256);
+        taskContext.setValue(MIN_SAVINGS_PROP, 10);
+    }
+
+    @Override
+    public void process(@Nonnull TaskContext taskContext, @Nonnull ExternalResource resource) {
+        if (!resource.getType().isSameOrSpecializationOf(ExternalResourceType.TEXT)) {
+            return;
+        }
+
+        final int minSize = taskContext.getValue(MIN_SIZE_PROP, Integer.class);
+        final int minSavingsPercent = taskContext.getValue(MIN_SAVINGS_PROP, Integer.class);
+
+        try {
+            final byte[] content;
+            try (InputStream in = resource.getContentAsInputStream()) {
+                content = IOUtils.toByteArray(in);
+            }
+            // the content was consumed, so set it again for later tasks
+            resource.setContent(new ByteArrayInputStream(content));
+
+            if (content.length < minSize) {
+                return;
+            }
+
+            final byte[] compressedContent = gzip(content);
+            final long savingsPercent = 100L - (100L * compressedContent.length / content.length);
+            if (savingsPercent < minSavingsPercent) {
+                taskContext.addInfo("Skip gzip-rendition, as it saves only %d%%", savingsPercent);
+                return;
+            }
+
+            final ExternalResourceCache cache = taskContext.getExternalResourceCache();
+            if (cache.storeRendition(resource.getUri(), GZIP_RENDITION, new ByteArrayInputStream(compressedContent))) {
+                taskContext.addInfo("Stored gzip-rendition with %d bytes (%d%% smaller)", compressedContent.length, savingsPercent);
+            }
+
+        } catch (IOException e) {
+            throw new AppIntegrationException("Cannot compress resource " + resource.getUri(), e);
+        }
+    }
+
+    /**
+     * Compresses the content as the gzip-rendition (e.g. to compress a resource again, which was changed by a
+     * post-processor).
+     */
+    @Nonnull
+    public static byte[] gzip(@Nonnull byte[] content) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzipOut.write(content);
+        }
+        return out.toByteArray();
+    }
+}
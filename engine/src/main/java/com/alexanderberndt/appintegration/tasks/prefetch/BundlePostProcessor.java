@@ -0,0 +1,407 @@
+package com.alexanderberndt.appintegration.tasks.prefetch;
+
+import com.alexanderberndt.appintegration.engine.ExternalResourceCache;
+import com.alexanderberndt.appintegration.engine.PrefetchPostProcessor;
+import com.alexanderberndt.appintegration.engine.PrefetchResult;
+import com.alexanderberndt.appintegration.engine.context.GlobalContext;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceFactory;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceRef;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
+import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
+import com.alexanderberndt.appintegration.tasks.utils.CssReferenceScanner;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.StringBuilderWriter;
+import org.apache.commons.lang3.StringUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.osgi.service.component.annotations.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Concatenates all stylesheets and all scripts, which are referenced by the <code>cssTags</code> and
+ * <code>jsTags</code> of the prefetched html-snippets, into one bundle each (in the order of the snippets). The
+ * bundles are stored in the cache as <code>{@value #BUNDLE_PATH}&lt;hash&gt;.css</code> and
+ * <code>{@value #BUNDLE_PATH}&lt;hash&gt;.js</code>, so every change of the content creates a new url.
+ * <p>
+ * To keep the order of the cascade (and of the script execution), only a contiguous run of bundleable tags is
+ * replaced by the tag of the bundle, and all snippets must reference their resources in the same order. Snippets
+ * with several runs (e.g. interrupted by an <code>async</code> script), or with another order than the previous
+ * snippets, are left unchanged.
+ * <p>
+ * Relative urls in stylesheets are rewritten to the proxy-path, as they would be resolved against the bundle.
+ * Stylesheets with <code>@import</code> or a <code>media</code> attribute, and scripts with <code>async</code>,
+ * <code>defer</code> or <code>type="module"</code> are not bundled. Should run before the
+ * {@link FingerprintPostProcessor}, which then also fingerprints the bundles.
+ * <p>
+ * The hash of a bundle is calculated like a fingerprint, so a server can serve it as immutable as well.
+ */
+@Component(service = PrefetchPostProcessor.class)
+public class BundlePostProcessor implements PrefetchPostProcessor {
+
+    public static final String BUNDLE_PATH = "_bundles/";
+
+    // a bundle of a single resource doesn't save a request
+    private static final int MIN_BUNDLE_SIZE = 2;
+
+    @Override
+    public void postProcess(@Nonnull GlobalContext<?, ?> context, @Nonnull PrefetchResult prefetchResult) {
+        new BundleRun(context, prefetchResult).execute();
+    }
+
+    /**
+     * @return the hash of a bundle path (e.g. <code>_bundles/1a2b3c4d5e6f7a8b.js</code>), or <code>null</code> if
+     * the path isn't a bundle
+     */
+    @Nullable
+    public static String getBundleHash(@Nonnull String relativePath) {
+        if (!relativePath.startsWith(BUNDLE_PATH)) {
+            return null;
+        }
+        final String hash = StringUtils.substringBefore(relativePath.substring(BUNDLE_PATH.length()), ".");
+        return (hash.length() == FingerprintPostProcessor.FINGERPRINT_LENGTH) && StringUtils.isAlphanumeric(hash) ? hash : null;
+    }
+
+    /**
+     * Type of bundle, with the html-tags referencing it.
+     */
+    private enum BundleType {
+
+        CSS("cssTags", "link", "href", ExternalResourceType.CSS, "css", "\n") {
+            @Override
+            String createTag(@Nonnull String url) {
+                return "<link rel=\"stylesheet\" type=\"text/css\" href=\"" + url + "\">";
+            }
+
+            @Override
+            boolean isBundleable(@Nonnull Element element) {
+                return !element.hasAttr("media");
+            }
+        },
+
+        JAVASCRIPT("jsTags", "script", "src", ExternalResourceType.JAVASCRIPT, "js", "\n;\n") {
+            @Override
+            String createTag(@Nonnull String url) {
+                return "<script type=\"text/javascript\" src=\"" + url + "\"></script>";
+            }
+
+            @Override
+            boolean isBundleable(@Nonnull Element element) {
+                return !element.hasAttr("async") && !element.hasAttr("defer") && !element.hasAttr("nomodule")
+                        && !"module".equalsIgnoreCase(element.attr("type"));
+            }
+        };
+
+        private final String tagsMetadata;
+
+        private final String tagName;
+
+        private final String urlAttr;
+
+        private final ExternalResourceType resourceType;
+
+        private final String extension;
+
+        private final String separator;
+
+        BundleType(String tagsMetadata, String tagName, String urlAttr, ExternalResourceType resourceType, String extension, String separator) {
+            this.tagsMetadata = tagsMetadata;
+            this.tagName = tagName;
+            this.urlAttr = urlAttr;
+            this.resourceType = resourceType;
+            this.extension = extension;
+            this.separator = separator;
+        }
+
+        abstract String createTag(@Nonnull String url);
+
+        abstract boolean isBundleable(@Nonnull Element element);
+    }
+
+    /**
+     * State of a single post-processing run.
+     */
+    private static class BundleRun {
+
+        private final GlobalContext<?, ?> context;
+
+        private final ExternalResourceCache cache;
+
+        private final ExternalResourceFactory resourceFactory;
+
+        private final URI applicationBaseUri;
+
+        private final String proxyPath;
+
+        private final PrefetchResult prefetchResult;
+
+        private final Map<URI, ExternalResourceRef> resourceRefMap = new HashMap<>();
+
+        // content to bundle per uri (null, if the resource cannot be bundled)
+        private final Map<URI, String> contentMap = new HashMap<>();
+
+        private BundleRun(@Nonnull GlobalContext<?, ?> context, @Nonnull PrefetchResult prefetchResult) {
+            this.context = context;
+            this.cache = context.getExternalResourceCache();
+            this.resourceFactory = context.getResourceFactory();
+            this.applicationBaseUri = context.getApplicationInfoUri().resolve(".");
+            this.proxyPath = String.format(FingerprintPostProcessor.PROXY_PATH, context.getApplicationId());
+            this.prefetchResult = prefetchResult;
+            for (ExternalResourceRef resourceRef : prefetchResult.getResourceRefs()) {
+                resourceRefMap.put(resourceRef.getUri(), resourceRef);
+            }
+        }
+
+        private void execute() {
+            final List<ExternalResource> snippetList = new ArrayList<>();
+            for (ExternalResourceRef snippetRef : prefetchResult.getSnippetRefs()) {
+                final ExternalResource snippet = cache.getWrittenResource(snippetRef, resourceFactory);
+                if (snippet != null) {
+                    snippetList.add(snippet);
+                }
+            }
+
+            final Map<BundleType, Set<URI>> bundledUrisMap = new EnumMap<>(BundleType.class);
+            final Map<BundleType, String> bundleTagMap = new EnumMap<>(BundleType.class);
+            final Map<BundleType, Map<URI, TagRun>> tagRunsMap = new EnumMap<>(BundleType.class);
+            for (BundleType bundleType : BundleType.values()) {
+                final Set<URI> uriSet = new LinkedHashSet<>();
+                final Map<URI, TagRun> tagRunMap = new HashMap<>();
+                for (ExternalResource snippet : snippetList) {
+                    final TagRun tagRun = findTagRun(snippet, bundleType);
+                    if ((tagRun != null) && addInSameOrder(uriSet, tagRun.uriSet)) {
+                        tagRunMap.put(snippet.getUri(), tagRun);
+                    } else if (tagRun != null) {
+                        context.getIntegrationLog().addWarning("Don't bundle %s of snippet %s, as they are referenced in another order than by other snippets",
+                                bundleType.tagsMetadata, snippet.getUri());
+                    }
+                }
+                if (uriSet.size() >= MIN_BUNDLE_SIZE) {
+                    bundledUrisMap.put(bundleType, uriSet);
+                    bundleTagMap.put(bundleType, bundleType.createTag(storeBundle(bundleType, uriSet)));
+                    tagRunsMap.put(bundleType, tagRunMap);
+                }
+            }
+
+            int rewrittenSnippets = 0;
+            for (ExternalResource snippet : snippetList) {
+                if (rewriteSnippet(snippet, tagRunsMap, bundleTagMap)) {
+                    rewrittenSnippets++;
+                }
+            }
+
+            context.getIntegrationLog().addInfo("Bundled %d stylesheets and %d scripts, and rewrote %d snippets",
+                    bundledUrisMap.getOrDefault(BundleType.CSS, Collections.emptySet()).size(),
+                    bundledUrisMap.getOrDefault(BundleType.JAVASCRIPT, Collections.emptySet()).size(), rewrittenSnippets);
+        }
+
+        /**
+         * Finds the contiguous run of bundleable tags of a snippet.
+         *
+         * @return the run, or <code>null</code> if the snippet has no or several runs of bundleable tags
+         */
+        @Nullable
+        private TagRun findTagRun(@Nonnull ExternalResource snippet, @Nonnull BundleType bundleType) {
+            final List<String> tags = PostProcessorSupport.getTags(snippet, bundleType.tagsMetadata);
+            final Set<URI> uriSet = new LinkedHashSet<>();
+            int start = -1;
+            int end = -1;
+            for (int i = 0; i < tags.size(); i++) {
+                final URI uri = getBundleableUri(snippet.getUri(), tags.get(i), bundleType);
+                if (uri == null) {
+                    continue;
+                }
+                if (start < 0) {
+                    start = i;
+                } else if (end < i - 1) {
+                    context.getIntegrationLog().addWarning("Don't bundle %s of snippet %s, as they are interrupted by tags, which cannot be bundled",
+                            bundleType.tagsMetadata, snippet.getUri());
+                    return null;
+                }
+                end = i;
+                uriSet.add(uri);
+            }
+            return (start >= 0) ? new TagRun(start, end, uriSet) : null;
+        }
+
+        /**
+         * Adds the uris of a snippet to the bundle, if they are in the same order as in the previous snippets (new
+         * uris are appended, so they must follow all already bundled uris of the snippet).
+         *
+         * @return true, if the order is consistent (otherwise the bundle is unchanged)
+         */
+        private static boolean addInSameOrder(@Nonnull Set<URI> bundleUriSet, @Nonnull Set<URI> snippetUriSet) {
+            final List<URI> bundleUriList = new ArrayList<>(bundleUriSet);
+            final List<URI> newUriList = new ArrayList<>();
+            int lastPos = -1;
+            for (URI uri : snippetUriSet) {
+                final int pos = bundleUriList.indexOf(uri);
+                if (pos < 0) {
+                    newUriList.add(uri);
+                } else if (!newUriList.isEmpty() || (pos < lastPos)) {
+                    return false;
+                } else {
+                    lastPos = pos;
+                }
+            }
+            bundleUriSet.addAll(newUriList);
+            return true;
+        }
+
+        /**
+         * @return the proxy-url of the stored bundle
+         */
+        @Nonnull
+        private String storeBundle(@Nonnull BundleType bundleType, @Nonnull Set<URI> uriSet) {
+            final StringBuilder bundle = new StringBuilder();
+            for (URI uri : uriSet) {
+                bundle.append(contentMap.get(uri)).append(bundleType.separator);
+            }
+            final byte[] content = bundle.toString().getBytes(StandardCharsets.UTF_8);
+            final String hash = DigestUtils.sha256Hex(content).substring(0, FingerprintPostProcessor.FINGERPRINT_LENGTH);
+            final String relativePath = BUNDLE_PATH + hash + "." + bundleType.extension;
+            final URI bundleUri = applicationBaseUri.resolve(relativePath);
+
+            final ExternalResource bundleResource = resourceFactory.createExternalResource(bundleUri, bundleType.resourceType,
+                    new ByteArrayInputStream(content), null);
+            bundleResource.setCharset(StandardCharsets.UTF_8);
+            cache.storeResource(bundleResource);
+            // later post-processors (e.g. for fingerprints) should process the bundle as well
+            prefetchResult.addResource(new ExternalResourceRef(bundleUri, bundleType.resourceType));
+
+            context.getIntegrationLog().addInfo("Stored bundle %s with %d resources and %d bytes", relativePath, uriSet.size(), content.length);
+            return proxyPath + relativePath;
+        }
+
+        private boolean rewriteSnippet(@Nonnull ExternalResource snippet, @Nonnull Map<BundleType, Map<URI, TagRun>> tagRunsMap,
+                                       @Nonnull Map<BundleType, String> bundleTagMap) {
+            boolean isRewritten = false;
+            for (Map.Entry<BundleType, Map<URI, TagRun>> entry : tagRunsMap.entrySet()) {
+                final BundleType bundleType = entry.getKey();
+                final TagRun tagRun = entry.getValue().get(snippet.getUri());
+                if (tagRun == null) {
+                    continue;
+                }
+                // the run is replaced by the bundle, at the position of its first tag
+                final List<String> tags = PostProcessorSupport.getTags(snippet, bundleType.tagsMetadata);
+                final List<String> rewrittenTags = new ArrayList<>(tags.subList(0, tagRun.start));
+                rewrittenTags.add(bundleTagMap.get(bundleType));
+                rewrittenTags.addAll(tags.subList(tagRun.end + 1, tags.size()));
+                if (!rewrittenTags.equals(tags)) {
+                    snippet.setMetadata(bundleType.tagsMetadata, rewrittenTags.toArray(new String[0]));
+                    isRewritten = true;
+                }
+            }
+
+            if (isRewritten) {
+                final byte[] content;
+                try (InputStream input = snippet.getContentAsInputStream()) {
+                    content = IOUtils.toByteArray(input);
+                } catch (IOException e) {
+                    throw new AppIntegrationException("Cannot rewrite snippet " + snippet.getUri(), e);
+                }
+                PostProcessorSupport.storeResource(cache, resourceFactory.createExternalResource(snippet.getUri(), snippet.getType(),
+                        new ByteArrayInputStream(content), snippet.getMetadataMap()));
+            }
+            return isRewritten;
+        }
+
+        /**
+         * @return uri of the resource referenced by the tag, or <code>null</code> if it cannot be bundled
+         */
+        @Nullable
+        private URI getBundleableUri(@Nonnull URI snippetUri, @Nonnull String tag, @Nonnull BundleType bundleType) {
+            final Element element = Jsoup.parse(tag).select(bundleType.tagName + "[" + bundleType.urlAttr + "]").first();
+            if ((element == null) || !bundleType.isBundleable(element)) {
+                return null;
+            }
+
+            final URI uri = PostProcessorSupport.toResourceUri(snippetUri, element.attr(bundleType.urlAttr), applicationBaseUri, proxyPath);
+            if (uri == null) {
+                return null;
+            }
+            if (!contentMap.containsKey(uri)) {
+                contentMap.put(uri, readContent(uri, bundleType));
+            }
+            return (contentMap.get(uri) != null) ? uri : null;
+        }
+
+        /**
+         * @return the content to bundle, or <code>null</code> if the resource wasn't prefetched or cannot be bundled
+         */
+        @Nullable
+        private String readContent(@Nonnull URI uri, @Nonnull BundleType bundleType) {
+            final ExternalResourceRef resourceRef = resourceRefMap.get(uri);
+            final ExternalResource resource = (resourceRef != null) ? cache.getWrittenResource(resourceRef, resourceFactory) : null;
+            if (resource == null) {
+                return null;
+            }
+
+            final String content;
+            try (Reader input = resource.getContentAsReader()) {
+                content = IOUtils.toString(input);
+            } catch (IOException e) {
+                throw new AppIntegrationException("Cannot read resource " + uri, e);
+            }
+            return (bundleType == BundleType.CSS) ? rewriteStylesheet(uri, content) : content;
+        }
+
+        /**
+         * Rewrites relative urls of a stylesheet to the proxy-path.
+         *
+         * @return the rewritten stylesheet, or <code>null</code> if it contains an <code>@import</code> (which is
+         * only allowed at the beginning of a stylesheet)
+         */
+        @Nullable
+        private String rewriteStylesheet(@Nonnull URI stylesheetUri, @Nonnull String stylesheet) {
+            final boolean[] hasImport = new boolean[1];
+            final StringBuilderWriter output = new StringBuilderWriter();
+            try {
+                CssReferenceScanner.scan(new StringReader(stylesheet), output, (url, isImport) -> {
+                    hasImport[0] |= isImport;
+                    return PostProcessorSupport.toProxyUrl(stylesheetUri, url, applicationBaseUri, proxyPath);
+                });
+            } catch (IOException e) {
+                throw new AppIntegrationException("Cannot rewrite stylesheet " + stylesheetUri, e);
+            }
+            return hasImport[0] ? null : output.toString();
+        }
+    }
+
+
+    /**
+     * Contiguous run of bundleable tags of a snippet (from start to end, inclusive).
+     */
+    private static class TagRun {
+
+        private final int start;
+
+        private final int end;
+
+        private final Set<URI> uriSet;
+
+        private TagRun(int start, int end, @Nonnull Set<URI> uriSet) {
+            this.start = start;
+            this.end = end;
+            this.uriSet = uriSet;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.alexanderberndt.appintegration.tasks.prefetch;
+
+import com.alexanderberndt.appintegration.engine.ExternalResourceCache;
+import com.alexanderberndt.appintegration.engine.PrefetchPostProcessor;
+import com.alexanderberndt.appintegration.engine.PrefetchResult;
+import com.alexanderberndt.appintegration.engine.context.GlobalContext;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceFactory;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceRef;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
+import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
+import com.alexanderberndt.appintegration.tasks.utils.CssReferenceScanner;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.StringBuilderWriter;
+import org.apache.commons.lang3.StringUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.osgi.service.component.annotations.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Adds a content-hash to the urls of the prefetched static resources (e.g.
+ * <code>/ext/&lt;app-id&gt;/_v/1a2b3c4d5e6f7a8b/css/styles.css</code>), so that browsers and CDNs can cache them
+ * without expiry. References in html-snippets (incl. the <code>jsTags</code> and <code>cssTags</code>) and in
+ * stylesheets are rewritten to these urls. The hash of a stylesheet is calculated after its references were
+ * rewritten, so a changed font or image changes the url of the stylesheet as well.
+ * <p>
+ * The hash is the beginning of the SHA-256 of the cached content, so a server can verify a requested hash, before
+ * it answers with <code>Cache-Control: immutable</code>. The mapping of all relative paths to their hash is stored
+ * as {@value #FINGERPRINTS_PATH} in the base-path of the application. This path is below the reserved
+ * {@value #FINGERPRINT_PREFIX} prefix of the proxy-urls, so it doesn't collide with a file of the origin.
+ */
+@Component(service = PrefetchPostProcessor.class)
+public class FingerprintPostProcessor implements PrefetchPostProcessor {
+
+    public static final String FINGERPRINT_PREFIX = "_v/";
+
+    public static final int FINGERPRINT_LENGTH = 16;
+
+    public static final String FINGERPRINTS_PATH = FINGERPRINT_PREFIX + "fingerprints.json";
+
+    /**
+     * Proxy-path of the application, with <code>%s</code> as placeholder for the application-id.
+     */
+    public static final String PROXY_PATH = "/ext/%s/";
+
+    private static final String[] URL_ATTRIBUTES = {"src", "href"};
+
+    private static final String[] TAGS_METADATA = {"jsTags", "cssTags"};
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    public void postProcess(@Nonnull GlobalContext<?, ?> context, @Nonnull PrefetchResult prefetchResult) {
+        new FingerprintRun(context, prefetchResult).execute();
+    }
+
+    /**
+     * @return the fingerprint of a relative path (e.g. <code>_v/1a2b3c4d5e6f7a8b/css/styles.css</code>), or
+     * <code>null</code> if the path isn't fingerprinted
+     */
+    @Nullable
+    public static String getFingerprint(@Nonnull String relativePath) {
+        if (!relativePath.startsWith(FINGERPRINT_PREFIX)) {
+            return null;
+        }
+        final String fingerprintedPath = relativePath.substring(FINGERPRINT_PREFIX.length());
+        final int slashPos = fingerprintedPath.indexOf('/');
+        final String fingerprint = (slashPos > 0) ? fingerprintedPath.substring(0, slashPos) : null;
+        return StringUtils.isAlphanumeric(fingerprint) ? fingerprint : null;
+    }
+
+    /**
+     * @return the relative path without fingerprint (e.g. <code>css/styles.css</code>)
+     */
+    @Nonnull
+    public static String removeFingerprint(@Nonnull String relativePath) {
+        final String fingerprint = getFingerprint(relativePath);
+        return (fingerprint != null) ? relativePath.substring(FINGERPRINT_PREFIX.length() + fingerprint.length() + 1) : relativePath;
+    }
+
+    /**
+     * State of a single post-processing run.
+     */
+    private static class FingerprintRun {
+
+        private final GlobalContext<?, ?> context;
+
+        private final ExternalResourceCache cache;
+
+        private final ExternalResourceFactory resourceFactory;
+
+        private final URI applicationBaseUri;
+
+        private final String proxyPath;
+
+        private final Map<URI, ExternalResourceRef> resourceRefMap = new HashMap<>();
+
+        // fingerprint per uri (null, if the resource cannot be fingerprinted)
+        private final Map<URI, String> fingerprintMap = new HashMap<>();
+
+        // resources, whose fingerprint is currently calculated (to break circular imports)
+        private final Set<URI> inProgressSet = new HashSet<>();
+
+        private final PrefetchResult prefetchResult;
+
+        private int rewrittenStylesheets;
+
+        private FingerprintRun(@Nonnull GlobalContext<?, ?> context, @Nonnull PrefetchResult prefetchResult) {
+            this.context = context;
+            this.cache = context.getExternalResourceCache();
+            this.resourceFactory = context.getResourceFactory();
+            this.applicationBaseUri = context.getApplicationInfoUri().resolve(".");
+            this.proxyPath = String.format(PROXY_PATH, context.getApplicationId());
+            this.prefetchResult = prefetchResult;
+            for (ExternalResourceRef resourceRef : prefetchResult.getResourceRefs()) {
+                resourceRefMap.put(resourceRef.getUri(), resourceRef);
+            }
+        }
+
+        private void execute() {
+            for (ExternalResourceRef resourceRef : prefetchResult.getResourceRefs()) {
+                fingerprint(resourceRef.getUri());
+            }
+
+            int rewrittenSnippets = 0;
+            for (ExternalResourceRef snippetRef : prefetchResult.getSnippetRefs()) {
+                if (rewriteSnippet(snippetRef)) {
+                    rewrittenSnippets++;
+                }
+            }
+
+            final Map<String, String> fingerprintsByPath = new TreeMap<>();
+            fingerprintMap.forEach((uri, fingerprint) -> {
+                if (fingerprint != null) {
+                    fingerprintsByPath.put(getRelativePath(uri), fingerprint);
+                }
+            });
+            storeFingerprints(fingerprintsByPath);
+
+            context.getIntegrationLog().addInfo("Fingerprinted %d resources, and rewrote %d stylesheets and %d snippets",
+                    fingerprintsByPath.size(), rewrittenStylesheets, rewrittenSnippets);
+        }
+
+        @Nullable
+        private String fingerprint(@Nonnull URI uri) {
+            if (fingerprintMap.containsKey(uri)) {
+                return fingerprintMap.get(uri);
+            }
+            final ExternalResourceRef resourceRef = resourceRefMap.get(uri);
+            if ((resourceRef == null) || (getRelativePath(uri) == null) || !inProgressSet.add(uri)) {
+                // not prefetched, outside of the application or a circular import
+                return null;
+            }
+
+            final ExternalResource resource = cache.getWrittenResource(resourceRef, resourceFactory);
+            final String fingerprint;
+            if (resource == null) {
+                fingerprint = null;
+            } else if (resource.getType().isSameOrSpecializationOf(ExternalResourceType.CSS)) {
+                fingerprint = fingerprintStylesheet(resource);
+            } else {
+                try (InputStream content = resource.getContentAsInputStream()) {
+                    fingerprint = toFingerprint(DigestUtils.sha256Hex(content));
+                } catch (IOException e) {
+                    throw new AppIntegrationException("Cannot calculate fingerprint of " + uri, e);
+                }
+            }
+
+            inProgressSet.remove(uri);
+            fingerprintMap.put(uri, fingerprint);
+            return fingerprint;
+        }
+
+        @Nonnull
+        private String fingerprintStylesheet(@Nonnull ExternalResource resource) {
+            final String stylesheet;
+            final StringBuilderWriter output = new StringBuilderWriter();
+            try (Reader input = resource.getContentAsReader()) {
+                stylesheet = IOUtils.toString(input);
+                CssReferenceScanner.scan(new StringReader(stylesheet), output,
+                        (url, isImport) -> getFingerprintedUrl(resource.getUri(), url));
+            } catch (IOException e) {
+                throw new AppIntegrationException("Cannot rewrite stylesheet " + resource.getUri(), e);
+            }
+
+            final byte[] content = output.toString().getBytes(resource.getCharset());
+            if (!stylesheet.equals(output.toString())) {
+                PostProcessorSupport.storeResource(cache, resourceFactory.createExternalResource(resource.getUri(), resource.getType(),
+                        new ByteArrayInputStream(content), resource.getMetadataMap()));
+                rewrittenStylesheets++;
+            }
+            return toFingerprint(DigestUtils.sha256Hex(content));
+        }
+
+        private boolean rewriteSnippet(@Nonnull ExternalResourceRef snippetRef) {
+            final ExternalResource snippet = cache.getWrittenResource(snippetRef, resourceFactory);
+            if (snippet == null) {
+                return false;
+            }
+
+            final String html;
+            try (Reader input = snippet.getContentAsReader()) {
+                html = IOUtils.toString(input);
+            } catch (IOException e) {
+                throw new AppIntegrationException("Cannot rewrite snippet " + snippet.getUri(), e);
+            }
+            final String rewrittenHtml = rewriteHtml(snippet.getUri(), html);
+            boolean isRewritten = !rewrittenHtml.equals(html);
+
+            for (String tagsName : TAGS_METADATA) {
+                final String[] tags = toStringArray(snippet.getMetadataMap().get(tagsName));
+                if (tags != null) {
+                    final String[] rewrittenTags = new String[tags.length];
+                    for (int i = 0; i < tags.length; i++) {
+                        rewrittenTags[i] = rewriteHtml(snippet.getUri(), tags[i]);
+                    }
+                    if (!Arrays.equals(tags, rewrittenTags)) {
+                        snippet.setMetadata(tagsName, rewrittenTags);
+                        isRewritten = true;
+                    }
+                }
+            }
+
+            if (isRewritten) {
+                PostProcessorSupport.storeResource(cache, resourceFactory.createExternalResource(snippet.getUri(), snippet.getType(),
+                        new ByteArrayInputStream(rewrittenHtml.getBytes(snippet.getCharset())), snippet.getMetadataMap()));
+            }
+            return isRewritten;
+        }
+
+        /**
+         * Rewrites the <code>src</code> and <code>href</code> attributes of an html-document or -fragment. The html
+         * is only re-serialized, if at least one url was rewritten.
+         */
+        @Nonnull
+        private String rewriteHtml(@Nonnull URI snippetUri, @Nonnull String html) {
+            final boolean isDocument = StringUtils.containsIgnoreCase(html, "<html");
+            final Document doc = isDocument ? Jsoup.parse(html) : Jsoup.parseBodyFragment(html);
+            doc.outputSettings().prettyPrint(false);
+            int count = 0;
+            for (Element element : doc.select("[src], [href]")) {
+                for (String attribute : URL_ATTRIBUTES) {
+                    final String fingerprintedUrl = element.hasAttr(attribute) ? getFingerprintedUrl(snippetUri, element.attr(attribute)) : null;
+                    if ((fingerprintedUrl != null) && !fingerprintedUrl.equals(element.attr(attribute))) {
+                        element.attr(attribute, fingerprintedUrl);
+                        count++;
+                    }
+                }
+            }
+            if (count == 0) {
+                return html;
+            }
+            return isDocument ? doc.outerHtml() : doc.body().html();
+        }
+
+        /**
+         * @return the fingerprinted url (with the proxy-path), or <code>null</code> to keep the url
+         */
+        @Nullable
+        private String getFingerprintedUrl(@Nonnull URI resourceUri, @Nonnull String url) {
+            final String path = StringUtils.substringBefore(url, "#").trim();
+            final String fragment = url.contains("#") ? "#" + StringUtils.substringAfter(url, "#") : "";
+            if (path.isEmpty()) {
+                return null;
+            }
+
+            final URI referenceUri;
+            try {
+                referenceUri = path.startsWith(proxyPath)
+                        ? applicationBaseUri.resolve(removeFingerprint(path.substring(proxyPath.length()))).normalize()
+                        : resourceUri.resolve(path).normalize();
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+
+            final String relativePath = getRelativePath(referenceUri);
+            if (relativePath == null) {
+                return null;
+            }
+            final String fingerprint = fingerprint(referenceUri);
+            if (fingerprint != null) {
+                return proxyPath + FINGERPRINT_PREFIX + fingerprint + "/" + relativePath + fragment;
+            }
+            // an url with an outdated fingerprint falls back to the plain proxy-path
+            return path.startsWith(proxyPath) ? proxyPath + relativePath + fragment : null;
+        }
+
+        /**
+         * @return path relative to the application base-uri, or <code>null</code> for resources outside of the
+         * application or with a query (which aren't fingerprinted)
+         */
+        @Nullable
+        private String getRelativePath(@Nonnull URI uri) {
+            final String uriStr = uri.toString();
+            final String baseUriStr = applicationBaseUri.toString();
+            if ((uri.getRawQuery() != null) || !uriStr.startsWith(baseUriStr) || (uriStr.length() == baseUriStr.length())) {
+                return null;
+            }
+            return uriStr.substring(baseUriStr.length());
+        }
+
+        private void storeFingerprints(@Nonnull Map<String, String> fingerprintsByPath) {
+            try {
+                final byte[] content = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(fingerprintsByPath);
+                cache.storeResource(resourceFactory.createExternalResource(applicationBaseUri.resolve(FINGERPRINTS_PATH),
+                        ExternalResourceType.ANY, new ByteArrayInputStream(content), null));
+            } catch (JsonProcessingException e) {
+                throw new AppIntegrationException("Cannot store fingerprints", e);
+            }
+        }
+
+        @Nonnull
+        private static String toFingerprint(@Nonnull String sha256Hex) {
+            return sha256Hex.substring(0, FINGERPRINT_LENGTH);
+        }
+
+        @Nullable
+        private static String[] toStringArray(@Nullable Object value) {
+            if (value instanceof Object[]) {
+                return Arrays.stream((Object[]) value).map(String::valueOf).toArray(String[]::new);
+            } else if (value instanceof Collection) {
+                return ((Collection<?>) value).stream().map(String::valueOf).toArray(String[]::new);
+            } else {
+                return null;
+            }
+        }
+    }
+}
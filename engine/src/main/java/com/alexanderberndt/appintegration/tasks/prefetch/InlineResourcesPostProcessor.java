@@ -0,0 +1,252 @@
+package com.alexanderberndt.appintegration.tasks.prefetch;
+
+import com.alexanderberndt.appintegration.engine.ExternalResourceCache;
+import com.alexanderberndt.appintegration.engine.PrefetchPostProcessor;
+import com.alexanderberndt.appintegration.engine.PrefetchResult;
+import com.alexanderberndt.appintegration.engine.context.GlobalContext;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceFactory;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceRef;
+import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
+import com.alexanderberndt.appintegration.tasks.process.html.InlineResourcesTask;
+import com.alexanderberndt.appintegration.tasks.utils.CssReferenceScanner;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.StringBuilderWriter;
+import org.apache.commons.lang3.StringUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.osgi.service.component.annotations.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Inlines small stylesheets and scripts into the html-snippets, which were marked by the
+ * {@link InlineResourcesTask}, to save the round-trips for loading them. Larger resources stay in the
+ * <code>cssTags</code> and <code>jsTags</code>, so they can be placed in the head or footer of the page.
+ * <p>
+ * To keep the order of the cascade (and of the script execution), only the last stylesheets are inlined at the
+ * beginning of the snippet, and only the first scripts are inlined at the end of the snippet. Scripts with
+ * <code>async</code>, <code>defer</code> or <code>type="module"</code> are never inlined. Relative urls in inlined
+ * stylesheets are rewritten to the proxy-path.
+ * <p>
+ * Every inlined block gets an <code>data-app-integration-inline</code> attribute, and its key is listed in the
+ * {@value #INLINED_RESOURCES_METADATA} metadata of the snippet, so that a page with several instances of the same
+ * component could include it only once.
+ */
+@Component(service = PrefetchPostProcessor.class)
+public class InlineResourcesPostProcessor implements PrefetchPostProcessor {
+
+    public static final String INLINE_ATTRIBUTE = "data-app-integration-inline";
+
+    public static final String INLINED_RESOURCES_METADATA = "inlinedResources";
+
+    private static final Pattern INLINE_BLOCK_PATTERN =
+            Pattern.compile("<(style|script)(?: media=\"[^\"]*\")? " + INLINE_ATTRIBUTE + "=\"([^\"]*)\">.*?</\\1>", Pattern.DOTALL);
+
+    @Override
+    public void postProcess(@Nonnull GlobalContext<?, ?> context, @Nonnull PrefetchResult prefetchResult) {
+        new InlineRun(context, prefetchResult).execute();
+    }
+
+    /**
+     * @return keys of the inlined stylesheets and scripts, in the order of the html
+     */
+    @Nonnull
+    private static List<String> getInlineKeys(@Nonnull String html) {
+        final List<String> keyList = new ArrayList<>();
+        final Matcher matcher = INLINE_BLOCK_PATTERN.matcher(html);
+        while (matcher.find()) {
+            keyList.add(matcher.group(2));
+        }
+        return keyList;
+    }
+
+    /**
+     * State of a single post-processing run.
+     */
+    private static class InlineRun {
+
+        private final GlobalContext<?, ?> context;
+
+        private final ExternalResourceCache cache;
+
+        private final ExternalResourceFactory resourceFactory;
+
+        private final URI applicationBaseUri;
+
+        private final String proxyPath;
+
+        private final PrefetchResult prefetchResult;
+
+        private final Map<URI, ExternalResourceRef> resourceRefMap = new HashMap<>();
+
+        private int inlinedStylesheets;
+
+        private int inlinedScripts;
+
+        private InlineRun(@Nonnull GlobalContext<?, ?> context, @Nonnull PrefetchResult prefetchResult) {
+            this.context = context;
+            this.cache = context.getExternalResourceCache();
+            this.resourceFactory = context.getResourceFactory();
+            this.applicationBaseUri = context.getApplicationInfoUri().resolve(".");
+            this.proxyPath = String.format(FingerprintPostProcessor.PROXY_PATH, context.getApplicationId());
+            this.prefetchResult = prefetchResult;
+            for (ExternalResourceRef resourceRef : prefetchResult.getResourceRefs()) {
+                resourceRefMap.put(resourceRef.getUri(), resourceRef);
+            }
+        }
+
+        private void execute() {
+            int rewrittenSnippets = 0;
+            for (ExternalResourceRef snippetRef : prefetchResult.getSnippetRefs()) {
+                if (inlineResources(snippetRef)) {
+                    rewrittenSnippets++;
+                }
+            }
+            context.getIntegrationLog().addInfo("Inlined %d stylesheets and %d scripts into %d snippets",
+                    inlinedStylesheets, inlinedScripts, rewrittenSnippets);
+        }
+
+        private boolean inlineResources(@Nonnull ExternalResourceRef snippetRef) {
+            final ExternalResource snippet = cache.getWrittenResource(snippetRef, resourceFactory);
+            final Object maxSizeValue = (snippet != null) ? snippet.getMetadataMap().get(InlineResourcesTask.INLINE_MAX_SIZE_METADATA) : null;
+            if (!(maxSizeValue instanceof Number)) {
+                // not marked for inlining
+                return false;
+            }
+            final long maxSize = ((Number) maxSizeValue).longValue();
+
+            final List<String> cssTags = PostProcessorSupport.getTags(snippet, "cssTags");
+            final List<String> jsTags = PostProcessorSupport.getTags(snippet, "jsTags");
+            final Set<String> inlinedKeys = new LinkedHashSet<>();
+
+            // stylesheets from the end, as the inlined styles are placed after the linked ones
+            final StringBuilder styles = new StringBuilder();
+            while (!cssTags.isEmpty()) {
+                final String style = createInline(snippet.getUri(), cssTags.get(cssTags.size() - 1), "link", "href", maxSize, inlinedKeys);
+                if (style == null) {
+                    break;
+                }
+                styles.insert(0, style);
+                cssTags.remove(cssTags.size() - 1);
+                if (!style.isEmpty()) {
+                    inlinedStylesheets++;
+                }
+            }
+
+            // scripts from the beginning, as the inlined scripts run before the linked ones
+            final StringBuilder scripts = new StringBuilder();
+            while (!jsTags.isEmpty()) {
+                final String script = createInline(snippet.getUri(), jsTags.get(0), "script", "src", maxSize, inlinedKeys);
+                if (script == null) {
+                    break;
+                }
+                scripts.append(script);
+                jsTags.remove(0);
+                if (!script.isEmpty()) {
+                    inlinedScripts++;
+                }
+            }
+
+            if (inlinedKeys.isEmpty()) {
+                return false;
+            }
+
+            final String html;
+            try (Reader input = snippet.getContentAsReader()) {
+                html = IOUtils.toString(input);
+            } catch (IOException e) {
+                throw new AppIntegrationException("Cannot inline resources into snippet " + snippet.getUri(), e);
+            }
+            snippet.setMetadata("cssTags", cssTags.toArray(new String[0]));
+            snippet.setMetadata("jsTags", jsTags.toArray(new String[0]));
+            snippet.setMetadata(INLINED_RESOURCES_METADATA, getInlineKeys(styles.toString() + scripts).toArray(new String[0]));
+
+            final String inlinedHtml = styles + html + scripts;
+            PostProcessorSupport.storeResource(cache, resourceFactory.createExternalResource(snippet.getUri(), snippet.getType(),
+                    new ByteArrayInputStream(inlinedHtml.getBytes(snippet.getCharset())), snippet.getMetadataMap()));
+            return true;
+        }
+
+        /**
+         * @return the inline <code>style</code> or <code>script</code> element for a tag, an empty string for a
+         * resource, which is already inlined into this snippet, or <code>null</code> if the tag cannot be inlined
+         */
+        @Nullable
+        private String createInline(@Nonnull URI snippetUri, @Nonnull String tag, @Nonnull String tagName, @Nonnull String urlAttr,
+                                    long maxSize, @Nonnull Set<String> inlinedKeys) {
+            final Element element = Jsoup.parse(tag).select(tagName + "[" + urlAttr + "]").first();
+            if ((element == null) || element.hasAttr("async") || element.hasAttr("defer") || element.hasAttr("nomodule")
+                    || "module".equalsIgnoreCase(element.attr("type"))) {
+                return null;
+            }
+
+            final URI uri = PostProcessorSupport.toResourceUri(snippetUri, element.attr(urlAttr), applicationBaseUri, proxyPath);
+            final ExternalResourceRef resourceRef = (uri != null) ? resourceRefMap.get(uri) : null;
+            final ExternalResource resource = (resourceRef != null) ? cache.getWrittenResource(resourceRef, resourceFactory) : null;
+            if (resource == null) {
+                return null;
+            }
+
+            final String content = readContent(resource, maxSize);
+            final String key = context.getApplicationId() + "/" + applicationBaseUri.relativize(uri);
+            if ((content == null) || StringUtils.containsIgnoreCase(content, "</" + (tagName.equals("link") ? "style" : "script"))) {
+                return null;
+            } else if (!inlinedKeys.add(key)) {
+                return "";
+            } else if (tagName.equals("link")) {
+                final String media = element.attr("media");
+                return "<style" + (StringUtils.isNotBlank(media) ? " media=\"" + media.replace("\"", "&quot;") + "\"" : "")
+                        + " " + INLINE_ATTRIBUTE + "=\"" + key + "\">" + rewriteStylesheet(uri, content) + "</style>";
+            } else {
+                return "<script " + INLINE_ATTRIBUTE + "=\"" + key + "\">" + content + "</script>";
+            }
+        }
+
+        /**
+         * @return the content, or <code>null</code> if it's larger than the max. size
+         */
+        @Nullable
+        private static String readContent(@Nonnull ExternalResource resource, long maxSize) {
+            final byte[] content;
+            try (InputStream input = resource.getContentAsInputStream()) {
+                content = IOUtils.toByteArray(input);
+            } catch (IOException e) {
+                throw new AppIntegrationException("Cannot read resource " + resource.getUri(), e);
+            }
+            final Charset charset = resource.getCharset();
+            return (content.length <= maxSize) ? new String(content, charset) : null;
+        }
+
+        /**
+         * Rewrites relative urls of a stylesheet to the proxy-path, as they would be resolved against the page.
+         */
+        @Nonnull
+        private String rewriteStylesheet(@Nonnull URI stylesheetUri, @Nonnull String stylesheet) {
+            final StringBuilderWriter output = new StringBuilderWriter();
+            try {
+                CssReferenceScanner.scan(new StringReader(stylesheet), output,
+                        (url, isImport) -> PostProcessorSupport.toProxyUrl(stylesheetUri, url, applicationBaseUri, proxyPath));
+            } catch (IOException e) {
+                throw new AppIntegrationException("Cannot rewrite stylesheet " + stylesheetUri, e);
+            }
+            return output.toString();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.alexanderberndt.appintegration.tasks.prefetch;
+
+import com.alexanderberndt.appintegration.engine.ExternalResourceCache;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
+import com.alexanderberndt.appintegration.tasks.cache.PrecompressTask;
+import org.apache.commons.io.IOUtils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Helper methods shared by the post-processors, which move references of html-snippets or stylesheets.
+ */
+final class PostProcessorSupport {
+
+    private PostProcessorSupport() {
+    }
+
+    /**
+     * Stores a post-processed resource. The cache drops the renditions of the previous content, so a
+     * gzip-rendition (of the {@link PrecompressTask}) is compressed again from the new content.
+     */
+    static void storeResource(@Nonnull ExternalResourceCache cache, @Nonnull ExternalResource resource) {
+        final URI uri = resource.getUri();
+        final boolean isPrecompressed = cache.getWrittenRenditionNames(uri).contains(PrecompressTask.GZIP_RENDITION);
+        final Supplier<InputStream> storedContent = cache.storeResource(resource);
+        if (isPrecompressed && !cache.getWrittenRenditionNames(uri).contains(PrecompressTask.GZIP_RENDITION)) {
+            try (InputStream input = storedContent.get()) {
+                final byte[] compressedContent = PrecompressTask.gzip(IOUtils.toByteArray(input));
+                cache.storeRendition(uri, PrecompressTask.GZIP_RENDITION, new ByteArrayInputStream(compressedContent));
+            } catch (IOException e) {
+                throw new AppIntegrationException("Cannot compress resource " + uri, e);
+            }
+        }
+    }
+
+    /**
+     * @return the tags of a snippet (e.g. <code>jsTags</code>), or an empty list
+     */
+    @Nonnull
+    static List<String> getTags(@Nonnull ExternalResource snippet, @Nonnull String tagsMetadata) {
+        final Object value = snippet.getMetadataMap().get(tagsMetadata);
+        final List<String> list = new ArrayList<>();
+        if (value instanceof Object[]) {
+            Arrays.stream((Object[]) value).map(String::valueOf).forEach(list::add);
+        } else if (value instanceof Collection) {
+            ((Collection<?>) value).stream().map(String::valueOf).forEach(list::add);
+        }
+        return list;
+    }
+
+    /**
+     * @return the uri of a referenced resource (also for urls, which were already rewritten to the proxy-path), or
+     * <code>null</code> for an invalid url
+     */
+    @Nullable
+    static URI toResourceUri(@Nonnull URI referencingUri, @Nonnull String url, @Nonnull URI applicationBaseUri, @Nonnull String proxyPath) {
+        try {
+            if (url.startsWith(proxyPath)) {
+                return applicationBaseUri.resolve(FingerprintPostProcessor.removeFingerprint(url.substring(proxyPath.length()))).normalize();
+            }
+            return referencingUri.resolve(url).normalize();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Converts a relative url of a stylesheet, which is moved to another location (e.g. inlined or bundled).
+     *
+     * @return the url with the proxy-path (or an absolute url for other hosts), or <code>null</code> to keep the url
+     * (e.g. for absolute paths, data-urls or fragments)
+     */
+    @Nullable
+    static String toProxyUrl(@Nonnull URI stylesheetUri, @Nonnull String url, @Nonnull URI applicationBaseUri, @Nonnull String proxyPath) {
+        if (url.startsWith("/") || url.startsWith("#") || url.contains(":")) {
+            return null;
+        }
+        final URI referenceUri;
+        try {
+            referenceUri = stylesheetUri.resolve(url);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        final URI relativeUri = applicationBaseUri.relativize(referenceUri);
+        return relativeUri.isAbsolute() ? referenceUri.toString() : proxyPath + relativeUri;
+    }
+}
@@ -26,6 +26,12 @@ public class ResourceTypeByFileExtensionTask implements PreparationTask {
             case "js":
                 resourceType = ExternalResourceType.JAVASCRIPT;
                 break;
+            case "png":
+            case "jpg":
+            case "jpeg":
+            case "gif":
+                resourceType = ExternalResourceType.BINARY;
+                break;
             default:
                 resourceType = ExternalResourceType.ANY;
         }
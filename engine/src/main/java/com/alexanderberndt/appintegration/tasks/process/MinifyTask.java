@@ -0,0 +1,119 @@
+package com.alexanderberndt.appintegration.tasks.process;
+
+import com.alexanderberndt.appintegration.engine.context.TaskContext;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
+import com.alexanderberndt.appintegration.pipeline.task.ProcessingTask;
+import com.alexanderberndt.appintegration.tasks.cache.StoreInCacheTask;
+import com.alexanderberndt.appintegration.tasks.utils.CssMinifier;
+import com.alexanderberndt.appintegration.tasks.utils.HtmlMinifier;
+import com.alexanderberndt.appintegration.tasks.utils.JsMinifier;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.input.ReaderInputStream;
+import org.osgi.service.component.annotations.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minifies stylesheets, scripts and html (snippets), by removing comments and unnecessary whitespace. As the
+ * minified resources are stored in the cache, this task must run before {@link StoreInCacheTask}, and by default
+ * only while prefetching (so every version is minified only once).
+ */
+@Component
+public class MinifyTask implements ProcessingTask {
+
+    public static final String MINIFY_CSS_PROP = "minify-css";
+
+    public static final String MINIFY_JS_PROP = "minify-js";
+
+    public static final String MINIFY_HTML_PROP = "minify-html";
+
+    public static final String PREFETCH_ONLY_PROP = "prefetch-only";
+
+    @FunctionalInterface
+    private interface Minifier {
+        Reader createReader(@Nonnull Reader in);
+    }
+
+    @Override
+    public void declareTaskPropertiesAndDefaults(TaskContext taskContext) {
+        taskContext.setValue(MINIFY_CSS_PROP, true);
+        taskContext.setValue(MINIFY_JS_PROP, true);
+        taskContext.setValue(MINIFY_HTML_PROP, true);
+        taskContext.setValue(PREFETCH_ONLY_PROP, true);
+    }
+
+    @Override
+    public void process(@Nonnull TaskContext taskContext, @Nonnull ExternalResource resource) {
+        if (taskContext.getValue(PREFETCH_ONLY_PROP, true) && !taskContext.getExternalResourceCache().isLongRunningWrite()) {
+            return;
+        }
+
+        final Minifier minifier = getMinifier(taskContext, resource.getType());
+        if (minifier == null) {
+            return;
+        }
+
+        // the content is minified while it is read (e.g. by storing it in the cache)
+        final Charset charset = (resource.getCharset() != null) ? resource.getCharset() : StandardCharsets.UTF_8;
+        resource.appendInputStreamFilter(in -> {
+            final CountingInputStream countingInput = new CountingInputStream(in);
+            final Reader minifyingReader = minifier.createReader(new InputStreamReader(countingInput, charset));
+            return new MinifiedInputStream(new ReaderInputStream(minifyingReader, charset), countingInput, taskContext);
+        });
+    }
+
+    @Nullable
+    private static Minifier getMinifier(@Nonnull TaskContext taskContext, @Nonnull ExternalResourceType type) {
+        if (type.isSameOrSpecializationOf(ExternalResourceType.CSS)) {
+            return taskContext.getValue(MINIFY_CSS_PROP, true) ? CssMinifier::createReader : null;
+        } else if (type.isSameOrSpecializationOf(ExternalResourceType.JAVASCRIPT)) {
+            return taskContext.getValue(MINIFY_JS_PROP, true) ? JsMinifier::createReader : null;
+        } else if (type.isSameOrSpecializationOf(ExternalResourceType.HTML)
+                || type.isSameOrSpecializationOf(ExternalResourceType.HTML_SNIPPET)) {
+            return taskContext.getValue(MINIFY_HTML_PROP, true) ? HtmlMinifier::createReader : null;
+        } else {
+            return null;
+        }
+    }
+
+
+    /**
+     * Counts the minified bytes, and logs the savings, when the stream is closed.
+     */
+    private static class MinifiedInputStream extends CountingInputStream {
+
+        private final CountingInputStream originalInput;
+
+        private final TaskContext taskContext;
+
+        private boolean isLogged;
+
+        private MinifiedInputStream(@Nonnull InputStream minifiedInput, @Nonnull CountingInputStream originalInput,
+                                    @Nonnull TaskContext taskContext) {
+            super(minifiedInput);
+            this.originalInput = originalInput;
+            this.taskContext = taskContext;
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if (!isLogged) {
+                isLogged = true;
+                final long originalSize = originalInput.getByteCount();
+                final long minifiedSize = getByteCount();
+                final long savingsPercent = (originalSize > 0) ? 100L - (100L * minifiedSize / originalSize) : 0L;
+                taskContext.addInfo("Minified from %d to %d bytes (saved %d bytes, %d%%)",
+                        originalSize, minifiedSize, originalSize - minifiedSize, savingsPercent);
+            }
+        }
+    }
+}
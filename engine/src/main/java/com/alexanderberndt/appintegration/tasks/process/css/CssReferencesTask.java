@@ -0,0 +1,155 @@
+package com.alexanderberndt.appintegration.tasks.process.css;
+
+import com.alexanderberndt.appintegration.engine.context.TaskContext;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
+import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
+import com.alexanderberndt.appintegration.pipeline.task.ProcessingTask;
+import com.alexanderberndt.appintegration.tasks.prefetch.FingerprintPostProcessor;
+import com.alexanderberndt.appintegration.tasks.utils.CssReferenceScanner;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.NullWriter;
+import org.apache.commons.io.output.StringBuilderWriter;
+import org.apache.commons.lang3.StringUtils;
+import org.osgi.service.component.annotations.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.util.Objects;
+
+/**
+ * Adds the resources referenced by a stylesheet (<code>url(...)</code> and <code>@import</code>) as references, so
+ * that fonts and images are prefetched as well. Optionally, the references are rewritten to the proxy-path of the
+ * application (e.g. <code>/ext/&lt;app-id&gt;/fonts/icons.woff2</code>).
+ * <p>
+ * Only references of the same origin are added (no data-urls or other hosts). Already rewritten (or fingerprinted)
+ * references are recognized, so the task can also process a stylesheet from the cache.
+ */
+@Component
+public class CssReferencesTask implements ProcessingTask {
+
+    public static final String REWRITE_URLS_PROP = "rewrite-urls";
+
+    /**
+     * Proxy-path of the application, with <code>%s</code> as placeholder for the application-id.
+     */
+    public static final String PROXY_PATH_PROP = "proxy-path";
+
+    @Override
+    public void declareTaskPropertiesAndDefaults(TaskContext taskContext) {
+        taskContext.setValue(REWRITE_URLS_PROP, false);
+        taskContext.setValue(PROXY_PATH_PROP, "/ext/%s/");
+    }
+
+    @Override
+    public void process(@Nonnull TaskContext taskContext, @Nonnull ExternalResource resource) {
+        if (!resource.getType().isSameOrSpecializationOf(ExternalResourceType.CSS)) {
+            taskContext.addWarning("Only CSS is supported!");
+            return;
+        }
+
+        final boolean rewriteUrls = taskContext.getValue(REWRITE_URLS_PROP, false);
+        final String proxyPath = String.format(taskContext.getValue(PROXY_PATH_PROP, "/ext/%s/"), taskContext.getApplicationId());
+        final URI applicationBaseUri = taskContext.getApplicationInfoUri().resolve(".");
+
+        // found urls, added references and rewritten urls
+        final int[] counters = new int[3];
+        final CssReferenceScanner.ReferenceHandler handler = (url, isImport) -> {
+            final String relativePath = getRelativePath(resource.getUri(), applicationBaseUri, proxyPath, url);
+            if (relativePath == null) {
+                return null;
+            }
+            resource.addReference(applicationBaseUri.resolve(relativePath).toString(), getExpectedType(relativePath, isImport));
+            counters[1]++;
+            if (rewriteUrls && !url.startsWith(proxyPath)) {
+                counters[2]++;
+                return proxyPath + relativePath;
+            }
+            return null;
+        };
+
+        if (rewriteUrls) {
+            final StringBuilderWriter output = new StringBuilderWriter();
+            try (Reader input = resource.getContentAsReader()) {
+                counters[0] = CssReferenceScanner.scan(input, output, handler);
+            } catch (IOException e) {
+                throw new AppIntegrationException("Cannot scan stylesheet " + resource.getUri(), e);
+            }
+            resource.setContent(output.toString());
+        } else {
+            // only scan the stylesheet, but keep the original bytes for the next tasks
+            final ByteArrayOutputStream content = new ByteArrayOutputStream();
+            try (InputStream in = new TeeInputStream(resource.getContentAsInputStream(), content)) {
+                counters[0] = CssReferenceScanner.scan(new InputStreamReader(in, resource.getCharset()), NullWriter.NULL_WRITER, handler);
+                IOUtils.skip(in, Long.MAX_VALUE);
+            } catch (IOException e) {
+                throw new AppIntegrationException("Cannot scan stylesheet " + resource.getUri(), e);
+            }
+            resource.setContent(new ByteArrayInputStream(content.toByteArray()));
+        }
+
+        taskContext.addInfo("Found %d urls, added %d references and rewrote %d urls",
+                counters[0], counters[1], counters[2]);
+    }
+
+    /**
+     * @return path relative to the application base-uri (with query, but without fragment), or <code>null</code>
+     * if the url is outside of the application (e.g. a data-url or another host)
+     */
+    @Nullable
+    private static String getRelativePath(@Nonnull URI resourceUri, @Nonnull URI applicationBaseUri, @Nonnull String proxyPath, @Nonnull String url) {
+        final String path = StringUtils.substringBefore(url, "#").trim();
+        if (path.isEmpty()) {
+            return null;
+        }
+        if (path.startsWith(proxyPath)) {
+            return FingerprintPostProcessor.removeFingerprint(path.substring(proxyPath.length()));
+        }
+
+        final URI referenceUri;
+        try {
+            referenceUri = resourceUri.resolve(path);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!Objects.equals(referenceUri.getScheme(), applicationBaseUri.getScheme())
+                || !Objects.equals(referenceUri.getAuthority(), applicationBaseUri.getAuthority())) {
+            return null;
+        }
+        final URI relativeUri = applicationBaseUri.relativize(referenceUri);
+        return relativeUri.isAbsolute() ? null : relativeUri.toString();
+    }
+
+    @Nonnull
+    private static ExternalResourceType getExpectedType(@Nonnull String relativePath, boolean isImport) {
+        final String extension = StringUtils.substringAfterLast(StringUtils.substringBefore(relativePath, "?"), ".").toLowerCase();
+        if (isImport || extension.equals("css")) {
+            return ExternalResourceType.CSS;
+        }
+        switch (extension) {
+            case "woff":
+            case "woff2":
+            case "ttf":
+            case "otf":
+            case "eot":
+            case "png":
+            case "jpg":
+            case "jpeg":
+            case "gif":
+            case "webp":
+            case "avif":
+            case "ico":
+                return ExternalResourceType.BINARY;
+            default:
+                return ExternalResourceType.ANY;
+        }
+    }
+}
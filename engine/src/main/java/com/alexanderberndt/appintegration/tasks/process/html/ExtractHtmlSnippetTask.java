@@ -4,6 +4,7 @@ import com.alexanderberndt.appintegration.engine.context.TaskContext;
 import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
 import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
 import com.alexanderberndt.appintegration.pipeline.task.ProcessingTask;
+import com.alexanderberndt.appintegration.tasks.prefetch.FingerprintPostProcessor;
 import org.apache.commons.lang3.StringUtils;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -82,21 +83,21 @@ public class ExtractHtmlSnippetTask implements ProcessingTask {
         // search for javascript files
         final String jsRefQuery = taskContext.getValue(JS_REF_QUERY, String.class);
         final Elements javaScriptsList = doc.select(jsRefQuery);
-        extractReferencedFiles(resource, javaScriptsList, ExternalResourceType.JAVASCRIPT, "src", "jsTags");
+        extractReferencedFiles(taskContext, resource, javaScriptsList, ExternalResourceType.JAVASCRIPT, "src", "jsTags");
 
         // search for css files
         final String cssRefQuery = taskContext.getValue(CSS_REF_QUERY, String.class);
         final Elements stylesheetList = doc.select(cssRefQuery);
-        extractReferencedFiles(resource, stylesheetList, ExternalResourceType.CSS, "href", "cssTags");
+        extractReferencedFiles(taskContext, resource, stylesheetList, ExternalResourceType.CSS, "href", "cssTags");
 
         // search for cache-manifest
         final String manifestRefQuery = taskContext.getValue(MANIFEST_REF_QUERY, String.class);
         final Elements manifestList = doc.select(manifestRefQuery);
-        extractReferencedFiles(resource, manifestList, ExternalResourceType.CACHE_MANIFEST, "data-viega-manifest", "cacheManifest");
+        extractReferencedFiles(taskContext, resource, manifestList, ExternalResourceType.CACHE_MANIFEST, "data-viega-manifest", "cacheManifest");
     }
 
 
-    private void extractReferencedFiles(@Nonnull ExternalResource resource, @Nonnull Elements
+    private void extractReferencedFiles(@Nonnull TaskContext taskContext, @Nonnull ExternalResource resource, @Nonnull Elements
             htmlElements, @Nonnull ExternalResourceType expectedType, String urlAttr, String metaDataProperty) {
 
         final List<String> tagList = new ArrayList<>();
@@ -105,7 +106,7 @@ public class ExtractHtmlSnippetTask implements ProcessingTask {
             final String url = htmlElement.attr(urlAttr);
             if (StringUtils.isNotBlank(url)) {
 
-                resource.addReference(url, expectedType);
+                resource.addReference(toReferenceUrl(taskContext, url), expectedType);
 
                 htmlElement.removeAttr("data-viega-app");
 //
@@ -125,4 +126,18 @@ public class ExtractHtmlSnippetTask implements ProcessingTask {
         }
         resource.setMetadata(metaDataProperty, tagList.toArray());
     }
+
+    /**
+     * Maps an url, which was already rewritten to the proxy-path (e.g. by the {@link FingerprintPostProcessor}),
+     * back to the url of the application.
+     */
+    @Nonnull
+    private static String toReferenceUrl(@Nonnull TaskContext taskContext, @Nonnull String url) {
+        final String proxyPath = String.format(FingerprintPostProcessor.PROXY_PATH, taskContext.getApplicationId());
+        if (!url.startsWith(proxyPath)) {
+            return url;
+        }
+        final String relativePath = FingerprintPostProcessor.removeFingerprint(url.substring(proxyPath.length()));
+        return taskContext.getApplicationInfoUri().resolve(".").resolve(relativePath).toString();
+    }
 }
@@ -0,0 +1,48 @@
+package com.alexanderberndt.appintegration.tasks.process.html;
+
+import com.alexanderberndt.appintegration.engine.context.TaskContext;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
+import com.alexanderberndt.appintegration.pipeline.task.ProcessingTask;
+import com.alexanderberndt.appintegration.tasks.cache.StoreInCacheTask;
+import com.alexanderberndt.appintegration.tasks.prefetch.InlineResourcesPostProcessor;
+import org.osgi.service.component.annotations.Component;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Marks an html-snippet, so that its small stylesheets and scripts are inlined by the
+ * {@link InlineResourcesPostProcessor} (which must be selected by the application). The inlining itself happens
+ * after the prefetch, as only then the referenced resources are loaded and cached.
+ * <p>
+ * Must run after {@link ExtractHtmlSnippetTask} and before {@link StoreInCacheTask}.
+ */
+@Component
+public class InlineResourcesTask implements ProcessingTask {
+
+    /**
+     * Max. size (in bytes) of an inlined stylesheet or script (0 to disable inlining).
+     */
+    public static final String MAX_SIZE_PROP = "max-size";
+
+    public static final String INLINE_MAX_SIZE_METADATA = "inlineMaxSize";
+
+    @Override
+    public void declareTaskPropertiesAndDefaults(TaskContext taskContext) {
+        taskContext.setValue(MAX_SIZE_PROP, 2048);
+    }
+
+    @Override
+    public void process(@Nonnull TaskContext taskContext, @Nonnull ExternalResource resource) {
+        if (resource.getType() != ExternalResourceType.HTML_SNIPPET) {
+            taskContext.addWarning("Only HTML-Snippets are supported!");
+            return;
+        }
+
+        final int maxSize = taskContext.getValue(MAX_SIZE_PROP, Integer.class);
+        if (maxSize > 0) {
+            resource.setMetadata(INLINE_MAX_SIZE_METADATA, maxSize);
+            taskContext.addInfo("Stylesheets and scripts up to %d bytes will be inlined", maxSize);
+        }
+    }
+}
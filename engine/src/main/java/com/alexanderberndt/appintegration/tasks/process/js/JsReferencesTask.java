@@ -0,0 +1,169 @@
+package com.alexanderberndt.appintegration.tasks.process.js;
+
+import com.alexanderberndt.appintegration.engine.context.TaskContext;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
+import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
+import com.alexanderberndt.appintegration.pipeline.task.ProcessingTask;
+import com.alexanderberndt.appintegration.tasks.utils.JsReferenceScanner;
+import com.alexanderberndt.appintegration.tasks.utils.JsReferenceScanner.ReferenceKind;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.osgi.service.component.annotations.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Adds the modules and lazy chunks of a JavaScript file as references, so that they are prefetched as well
+ * (see {@link JsReferenceScanner} for the supported patterns). Chunks are resolved against the public-path,
+ * which is by default the directory of the application-info.json.
+ * <p>
+ * Additionally, the task reads build-manifests (any resource with a name ending with <code>manifest.json</code>):
+ * <code>asset-manifest.json</code> of create-react-app, <code>manifest.json</code> of vite and web-app manifests
+ * (icons). A manifest can be added to the prefetch with the {@code add-referenced-resource} task.
+ * <p>
+ * Only references of the same origin are added (no bare module-specifiers, source-maps or other hosts).
+ */
+@Component
+public class JsReferencesTask implements ProcessingTask {
+
+    public static final String PUBLIC_PATH_PROP = "public-path";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    public void declareTaskPropertiesAndDefaults(TaskContext taskContext) {
+        taskContext.setValue(PUBLIC_PATH_PROP, "");
+    }
+
+    @Override
+    public void process(@Nonnull TaskContext taskContext, @Nonnull ExternalResource resource) {
+        final boolean isScript = resource.getType().isSameOrSpecializationOf(ExternalResourceType.JAVASCRIPT);
+        final boolean isManifest = StringUtils.endsWith(resource.getUri().getPath(), "manifest.json");
+        if (!isScript && !isManifest) {
+            taskContext.addWarning("Only JavaScript and manifests are supported!");
+            return;
+        }
+
+        final URI publicPathUri = taskContext.getApplicationInfoUri().resolve(".").resolve(taskContext.getValue(PUBLIC_PATH_PROP, ""));
+        final Set<URI> references = new LinkedHashSet<>();
+
+        // the content is scanned as stream, but must be kept for the next tasks
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (InputStream in = new TeeInputStream(resource.getContentAsInputStream(), content)) {
+            if (isScript) {
+                final Reader reader = new InputStreamReader(in, resource.getCharset());
+                JsReferenceScanner.scan(reader, (url, kind) -> {
+                    final URI baseUri = (kind == ReferenceKind.CHUNK) ? publicPathUri : resource.getUri();
+                    addIfSameOrigin(references, publicPathUri, resolve(baseUri, url, kind != ReferenceKind.CHUNK));
+                });
+            } else {
+                readManifest(objectMapper.readTree(in), resource.getUri(), publicPathUri, references);
+            }
+            // copy any remaining content (e.g. after the json-object)
+            IOUtils.skip(in, Long.MAX_VALUE);
+        } catch (IOException e) {
+            throw new AppIntegrationException("Cannot scan " + resource.getUri() + " for references", e);
+        }
+        resource.setContent(new ByteArrayInputStream(content.toByteArray()));
+
+        for (URI reference : references) {
+            resource.addReference(reference.toString(), getExpectedType(reference));
+        }
+        taskContext.addInfo("Added %d references", references.size());
+    }
+
+    private static void readManifest(@Nullable JsonNode manifest, @Nonnull URI manifestUri, @Nonnull URI publicPathUri, @Nonnull Set<URI> references) {
+        if ((manifest == null) || !manifest.isObject()) {
+            return;
+        }
+        if (manifest.has("files") || manifest.has("entrypoints")) {
+            // create-react-app: {"files": {"main.js": "/static/js/main.1a2b.js", ...}, "entrypoints": [...]}
+            for (JsonNode file : manifest.path("files")) {
+                addIfSameOrigin(references, publicPathUri, resolve(manifestUri, file.asText(), false));
+            }
+            for (JsonNode entrypoint : manifest.path("entrypoints")) {
+                addIfSameOrigin(references, publicPathUri, resolve(manifestUri, entrypoint.asText(), false));
+            }
+        } else if (manifest.has("icons")) {
+            // web-app manifest: {"icons": [{"src": "icon-192.png", ...}], ...}
+            for (JsonNode icon : manifest.path("icons")) {
+                addIfSameOrigin(references, publicPathUri, resolve(manifestUri, icon.path("src").asText(), false));
+            }
+        } else {
+            // vite: {"index.html": {"file": "assets/index-1a2b.js", "css": [...], "assets": [...]}, ...}
+            // (in vite 5, the manifest is stored in .vite/manifest.json)
+            final URI manifestDirUri = manifestUri.resolve(".");
+            final URI baseUri = manifestDirUri.getPath().endsWith("/.vite/") ? manifestDirUri.resolve("..") : manifestDirUri;
+            final Iterator<Map.Entry<String, JsonNode>> it = manifest.fields();
+            while (it.hasNext()) {
+                final JsonNode chunk = it.next().getValue();
+                addIfSameOrigin(references, publicPathUri, resolve(baseUri, chunk.path("file").asText(), false));
+                for (JsonNode css : chunk.path("css")) {
+                    addIfSameOrigin(references, publicPathUri, resolve(baseUri, css.asText(), false));
+                }
+                for (JsonNode asset : chunk.path("assets")) {
+                    addIfSameOrigin(references, publicPathUri, resolve(baseUri, asset.asText(), false));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param isModuleSpecifier true for imports, which must be relative (starting with ./ ../ or /) or absolute
+     * @return the resolved uri (without fragment), or <code>null</code> if the url cannot be resolved
+     */
+    @Nullable
+    private static URI resolve(@Nonnull URI baseUri, @Nonnull String url, boolean isModuleSpecifier) {
+        final String path = StringUtils.substringBefore(url, "#").trim();
+        if (path.isEmpty() || StringUtils.substringBefore(path, "?").endsWith(".map")) {
+            return null;
+        }
+        if (isModuleSpecifier && !StringUtils.startsWithAny(path, "./", "../", "/", "http:", "https:")) {
+            return null;
+        }
+        try {
+            return baseUri.resolve(path);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void addIfSameOrigin(@Nonnull Set<URI> references, @Nonnull URI applicationUri, @Nullable URI referenceUri) {
+        if ((referenceUri != null)
+                && Objects.equals(referenceUri.getScheme(), applicationUri.getScheme())
+                && Objects.equals(referenceUri.getAuthority(), applicationUri.getAuthority())) {
+            references.add(referenceUri);
+        }
+    }
+
+    @Nonnull
+    private static ExternalResourceType getExpectedType(@Nonnull URI uri) {
+        final String extension = StringUtils.substringAfterLast(StringUtils.defaultString(uri.getPath()), ".").toLowerCase();
+        switch (extension) {
+            case "js":
+            case "mjs":
+                return ExternalResourceType.JAVASCRIPT;
+            case "css":
+                return ExternalResourceType.CSS;
+            default:
+                return ExternalResourceType.ANY;
+        }
+    }
+}
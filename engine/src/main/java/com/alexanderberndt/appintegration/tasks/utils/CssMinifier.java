@@ -0,0 +1,182 @@
+package com.alexanderberndt.appintegration.tasks.utils;
+
+import org.apache.commons.io.IOUtils;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Single-pass minifier for stylesheets, which removes comments, unnecessary whitespace and the last semicolon
+ * of a block. Strings, urls and license-comments (<code>/*! ... *&#47;</code>) are copied unchanged. Nothing
+ * else is rewritten (e.g. colors or units), so the minified stylesheet is equivalent to the original one.
+ */
+public final class CssMinifier {
+
+    // no whitespace is required after or before these characters
+    private static final String NO_SPACE_AFTER_CHARS = "{};,:>(";
+
+    private static final String NO_SPACE_BEFORE_CHARS = "{};,>)!";
+
+    private static final String URL_FUNCTION = "url(";
+
+    private final PushbackReader in;
+
+    private final Writer out;
+
+    private int lastChar = -1;
+
+    private boolean hasPendingSpace;
+
+    private boolean hasPendingSemicolon;
+
+    private CssMinifier(@Nonnull Reader in, @Nonnull Writer out) {
+        this.in = new PushbackReader(in, URL_FUNCTION.length());
+        this.out = out;
+    }
+
+    public static void minify(@Nonnull Reader in, @Nonnull Writer out) throws IOException {
+        IOUtils.copy(createReader(in), out);
+    }
+
+    /**
+     * Creates a reader, which returns the minified content of the input while it is read.
+     */
+    @Nonnull
+    public static Reader createReader(@Nonnull Reader in) {
+        return new MinifyingReader(in, out -> new CssMinifier(in, out)::minifyNext);
+    }
+
+    /**
+     * Reads and minifies the next character (together with the rest of its token, e.g. a string or comment).
+     *
+     * @return false, if the end of the input is reached
+     */
+    private boolean minifyNext() throws IOException {
+        final int curChar = in.read();
+        if (curChar < 0) {
+            return false;
+        }
+        if ((curChar == '/') && lookingAt("*")) {
+            processComment();
+        } else if (Character.isWhitespace(curChar) || (curChar == '\uFEFF')) {
+            hasPendingSpace = true;
+        } else if (curChar == ';') {
+            hasPendingSemicolon = true;
+            hasPendingSpace = false;
+        } else if ((curChar == '"') || (curChar == '\'')) {
+            write(curChar);
+            copyUntil(curChar);
+        } else if (((curChar == 'u') || (curChar == 'U')) && !isNameChar(lastChar) && lookingAt(URL_FUNCTION.substring(1))) {
+            write(curChar);
+            copyUrl();
+        } else {
+            write(curChar);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the pending semicolon and whitespace (if required) and the character.
+     */
+    private void write(int curChar) throws IOException {
+        if (hasPendingSemicolon) {
+            hasPendingSemicolon = false;
+            if (curChar != '}') {
+                out.write(';');
+                lastChar = ';';
+                hasPendingSpace = false;
+            }
+        }
+        if (hasPendingSpace && (lastChar >= 0)
+                && (NO_SPACE_AFTER_CHARS.indexOf(lastChar) < 0) && (NO_SPACE_BEFORE_CHARS.indexOf(curChar) < 0)) {
+            out.write(' ');
+        }
+        hasPendingSpace = false;
+        out.write(curChar);
+        lastChar = curChar;
+    }
+
+    private void processComment() throws IOException {
+        in.read(); // the star
+        if (lookingAt("!")) {
+            write('/');
+            out.write('*');
+            copyUntil('/');
+        } else {
+            int prevChar = -1;
+            int curChar;
+            while (((curChar = in.read()) >= 0) && !((prevChar == '*') && (curChar == '/'))) {
+                prevChar = curChar;
+            }
+            // a comment separates tokens like whitespace
+            hasPendingSpace = true;
+        }
+    }
+
+    /**
+     * Copies everything (including escaped characters) up to the terminating character, which isn't escaped. For
+     * comments, the terminating slash is only accepted after a star.
+     */
+    private void copyUntil(int terminatingChar) throws IOException {
+        int prevChar = -1;
+        int curChar;
+        while ((curChar = in.read()) >= 0) {
+            out.write(curChar);
+            if ((curChar == '\\') && (terminatingChar != '/')) {
+                final int escapedChar = in.read();
+                if (escapedChar >= 0) {
+                    out.write(escapedChar);
+                }
+            } else if ((curChar == terminatingChar) && ((terminatingChar != '/') || (prevChar == '*'))) {
+                break;
+            }
+            prevChar = curChar;
+        }
+        lastChar = terminatingChar;
+    }
+
+    /**
+     * Copies an url-function unchanged, as unquoted urls may contain characters like <code>//</code>.
+     */
+    private void copyUrl() throws IOException {
+        int curChar;
+        while ((curChar = in.read()) >= 0) {
+            if ((curChar == '"') || (curChar == '\'')) {
+                out.write(curChar);
+                copyUntil(curChar);
+            } else {
+                out.write(curChar);
+                if (curChar == '\\') {
+                    final int escapedChar = in.read();
+                    if (escapedChar >= 0) {
+                        out.write(escapedChar);
+                    }
+                } else if (curChar == ')') {
+                    break;
+                }
+            }
+        }
+        lastChar = ')';
+    }
+
+    private boolean lookingAt(@Nonnull String expected) throws IOException {
+        final char[] buffer = new char[expected.length()];
+        int len = 0;
+        while (len < buffer.length) {
+            final int c = in.read();
+            if (c < 0) {
+                break;
+            }
+            buffer[len++] = (char) c;
+        }
+        in.unread(buffer, 0, len);
+        return (len == buffer.length) && new String(buffer).equalsIgnoreCase(expected);
+    }
+
+    private static boolean isNameChar(int c) {
+        return (c >= 0) && (Character.isLetterOrDigit(c) || (c == '-') || (c == '_'));
+    }
+}
@@ -0,0 +1,227 @@
+package com.alexanderberndt.appintegration.tasks.utils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Single-pass scanner for the references of a stylesheet, i.e. <code>url(...)</code> and <code>@import</code>.
+ * The stylesheet is copied character by character to the output, and every reference is passed to a
+ * {@link ReferenceHandler}, which may replace it. Comments and strings (except import-urls) are copied unchanged.
+ * No syntax-tree is built, so the memory usage doesn't depend on the size of the stylesheet.
+ */
+public final class CssReferenceScanner {
+
+    private static final String URL_FUNCTION = "url(";
+
+    private static final String IMPORT_RULE = "@import";
+
+    @FunctionalInterface
+    public interface ReferenceHandler {
+
+        /**
+         * @param url      url as written in the stylesheet (without quotes)
+         * @param isImport true, if the url is referenced by an <code>@import</code> rule
+         * @return the url to write into the output, or <code>null</code> to keep the original url
+         */
+        @Nullable
+        String handle(@Nonnull String url, boolean isImport);
+    }
+
+    private final PushbackReader in;
+
+    private final Writer out;
+
+    private final ReferenceHandler handler;
+
+    private CssReferenceScanner(@Nonnull Reader in, @Nonnull Writer out, @Nonnull ReferenceHandler handler) {
+        this.in = new PushbackReader(in, IMPORT_RULE.length() + 1);
+        this.out = out;
+        this.handler = handler;
+    }
+
+    /**
+     * Copies the stylesheet from the reader to the writer, and passes all references to the handler.
+     *
+     * @return number of references found
+     */
+    public static int scan(@Nonnull Reader in, @Nonnull Writer out, @Nonnull ReferenceHandler handler) throws IOException {
+        return new CssReferenceScanner(in, out, handler).scan();
+    }
+
+    private int scan() throws IOException {
+        int count = 0;
+        int prevChar = -1;
+        int curChar;
+        while ((curChar = in.read()) >= 0) {
+            if ((curChar == '/') && lookingAt("*")) {
+                out.write(curChar);
+                copyComment();
+            } else if ((curChar == '"') || (curChar == '\'')) {
+                out.write(curChar);
+                out.write(readString(curChar));
+                out.write(curChar);
+            } else if (((curChar == 'u') || (curChar == 'U')) && !isNameChar(prevChar) && lookingAt(URL_FUNCTION.substring(1))) {
+                out.write(curChar);
+                copyChars(URL_FUNCTION.length() - 1);
+                processUrl(false);
+                count++;
+            } else if ((curChar == '@') && lookingAt(IMPORT_RULE.substring(1)) && !isNameChar(peek(IMPORT_RULE.length()))) {
+                out.write(curChar);
+                copyChars(IMPORT_RULE.length() - 1);
+                if (processImport()) {
+                    count++;
+                }
+            } else {
+                out.write(curChar);
+            }
+            prevChar = curChar;
+        }
+        return count;
+    }
+
+    private boolean processImport() throws IOException {
+        copyWhitespace();
+        final int curChar = in.read();
+        if ((curChar == '"') || (curChar == '\'')) {
+            out.write(curChar);
+            out.write(handleUrl(readString(curChar), true));
+            out.write(curChar);
+            return true;
+        } else if (((curChar == 'u') || (curChar == 'U')) && lookingAt(URL_FUNCTION.substring(1))) {
+            out.write(curChar);
+            copyChars(URL_FUNCTION.length() - 1);
+            processUrl(true);
+            return true;
+        } else {
+            if (curChar >= 0) {
+                in.unread(curChar);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Processes the argument of an url-function. The closing bracket is left for the main loop.
+     */
+    private void processUrl(boolean isImport) throws IOException {
+        copyWhitespace();
+        final int curChar = in.read();
+        if ((curChar == '"') || (curChar == '\'')) {
+            out.write(curChar);
+            out.write(handleUrl(readString(curChar), isImport));
+            out.write(curChar);
+        } else {
+            if (curChar >= 0) {
+                in.unread(curChar);
+            }
+            final StringBuilder url = new StringBuilder();
+            int nextChar;
+            while (((nextChar = in.read()) >= 0) && (nextChar != ')')) {
+                url.append((char) nextChar);
+            }
+            if (nextChar >= 0) {
+                in.unread(nextChar);
+            }
+            // keep trailing whitespace as it was
+            int urlEnd = url.length();
+            while ((urlEnd > 0) && Character.isWhitespace(url.charAt(urlEnd - 1))) {
+                urlEnd--;
+            }
+            out.write(handleUrl(url.substring(0, urlEnd), isImport));
+            out.write(url.substring(urlEnd));
+        }
+    }
+
+    @Nonnull
+    private String handleUrl(@Nonnull String url, boolean isImport) {
+        if (url.isEmpty()) {
+            return url;
+        }
+        final String replacement = handler.handle(url, isImport);
+        return (replacement != null) ? replacement : url;
+    }
+
+    /**
+     * Reads a string up to the (unescaped) closing quote, which is consumed but not returned.
+     */
+    @Nonnull
+    private String readString(int quote) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        int curChar;
+        while (((curChar = in.read()) >= 0) && (curChar != quote)) {
+            sb.append((char) curChar);
+            if (curChar == '\\') {
+                final int escapedChar = in.read();
+                if (escapedChar >= 0) {
+                    sb.append((char) escapedChar);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private void copyComment() throws IOException {
+        int prevChar = -1;
+        int curChar;
+        while ((curChar = in.read()) >= 0) {
+            out.write(curChar);
+            // the opening star doesn't count as star of the closing sequence
+            if ((prevChar == '*') && (curChar == '/')) {
+                return;
+            }
+            prevChar = (prevChar == -1) ? ' ' : curChar;
+        }
+    }
+
+    private void copyWhitespace() throws IOException {
+        int curChar;
+        while (((curChar = in.read()) >= 0) && Character.isWhitespace(curChar)) {
+            out.write(curChar);
+        }
+        if (curChar >= 0) {
+            in.unread(curChar);
+        }
+    }
+
+    private void copyChars(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.write(in.read());
+        }
+    }
+
+    /**
+     * Checks (case-insensitive), if the next characters match the given string, without consuming them.
+     */
+    private boolean lookingAt(@Nonnull String str) throws IOException {
+        final char[] buffer = new char[str.length()];
+        int len = 0;
+        int curChar;
+        while ((len < buffer.length) && ((curChar = in.read()) >= 0)) {
+            buffer[len++] = (char) curChar;
+        }
+        in.unread(buffer, 0, len);
+        return (len == buffer.length) && str.equalsIgnoreCase(new String(buffer));
+    }
+
+    /**
+     * @return the character at the given position (starting with 1 for the next character), without consuming it
+     */
+    private int peek(int position) throws IOException {
+        final char[] buffer = new char[position];
+        int len = 0;
+        int curChar;
+        while ((len < position) && ((curChar = in.read()) >= 0)) {
+            buffer[len++] = (char) curChar;
+        }
+        in.unread(buffer, 0, len);
+        return (len == position) ? buffer[position - 1] : -1;
+    }
+
+    private static boolean isNameChar(int c) {
+        return (c >= 0) && (Character.isLetterOrDigit(c) || (c == '-') || (c == '_'));
+    }
+}
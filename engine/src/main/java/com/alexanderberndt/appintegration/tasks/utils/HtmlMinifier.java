@@ -0,0 +1,210 @@
+package com.alexanderberndt.appintegration.tasks.utils;
+
+import org.apache.commons.io.IOUtils;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Single-pass minifier for html documents and snippets, which collapses every run of whitespace into a single
+ * space (or line-break) and drops comments. The content of <code>&lt;pre&gt;</code>, <code>&lt;textarea&gt;</code>,
+ * <code>&lt;script&gt;</code> and <code>&lt;style&gt;</code> elements is copied unchanged, as well as conditional
+ * comments (<code>&lt;!--[if IE]&gt;</code>).
+ * <p>
+ * Whitespace is never removed completely, so inline elements are still rendered the same way (except for
+ * elements, which are styled with <code>white-space: pre</code>).
+ */
+public final class HtmlMinifier {
+
+    private static final Set<String> RAW_TEXT_ELEMENTS = new HashSet<>(Arrays.asList("pre", "textarea", "script", "style"));
+
+    private static final String COMMENT_START = "<!--";
+
+    private static final String COMMENT_END = "-->";
+
+    private static final int PUSHBACK_SIZE = 16;
+
+    private final PushbackReader in;
+
+    private final Writer out;
+
+    private boolean hasWritten;
+
+    // 0 = none, ' ' or '\n'
+    private int pendingWhitespace;
+
+    private HtmlMinifier(@Nonnull Reader in, @Nonnull Writer out) {
+        this.in = new PushbackReader(in, PUSHBACK_SIZE);
+        this.out = out;
+    }
+
+    public static void minify(@Nonnull Reader in, @Nonnull Writer out) throws IOException {
+        IOUtils.copy(createReader(in), out);
+    }
+
+    /**
+     * Creates a reader, which returns the minified content of the input while it is read.
+     */
+    @Nonnull
+    public static Reader createReader(@Nonnull Reader in) {
+        return new MinifyingReader(in, out -> new HtmlMinifier(in, out)::minifyNext);
+    }
+
+    /**
+     * Reads and minifies the next character (together with the rest of its token, e.g. a string or comment).
+     *
+     * @return false, if the end of the input is reached
+     */
+    private boolean minifyNext() throws IOException {
+        final int curChar = in.read();
+        if (curChar < 0) {
+            return false;
+        }
+        if (Character.isWhitespace(curChar) || (curChar == '\uFEFF')) {
+            if ((curChar == '\n') || (curChar == '\r')) {
+                pendingWhitespace = '\n';
+            } else if (pendingWhitespace == 0) {
+                pendingWhitespace = ' ';
+            }
+        } else if ((curChar == '<') && lookingAt(COMMENT_START.substring(1))) {
+            processComment();
+        } else if ((curChar == '<') && isTagStart(peek())) {
+            write(curChar);
+            final String elementName = copyTag();
+            if (RAW_TEXT_ELEMENTS.contains(elementName)) {
+                copyRawText(elementName);
+            }
+        } else {
+            write(curChar);
+        }
+        return true;
+    }
+
+    private void write(int curChar) throws IOException {
+        if ((pendingWhitespace != 0) && hasWritten) {
+            out.write(pendingWhitespace);
+        }
+        pendingWhitespace = 0;
+        out.write(curChar);
+        hasWritten = true;
+    }
+
+    private void processComment() throws IOException {
+        final StringBuilder comment = new StringBuilder(COMMENT_START);
+        in.skip(COMMENT_START.length() - 1);
+        int curChar;
+        while ((curChar = in.read()) >= 0) {
+            comment.append((char) curChar);
+            if ((curChar == '>') && (comment.length() >= COMMENT_START.length() + COMMENT_END.length() - 1)
+                    && comment.toString().endsWith(COMMENT_END)) {
+                break;
+            }
+        }
+
+        // keep conditional comments, e.g. <!--[if IE]> ... <![endif]-->
+        final String content = comment.substring(COMMENT_START.length());
+        if (content.startsWith("[") || content.startsWith("<!")) {
+            write(comment.charAt(0));
+            out.write(comment.substring(1));
+        }
+    }
+
+    /**
+     * Copies a start- or end-tag (whose opening bracket is already written), and collapses the whitespace between
+     * the attributes.
+     *
+     * @return the lower-case name of a start-tag, or an empty string for end-tags and declarations
+     */
+    @Nonnull
+    private String copyTag() throws IOException {
+        final StringBuilder elementName = new StringBuilder();
+        boolean isNameComplete = false;
+        boolean isEndTag = false;
+        boolean hasSpace = false;
+        int quote = 0;
+        int curChar;
+        while ((curChar = in.read()) >= 0) {
+            if (quote != 0) {
+                out.write(curChar);
+                if (curChar == quote) {
+                    quote = 0;
+                }
+            } else if (Character.isWhitespace(curChar)) {
+                isNameComplete = true;
+                hasSpace = true;
+            } else {
+                if (hasSpace && (curChar != '>')) {
+                    out.write(' ');
+                }
+                hasSpace = false;
+                out.write(curChar);
+                if (curChar == '>') {
+                    break;
+                } else if ((curChar == '"') || (curChar == '\'')) {
+                    quote = curChar;
+                } else if ((curChar == '/') && (elementName.length() == 0)) {
+                    isEndTag = true;
+                } else if (!isNameComplete && Character.isLetterOrDigit(curChar)) {
+                    elementName.append((char) curChar);
+                } else {
+                    isNameComplete = true;
+                }
+            }
+        }
+        return isEndTag ? "" : elementName.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Copies the content of an element unchanged, up to (but excluding) its end-tag.
+     */
+    private void copyRawText(@Nonnull String elementName) throws IOException {
+        final StringBuilder buffer = new StringBuilder();
+        int curChar;
+        while ((curChar = in.read()) >= 0) {
+            buffer.append((char) curChar);
+            if ((curChar == '/') && (buffer.length() >= 2) && (buffer.charAt(buffer.length() - 2) == '<')) {
+                out.append(buffer, 0, buffer.length() - 2);
+                buffer.setLength(0);
+                if (lookingAt(elementName)) {
+                    in.unread(new char[]{'<', '/'});
+                    return;
+                }
+                buffer.append("</");
+            }
+        }
+        out.write(buffer.toString());
+    }
+
+    private boolean isTagStart(int c) {
+        return Character.isLetter(c) || (c == '/') || (c == '!') || (c == '?');
+    }
+
+    private int peek() throws IOException {
+        final int nextChar = in.read();
+        if (nextChar >= 0) {
+            in.unread(nextChar);
+        }
+        return nextChar;
+    }
+
+    private boolean lookingAt(@Nonnull String expected) throws IOException {
+        final char[] buffer = new char[expected.length()];
+        int len = 0;
+        while (len < buffer.length) {
+            final int c = in.read();
+            if (c < 0) {
+                break;
+            }
+            buffer[len++] = (char) c;
+        }
+        in.unread(buffer, 0, len);
+        return (len == buffer.length) && new String(buffer).equalsIgnoreCase(expected);
+    }
+}
@@ -0,0 +1,288 @@
+package com.alexanderberndt.appintegration.tasks.utils;
+
+import org.apache.commons.io.IOUtils;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Single-pass minifier for JavaScript, which removes comments and unnecessary whitespace. Identifiers are not
+ * renamed, and line-breaks are kept wherever an automatic semicolon could be inserted (so a script without
+ * semicolons still works). Strings, template-literals and regular expressions are copied unchanged, as well as
+ * license-comments (<code>/*! ... *&#47;</code>).
+ */
+public final class JsMinifier {
+
+    // a slash after these characters starts a regular expression (otherwise it's a division)
+    private static final String REGEX_PREFIX_CHARS = "(,=:[!&|?{};+-*%<>~^";
+
+    private static final Set<String> REGEX_PREFIX_KEYWORDS = new HashSet<>(Arrays.asList(
+            "return", "typeof", "case", "do", "else", "in", "instanceof", "new", "delete", "void", "throw", "yield", "await"));
+
+    // a line-break after these characters (or before the next ones) cannot terminate a statement
+    private static final String CONTINUING_PREV_CHARS = "{([,;:=?&|*%<>!~^";
+
+    private static final String CONTINUING_NEXT_CHARS = "})],;";
+
+    private enum Whitespace {NONE, SPACE, LINE_BREAK}
+
+    private final PushbackReader in;
+
+    private final Writer out;
+
+    private int lastChar = -1;
+
+    // last identifier or keyword (empty, if the last token was something else)
+    private final StringBuilder lastWord = new StringBuilder();
+
+    private Whitespace pendingWhitespace = Whitespace.NONE;
+
+    private int braceDepth;
+
+    // brace-depth of the enclosing template-literals, whose substitution (${...}) is currently minified
+    private final Deque<Integer> templateDepths = new ArrayDeque<>();
+
+    private JsMinifier(@Nonnull Reader in, @Nonnull Writer out) {
+        this.in = new PushbackReader(in, 2);
+        this.out = out;
+    }
+
+    public static void minify(@Nonnull Reader in, @Nonnull Writer out) throws IOException {
+        IOUtils.copy(createReader(in), out);
+    }
+
+    /**
+     * Creates a reader, which returns the minified content of the input while it is read.
+     */
+    @Nonnull
+    public static Reader createReader(@Nonnull Reader in) {
+        return new MinifyingReader(in, out -> new JsMinifier(in, out)::minifyNext);
+    }
+
+    /**
+     * Reads and minifies the next character (together with the rest of its token, e.g. a string or comment).
+     *
+     * @return false, if the end of the input is reached
+     */
+    private boolean minifyNext() throws IOException {
+        final int curChar = in.read();
+        if (curChar < 0) {
+            return false;
+        }
+        if (curChar == '/') {
+            final int nextChar = peek();
+            if (nextChar == '/') {
+                skipLineComment();
+            } else if (nextChar == '*') {
+                processBlockComment();
+            } else if (isRegexAllowed()) {
+                copyRegex();
+            } else {
+                write(curChar);
+            }
+        } else if (isLineTerminator(curChar)) {
+            pendingWhitespace = Whitespace.LINE_BREAK;
+        } else if (Character.isWhitespace(curChar) || (curChar == '\uFEFF')) {
+            if (pendingWhitespace == Whitespace.NONE) {
+                pendingWhitespace = Whitespace.SPACE;
+            }
+        } else if ((curChar == '"') || (curChar == '\'')) {
+            write(curChar);
+            copyString(curChar);
+        } else if (curChar == '`') {
+            write(curChar);
+            copyTemplate();
+        } else if ((curChar == '}') && !templateDepths.isEmpty() && (templateDepths.peek() == braceDepth)) {
+            // end of a substitution, so continue with the template-literal
+            templateDepths.pop();
+            write(curChar);
+            copyTemplate();
+        } else {
+            if (curChar == '{') {
+                braceDepth++;
+            } else if (curChar == '}') {
+                braceDepth--;
+            }
+            write(curChar);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the pending whitespace (if required) and the character.
+     */
+    private void write(int curChar) throws IOException {
+        if (pendingWhitespace == Whitespace.LINE_BREAK
+                && (lastChar >= 0) && (CONTINUING_PREV_CHARS.indexOf(lastChar) < 0) && (CONTINUING_NEXT_CHARS.indexOf(curChar) < 0)) {
+            out.write('\n');
+        } else if ((pendingWhitespace != Whitespace.NONE) && needsSpace(lastChar, curChar)) {
+            out.write(' ');
+        }
+        if ((pendingWhitespace != Whitespace.NONE) || !isIdentifierChar(curChar) || !isIdentifierChar(lastChar)) {
+            lastWord.setLength(0);
+        }
+        pendingWhitespace = Whitespace.NONE;
+
+        out.write(curChar);
+        if (isIdentifierChar(curChar)) {
+            lastWord.append((char) curChar);
+        }
+        lastChar = curChar;
+    }
+
+    private static boolean needsSpace(int prevChar, int nextChar) {
+        return (isIdentifierChar(prevChar) && isIdentifierChar(nextChar))
+                // a + +b, a - -b
+                || ((prevChar == nextChar) && ((prevChar == '+') || (prevChar == '-')))
+                // a / /regex/
+                || ((prevChar == '/') && ((nextChar == '/') || (nextChar == '*')))
+                // 1 .toString()
+                || (Character.isDigit(prevChar) && (nextChar == '.'));
+    }
+
+    private boolean isRegexAllowed() {
+        if (lastChar < 0) {
+            return true;
+        } else if (isIdentifierChar(lastChar)) {
+            return REGEX_PREFIX_KEYWORDS.contains(lastWord.toString());
+        } else {
+            return REGEX_PREFIX_CHARS.indexOf(lastChar) >= 0;
+        }
+    }
+
+    private void skipLineComment() throws IOException {
+        int curChar;
+        while (((curChar = in.read()) >= 0) && !isLineTerminator(curChar)) {
+            // skip
+        }
+        pendingWhitespace = Whitespace.LINE_BREAK;
+    }
+
+    private void processBlockComment() throws IOException {
+        in.read(); // the star
+        final boolean isLicense = (peek() == '!');
+        final StringBuilder comment = new StringBuilder("/*");
+        boolean hasLineTerminator = false;
+        int prevChar = -1;
+        int curChar;
+        while ((curChar = in.read()) >= 0) {
+            comment.append((char) curChar);
+            hasLineTerminator |= isLineTerminator(curChar);
+            if ((prevChar == '*') && (curChar == '/')) {
+                break;
+            }
+            prevChar = curChar;
+        }
+
+        if (isLicense) {
+            // keep the license at its own line (without changing the last token)
+            if (lastChar >= 0) {
+                out.write('\n');
+            }
+            out.write(comment.toString());
+            out.write('\n');
+        } else if (hasLineTerminator) {
+            pendingWhitespace = Whitespace.LINE_BREAK;
+        } else if (pendingWhitespace == Whitespace.NONE) {
+            pendingWhitespace = Whitespace.SPACE;
+        }
+    }
+
+    /**
+     * Copies a string up to the (unescaped) closing quote. The opening quote is already written.
+     */
+    private void copyString(int quote) throws IOException {
+        int curChar;
+        while ((curChar = in.read()) >= 0) {
+            out.write(curChar);
+            if (curChar == '\\') {
+                final int escapedChar = in.read();
+                if (escapedChar >= 0) {
+                    out.write(escapedChar);
+                }
+            } else if ((curChar == quote) || isLineTerminator(curChar)) {
+                break;
+            }
+        }
+        lastChar = quote;
+        lastWord.setLength(0);
+    }
+
+    /**
+     * Copies a template-literal up to the closing backtick, or up to the start of a substitution
+     * (<code>${</code>), which is then minified as code. The opening backtick (or closing brace) is already written.
+     */
+    private void copyTemplate() throws IOException {
+        int curChar;
+        while ((curChar = in.read()) >= 0) {
+            out.write(curChar);
+            if (curChar == '\\') {
+                final int escapedChar = in.read();
+                if (escapedChar >= 0) {
+                    out.write(escapedChar);
+                }
+            } else if (curChar == '`') {
+                break;
+            } else if ((curChar == '$') && (peek() == '{')) {
+                out.write(in.read());
+                templateDepths.push(braceDepth);
+                lastChar = '{';
+                lastWord.setLength(0);
+                return;
+            }
+        }
+        lastChar = '`';
+        lastWord.setLength(0);
+    }
+
+    /**
+     * Copies a regular expression (without its flags), which are handled as identifier.
+     */
+    private void copyRegex() throws IOException {
+        write('/');
+        boolean isInClass = false;
+        int curChar;
+        while ((curChar = in.read()) >= 0) {
+            out.write(curChar);
+            if (curChar == '\\') {
+                final int escapedChar = in.read();
+                if (escapedChar >= 0) {
+                    out.write(escapedChar);
+                }
+            } else if (curChar == '[') {
+                isInClass = true;
+            } else if (curChar == ']') {
+                isInClass = false;
+            } else if (((curChar == '/') && !isInClass) || isLineTerminator(curChar)) {
+                break;
+            }
+        }
+        // a slash after a regular expression is a division
+        lastChar = ')';
+        lastWord.setLength(0);
+    }
+
+    private int peek() throws IOException {
+        final int nextChar = in.read();
+        if (nextChar >= 0) {
+            in.unread(nextChar);
+        }
+        return nextChar;
+    }
+
+    private static boolean isLineTerminator(int c) {
+        return (c == '\n') || (c == '\r') || (c == '\u2028') || (c == '\u2029');
+    }
+
+    private static boolean isIdentifierChar(int c) {
+        return (c >= 0) && (Character.isLetterOrDigit(c) || (c == '_') || (c == '$') || (c == '\\') || (c > 127));
+    }
+}
@@ -0,0 +1,505 @@
+package com.alexanderberndt.appintegration.tasks.utils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass scanner for the modules and chunks referenced by a JavaScript file. It tokenizes the script
+ * (skipping comments, template-literals and regular expressions) and only keeps the last few tokens, so the memory
+ * usage doesn't depend on the size of the script. Found are:
+ * <ul>
+ *     <li>static imports and re-exports, e.g. <code>import {a} from "./a.js"</code>, <code>import "./b.js"</code>,
+ *     <code>export * from "./c.js"</code></li>
+ *     <li>dynamic imports with a string literal, e.g. <code>import("./d.js")</code></li>
+ *     <li>webpack chunk-maps, e.g. <code>"static/js/"+e+"."+{12:"3fa1",34:"9c2b"}[e]+".chunk.js"</code></li>
+ *     <li>vite preload-lists, e.g. <code>__vite__mapDeps=(...m.f=["assets/a.js","assets/b.css"]...)</code></li>
+ * </ul>
+ * Imports are relative to the script, chunks are relative to the public-path of the application.
+ */
+public final class JsReferenceScanner {
+
+    public enum ReferenceKind {STATIC_IMPORT, DYNAMIC_IMPORT, CHUNK}
+
+    @FunctionalInterface
+    public interface ReferenceHandler {
+
+        void handle(@Nonnull String url, @Nonnull ReferenceKind kind);
+    }
+
+    private enum TokenType {IDENTIFIER, NUMBER, STRING, TEMPLATE, REGEX, PUNCTUATOR}
+
+    private enum ChunkMapState {NONE, KEY, COLON, VALUE, COMMA, INDEX_START, INDEX, INDEX_END, PLUS, SUFFIX}
+
+    private static final int LOOKBACK_SIZE = 6;
+
+    private static final String VITE_MAP_DEPS = "__vite__mapDeps";
+
+    private final PushbackReader in;
+
+    private final ReferenceHandler handler;
+
+    /**
+     * The last tokens (newest first)
+     */
+    private final Deque<Token> lookback = new ArrayDeque<>(LOOKBACK_SIZE + 1);
+
+    private int count;
+
+    // state of an import- or export-statement: 1 = after import/export, 2 = after from
+    private int importState;
+
+    private boolean isImportStatement;
+
+    private boolean isDynamicImport;
+
+    private boolean isViteMapDeps;
+
+    // state of a webpack chunk-map
+    private ChunkMapState chunkMapState = ChunkMapState.NONE;
+
+    private String chunkPrefix;
+
+    private String chunkSeparator;
+
+    private String chunkVariable;
+
+    private Map<String, String> chunkMap;
+
+    private String chunkKey;
+
+    private List<String> viteDeps;
+
+    private JsReferenceScanner(@Nonnull Reader in, @Nonnull ReferenceHandler handler) {
+        this.in = new PushbackReader(in, 2);
+        this.handler = handler;
+    }
+
+    /**
+     * Scans the script, and passes all references to the handler.
+     *
+     * @return number of references found
+     */
+    public static int scan(@Nonnull Reader in, @Nonnull ReferenceHandler handler) throws IOException {
+        return new JsReferenceScanner(in, handler).scan();
+    }
+
+    private int scan() throws IOException {
+        Token token;
+        while ((token = nextToken()) != null) {
+            processToken(token);
+            lookback.addFirst(token);
+            if (lookback.size() > LOOKBACK_SIZE) {
+                lookback.removeLast();
+            }
+        }
+        return count;
+    }
+
+    private void processToken(@Nonnull Token token) {
+        processImport(token);
+        processChunkMap(token);
+        processViteDeps(token);
+    }
+
+    private void processImport(@Nonnull Token token) {
+        if (isDynamicImport) {
+            isDynamicImport = false;
+            if (token.type == TokenType.STRING) {
+                addReference(token.value, ReferenceKind.DYNAMIC_IMPORT);
+            }
+            return;
+        }
+
+        if (importState == 0) {
+            if ((token.type == TokenType.IDENTIFIER) && (token.is("import") || token.is("export")) && !isPrevious(0, ".")) {
+                importState = 1;
+                isImportStatement = token.is("import");
+            }
+        } else if (importState == 1) {
+            if (token.is("(") && isImportStatement && isPrevious(0, "import")) {
+                importState = 0;
+                isDynamicImport = true;
+            } else if ((token.type == TokenType.STRING) && isImportStatement && isPrevious(0, "import")) {
+                importState = 0;
+                addReference(token.value, ReferenceKind.STATIC_IMPORT);
+            } else if ((token.type == TokenType.IDENTIFIER) && token.is("from") && !isPrevious(0, "import") && !isPrevious(0, "export")) {
+                importState = 2;
+            } else if (!((token.type == TokenType.IDENTIFIER) || token.is("{") || token.is("}") || token.is(",") || token.is("*"))) {
+                importState = 0;
+            }
+        } else {
+            importState = 0;
+            if (token.type == TokenType.STRING) {
+                addReference(token.value, ReferenceKind.STATIC_IMPORT);
+            }
+        }
+    }
+
+    /**
+     * Pattern: STRING + IDENTIFIER + STRING + { key: STRING, ... } [ IDENTIFIER ] + STRING (with the same identifier)
+     */
+    private void processChunkMap(@Nonnull Token token) {
+        switch (chunkMapState) {
+            case NONE:
+                if (token.is("{") && isPrevious(0, "+") && isPrevious(1, TokenType.STRING) && isPrevious(2, "+")
+                        && isPrevious(3, TokenType.IDENTIFIER) && isPrevious(4, "+") && isPrevious(5, TokenType.STRING)) {
+                    chunkPrefix = getPrevious(5).value;
+                    chunkSeparator = getPrevious(1).value;
+                    chunkVariable = getPrevious(3).value;
+                    chunkMap = new LinkedHashMap<>();
+                    chunkMapState = ChunkMapState.KEY;
+                }
+                return;
+            case KEY:
+                if (token.is("}")) {
+                    chunkMapState = ChunkMapState.INDEX_START;
+                } else if ((token.type == TokenType.NUMBER) || (token.type == TokenType.STRING) || (token.type == TokenType.IDENTIFIER)) {
+                    chunkKey = token.value;
+                    chunkMapState = ChunkMapState.COLON;
+                } else {
+                    resetChunkMap();
+                }
+                return;
+            case COLON:
+                nextChunkMapState(token.is(":"), ChunkMapState.VALUE);
+                return;
+            case VALUE:
+                if (token.type == TokenType.STRING) {
+                    chunkMap.put(chunkKey, token.value);
+                }
+                nextChunkMapState(token.type == TokenType.STRING, ChunkMapState.COMMA);
+                return;
+            case COMMA:
+                if (token.is("}")) {
+                    chunkMapState = ChunkMapState.INDEX_START;
+                } else {
+                    nextChunkMapState(token.is(","), ChunkMapState.KEY);
+                }
+                return;
+            case INDEX_START:
+                nextChunkMapState(token.is("["), ChunkMapState.INDEX);
+                return;
+            case INDEX:
+                nextChunkMapState(token.is(chunkVariable), ChunkMapState.INDEX_END);
+                return;
+            case INDEX_END:
+                nextChunkMapState(token.is("]"), ChunkMapState.PLUS);
+                return;
+            case PLUS:
+                nextChunkMapState(token.is("+"), ChunkMapState.SUFFIX);
+                return;
+            case SUFFIX:
+                if (token.type == TokenType.STRING) {
+                    for (Map.Entry<String, String> entry : chunkMap.entrySet()) {
+                        addReference(chunkPrefix + entry.getKey() + chunkSeparator + entry.getValue() + token.value, ReferenceKind.CHUNK);
+                    }
+                }
+                resetChunkMap();
+                return;
+            default:
+                resetChunkMap();
+        }
+    }
+
+    private void nextChunkMapState(boolean isExpectedToken, @Nonnull ChunkMapState nextState) {
+        if (isExpectedToken) {
+            chunkMapState = nextState;
+        } else {
+            resetChunkMap();
+        }
+    }
+
+    private void resetChunkMap() {
+        chunkMapState = ChunkMapState.NONE;
+        chunkMap = null;
+        chunkKey = null;
+    }
+
+    private void processViteDeps(@Nonnull Token token) {
+        if ((token.type == TokenType.IDENTIFIER) && token.is(VITE_MAP_DEPS)) {
+            isViteMapDeps = true;
+        } else if (isViteMapDeps && (viteDeps == null) && token.is("[")) {
+            viteDeps = new ArrayList<>();
+        } else if (viteDeps != null) {
+            if (token.type == TokenType.STRING) {
+                viteDeps.add(token.value);
+            } else if (token.is("]")) {
+                for (String dep : viteDeps) {
+                    addReference(dep, ReferenceKind.CHUNK);
+                }
+                viteDeps = null;
+                isViteMapDeps = false;
+            } else if (!token.is(",")) {
+                viteDeps = null;
+                isViteMapDeps = false;
+            }
+        }
+    }
+
+    private void addReference(@Nonnull String url, @Nonnull ReferenceKind kind) {
+        if (!url.isEmpty()) {
+            count++;
+            handler.handle(url, kind);
+        }
+    }
+
+    private boolean isPrevious(int index, @Nonnull String value) {
+        final Token token = getPrevious(index);
+        return (token != null) && token.is(value);
+    }
+
+    private boolean isPrevious(int index, @Nonnull TokenType type) {
+        final Token token = getPrevious(index);
+        return (token != null) && (token.type == type);
+    }
+
+    @Nullable
+    private Token getPrevious(int index) {
+        if (index >= lookback.size()) {
+            return null;
+        }
+        final Iterator<Token> it = lookback.iterator();
+        for (int i = 0; i < index; i++) {
+            it.next();
+        }
+        return it.next();
+    }
+
+    /* Tokenizer */
+
+    @Nullable
+    private Token nextToken() throws IOException {
+        while (true) {
+            final int curChar = in.read();
+            if (curChar < 0) {
+                return null;
+            }
+            if (Character.isWhitespace(curChar)) {
+                continue;
+            }
+            if (curChar == '/') {
+                final int nextChar = in.read();
+                if (nextChar == '/') {
+                    skipLineComment();
+                    continue;
+                } else if (nextChar == '*') {
+                    skipBlockComment();
+                    continue;
+                }
+                unread(nextChar);
+                if (isRegexAllowed()) {
+                    skipRegex();
+                    return new Token(TokenType.REGEX, "/");
+                }
+                return new Token(TokenType.PUNCTUATOR, "/");
+            }
+            if ((curChar == '"') || (curChar == '\'')) {
+                return new Token(TokenType.STRING, readString(curChar));
+            }
+            if (curChar == '`') {
+                final String template = readTemplate();
+                return (template != null) ? new Token(TokenType.STRING, template) : new Token(TokenType.TEMPLATE, "`");
+            }
+            if (isIdentifierStart(curChar)) {
+                return new Token(TokenType.IDENTIFIER, readWhile(curChar, JsReferenceScanner::isIdentifierPart));
+            }
+            if (Character.isDigit(curChar)) {
+                return new Token(TokenType.NUMBER, readWhile(curChar, c -> Character.isLetterOrDigit(c) || (c == '.') || (c == '_')));
+            }
+            return new Token(TokenType.PUNCTUATOR, String.valueOf((char) curChar));
+        }
+    }
+
+    /**
+     * A slash starts a regular expression, if it cannot be a division (i.e. it is not after a value).
+     */
+    private boolean isRegexAllowed() {
+        final Token prev = lookback.peekFirst();
+        if (prev == null) {
+            return true;
+        }
+        switch (prev.type) {
+            case NUMBER:
+            case STRING:
+            case TEMPLATE:
+            case REGEX:
+                return false;
+            case IDENTIFIER:
+                return prev.is("return") || prev.is("typeof") || prev.is("case") || prev.is("do") || prev.is("else")
+                        || prev.is("in") || prev.is("of") || prev.is("new") || prev.is("delete") || prev.is("void")
+                        || prev.is("throw") || prev.is("instanceof") || prev.is("yield") || prev.is("await");
+            default:
+                return !(prev.is(")") || prev.is("]") || prev.is("}"));
+        }
+    }
+
+    private void skipLineComment() throws IOException {
+        int curChar;
+        do {
+            curChar = in.read();
+        } while ((curChar >= 0) && (curChar != '\n') && (curChar != '\r'));
+    }
+
+    private void skipBlockComment() throws IOException {
+        int prevChar = -1;
+        int curChar;
+        while ((curChar = in.read()) >= 0) {
+            if ((prevChar == '*') && (curChar == '/')) {
+                return;
+            }
+            prevChar = curChar;
+        }
+    }
+
+    private void skipRegex() throws IOException {
+        boolean inClass = false;
+        int curChar;
+        while ((curChar = in.read()) >= 0) {
+            if (curChar == '\\') {
+                in.read();
+            } else if (curChar == '[') {
+                inClass = true;
+            } else if (curChar == ']') {
+                inClass = false;
+            } else if ((curChar == '/') && !inClass) {
+                break;
+            } else if ((curChar == '\n') || (curChar == '\r')) {
+                // not a valid regex, so stop at the line-end
+                return;
+            }
+        }
+        // flags
+        int flagChar;
+        while (((flagChar = in.read()) >= 0) && isIdentifierPart(flagChar)) {
+            // skip
+        }
+        unread(flagChar);
+    }
+
+    @Nonnull
+    private String readString(int quote) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        int curChar;
+        while (((curChar = in.read()) >= 0) && (curChar != quote)) {
+            if (curChar == '\\') {
+                final int escapedChar = in.read();
+                if ((escapedChar >= 0) && (escapedChar != '\n') && (escapedChar != '\r')) {
+                    sb.append((char) escapedChar);
+                }
+            } else if ((curChar == '\n') || (curChar == '\r')) {
+                // unterminated string
+                break;
+            } else {
+                sb.append((char) curChar);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads a template-literal. Substitutions are skipped (with nested braces and strings).
+     *
+     * @return the value, or <code>null</code> if the template contains substitutions
+     */
+    @Nullable
+    private String readTemplate() throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        boolean hasSubstitutions = false;
+        int curChar;
+        while (((curChar = in.read()) >= 0) && (curChar != '`')) {
+            if (curChar == '\\') {
+                final int escapedChar = in.read();
+                if (escapedChar >= 0) {
+                    sb.append((char) escapedChar);
+                }
+            } else if (curChar == '$') {
+                final int nextChar = in.read();
+                if (nextChar == '{') {
+                    hasSubstitutions = true;
+                    skipSubstitution();
+                } else {
+                    sb.append('$');
+                    unread(nextChar);
+                }
+            } else {
+                sb.append((char) curChar);
+            }
+        }
+        return hasSubstitutions ? null : sb.toString();
+    }
+
+    private void skipSubstitution() throws IOException {
+        int depth = 1;
+        int curChar;
+        while ((depth > 0) && ((curChar = in.read()) >= 0)) {
+            if (curChar == '{') {
+                depth++;
+            } else if (curChar == '}') {
+                depth--;
+            } else if ((curChar == '"') || (curChar == '\'')) {
+                readString(curChar);
+            } else if (curChar == '`') {
+                readTemplate();
+            }
+        }
+    }
+
+    @Nonnull
+    private String readWhile(int firstChar, @Nonnull CharPredicate predicate) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        sb.append((char) firstChar);
+        int curChar;
+        while (((curChar = in.read()) >= 0) && predicate.test(curChar)) {
+            sb.append((char) curChar);
+        }
+        unread(curChar);
+        return sb.toString();
+    }
+
+    private void unread(int c) throws IOException {
+        if (c >= 0) {
+            in.unread(c);
+        }
+    }
+
+    private static boolean isIdentifierStart(int c) {
+        return Character.isLetter(c) || (c == '_') || (c == '$');
+    }
+
+    private static boolean isIdentifierPart(int c) {
+        return Character.isLetterOrDigit(c) || (c == '_') || (c == '$');
+    }
+
+    @FunctionalInterface
+    private interface CharPredicate {
+        boolean test(int c);
+    }
+
+    private static class Token {
+
+        @Nonnull
+        private final TokenType type;
+
+        @Nonnull
+        private final String value;
+
+        public Token(@Nonnull TokenType type, @Nonnull String value) {
+            this.type = type;
+            this.value = value;
+        }
+
+        public boolean is(@Nonnull String str) {
+            return ((type == TokenType.IDENTIFIER) || (type == TokenType.PUNCTUATOR)) && value.equals(str);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.alexanderberndt.appintegration.tasks.utils;
+
+import org.apache.commons.io.output.StringBuilderWriter;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.function.Function;
+
+/**
+ * Reader, which minifies its input while it is read. The minifier writes the output of every step (usually a
+ * single token) into a small buffer, so the content is never held completely in memory.
+ */
+public class MinifyingReader extends Reader {
+
+    @FunctionalInterface
+    public interface Step {
+
+        /**
+         * Minifies the next token of the input.
+         *
+         * @return false, if the end of the input is reached
+         */
+        boolean minifyNext() throws IOException;
+    }
+
+    private final Reader input;
+
+    private final StringBuilderWriter buffer = new StringBuilderWriter();
+
+    private final Step step;
+
+    private int bufferPos;
+
+    private boolean isEndOfInput;
+
+    /**
+     * @param input           input to minify
+     * @param minifierFactory creates the minifier, which writes to the given writer
+     */
+    public MinifyingReader(@Nonnull Reader input, @Nonnull Function<Writer, Step> minifierFactory) {
+        this.input = input;
+        this.step = minifierFactory.apply(buffer);
+    }
+
+    @Override
+    public int read(@Nonnull char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        final StringBuilder bufferContent = buffer.getBuilder();
+        while ((bufferPos >= bufferContent.length()) && !isEndOfInput) {
+            bufferContent.setLength(0);
+            bufferPos = 0;
+            isEndOfInput = !step.minifyNext();
+        }
+        if (bufferPos >= bufferContent.length()) {
+            return -1;
+        }
+
+        final int readLen = Math.min(len, bufferContent.length() - bufferPos);
+        bufferContent.getChars(bufferPos, bufferPos + readLen, cbuf, off);
+        bufferPos += readLen;
+        return readLen;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
@@ -0,0 +1,427 @@
+package com.alexanderberndt.appintegration.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandles;
+import java.util.Iterator;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread-safe cache, where the entries expire after a timeout. Reads are lock-free (based on a
+ * {@link ConcurrentHashMap}). Expired entries are removed lazily on access, by {@link #cleanUp()} or by a
+ * scheduled clean-up (see {@link #scheduleCleanUp(ScheduledExecutorService, long)}).
+ * <p>
+ * Optional features:
+ * <ul>
+ *     <li><b>max-size</b>: If the cache grows beyond the max-size, the least recently used entries are evicted. To
+ *     keep puts cheap, a single thread evicts 10% of the entries at once, while the other threads don't wait.</li>
+ *     <li><b>stale-retention</b>: Expired entries are kept for some more time, and can still be retrieved by
+ *     {@link #getEntry(Object)} (e.g. to serve stale data while the origin is down).</li>
+ *     <li><b>refresh-ahead</b>: {@link #get(Object, Function)} loads a new value in the background, if the cached
+ *     value is older than the refresh-ahead time (requires a refresh-executor).</li>
+ * </ul>
+ * Concurrent loads of the same key by {@link #get(Object, Function)} are executed only once. A load, whose key is
+ * removed while it is running, returns its value without caching it.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class TimeoutCache<K, V> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 1000L * 60L * 5L;
+
+    // an eviction removes 1/10 of the max-size, so the scan of all entries is done only every (max-size / 10) puts
+    private static final int EVICTION_BATCH_DIVISOR = 10;
+
+    private final ConcurrentHashMap<K, Node<V>> map = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loadingMap = new ConcurrentHashMap<>();
+
+    private final long timeoutMillis;
+
+    private final int maxSize;
+
+    private final long refreshAheadMillis;
+
+    private final long staleRetentionMillis;
+
+    @Nullable
+    private final Executor refreshExecutor;
+
+    @Nonnull
+    private final LongSupplier clock;
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private TimeoutCache(@Nonnull Builder builder) {
+        this.timeoutMillis = builder.timeoutMillis;
+        this.maxSize = builder.maxSize;
+        this.refreshAheadMillis = builder.refreshAheadMillis;
+        this.staleRetentionMillis = builder.staleRetentionMillis;
+        this.refreshExecutor = builder.refreshExecutor;
+        this.clock = builder.clock;
+    }
+
+    public TimeoutCache() {
+        this(new Builder());
+    }
+
+    public TimeoutCache(long timeoutMillis) {
+        this(new Builder().timeout(timeoutMillis));
+    }
+
+    @Nonnull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the cached value, if it is not yet expired.
+     */
+    @Nullable
+    public V get(@Nonnull K key) {
+        final Entry<V> entry = getEntry(key);
+        return ((entry != null) && !entry.isExpired()) ? entry.getValue() : null;
+    }
+
+    /**
+     * Returns the cached entry, which might already be expired (but is still in the stale-retention period).
+     */
+    @Nullable
+    public Entry<V> getEntry(@Nonnull K key) {
+        final Node<V> node = map.get(key);
+        if (node == null) {
+            return null;
+        }
+        final long now = clock.getAsLong();
+        final long age = now - node.timestamp;
+        if (age >= timeoutMillis + staleRetentionMillis) {
+            map.remove(key, node);
+            return null;
+        }
+        node.lastAccess = now;
+        final boolean expired = node.expired || (age >= timeoutMillis);
+        return new Entry<>(node.value, node.timestamp, expired,
+                expired || ((refreshAheadMillis > 0) && (age >= refreshAheadMillis)));
+    }
+
+    /**
+     * Checks, if there is an entry for the key (which might be expired, but is still in the stale-retention
+     * period). In contrast to {@link #getEntry(Object)}, it doesn't count as an access.
+     */
+    public boolean containsKey(@Nonnull K key) {
+        final Node<V> node = map.get(key);
+        return (node != null) && (clock.getAsLong() - node.timestamp < timeoutMillis + staleRetentionMillis);
+    }
+
+    /**
+     * Returns the cached value, or loads it with the loader, if there is no (fresh) value. Concurrent loads
+     * for the same key are executed only once, and all callers get the same result. If the load fails, but
+     * there is still a stale value, then the stale value is returned.
+     */
+    @Nullable
+    public V get(@Nonnull K key, @Nonnull Function<? super K, ? extends V> loader) {
+        final Entry<V> entry = getEntry(key);
+        if ((entry != null) && !entry.isExpired()) {
+            if (entry.isRefreshDue() && (refreshExecutor != null)) {
+                refreshAsync(key, loader);
+            }
+            return entry.getValue();
+        }
+
+        try {
+            return load(key, loader);
+        } catch (RuntimeException e) {
+            if (entry != null) {
+                LOG.warn("Failed to load {}, using stale value instead", key, e);
+                return entry.getValue();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Loads the value with the loader (regardless of a cached value), and stores it in the cache. If there is
+     * already a load in progress for this key, then the result of this load is returned instead.
+     */
+    @Nullable
+    public V reload(@Nonnull K key, @Nonnull Function<? super K, ? extends V> loader) {
+        return load(key, loader);
+    }
+
+    /**
+     * Checks, if the key is currently loaded (by {@link #get(Object, Function)} or {@link #reload(Object, Function)}).
+     */
+    public boolean isLoading(@Nonnull K key) {
+        return loadingMap.containsKey(key);
+    }
+
+    @Nullable
+    private V load(@Nonnull K key, @Nonnull Function<? super K, ? extends V> loader) {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final CompletableFuture<V> runningFuture = loadingMap.putIfAbsent(key, future);
+        if (runningFuture != null) {
+            return join(runningFuture);
+        }
+
+        try {
+            final V value = loader.apply(key);
+            if (value != null) {
+                final Node<V> node = putNode(key, value);
+                // an invalidation removes the running loads first, so an outdated value is removed again
+                if (loadingMap.get(key) != future) {
+                    map.remove(key, node);
+                }
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadingMap.remove(key, future);
+        }
+    }
+
+    private void refreshAsync(@Nonnull K key, @Nonnull Function<? super K, ? extends V> loader) {
+        if ((refreshExecutor != null) && !loadingMap.containsKey(key)) {
+            refreshExecutor.execute(() -> {
+                try {
+                    load(key, loader);
+                } catch (RuntimeException e) {
+                    LOG.warn("Failed to refresh {}", key, e);
+                }
+            });
+        }
+    }
+
+    @Nullable
+    private static <V> V join(@Nonnull CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public void put(@Nonnull K key, @Nonnull V value) {
+        putNode(key, value);
+    }
+
+    @Nonnull
+    private Node<V> putNode(@Nonnull K key, @Nonnull V value) {
+        final Node<V> node = new Node<>(value, clock.getAsLong());
+        map.put(key, node);
+        if ((maxSize > 0) && (map.size() > maxSize)) {
+            evict();
+        }
+        return node;
+    }
+
+    @Nullable
+    public V remove(@Nonnull K key) {
+        loadingMap.remove(key);
+        final Node<V> node = map.remove(key);
+        return (node != null) ? node.value : null;
+    }
+
+    /**
+     * Marks the entry as expired, but keeps its value for the rest of the stale-retention period (e.g. to serve
+     * the stale value, while a new value is loaded). The values of running loads of this key aren't cached.
+     */
+    public void expire(@Nonnull K key) {
+        loadingMap.remove(key);
+        final Node<V> node = map.get(key);
+        if (node != null) {
+            node.expired = true;
+        }
+    }
+
+    /**
+     * Removes all entries matching the predicate (e.g. to invalidate all entries of an application). As the
+     * predicate cannot be tested before a load completes, the values of all running loads aren't cached.
+     */
+    public void removeIf(@Nonnull BiPredicate<? super K, ? super V> predicate) {
+        loadingMap.clear();
+        map.entrySet().removeIf(mapEntry -> predicate.test(mapEntry.getKey(), mapEntry.getValue().value));
+    }
+
+    public void clear() {
+        loadingMap.clear();
+        map.clear();
+    }
+
+    /**
+     * Number of entries, including expired entries which are not yet removed.
+     */
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Removes all entries, which are expired and beyond the stale-retention period.
+     */
+    public void cleanUp() {
+        final long expiredBefore = clock.getAsLong() - timeoutMillis - staleRetentionMillis;
+        map.values().removeIf(node -> node.timestamp <= expiredBefore);
+    }
+
+    @Nonnull
+    public ScheduledFuture<?> scheduleCleanUp(@Nonnull ScheduledExecutorService executorService, long periodMillis) {
+        return executorService.scheduleAtFixedRate(this::cleanUp, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Evicts the least recently used entries, until the cache is 10% below its max-size. Only one thread evicts at
+     * a time, and the other threads continue without waiting.
+     */
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            final int evictCount = map.size() - (maxSize - maxSize / EVICTION_BATCH_DIVISOR);
+            if (evictCount <= 0) {
+                return;
+            }
+            final long[] lastAccesses = map.values().stream().mapToLong(node -> node.lastAccess).sorted().toArray();
+            if (lastAccesses.length == 0) {
+                return;
+            }
+            final long evictUntil = lastAccesses[Math.min(evictCount, lastAccesses.length) - 1];
+
+            int evicted = 0;
+            final Iterator<Node<V>> nodeIter = map.values().iterator();
+            while (nodeIter.hasNext() && (evicted < evictCount)) {
+                if (nodeIter.next().lastAccess <= evictUntil) {
+                    nodeIter.remove();
+                    evicted++;
+                }
+            }
+            LOG.debug("Evicted {} entries, as max-size of {} is reached", evicted, maxSize);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+
+    public static final class Entry<V> {
+
+        private final V value;
+
+        private final long timestamp;
+
+        private final boolean expired;
+
+        private final boolean refreshDue;
+
+        private Entry(V value, long timestamp, boolean expired, boolean refreshDue) {
+            this.value = value;
+            this.timestamp = timestamp;
+            this.expired = expired;
+            this.refreshDue = refreshDue;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        /**
+         * Time, when the value was put into the cache.
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public boolean isExpired() {
+            return expired;
+        }
+
+        /**
+         * True, if the value is older than the refresh-ahead time (or expired).
+         */
+        public boolean isRefreshDue() {
+            return refreshDue;
+        }
+    }
+
+
+    private static final class Node<V> {
+
+        private final V value;
+
+        private final long timestamp;
+
+        private volatile long lastAccess;
+
+        private volatile boolean expired;
+
+        private Node(V value, long timestamp) {
+            this.value = value;
+            this.timestamp = timestamp;
+            this.lastAccess = timestamp;
+        }
+    }
+
+
+    public static class Builder {
+
+        private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+        private int maxSize = 0;
+
+        private long refreshAheadMillis = 0;
+
+        private long staleRetentionMillis = 0;
+
+        private Executor refreshExecutor;
+
+        private LongSupplier clock = System::currentTimeMillis;
+
+        public Builder timeout(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+            return this;
+        }
+
+        /**
+         * @param maxSize max. number of entries, or 0 for an unlimited cache
+         */
+        public Builder maxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        public Builder refreshAhead(long refreshAheadMillis, @Nullable Executor refreshExecutor) {
+            this.refreshAheadMillis = refreshAheadMillis;
+            this.refreshExecutor = refreshExecutor;
+            return this;
+        }
+
+        public Builder staleRetention(long staleRetentionMillis) {
+            this.staleRetentionMillis = staleRetentionMillis;
+            return this;
+        }
+
+        public Builder clock(@Nonnull LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        @Nonnull
+        public <K, V> TimeoutCache<K, V> build() {
+            return new TimeoutCache<>(this);
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package com.alexanderberndt.appintegration.engine;
 
 import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceFactory;
 import com.alexanderberndt.appintegration.engine.resources.ExternalResourceRef;
 import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
 import com.alexanderberndt.appintegration.engine.testsupport.TestAppInstance;
 import com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationEngine;
 import com.alexanderberndt.appintegration.engine.testsupport.TestApplication;
 import com.alexanderberndt.appintegration.engine.testsupport.TestExternalResourceCache;
+import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,9 +18,11 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory.CORE_CONTEXT_PROVIDERS;
 import static com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory.SYSTEM_RESOURCE_LOADER_NAME;
@@ -74,6 +78,27 @@ class AbstractAppIntegrationEngineTest {
 //        assertEquals("Newsletter", applicationInfo.getName());
 //    }
 
+    @Test
+    void resolveStaticResourceUri() throws URISyntaxException {
+        final URI appInfoUri = new URI("http://origin.example.com/app1/application-info.json");
+        assertEquals(new URI("http://origin.example.com/app1/css/styles.css"),
+                AbstractAppIntegrationEngine.resolveStaticResourceUri(appInfoUri, "css/../css/styles.css"));
+
+        assertNull(AbstractAppIntegrationEngine.resolveStaticResourceUri(appInfoUri, "../app2/secret.json"));
+        assertNull(AbstractAppIntegrationEngine.resolveStaticResourceUri(appInfoUri, "//evil.com/x"));
+        assertNull(AbstractAppIntegrationEngine.resolveStaticResourceUri(appInfoUri, "/admin"));
+        assertNull(AbstractAppIntegrationEngine.resolveStaticResourceUri(appInfoUri, "http://evil.com/x"));
+        assertNull(AbstractAppIntegrationEngine.resolveStaticResourceUri(appInfoUri, "%2e%2e/app2/secret.json"));
+        assertNull(AbstractAppIntegrationEngine.resolveStaticResourceUri(appInfoUri, "css\\..\\..\\app2"));
+    }
+
+    @Test
+    void staticResourcesOutsideOfApplicationAreNotLoaded() {
+        assertThrows(AppIntegrationException.class, () -> engine.getStaticResource(APPLICATION_ID, "../../simple-app2/server/application-info.json"));
+        assertThrows(AppIntegrationException.class, () -> engine.getStaticResource(APPLICATION_ID, "//evil.com/x"));
+        assertNotNull(engine.getStaticResource(APPLICATION_ID, "css/style.css"));
+    }
+
     @Test
     void prefetch() throws URISyntaxException {
         engine.prefetch(Arrays.asList(instance1, instance2));
@@ -89,6 +114,84 @@ class AbstractAppIntegrationEngineTest {
         assertEquals(new URI("classpath://system/simple-app1/server/css/style.css"), keyList.get(4));
     }
 
+    @Test
+    void prefetchResolvesDistinctContextsOnlyOnce() throws URISyntaxException {
+        final TestAppInstance instance3 = new TestAppInstance(APPLICATION_ID, "subscribe", instance1.getContextMap());
+        engine.prefetch(Arrays.asList(instance1, instance2, instance3, instance1));
+
+        final List<URI> keyList = engine.getExternalResourceCache(APPLICATION_ID).getCacheKeys();
+        assertEquals(5, keyList.size());
+        assertEquals(new URI("classpath://system/simple-app1/server/subscribe.product-news.de.html"), keyList.get(1));
+        assertEquals(new URI("classpath://system/simple-app1/server/subscribe.product-news.en.html"), keyList.get(2));
+    }
+
+    @Test
+    void prefetchLoadsEachBatchAsItArrives() throws URISyntaxException {
+        final TestExternalResourceCache cache = engine.getExternalResourceCache(APPLICATION_ID);
+        final ExternalResourceRef snippet1Ref = new ExternalResourceRef(
+                new URI("classpath://system/simple-app1/server/subscribe.product-news.de.html"), ExternalResourceType.HTML_SNIPPET);
+        final ExternalResourceRef snippet2Ref = new ExternalResourceRef(
+                new URI("classpath://system/simple-app1/server/subscribe.product-news.en.html"), ExternalResourceType.HTML_SNIPPET);
+        final ExternalResourceFactory resourceFactory = engine.getFactory().getExternalResourceFactory();
+
+        final AtomicInteger batchCount = new AtomicInteger();
+        engine.prefetchInBatches(APPLICATION_ID, batchConsumer -> {
+            batchConsumer.accept(Collections.singletonList(instance1));
+            // the first batch is loaded, before the second one is supplied
+            batchCount.incrementAndGet();
+            assertNotNull(cache.getWrittenResource(snippet1Ref, resourceFactory));
+            assertNull(cache.getWrittenResource(snippet2Ref, resourceFactory));
+
+            batchConsumer.accept(Arrays.asList(instance2, instance1));
+            batchCount.incrementAndGet();
+            assertNotNull(cache.getWrittenResource(snippet2Ref, resourceFactory));
+        });
+
+        assertEquals(2, batchCount.get());
+        final List<URI> keyList = cache.getCacheKeys();
+        assertEquals(5, keyList.size());
+        assertEquals(snippet1Ref.getUri(), keyList.get(1));
+        assertEquals(snippet2Ref.getUri(), keyList.get(2));
+    }
+
+    @Test
+    void prefetchWithoutInstancesIsAborted() {
+        engine.prefetch(Arrays.asList(instance1, instance2));
+        final TestExternalResourceCache cache = engine.getExternalResourceCache(APPLICATION_ID);
+        final List<URI> keyList = cache.getCacheKeys();
+
+        assertThrows(AppIntegrationException.class, () -> engine.prefetchInBatches(APPLICATION_ID, batchConsumer -> batchConsumer.accept(Collections.emptyList())));
+        cache.rollbackLongRunningWrite();
+        assertEquals(keyList, cache.getCacheKeys());
+    }
+
+    @Test
+    void secondPrefetchHasNoChangedResources() {
+        engine.prefetch(Arrays.asList(instance1, instance2));
+        final TestExternalResourceCache cache = engine.getExternalResourceCache(APPLICATION_ID);
+        assertEquals(5, cache.getChangedResourceUris().size());
+
+        engine.prefetch(Arrays.asList(instance1, instance2));
+        assertTrue(cache.getChangedResourceUris().isEmpty());
+    }
+
+    @Test
+    void interruptedPrefetchIsAborted() {
+        Thread.currentThread().interrupt();
+        assertThrows(AppIntegrationException.class, () -> engine.prefetch(Arrays.asList(instance1, instance2)));
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    void cancelledPrefetchIsAborted() {
+        final AtomicInteger checkCount = new AtomicInteger();
+        // cancel after the first snippet, without interrupting the thread
+        assertThrows(AppIntegrationException.class, () -> engine.prefetch(Arrays.asList(instance1, instance2), () -> checkCount.incrementAndGet() > 1));
+        assertEquals(2, checkCount.get());
+        assertFalse(engine.getExternalResourceCache(APPLICATION_ID).getCacheKeys().contains(
+                URI.create("classpath://system/simple-app1/server/subscribe.product-news.en.html")));
+    }
+
     @Test
     void getHtmlSnippet() throws IOException, URISyntaxException {
         ExternalResource htmlSnippet = engine.getHtmlSnippet(instance1);
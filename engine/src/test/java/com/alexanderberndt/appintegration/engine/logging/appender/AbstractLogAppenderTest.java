@@ -1,7 +1,11 @@
 package com.alexanderberndt.appintegration.engine.logging.appender;
 
 import com.alexanderberndt.appintegration.engine.logging.AbstractLogger;
+import com.alexanderberndt.appintegration.engine.logging.IntegrationLogger;
 import com.alexanderberndt.appintegration.engine.logging.LogStatus;
+import com.alexanderberndt.appintegration.engine.logging.ResourceLogger;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -11,6 +15,11 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -117,6 +126,71 @@ class AbstractLogAppenderTest {
                 + "{'type':'something-else','status':'INFO','message':'summary2','entries':[{'type':'message','status':'WARNING','message':'and_this!'},{'type':'message','status':'WARNING','message':'and_this2!'}]}]", getJson());
     }
 
+    @Test
+    void concurrentLoggersKeepOrderPerLogger() throws Exception {
+        final int threadCount = 8;
+        final int messageCount = 200;
+
+        final IntegrationLogger integrationLogger = new IntegrationLogger(jsonLogAppender);
+        final ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        final List<Future<?>> futureList = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            final String url = "http://www.example.com/file" + t + ".js";
+            futureList.add(executorService.submit(() -> {
+                final ResourceLogger resourceLogger = integrationLogger.createResourceLogger(url);
+                for (int i = 0; i < messageCount; i++) {
+                    resourceLogger.addInfo("message %d", i);
+                    integrationLogger.addInfo("shared message");
+                }
+            }));
+        }
+        for (Future<?> future : futureList) {
+            future.get();
+        }
+        executorService.shutdown();
+        jsonLogAppender.close();
+
+        final JsonNode integrationNode = new ObjectMapper().readTree(stringWriter.toString()).get(0);
+        int sharedMessages = 0;
+        int resourceLoggers = 0;
+        for (JsonNode entry : integrationNode.get("entries")) {
+            if ("message".equals(entry.get("type").asText())) {
+                sharedMessages++;
+            } else {
+                resourceLoggers++;
+                final JsonNode messages = entry.get("entries");
+                assertEquals(messageCount, messages.size());
+                for (int i = 0; i < messageCount; i++) {
+                    assertEquals("message " + i, messages.get(i).get("message").asText());
+                }
+            }
+        }
+        assertEquals(threadCount, resourceLoggers);
+        assertEquals(threadCount * messageCount, sharedMessages);
+    }
+
+    @Test
+    void loggerAppendedConcurrentlyGetsOneEntry() throws IOException {
+        final JsonLogAppender appender = new JsonLogAppender(() -> this.stringWriter) {
+
+            private boolean isAppendedAgain;
+
+            @Override
+            protected JsonLogEntry createNewLogEntry(JsonLogEntry parentEntry, @Nonnull AbstractLogger logger) {
+                // another thread appends the same logger, while its log-entry is created
+                if ((parentEntry != null) && !isAppendedAgain) {
+                    isAppendedAgain = true;
+                    appendLogger(logger);
+                }
+                return super.createNewLogEntry(parentEntry, logger);
+            }
+        };
+        new IntegrationLogger(appender).createResourceLogger("http://www.example.com/file.js");
+        appender.close();
+
+        assertEquals("[{'type':'integration','entries':[{'type':'resource'}]}]", getJson());
+    }
+
     @Nonnull
     private String getJson() {
         return stringWriter.toString().replaceAll("[\\s\\r\\n]", "").replaceAll("\"", "'");
@@ -0,0 +1,101 @@
+package com.alexanderberndt.appintegration.engine.logging.appender;
+
+import com.alexanderberndt.appintegration.engine.logging.IntegrationLogger;
+import com.alexanderberndt.appintegration.engine.logging.LogAppender;
+import com.alexanderberndt.appintegration.engine.logging.LogStatus;
+import com.alexanderberndt.appintegration.engine.logging.ResourceLogger;
+import com.alexanderberndt.appintegration.engine.logging.TaskLogger;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonLinesLogAppenderTest {
+
+    @Test
+    void eventsAreWrittenIncrementally() throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final JsonLinesLogAppender appender = new JsonLinesLogAppender(index -> outputStream);
+
+        final IntegrationLogger integrationLogger = new IntegrationLogger(appender);
+        integrationLogger.addWarning("Hello %s", "World");
+        appender.flush();
+
+        assertEquals("{'event':'logger','id':1,'type':'integration'}\n"
+                + "{'event':'message','id':1,'status':'WARNING','message':'HelloWorld'}\n", getText(outputStream));
+
+        new ResourceLogger(integrationLogger, "http://www.example.com/test.js").setLoadStatus("OK");
+        appender.close();
+
+        assertEquals("{'event':'logger','id':1,'type':'integration'}\n"
+                + "{'event':'message','id':1,'status':'WARNING','message':'HelloWorld'}\n"
+                + "{'event':'logger','id':2,'parent':1,'type':'resource'}\n"
+                + "{'event':'property','id':2,'key':'loadStatus','value':'OK'}\n", getText(outputStream));
+    }
+
+    @Test
+    void treeIsReconstructedLikeJsonLogAppender() throws IOException {
+        final StringWriter expectedJson = new StringWriter();
+        writeSampleLog(new JsonLogAppender(() -> expectedJson));
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writeSampleLog(new JsonLinesLogAppender(index -> outputStream));
+
+        final StringWriter actualJson = new StringWriter();
+        JsonLinesLogReader.convert(
+                Collections.singletonList(new StringReader(new String(outputStream.toByteArray(), StandardCharsets.UTF_8))),
+                actualJson);
+
+        assertEquals(expectedJson.toString(), actualJson.toString());
+    }
+
+    @Test
+    void rotatedAndGzippedFiles() throws IOException {
+        final Path tempDir = Files.createTempDirectory("json-lines-log");
+        final Path logFile = tempDir.resolve("prefetch.jsonl");
+
+        final StringWriter expectedJson = new StringWriter();
+        writeSampleLog(new JsonLogAppender(() -> expectedJson));
+
+        writeSampleLog(JsonLinesLogAppender.forFile(logFile, 100, true));
+
+        assertTrue(Files.exists(tempDir.resolve("prefetch.jsonl.gz")));
+        assertTrue(Files.exists(tempDir.resolve("prefetch.jsonl.1.gz")));
+        assertFalse(Files.exists(tempDir.resolve("prefetch.jsonl")));
+
+        final StringWriter actualJson = new StringWriter();
+        JsonLinesLogReader.convertFiles(logFile, true, actualJson);
+        assertEquals(expectedJson.toString(), actualJson.toString());
+
+        FileUtils.deleteDirectory(tempDir.toFile());
+    }
+
+    private void writeSampleLog(LogAppender appender) throws IOException {
+        final IntegrationLogger integrationLogger = new IntegrationLogger(appender);
+        integrationLogger.setSummary(LogStatus.INFO, "Prefetch %d resources", 2);
+        for (int i = 1; i <= 2; i++) {
+            final ResourceLogger resourceLogger = integrationLogger.createResourceLogger("http://www.example.com/file" + i + ".css");
+            resourceLogger.setLoadStatus("OK");
+            final TaskLogger taskLogger = resourceLogger.createTaskLogger("task" + i, "task-name");
+            taskLogger.addInfo("Processed file %d", i);
+            taskLogger.addError("Failed to process file %d", i);
+            taskLogger.setStatus(LogStatus.ERROR);
+        }
+        appender.close();
+    }
+
+    private static String getText(ByteArrayOutputStream outputStream) {
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8)
+                .replaceAll("[ \\t\\r]", "")
+                .replaceAll("\"", "'");
+    }
+}
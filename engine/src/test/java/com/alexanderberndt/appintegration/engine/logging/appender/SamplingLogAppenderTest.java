@@ -0,0 +1,72 @@
+package com.alexanderberndt.appintegration.engine.logging.appender;
+
+import com.alexanderberndt.appintegration.engine.logging.IntegrationLogger;
+import com.alexanderberndt.appintegration.engine.logging.LogStatus;
+import com.alexanderberndt.appintegration.engine.logging.ResourceLogger;
+import com.alexanderberndt.appintegration.engine.logging.TaskLogger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SamplingLogAppenderTest {
+
+    private StringWriter stringWriter;
+
+    private SamplingLogAppender samplingLogAppender;
+
+    @BeforeEach
+    void beforeEach() {
+        stringWriter = new StringWriter();
+        samplingLogAppender = new SamplingLogAppender(new JsonLogAppender(() -> stringWriter), LogStatus.WARNING);
+    }
+
+    @Test
+    void onlyLoggersWithRelevantEntriesAreAppended() throws IOException {
+        final IntegrationLogger integrationLogger = new IntegrationLogger(samplingLogAppender);
+        integrationLogger.addInfo("dropped");
+
+        final ResourceLogger resourceLogger1 = integrationLogger.createResourceLogger("http://www.example.com/ok.js");
+        resourceLogger1.createTaskLogger("task1", "some-task").addInfo("dropped");
+
+        final ResourceLogger resourceLogger2 = integrationLogger.createResourceLogger("http://www.example.com/failed.js");
+        final TaskLogger taskLogger2 = resourceLogger2.createTaskLogger("task2", "some-task");
+        taskLogger2.addError("failed %d", 42);
+        taskLogger2.setProperty("after", "error");
+
+        samplingLogAppender.close();
+
+        assertEquals("[{'type':'integration','entries':[{'type':'resource','entries':[{'type':'task',"
+                + "'properties':{'after':'error'},'entries':[{'type':'message','status':'ERROR','message':'failed42'}]}]}]}]", getJson());
+    }
+
+    @Test
+    void droppedMessagesAreNotFormatted() throws IOException {
+        final AtomicInteger toStringCounter = new AtomicInteger();
+        final Object argument = new Object() {
+            @Override
+            public String toString() {
+                return "arg" + toStringCounter.incrementAndGet();
+            }
+        };
+
+        final IntegrationLogger integrationLogger = new IntegrationLogger(samplingLogAppender);
+        integrationLogger.addInfo("info %s", argument);
+        integrationLogger.setSummary(LogStatus.INFO, "summary %s", argument);
+        assertEquals(0, toStringCounter.get());
+
+        integrationLogger.addWarning("warning %s", argument);
+        assertEquals(1, toStringCounter.get());
+
+        samplingLogAppender.close();
+        assertEquals("[{'type':'integration','entries':[{'type':'message','status':'WARNING','message':'warningarg1'}]}]", getJson());
+    }
+
+    private String getJson() {
+        return stringWriter.toString().replaceAll("[\\s\\r\\n]", "").replaceAll("\"", "'");
+    }
+}
@@ -0,0 +1,39 @@
+package com.alexanderberndt.appintegration.engine.resourcetypes.appinfo;
+
+import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UrlTemplateTest {
+
+    @Test
+    void resolve() {
+        final Map<String, String> contextMap = new HashMap<>();
+        contextMap.put("newsletterId", "product-news");
+        contextMap.put("language", "de");
+
+        assertEquals("/subscribe.product-news.de.html", UrlTemplate.compile("/subscribe.${newsletterId}.${language}.html").resolve(contextMap));
+        assertEquals("de/product-news", UrlTemplate.compile("${language}/${newsletterId}").resolve(contextMap));
+        assertEquals("/static.html", UrlTemplate.compile("/static.html").resolve(contextMap));
+        assertEquals("", UrlTemplate.compile("").resolve(contextMap));
+    }
+
+    @Test
+    void resolveWithDefaultValue() {
+        final UrlTemplate template = UrlTemplate.compile("/subscribe.${language:-en}.html");
+        assertEquals("/subscribe.en.html", template.resolve(Collections.emptyMap()));
+        assertEquals("/subscribe.fr.html", template.resolve(Collections.singletonMap("language", "fr")));
+    }
+
+    @Test
+    void unresolvedVariables() {
+        assertThrows(AppIntegrationException.class, () -> UrlTemplate.compile("/subscribe.${language}.html").resolve(Collections.emptyMap()));
+        assertThrows(AppIntegrationException.class, () -> UrlTemplate.compile("/subscribe.${language.html").resolve(Collections.emptyMap()));
+    }
+}
@@ -0,0 +1,249 @@
+package com.alexanderberndt.appintegration.engine.testsupport.loadtest;
+
+import com.alexanderberndt.appintegration.engine.logging.LogStatus;
+import com.alexanderberndt.appintegration.engine.logging.appender.SamplingLogAppender;
+import com.alexanderberndt.appintegration.engine.logging.appender.Slf4jLogAppender;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
+import com.alexanderberndt.appintegration.engine.testsupport.TestAppInstance;
+import com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationEngine;
+import com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory;
+import com.alexanderberndt.appintegration.engine.testsupport.TestApplication;
+import com.alexanderberndt.appintegration.engine.testsupport.TestExternalResourceCache;
+import com.alexanderberndt.appintegration.engine.testsupport.loadtest.LoadTestReport.PhaseResult;
+import com.alexanderberndt.appintegration.engine.testsupport.loadtest.SyntheticOrigin.OriginStatistics;
+import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
+import com.alexanderberndt.appintegration.pipeline.ProcessingPipeline;
+import com.alexanderberndt.appintegration.pipeline.builder.simple.SimplePipelineBuilder;
+import com.alexanderberndt.appintegration.tasks.cache.ReadFromCacheTask;
+import com.alexanderberndt.appintegration.tasks.cache.StoreInCacheTask;
+import com.alexanderberndt.appintegration.tasks.process.html.ExtractHtmlSnippetTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory.CORE_CONTEXT_PROVIDERS;
+import static com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory.HTTP_RESOURCE_LOADER_NAME;
+
+/**
+ * End-to-end load-test of the prefetch and runtime methods of the {@link TestAppIntegrationEngine} against a
+ * {@link SyntheticOrigin}. It runs the configured number of prefetch runs (the first one against an empty cache),
+ * followed by a mix of <code>getHtmlSnippet</code> and <code>getStaticResource</code> calls on several threads.
+ * <p>
+ * Usage: <code>LoadTest.run(new LoadTestConfig().withComponents(50)).toString()</code>
+ */
+public class LoadTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    public static final String APPLICATION_ID = "load-test";
+
+    public static final String PIPELINE_NAME = "load-test";
+
+    public static final String RUNTIME_PHASE = "runtime";
+
+    private final LoadTestConfig config;
+
+    private final SyntheticOrigin origin;
+
+    private final TestAppIntegrationEngine engine;
+
+    private LoadTest(@Nonnull LoadTestConfig config, @Nonnull SyntheticOrigin origin) {
+        this.config = config;
+        this.origin = origin;
+
+        final TestAppIntegrationFactory factory = new TestAppIntegrationFactory();
+        factory.registerApplication(new TestApplication(APPLICATION_ID, origin.getApplicationInfoUrl(),
+                HTTP_RESOURCE_LOADER_NAME, PIPELINE_NAME, CORE_CONTEXT_PROVIDERS, null));
+        factory.registerPipeline(PIPELINE_NAME, createPipeline());
+        this.engine = new TestAppIntegrationEngine(factory, () -> new SamplingLogAppender(new Slf4jLogAppender(), LogStatus.WARNING));
+    }
+
+    /**
+     * Runs a load-test with a new origin and an empty cache.
+     */
+    @Nonnull
+    public static LoadTestReport run(@Nonnull LoadTestConfig config) throws IOException {
+        try (SyntheticOrigin origin = new SyntheticOrigin(config)) {
+            return new LoadTest(config, origin).run();
+        }
+    }
+
+    @Nonnull
+    private static ProcessingPipeline createPipeline() {
+        return new SimplePipelineBuilder()
+                .addPreparationTask("read-from-cache", new ReadFromCacheTask())
+                .addLoadingTask("download", new RevalidatingDownloadTask())
+                // store the origin response (before extracting the snippet), so that the validators match the cached
+                // content, and a revalidated snippet still has its referenced resources
+                .addProcessingTask("store-in-cache", new StoreInCacheTask())
+                .addProcessingTask("extract-html-snippet", new ExtractHtmlSnippetTask(),
+                        Collections.singleton(ExternalResourceType.HTML_SNIPPET), null)
+                .build();
+    }
+
+    @Nonnull
+    private LoadTestReport run() {
+        final LoadTestReport report = new LoadTestReport(config);
+        final List<TestAppInstance> instances = createInstances();
+
+        for (int i = 1; i <= config.getPrefetchRuns(); i++) {
+            if (i > 1) {
+                origin.nextRevision();
+            }
+            report.addPhaseResult(runPrefetch("prefetch-" + i, instances));
+        }
+        report.addPhaseResult(runRuntimeMix(instances));
+
+        LOG.info("Load-test finished\n{}", report);
+        return report;
+    }
+
+    @Nonnull
+    private List<TestAppInstance> createInstances() {
+        final List<TestAppInstance> instances = new ArrayList<>();
+        for (String componentId : origin.getComponentIds()) {
+            for (String language : origin.getLanguages()) {
+                for (int i = 0; i < config.getInstancesPerSnippet(); i++) {
+                    instances.add(new TestAppInstance(APPLICATION_ID, componentId, Collections.singletonMap("language", language)));
+                }
+            }
+        }
+        return instances;
+    }
+
+    @Nonnull
+    private PhaseResult runPrefetch(@Nonnull String phase, @Nonnull List<TestAppInstance> instances) {
+        final TestExternalResourceCache cache = engine.getExternalResourceCache(APPLICATION_ID);
+        final OriginStatistics originBefore = origin.getStatistics();
+        final long hitsBefore = cache.getHitCount();
+        final long missesBefore = cache.getMissCount();
+        final long allocatedBefore = getAllocatedBytes();
+
+        long errors = 0;
+        final long start = System.nanoTime();
+        try {
+            engine.prefetch(instances);
+        } catch (AppIntegrationException e) {
+            LOG.warn("Prefetch {} failed", phase, e);
+            errors++;
+        }
+        final long duration = System.nanoTime() - start;
+
+        return new PhaseResult(phase, errors, duration, new long[]{duration},
+                getAllocatedBytesDiff(allocatedBefore), origin.getStatistics().minus(originBefore),
+                cache.getHitCount() - hitsBefore, cache.getMissCount() - missesBefore,
+                cache.getChangedResourceUris().size());
+    }
+
+    @Nonnull
+    private PhaseResult runRuntimeMix(@Nonnull List<TestAppInstance> instances) {
+        final TestExternalResourceCache cache = engine.getExternalResourceCache(APPLICATION_ID);
+        final List<String> assetPaths = origin.getReferencedAssetPaths();
+
+        // create the request sequence upfront, so that it doesn't depend on the thread scheduling
+        final Random random = new Random(config.getSeed());
+        final List<Callable<ExternalResource>> requests = new ArrayList<>();
+        for (int i = 0; i < config.getRuntimeRequests(); i++) {
+            if (assetPaths.isEmpty() || (random.nextDouble() < config.getSnippetRatio())) {
+                final TestAppInstance instance = instances.get(random.nextInt(instances.size()));
+                requests.add(() -> engine.getHtmlSnippet(instance));
+            } else {
+                final String assetPath = assetPaths.get(random.nextInt(assetPaths.size()));
+                requests.add(() -> engine.getStaticResource(APPLICATION_ID, assetPath));
+            }
+        }
+
+        final OriginStatistics originBefore = origin.getStatistics();
+        final long hitsBefore = cache.getHitCount();
+        final long missesBefore = cache.getMissCount();
+
+        final int threads = Math.max(1, config.getRuntimeThreads());
+        final long[] latencies = new long[requests.size()];
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<long[]>> workerResults = new ArrayList<>();
+        final long start = System.nanoTime();
+        try {
+            for (int t = 0; t < threads; t++) {
+                final int firstRequest = t;
+                workerResults.add(executor.submit(() -> runRequests(requests, firstRequest, threads, latencies)));
+            }
+            long errors = 0;
+            long allocatedBytes = 0;
+            for (Future<long[]> workerResult : workerResults) {
+                final long[] result = workerResult.get();
+                errors += result[0];
+                allocatedBytes = ((allocatedBytes < 0) || (result[1] < 0)) ? -1 : allocatedBytes + result[1];
+            }
+            final long duration = System.nanoTime() - start;
+
+            return new PhaseResult(RUNTIME_PHASE, errors, duration, latencies, allocatedBytes,
+                    origin.getStatistics().minus(originBefore),
+                    cache.getHitCount() - hitsBefore, cache.getMissCount() - missesBefore, 0);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppIntegrationException("Load-test was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new AppIntegrationException("Load-test worker failed", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs every n-th request (starting with the given one), and records the latencies.
+     *
+     * @return number of errors and the allocated bytes of the current thread
+     */
+    @Nonnull
+    private static long[] runRequests(@Nonnull List<Callable<ExternalResource>> requests, int firstRequest, int step, @Nonnull long[] latencies) {
+        final long allocatedBefore = getAllocatedBytes();
+        final byte[] buffer = new byte[8192];
+        long errors = 0;
+        for (int i = firstRequest; i < requests.size(); i += step) {
+            final long start = System.nanoTime();
+            try {
+                final ExternalResource resource = requests.get(i).call();
+                try (InputStream in = resource.getContentAsInputStream()) {
+                    while (in.read(buffer) >= 0) {
+                        // read the full content, as filters may be applied lazily
+                    }
+                }
+            } catch (Exception e) {
+                LOG.debug("Request {} failed", i, e);
+                errors++;
+            }
+            latencies[i] = System.nanoTime() - start;
+        }
+        return new long[]{errors, getAllocatedBytesDiff(allocatedBefore)};
+    }
+
+    private static long getAllocatedBytes() {
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1L;
+    }
+
+    private static long getAllocatedBytesDiff(long allocatedBefore) {
+        final long allocatedAfter = getAllocatedBytes();
+        return ((allocatedBefore >= 0) && (allocatedAfter >= 0)) ? allocatedAfter - allocatedBefore : -1L;
+    }
+}
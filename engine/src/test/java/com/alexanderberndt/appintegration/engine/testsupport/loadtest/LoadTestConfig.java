@@ -0,0 +1,217 @@
+package com.alexanderberndt.appintegration.engine.testsupport.loadtest;
+
+/**
+ * Configuration of a {@link LoadTest}, i.e. the shape of the synthetic application, the behavior of the origin and
+ * the request mix. All random decisions are derived from the seed, so a configuration always produces the same
+ * application, the same errors and the same request sequence.
+ */
+public class LoadTestConfig {
+
+    private long seed = 42L;
+
+    private int components = 10;
+
+    private int languages = 2;
+
+    private int instancesPerSnippet = 3;
+
+    private int assets = 20;
+
+    private int assetsPerSnippet = 4;
+
+    private int assetSize = 8 * 1024;
+
+    private long latencyMillis = 0L;
+
+    private double errorRate = 0.0;
+
+    private double changeRate = 0.1;
+
+    private int prefetchRuns = 2;
+
+    private int runtimeThreads = 4;
+
+    private int runtimeRequests = 1000;
+
+    private double snippetRatio = 0.3;
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public LoadTestConfig withSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public int getComponents() {
+        return components;
+    }
+
+    /**
+     * Number of components in the application-info.json.
+     */
+    public LoadTestConfig withComponents(int components) {
+        this.components = components;
+        return this;
+    }
+
+    public int getLanguages() {
+        return languages;
+    }
+
+    /**
+     * Number of languages, i.e. distinct snippets per component.
+     */
+    public LoadTestConfig withLanguages(int languages) {
+        this.languages = languages;
+        return this;
+    }
+
+    public int getInstancesPerSnippet() {
+        return instancesPerSnippet;
+    }
+
+    /**
+     * Number of application-instances (e.g. AEM components on different pages), which share the same snippet.
+     */
+    public LoadTestConfig withInstancesPerSnippet(int instancesPerSnippet) {
+        this.instancesPerSnippet = instancesPerSnippet;
+        return this;
+    }
+
+    public int getAssets() {
+        return assets;
+    }
+
+    /**
+     * Number of distinct static assets (css and js) of the application.
+     */
+    public LoadTestConfig withAssets(int assets) {
+        this.assets = assets;
+        return this;
+    }
+
+    public int getAssetsPerSnippet() {
+        return assetsPerSnippet;
+    }
+
+    /**
+     * Number of assets referenced by each snippet (picked from all assets).
+     */
+    public LoadTestConfig withAssetsPerSnippet(int assetsPerSnippet) {
+        this.assetsPerSnippet = assetsPerSnippet;
+        return this;
+    }
+
+    public int getAssetSize() {
+        return assetSize;
+    }
+
+    public LoadTestConfig withAssetSize(int assetSize) {
+        this.assetSize = assetSize;
+        return this;
+    }
+
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * Latency, which the origin adds to every response.
+     */
+    public LoadTestConfig withLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * Share of requests (0.0 - 1.0), which the origin answers with status 503.
+     */
+    public LoadTestConfig withErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    public double getChangeRate() {
+        return changeRate;
+    }
+
+    /**
+     * Share of resources (0.0 - 1.0), which change between two prefetch runs. All other resources are answered
+     * with 304, if the client sends a matching <code>If-None-Match</code> header.
+     */
+    public LoadTestConfig withChangeRate(double changeRate) {
+        this.changeRate = changeRate;
+        return this;
+    }
+
+    public int getPrefetchRuns() {
+        return prefetchRuns;
+    }
+
+    /**
+     * Number of prefetch runs. The first runs against an empty cache, all others revalidate the cache.
+     */
+    public LoadTestConfig withPrefetchRuns(int prefetchRuns) {
+        this.prefetchRuns = prefetchRuns;
+        return this;
+    }
+
+    public int getRuntimeThreads() {
+        return runtimeThreads;
+    }
+
+    public LoadTestConfig withRuntimeThreads(int runtimeThreads) {
+        this.runtimeThreads = runtimeThreads;
+        return this;
+    }
+
+    public int getRuntimeRequests() {
+        return runtimeRequests;
+    }
+
+    /**
+     * Total number of runtime requests (<code>getHtmlSnippet</code> and <code>getStaticResource</code>) after the
+     * prefetch.
+     */
+    public LoadTestConfig withRuntimeRequests(int runtimeRequests) {
+        this.runtimeRequests = runtimeRequests;
+        return this;
+    }
+
+    public double getSnippetRatio() {
+        return snippetRatio;
+    }
+
+    /**
+     * Share of runtime requests (0.0 - 1.0), which are <code>getHtmlSnippet</code> calls. All others are
+     * <code>getStaticResource</code> calls.
+     */
+    public LoadTestConfig withSnippetRatio(double snippetRatio) {
+        this.snippetRatio = snippetRatio;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "seed=" + seed +
+                ", components=" + components +
+                ", languages=" + languages +
+                ", instancesPerSnippet=" + instancesPerSnippet +
+                ", assets=" + assets +
+                ", assetsPerSnippet=" + assetsPerSnippet +
+                ", assetSize=" + assetSize +
+                ", latencyMillis=" + latencyMillis +
+                ", errorRate=" + errorRate +
+                ", changeRate=" + changeRate +
+                ", prefetchRuns=" + prefetchRuns +
+                ", runtimeThreads=" + runtimeThreads +
+                ", runtimeRequests=" + runtimeRequests +
+                ", snippetRatio=" + snippetRatio;
+    }
+}
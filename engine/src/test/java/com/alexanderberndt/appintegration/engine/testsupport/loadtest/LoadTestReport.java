@@ -0,0 +1,171 @@
+package com.alexanderberndt.appintegration.engine.testsupport.loadtest;
+
+import com.alexanderberndt.appintegration.engine.testsupport.loadtest.SyntheticOrigin.OriginStatistics;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of a {@link LoadTest}, with one line per phase. The text format is fixed, so reports of different versions
+ * (with the same configuration) can be compared line by line.
+ */
+public class LoadTestReport {
+
+    @Nonnull
+    private final String configuration;
+
+    private final List<PhaseResult> phaseResults = new ArrayList<>();
+
+    public LoadTestReport(@Nonnull LoadTestConfig config) {
+        this.configuration = config.toString();
+    }
+
+    public void addPhaseResult(@Nonnull PhaseResult phaseResult) {
+        phaseResults.add(phaseResult);
+    }
+
+    @Nonnull
+    public List<PhaseResult> getPhaseResults() {
+        return Collections.unmodifiableList(phaseResults);
+    }
+
+    @Nonnull
+    public PhaseResult getPhaseResult(@Nonnull String phase) {
+        return phaseResults.stream()
+                .filter(result -> result.getPhase().equals(phase))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown phase " + phase));
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("# ").append(configuration).append('\n');
+        sb.append(String.format(Locale.ROOT, "%-12s %7s %6s %10s %9s %9s %9s %12s | %7s %6s %6s %6s %10s | %7s %7s %7s%n",
+                "phase", "ops", "errors", "ops/s", "p50 ms", "p99 ms", "max ms", "alloc/op KB",
+                "origin", "200", "304", "error", "KB", "hits", "misses", "changed"));
+        for (PhaseResult result : phaseResults) {
+            final OriginStatistics origin = result.getOriginStatistics();
+            sb.append(String.format(Locale.ROOT, "%-12s %7d %6d %10.1f %9.3f %9.3f %9.3f %12.1f | %7d %6d %6d %6d %10.1f | %7d %7d %7d%n",
+                    result.getPhase(), result.getOperations(), result.getErrors(), result.getThroughput(),
+                    toMillis(result.getLatencyPercentile(50)), toMillis(result.getLatencyPercentile(99)),
+                    toMillis(result.getLatencyPercentile(100)), result.getAllocatedBytesPerOperation() / 1024.0,
+                    origin.getRequests(), origin.getOk(), origin.getNotModified(), origin.getErrors(), origin.getBytes() / 1024.0,
+                    result.getCacheHits(), result.getCacheMisses(), result.getChangedResources()));
+        }
+        return sb.toString();
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+
+    /**
+     * Measurements of one phase (a prefetch run or the runtime mix).
+     */
+    public static class PhaseResult {
+
+        @Nonnull
+        private final String phase;
+
+        private final long errors;
+
+        private final long durationNanos;
+
+        @Nonnull
+        private final long[] sortedLatencies;
+
+        private final long allocatedBytes;
+
+        @Nonnull
+        private final OriginStatistics originStatistics;
+
+        private final long cacheHits;
+
+        private final long cacheMisses;
+
+        private final int changedResources;
+
+        public PhaseResult(@Nonnull String phase, long errors, long durationNanos, @Nonnull long[] latencies,
+                           long allocatedBytes, @Nonnull OriginStatistics originStatistics,
+                           long cacheHits, long cacheMisses, int changedResources) {
+            this.phase = phase;
+            this.errors = errors;
+            this.durationNanos = durationNanos;
+            this.sortedLatencies = latencies.clone();
+            Arrays.sort(this.sortedLatencies);
+            this.allocatedBytes = allocatedBytes;
+            this.originStatistics = originStatistics;
+            this.cacheHits = cacheHits;
+            this.cacheMisses = cacheMisses;
+            this.changedResources = changedResources;
+        }
+
+        @Nonnull
+        public String getPhase() {
+            return phase;
+        }
+
+        public int getOperations() {
+            return sortedLatencies.length;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        /**
+         * @return operations per second
+         */
+        public double getThroughput() {
+            return (durationNanos > 0) ? getOperations() * (double) TimeUnit.SECONDS.toNanos(1) / durationNanos : 0.0;
+        }
+
+        /**
+         * @param percentile percentile (1 - 100)
+         * @return latency in nanoseconds (nearest-rank), or 0 if there were no operations
+         */
+        public long getLatencyPercentile(int percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0L;
+            }
+            final int rank = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length);
+            return sortedLatencies[Math.max(0, Math.min(rank, sortedLatencies.length) - 1)];
+        }
+
+        /**
+         * @return allocated bytes per operation (of the threads calling the engine), or a negative value if the
+         * JVM doesn't support the measurement
+         */
+        public double getAllocatedBytesPerOperation() {
+            return ((allocatedBytes >= 0) && (getOperations() > 0)) ? allocatedBytes / (double) getOperations() : -1.0;
+        }
+
+        @Nonnull
+        public OriginStatistics getOriginStatistics() {
+            return originStatistics;
+        }
+
+        public long getCacheHits() {
+            return cacheHits;
+        }
+
+        public long getCacheMisses() {
+            return cacheMisses;
+        }
+
+        public int getChangedResources() {
+            return changedResources;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.alexanderberndt.appintegration.engine.testsupport.loadtest;
+
+import com.alexanderberndt.appintegration.engine.testsupport.loadtest.LoadTestReport.PhaseResult;
+import com.alexanderberndt.appintegration.engine.testsupport.loadtest.SyntheticOrigin.OriginStatistics;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadTestTest {
+
+    private static LoadTestConfig createSmallConfig() {
+        return new LoadTestConfig()
+                .withComponents(3)
+                .withLanguages(2)
+                .withInstancesPerSnippet(2)
+                .withAssets(6)
+                .withAssetsPerSnippet(3)
+                .withAssetSize(1024)
+                .withRuntimeThreads(2)
+                .withRuntimeRequests(200);
+    }
+
+    @Test
+    void unchangedApplicationIsRevalidatedWith304() throws IOException {
+        final LoadTestReport report = LoadTest.run(createSmallConfig().withChangeRate(0.0));
+
+        final OriginStatistics firstPrefetch = report.getPhaseResult("prefetch-1").getOriginStatistics();
+        assertTrue(firstPrefetch.getOk() > 6, "application-info, 6 snippets and some assets");
+        assertEquals(0, firstPrefetch.getNotModified());
+
+        final PhaseResult secondPrefetch = report.getPhaseResult("prefetch-2");
+        assertEquals(firstPrefetch.getRequests(), secondPrefetch.getOriginStatistics().getRequests());
+        assertEquals(0, secondPrefetch.getOriginStatistics().getErrors());
+        assertEquals(firstPrefetch.getRequests(), secondPrefetch.getOriginStatistics().getNotModified());
+        assertEquals(0, secondPrefetch.getChangedResources());
+    }
+
+    @Test
+    void changedResourcesAreReported() throws IOException {
+        final LoadTestReport report = LoadTest.run(createSmallConfig().withChangeRate(1.0));
+
+        final PhaseResult secondPrefetch = report.getPhaseResult("prefetch-2");
+        // only the application-info.json doesn't change
+        assertEquals(1, secondPrefetch.getOriginStatistics().getNotModified());
+        assertEquals(report.getPhaseResult("prefetch-1").getOriginStatistics().getOk() - 1, secondPrefetch.getOriginStatistics().getOk());
+        assertTrue(secondPrefetch.getChangedResources() > 6);
+    }
+
+    @Test
+    void runtimeRequestsAreServedFromCache() throws IOException {
+        final LoadTestReport report = LoadTest.run(createSmallConfig());
+
+        final PhaseResult runtime = report.getPhaseResult(LoadTest.RUNTIME_PHASE);
+        assertEquals(200, runtime.getOperations());
+        assertEquals(0, runtime.getErrors());
+        assertEquals(0, runtime.getOriginStatistics().getRequests());
+        assertEquals(0, runtime.getCacheMisses());
+        assertTrue(runtime.getLatencyPercentile(50) <= runtime.getLatencyPercentile(99));
+        assertTrue(runtime.getThroughput() > 0.0);
+
+        final String text = report.toString();
+        assertTrue(text.startsWith("# seed=42"));
+        assertEquals(5, text.split("\n").length, "config, header and 3 phases");
+    }
+
+    @Test
+    void injectedErrorsAreCounted() throws IOException {
+        final LoadTestReport report = LoadTest.run(createSmallConfig().withErrorRate(0.5).withPrefetchRuns(1).withRuntimeRequests(0));
+
+        final OriginStatistics prefetch = report.getPhaseResult("prefetch-1").getOriginStatistics();
+        assertTrue(prefetch.getErrors() > 0);
+        assertEquals(prefetch.getRequests(), prefetch.getOk() + prefetch.getErrors());
+    }
+}
@@ -0,0 +1,41 @@
+package com.alexanderberndt.appintegration.engine.testsupport.loadtest;
+
+import com.alexanderberndt.appintegration.engine.ResourceLoaderException;
+import com.alexanderberndt.appintegration.engine.context.TaskContext;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceRef;
+import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
+import com.alexanderberndt.appintegration.pipeline.task.LoadingTask;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+
+import static com.alexanderberndt.appintegration.engine.loader.HttpResourceLoader.HTTP_HEADER_PREFIX;
+
+/**
+ * Loading task, which revalidates cached resources with a conditional request during a prefetch (instead of using
+ * them directly like the {@link com.alexanderberndt.appintegration.tasks.load.DownloadTask}), so that a prefetch of
+ * an unchanged application causes 304 responses. Outside of a prefetch, cached resources are used directly.
+ */
+public class RevalidatingDownloadTask implements LoadingTask {
+
+    private static final String[] VALIDATOR_HEADERS = {"ETag", "Last-Modified"};
+
+    @Override
+    public ExternalResource load(@Nonnull TaskContext context, @Nonnull ExternalResourceRef resourceRef) {
+        final ExternalResource cachedResource = resourceRef.getCachedExternalRes();
+        if (cachedResource != null) {
+            if (!context.getExternalResourceCache().isLongRunningWrite()) {
+                return cachedResource;
+            }
+            for (String header : VALIDATOR_HEADERS) {
+                resourceRef.setMetadata(HTTP_HEADER_PREFIX + header, cachedResource.getMetadata(HTTP_HEADER_PREFIX + header, String.class));
+            }
+        }
+        try {
+            return context.getResourceLoader().load(resourceRef, context.getResourceFactory());
+        } catch (IOException | ResourceLoaderException e) {
+            throw new AppIntegrationException("Failed to load resource " + resourceRef.getUri(), e);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.alexanderberndt.appintegration.engine.testsupport.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local http-server, which serves a synthetic application (application-info.json, snippets and static assets)
+ * as origin for a {@link LoadTest}. It injects latency and errors, and answers conditional requests with 304
+ * (unless the resource changed with the last {@link #nextRevision()}).
+ */
+public class SyntheticOrigin implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    public static final String APPLICATION_PATH = "/app/";
+
+    public static final String APPLICATION_INFO_JSON = "application-info.json";
+
+    private static final int SERVER_THREADS = 16;
+
+    @Nonnull
+    private final LoadTestConfig config;
+
+    @Nonnull
+    private final HttpServer server;
+
+    @Nonnull
+    private final ExecutorService executor;
+
+    private final Random errorRandom;
+
+    private final AtomicInteger revision = new AtomicInteger();
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final AtomicLong okCount = new AtomicLong();
+
+    private final AtomicLong notModifiedCount = new AtomicLong();
+
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    public SyntheticOrigin(@Nonnull LoadTestConfig config) throws IOException {
+        this.config = config;
+        this.errorRandom = new Random(config.getSeed());
+        this.executor = Executors.newFixedThreadPool(SERVER_THREADS);
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext(APPLICATION_PATH, this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Nonnull
+    public String getApplicationInfoUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + APPLICATION_PATH + APPLICATION_INFO_JSON;
+    }
+
+    /**
+     * Changes the content of a share of all resources (see {@link LoadTestConfig#getChangeRate()}).
+     */
+    public void nextRevision() {
+        revision.incrementAndGet();
+    }
+
+    @Nonnull
+    public List<String> getComponentIds() {
+        final List<String> componentIds = new ArrayList<>();
+        for (int i = 0; i < config.getComponents(); i++) {
+            componentIds.add("comp-" + i);
+        }
+        return componentIds;
+    }
+
+    @Nonnull
+    public List<String> getLanguages() {
+        final List<String> languages = new ArrayList<>();
+        for (int i = 0; i < config.getLanguages(); i++) {
+            languages.add("lang" + i);
+        }
+        return languages;
+    }
+
+    /**
+     * @return paths of all assets, relative to the application-info.json
+     */
+    @Nonnull
+    public List<String> getAssetPaths() {
+        final List<String> assetPaths = new ArrayList<>();
+        for (int i = 0; i < config.getAssets(); i++) {
+            assetPaths.add(getAssetPath(i));
+        }
+        return assetPaths;
+    }
+
+    /**
+     * @return paths of all assets, which are referenced by at least one snippet (i.e. the assets a browser requests)
+     */
+    @Nonnull
+    public List<String> getReferencedAssetPaths() {
+        final Set<String> assetPaths = new TreeSet<>();
+        for (int i = 0; i < config.getComponents(); i++) {
+            assetPaths.addAll(getSnippetAssetPaths(i));
+        }
+        return new ArrayList<>(assetPaths);
+    }
+
+    @Nonnull
+    public OriginStatistics getStatistics() {
+        return new OriginStatistics(requestCount.get(), okCount.get(), notModifiedCount.get(), errorCount.get(), bytesSent.get());
+    }
+
+    private void handle(@Nonnull HttpExchange exchange) throws IOException {
+        try {
+            requestCount.incrementAndGet();
+            if (config.getLatencyMillis() > 0) {
+                Thread.sleep(config.getLatencyMillis());
+            }
+
+            final String relativePath = StringUtils.removeStart(exchange.getRequestURI().getPath(), APPLICATION_PATH);
+            final String content = getContent(relativePath);
+            if (content == null) {
+                errorCount.incrementAndGet();
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            if (!relativePath.equals(APPLICATION_INFO_JSON) && isError()) {
+                errorCount.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            final String etag = '"' + Integer.toHexString(content.hashCode()) + '"';
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedCount.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            // counted before the response is sent, as the client could already evaluate the statistics afterwards
+            final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            okCount.incrementAndGet();
+            bytesSent.addAndGet(bytes.length);
+            exchange.getResponseHeaders().set("Content-Type", getContentType(relativePath));
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.sendResponseHeaders(503, -1);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to serve {}", exchange.getRequestURI(), e);
+            throw e;
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private boolean isError() {
+        if (config.getErrorRate() <= 0.0) {
+            return false;
+        }
+        synchronized (errorRandom) {
+            return errorRandom.nextDouble() < config.getErrorRate();
+        }
+    }
+
+    @Nullable
+    private String getContent(@Nonnull String relativePath) {
+        if (relativePath.equals(APPLICATION_INFO_JSON)) {
+            return createApplicationInfoJson();
+        }
+        final String[] snippetParts = StringUtils.split(relativePath, '.');
+        if ((snippetParts.length == 3) && snippetParts[0].startsWith("comp-") && snippetParts[2].equals("html")) {
+            final int component = parseIndex(StringUtils.removeStart(snippetParts[0], "comp-"), config.getComponents());
+            final int language = parseIndex(StringUtils.removeStart(snippetParts[1], "lang"), config.getLanguages());
+            return ((component >= 0) && (language >= 0)) ? createSnippet(relativePath, component, language) : null;
+        }
+        final String assetName = StringUtils.substringAfter(relativePath, "/asset-");
+        final int asset = parseIndex(StringUtils.substringBefore(assetName, "."), config.getAssets());
+        if ((asset >= 0) && relativePath.equals(getAssetPath(asset))) {
+            return createAsset(relativePath, asset);
+        }
+        return null;
+    }
+
+    @Nonnull
+    private String createApplicationInfoJson() {
+        final StringBuilder sb = new StringBuilder("{\n  \"name\": \"Load Test\",\n  \"version\": \"1.0.0\",\n  \"components\": {\n");
+        final List<String> componentIds = getComponentIds();
+        for (int i = 0; i < componentIds.size(); i++) {
+            sb.append("    \"").append(componentIds.get(i)).append("\": {\"name\": \"Component ").append(i)
+                    .append("\", \"url\": \"").append(componentIds.get(i)).append(".${language}.html\"}")
+                    .append((i < componentIds.size() - 1) ? ",\n" : "\n");
+        }
+        return sb.append("  }\n}\n").toString();
+    }
+
+    @Nonnull
+    private String createSnippet(@Nonnull String relativePath, int component, int language) {
+        final List<String> assetPaths = getSnippetAssetPaths(component);
+        final StringBuilder sb = new StringBuilder("<html>\n<head>\n");
+        for (String assetPath : assetPaths) {
+            if (assetPath.endsWith(".css")) {
+                sb.append("<link rel=\"stylesheet\" data-app-integration=\"static\" href=\"").append(assetPath).append("\">\n");
+            }
+        }
+        sb.append("</head>\n<body>\n<div data-app-integration=\"html-snippet\">\n<h1>Component ").append(component)
+                .append(" (").append(getLanguages().get(language)).append(")</h1>\n<p>").append(getRevisionMarker(relativePath))
+                .append("</p>\n</div>\n");
+        for (String assetPath : assetPaths) {
+            if (assetPath.endsWith(".js")) {
+                sb.append("<script type=\"text/javascript\" data-app-integration=\"static\" src=\"").append(assetPath).append("\"></script>\n");
+            }
+        }
+        return sb.append("</body>\n</html>\n").toString();
+    }
+
+    @Nonnull
+    private String createAsset(@Nonnull String relativePath, int asset) {
+        final StringBuilder sb = new StringBuilder(config.getAssetSize() + 64);
+        sb.append("/* ").append(relativePath).append(' ').append(getRevisionMarker(relativePath)).append(" */\n");
+        final String line = relativePath.endsWith(".css")
+                ? ".asset-" + asset + " { margin: 0; padding: 0; color: #333333; }\n"
+                : "function asset" + asset + "() { return document.querySelectorAll('.asset-" + asset + "'); }\n";
+        while (sb.length() < config.getAssetSize()) {
+            sb.append(line);
+        }
+        return sb.toString();
+    }
+
+    @Nonnull
+    private List<String> getSnippetAssetPaths(int component) {
+        if (config.getAssets() <= 0) {
+            return Collections.emptyList();
+        }
+        final Random random = new Random(config.getSeed() + component);
+        final List<String> assetPaths = new ArrayList<>();
+        for (int i = 0; i < config.getAssetsPerSnippet(); i++) {
+            final String assetPath = getAssetPath(random.nextInt(config.getAssets()));
+            if (!assetPaths.contains(assetPath)) {
+                assetPaths.add(assetPath);
+            }
+        }
+        return assetPaths;
+    }
+
+    /**
+     * Changing resources contain the current revision, all others are stable.
+     */
+    @Nonnull
+    private String getRevisionMarker(@Nonnull String relativePath) {
+        final boolean isChanging = new Random(config.getSeed() ^ relativePath.hashCode()).nextDouble() < config.getChangeRate();
+        return "revision " + (isChanging ? revision.get() : 0);
+    }
+
+    @Nonnull
+    private static String getAssetPath(int asset) {
+        return ((asset % 2) == 0) ? "css/asset-" + asset + ".css" : "js/asset-" + asset + ".js";
+    }
+
+    @Nonnull
+    private static String getContentType(@Nonnull String relativePath) {
+        if (relativePath.endsWith(".css")) {
+            return "text/css";
+        } else if (relativePath.endsWith(".js")) {
+            return "text/javascript";
+        } else if (relativePath.endsWith(".json")) {
+            return "application/json";
+        } else {
+            return "text/html";
+        }
+    }
+
+    private static int parseIndex(@Nonnull String str, int maxIndex) {
+        if (!StringUtils.isNumeric(str)) {
+            return -1;
+        }
+        final int index = Integer.parseInt(str);
+        return (index < maxIndex) ? index : -1;
+    }
+
+
+    /**
+     * Counters of the origin. The statistics of a phase are the difference of two snapshots.
+     */
+    public static class OriginStatistics {
+
+        private final long requests;
+
+        private final long ok;
+
+        private final long notModified;
+
+        private final long errors;
+
+        private final long bytes;
+
+        public OriginStatistics(long requests, long ok, long notModified, long errors, long bytes) {
+            this.requests = requests;
+            this.ok = ok;
+            this.notModified = notModified;
+            this.errors = errors;
+            this.bytes = bytes;
+        }
+
+        @Nonnull
+        public OriginStatistics minus(@Nonnull OriginStatistics other) {
+            return new OriginStatistics(requests - other.requests, ok - other.ok, notModified - other.notModified,
+                    errors - other.errors, bytes - other.bytes);
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getOk() {
+            return ok;
+        }
+
+        public long getNotModified() {
+            return notModified;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.alexanderberndt.appintegration.pipeline;
+
+import com.alexanderberndt.appintegration.engine.logging.appender.Slf4jLogAppender;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
+import com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationEngine;
+import com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory;
+import com.alexanderberndt.appintegration.engine.testsupport.TestApplication;
+import com.alexanderberndt.appintegration.engine.testsupport.TestLoadingTask;
+import com.alexanderberndt.appintegration.pipeline.builder.simple.SimplePipelineBuilder;
+import com.alexanderberndt.appintegration.tasks.prepare.ResourceTypeByFileExtensionTask;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import static com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory.SYSTEM_RESOURCE_LOADER_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProcessingPipelineTest {
+
+    private static final String TEST_APP = "test-app";
+
+    private TestAppIntegrationEngine engine;
+
+    private final List<String> calledTasks = new ArrayList<>();
+
+    @BeforeEach
+    void beforeEach() {
+        final TestApplication testApplication = new TestApplication(TEST_APP, "xxx", SYSTEM_RESOURCE_LOADER_NAME, "custom", Collections.emptyList(), null);
+
+        final ProcessingPipeline pipeline = new SimplePipelineBuilder()
+                .addPreparationTask("check-type", new ResourceTypeByFileExtensionTask())
+                .addLoadingTask("load", new TestLoadingTask("Hello World!"))
+                .addProcessingTask("all", (context, resource) -> calledTasks.add("all"))
+                .addProcessingTask("text", (context, resource) -> calledTasks.add("text"), EnumSet.of(ExternalResourceType.TEXT), null)
+                .addProcessingTask("css", (context, resource) -> calledTasks.add("css"), EnumSet.of(ExternalResourceType.CSS), null)
+                .addProcessingTask("detect-html", (context, resource) -> {
+                    calledTasks.add("detect-html");
+                    resource.setType(ExternalResourceType.HTML);
+                }, EnumSet.of(ExternalResourceType.TEXT), "\\.txt$")
+                .addProcessingTask("html", (context, resource) -> calledTasks.add("html"), EnumSet.of(ExternalResourceType.HTML), null)
+                .addProcessingTask("vendor", (context, resource) -> calledTasks.add("vendor"), null, "/vendor/")
+                .build();
+
+        final TestAppIntegrationFactory factory = new TestAppIntegrationFactory();
+        factory.registerApplication(testApplication);
+        factory.registerPipeline("custom", pipeline);
+
+        engine = new TestAppIntegrationEngine(factory, Slf4jLogAppender::new);
+    }
+
+    @Test
+    void tasksAreDispatchedByType() {
+        engine.getStaticResource(TEST_APP, "/styles.css");
+        assertEquals(Arrays.asList("all", "text", "css"), calledTasks);
+    }
+
+    @Test
+    void binaryResourceSkipsTypedTasks() {
+        engine.getStaticResource(TEST_APP, "/image.png");
+        assertEquals(Collections.singletonList("all"), calledTasks);
+    }
+
+    @Test
+    void tasksAreFilteredByUri() {
+        engine.getStaticResource(TEST_APP, "/vendor/lib.js");
+        assertEquals(Arrays.asList("all", "text", "vendor"), calledTasks);
+    }
+
+    @Test
+    void changedTypeIsDispatchedForRemainingTasks() {
+        engine.getStaticResource(TEST_APP, "/page.txt");
+        assertEquals(Arrays.asList("all", "text", "detect-html", "html"), calledTasks);
+    }
+}
@@ -0,0 +1,111 @@
+package com.alexanderberndt.appintegration.tasks.cache;
+
+import com.alexanderberndt.appintegration.engine.ExternalResourceCache;
+import com.alexanderberndt.appintegration.engine.logging.appender.Slf4jLogAppender;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.testsupport.*;
+import com.alexanderberndt.appintegration.pipeline.ProcessingPipeline;
+import com.alexanderberndt.appintegration.pipeline.builder.simple.SimplePipelineBuilder;
+import com.alexanderberndt.appintegration.tasks.prepare.ResourceTypeByFileExtensionTask;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.function.Supplier;
+
+import static com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory.SYSTEM_RESOURCE_LOADER_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptimizeImageTaskTest {
+
+    private static final String TEST_APP = "test-app";
+
+    @Test
+    void jpegGetsOptimizedAndResizedRenditions() throws IOException {
+        final byte[] jpeg = createJpeg(800, 400);
+        final TestAppIntegrationEngine engine = createEngine(jpeg, false);
+
+        final ExternalResource resource = engine.getStaticResource(TEST_APP, "/teaser.jpg");
+        final ExternalResourceCache cache = engine.getExternalResourceCache(TEST_APP);
+
+        final byte[] optimizedContent = readAll(cache.getCachedRendition(resource.getUri(), OptimizeImageTask.OPTIMIZED_RENDITION));
+        assertTrue(optimizedContent.length < jpeg.length);
+        assertEquals(800, ImageIO.read(new ByteArrayInputStream(optimizedContent)).getWidth());
+
+        final BufferedImage resizedImage = ImageIO.read(new ByteArrayInputStream(readAll(cache.getCachedRendition(resource.getUri(), "w320"))));
+        assertEquals(320, resizedImage.getWidth());
+        assertEquals(160, resizedImage.getHeight());
+
+        // images are never scaled up
+        assertNull(cache.getCachedRendition(resource.getUri(), "w1200"));
+    }
+
+    @Test
+    void onlyPrefetchedImagesAreOptimized() throws IOException {
+        final TestAppIntegrationEngine engine = createEngine(createJpeg(800, 400), true);
+
+        final ExternalResource resource = engine.getStaticResource(TEST_APP, "/teaser.jpg");
+        assertNull(engine.getExternalResourceCache(TEST_APP).getCachedRendition(resource.getUri(), OptimizeImageTask.OPTIMIZED_RENDITION));
+    }
+
+    private static byte[] readAll(Supplier<InputStream> supplier) throws IOException {
+        assertNotNull(supplier);
+        try (InputStream in = supplier.get()) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    private static byte[] createJpeg(int width, int height) throws IOException {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.BLUE));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+
+        // best quality, so that the optimization saves some bytes
+        final ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        final ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(1f);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(imageOut);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static TestAppIntegrationEngine createEngine(byte[] content, boolean prefetchOnly) {
+        final TestApplication testApplication = new TestApplication(TEST_APP, "xxx", SYSTEM_RESOURCE_LOADER_NAME, "custom", Collections.emptyList(), null);
+
+        final ProcessingPipeline pipeline = new SimplePipelineBuilder()
+                .addPreparationTask("check-type", new ResourceTypeByFileExtensionTask())
+                .addLoadingTask("load", new TestLoadingTask(content))
+                .addProcessingTask("store-in-cache", new StoreInCacheTask())
+                .addProcessingTask("optimize-image", new OptimizeImageTask())
+                .withTaskParam(OptimizeImageTask.PREFETCH_ONLY_PROP, prefetchOnly)
+                .withTaskParam(OptimizeImageTask.WIDTHS_PROP, "320, 1200")
+                .build();
+
+        final TestAppIntegrationFactory factory = new TestAppIntegrationFactory();
+        factory.registerApplication(testApplication);
+        factory.registerPipeline("custom", pipeline);
+
+        return new TestAppIntegrationEngine(factory, Slf4jLogAppender::new);
+    }
+}
@@ -0,0 +1,68 @@
+package com.alexanderberndt.appintegration.tasks.cache;
+
+import com.alexanderberndt.appintegration.engine.logging.appender.Slf4jLogAppender;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.testsupport.*;
+import com.alexanderberndt.appintegration.pipeline.ProcessingPipeline;
+import com.alexanderberndt.appintegration.pipeline.builder.simple.SimplePipelineBuilder;
+import com.alexanderberndt.appintegration.tasks.prepare.ResourceTypeByFileExtensionTask;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import static com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory.SYSTEM_RESOURCE_LOADER_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrecompressTaskTest {
+
+    private static final String TEST_APP = "test-app";
+
+    private static final String CSS_CONTENT = StringUtils.repeat(".newsletter { color: #336699; margin: 0 auto; }\n", 50);
+
+    @Test
+    void textResourceGetsGzipRendition() throws IOException {
+        final TestAppIntegrationEngine engine = createEngine(CSS_CONTENT);
+
+        final ExternalResource resource = engine.getStaticResource(TEST_APP, "/styles.css");
+        assertEquals(CSS_CONTENT, IOUtils.toString(resource.getContentAsInputStream(), StandardCharsets.UTF_8));
+
+        final Supplier<InputStream> rendition = engine.getExternalResourceCache(TEST_APP)
+                .getCachedRendition(resource.getUri(), PrecompressTask.GZIP_RENDITION);
+        assertNotNull(rendition);
+        try (InputStream in = new GZIPInputStream(rendition.get())) {
+            assertEquals(CSS_CONTENT, IOUtils.toString(in, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void smallResourceIsNotCompressed() {
+        final TestAppIntegrationEngine engine = createEngine("Hello World!");
+
+        final ExternalResource resource = engine.getStaticResource(TEST_APP, "/hello.txt");
+        assertNull(engine.getExternalResourceCache(TEST_APP).getCachedRendition(resource.getUri(), PrecompressTask.GZIP_RENDITION));
+    }
+
+    private static TestAppIntegrationEngine createEngine(String content) {
+        final TestApplication testApplication = new TestApplication(TEST_APP, "xxx", SYSTEM_RESOURCE_LOADER_NAME, "custom", Collections.emptyList(), null);
+
+        final ProcessingPipeline pipeline = new SimplePipelineBuilder()
+                .addPreparationTask("check-type", new ResourceTypeByFileExtensionTask())
+                .addLoadingTask("load", new TestLoadingTask(content))
+                .addProcessingTask("store-in-cache", new StoreInCacheTask())
+                .addProcessingTask("precompress", new PrecompressTask())
+                .build();
+
+        final TestAppIntegrationFactory factory = new TestAppIntegrationFactory();
+        factory.registerApplication(testApplication);
+        factory.registerPipeline("custom", pipeline);
+
+        return new TestAppIntegrationEngine(factory, Slf4jLogAppender::new);
+    }
+}
@@ -0,0 +1,89 @@
+package com.alexanderberndt.appintegration.tasks.prefetch;
+
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
+import com.alexanderberndt.appintegration.tasks.cache.StoreInCacheTask;
+import com.alexanderberndt.appintegration.tasks.process.html.ExtractHtmlSnippetTask;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.alexanderberndt.appintegration.tasks.prefetch.PostProcessorTestFixture.PROXY_PATH;
+import static com.alexanderberndt.appintegration.tasks.prefetch.PostProcessorTestFixture.createInstance;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BundlePostProcessorTest {
+
+    private final PostProcessorTestFixture fixture = new PostProcessorTestFixture("bundle-app1/server/", builder -> builder
+            .addProcessingTask("extract-html-snippet", new ExtractHtmlSnippetTask(),
+                    Collections.singleton(ExternalResourceType.HTML_SNIPPET), null)
+            .addProcessingTask("store-in-cache", new StoreInCacheTask()), "bundle");
+
+    @Test
+    void referencesAreBundled() throws IOException {
+        fixture.prefetch(createInstance("teaser"), createInstance("footer"));
+
+        final ExternalResource teaser = fixture.getCachedResource("teaser.en.html", ExternalResourceType.HTML_SNIPPET);
+        final ExternalResource footer = fixture.getCachedResource("footer.en.html", ExternalResourceType.HTML_SNIPPET);
+
+        // both snippets reference the same bundles
+        final Object[] cssTags = teaser.getMetadata("cssTags", Object[].class);
+        assertEquals(1, cssTags.length);
+        assertArrayEquals(cssTags, footer.getMetadata("cssTags", Object[].class));
+        final Object[] jsTags = teaser.getMetadata("jsTags", Object[].class);
+        assertEquals(1, jsTags.length);
+
+        // async scripts are not bundled
+        final Object[] footerJsTags = footer.getMetadata("jsTags", Object[].class);
+        assertEquals(2, footerJsTags.length);
+        assertEquals(jsTags[0], footerJsTags[0]);
+        assertTrue(footerJsTags[1].toString().contains("js/analytics.js"));
+
+        // the bundles contain all resources in the order of the snippets
+        assertEquals("body { margin: 0; }\n\n" +
+                ".teaser { background: url(/ext/test-app/img/logo.svg); }\n\n" +
+                ".footer { color: gray; }\n\n", getBundle(cssTags[0].toString(), "href", ExternalResourceType.CSS));
+        assertEquals("window.shop = {}\n\n;\n" +
+                "window.shop.teaser = true;\n\n;\n" +
+                "window.shop.footer = true;\n\n;\n", getBundle(jsTags[0].toString(), "src", ExternalResourceType.JAVASCRIPT));
+    }
+
+    @Test
+    void snippetsWithConflictingOrderAreNotBundled() {
+        fixture.prefetch(createInstance("teaser"), createInstance("footer"), createInstance("sidebar"));
+
+        final ExternalResource teaser = fixture.getCachedResource("teaser.en.html", ExternalResourceType.HTML_SNIPPET);
+        assertEquals(1, teaser.getMetadata("cssTags", Object[].class).length);
+        assertEquals(1, teaser.getMetadata("jsTags", Object[].class).length);
+
+        // stylesheets in reverse order, and scripts interrupted by an async script
+        final ExternalResource sidebar = fixture.getCachedResource("sidebar.en.html", ExternalResourceType.HTML_SNIPPET);
+        final Object[] cssTags = sidebar.getMetadata("cssTags", Object[].class);
+        assertEquals(2, cssTags.length);
+        assertTrue(cssTags[0].toString().contains("css/teaser.css"));
+        final Object[] jsTags = sidebar.getMetadata("jsTags", Object[].class);
+        assertEquals(3, jsTags.length);
+        assertTrue(jsTags[2].toString().contains("js/teaser.js"));
+    }
+
+    @Test
+    void bundlesAreFingerprinted() {
+        fixture.getApplication().setPrefetchPostProcessorNames(Arrays.asList("bundle", "fingerprint"));
+        fixture.prefetch(createInstance("teaser"), createInstance("footer"));
+
+        final Object[] jsTags = fixture.getCachedResource("teaser.en.html", ExternalResourceType.HTML_SNIPPET).getMetadata("jsTags", Object[].class);
+        final String url = StringUtils.substringBetween(jsTags[0].toString(), "src=\"", "\"");
+        assertTrue(url.startsWith(PROXY_PATH + FingerprintPostProcessor.FINGERPRINT_PREFIX), url);
+        assertTrue(FingerprintPostProcessor.removeFingerprint(url.substring(PROXY_PATH.length())).startsWith(BundlePostProcessor.BUNDLE_PATH), url);
+    }
+
+    private String getBundle(String tag, String urlAttr, ExternalResourceType type) throws IOException {
+        final String url = StringUtils.substringBetween(tag, urlAttr + "=\"", "\"");
+        assertTrue(url.startsWith(PROXY_PATH + BundlePostProcessor.BUNDLE_PATH), url);
+        return IOUtils.toString(fixture.getCachedResource(url.substring(PROXY_PATH.length()), type).getContentAsReader());
+    }
+}
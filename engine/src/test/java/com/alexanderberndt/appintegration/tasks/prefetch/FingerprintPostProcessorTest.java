@@ -0,0 +1,107 @@
+package com.alexanderberndt.appintegration.tasks.prefetch;
+
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
+import com.alexanderberndt.appintegration.engine.testsupport.TestAppInstance;
+import com.alexanderberndt.appintegration.tasks.cache.PrecompressTask;
+import com.alexanderberndt.appintegration.tasks.cache.StoreInCacheTask;
+import com.alexanderberndt.appintegration.tasks.process.css.CssReferencesTask;
+import com.alexanderberndt.appintegration.tasks.process.html.ExtractHtmlSnippetTask;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import static com.alexanderberndt.appintegration.tasks.prefetch.PostProcessorTestFixture.TEST_APP;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FingerprintPostProcessorTest {
+
+    private final PostProcessorTestFixture fixture = new PostProcessorTestFixture("fingerprint-app1/server/", builder -> builder
+            .addProcessingTask("css-references", new CssReferencesTask(),
+                    Collections.singleton(ExternalResourceType.CSS), null)
+            // store the complete page, so that the snippet can be extracted again from the cache
+            .addProcessingTask("store-in-cache", new StoreInCacheTask())
+            .addProcessingTask("precompress", new PrecompressTask(),
+                    Collections.singleton(ExternalResourceType.CSS), null)
+            // the stylesheets are too small to be compressed effectively, but should get a rendition anyway
+            .withTaskParam(PrecompressTask.MIN_SIZE_PROP, 0)
+            .withTaskParam(PrecompressTask.MIN_SAVINGS_PROP, -100)
+            .addProcessingTask("extract-html-snippet", new ExtractHtmlSnippetTask(),
+                    Collections.singleton(ExternalResourceType.HTML_SNIPPET), null), "fingerprint");
+
+    private final TestAppInstance instance = PostProcessorTestFixture.createInstance("teaser");
+
+    @Test
+    void referencesAreFingerprinted() throws IOException {
+        fixture.prefetch(instance);
+
+        final JsonNode fingerprints = new ObjectMapper().readTree(fixture.getContent(FingerprintPostProcessor.FINGERPRINTS_PATH));
+        assertEquals(4, fingerprints.size(), fingerprints.toString());
+        final String cssFingerprint = fingerprints.path("css/teaser.css").asText();
+        final String baseCssFingerprint = fingerprints.path("css/base.css").asText();
+        final String svgFingerprint = fingerprints.path("img/logo.svg").asText();
+        final String jsFingerprint = fingerprints.path("js/teaser.js").asText();
+
+        // the fingerprint matches the stored content (incl. the rewritten references)
+        final String css = fixture.getContent("css/teaser.css");
+        assertEquals("@import \"/ext/test-app/_v/" + baseCssFingerprint + "/css/base.css\";\n" +
+                ".teaser { background: url(/ext/test-app/_v/" + svgFingerprint + "/img/logo.svg#icon) no-repeat; }\n", css);
+        assertEquals(DigestUtils.sha256Hex(css).substring(0, FingerprintPostProcessor.FINGERPRINT_LENGTH), cssFingerprint);
+
+        final String page = fixture.getContent("teaser.en.html");
+        assertTrue(page.contains("<img src=\"/ext/test-app/_v/" + svgFingerprint + "/img/logo.svg\" alt=\"Logo\">"), page);
+        assertTrue(page.contains("<a href=\"https://www.example.com/\">"), page);
+
+        // the snippet is extracted from the rewritten page
+        final ExternalResource snippet = fixture.getEngine().getHtmlSnippet(instance);
+        final Object[] cssTags = snippet.getMetadata("cssTags", Object[].class);
+        assertEquals(1, cssTags.length);
+        assertTrue(cssTags[0].toString().contains("href=\"/ext/test-app/_v/" + cssFingerprint + "/css/teaser.css\""), cssTags[0].toString());
+        final Object[] jsTags = snippet.getMetadata("jsTags", Object[].class);
+        assertTrue(jsTags[0].toString().contains("src=\"/ext/test-app/_v/" + jsFingerprint + "/js/teaser.js\""), jsTags[0].toString());
+        assertEquals(fixture.resolve("js/teaser.js"), snippet.getReferencedResources().get(0).getUri());
+    }
+
+    @Test
+    void rewrittenStylesheetIsCompressedAgain() throws IOException {
+        fixture.prefetch(instance);
+
+        final Supplier<InputStream> rendition = fixture.getEngine().getExternalResourceCache(TEST_APP)
+                .getCachedRendition(fixture.resolve("css/teaser.css"), PrecompressTask.GZIP_RENDITION);
+        assertNotNull(rendition);
+        try (InputStream in = new GZIPInputStream(rendition.get())) {
+            assertEquals(fixture.getContent("css/teaser.css"), IOUtils.toString(in, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void unchangedApplicationKeepsFingerprints() throws IOException {
+        fixture.prefetch(instance);
+        final String fingerprints = fixture.getContent(FingerprintPostProcessor.FINGERPRINTS_PATH);
+
+        // the second prefetch reads the already rewritten resources from the cache
+        fixture.prefetch(instance);
+        assertEquals(fingerprints, fixture.getContent(FingerprintPostProcessor.FINGERPRINTS_PATH));
+        assertTrue(fixture.getEngine().getExternalResourceCache(TEST_APP).getChangedResourceUris().isEmpty());
+    }
+
+    @Test
+    void fingerprintIsParsedFromPath() {
+        assertEquals("1a2b3c", FingerprintPostProcessor.getFingerprint("_v/1a2b3c/css/teaser.css"));
+        assertEquals("css/teaser.css", FingerprintPostProcessor.removeFingerprint("_v/1a2b3c/css/teaser.css"));
+
+        assertNull(FingerprintPostProcessor.getFingerprint("css/teaser.css"));
+        assertNull(FingerprintPostProcessor.getFingerprint("_v/teaser.css"));
+        assertNull(FingerprintPostProcessor.getFingerprint("_v/../teaser.css"));
+        assertEquals("_v/teaser.css", FingerprintPostProcessor.removeFingerprint("_v/teaser.css"));
+    }
+}
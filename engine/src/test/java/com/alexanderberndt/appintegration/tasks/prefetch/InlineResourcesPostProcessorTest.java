@@ -0,0 +1,51 @@
+package com.alexanderberndt.appintegration.tasks.prefetch;
+
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
+import com.alexanderberndt.appintegration.tasks.cache.StoreInCacheTask;
+import com.alexanderberndt.appintegration.tasks.process.html.ExtractHtmlSnippetTask;
+import com.alexanderberndt.appintegration.tasks.process.html.InlineResourcesTask;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InlineResourcesPostProcessorTest {
+
+    private final PostProcessorTestFixture fixture = new PostProcessorTestFixture("inline-app1/server/", builder -> builder
+            .addProcessingTask("extract-html-snippet", new ExtractHtmlSnippetTask(),
+                    Collections.singleton(ExternalResourceType.HTML_SNIPPET), null)
+            .addProcessingTask("inline-resources", new InlineResourcesTask(),
+                    Collections.singleton(ExternalResourceType.HTML_SNIPPET), null)
+            .withTaskParam(InlineResourcesTask.MAX_SIZE_PROP, 100)
+            .addProcessingTask("store-in-cache", new StoreInCacheTask()), "inline-resources");
+
+    @Test
+    void smallResourcesAreInlined() throws IOException {
+        fixture.prefetch(PostProcessorTestFixture.createInstance("teaser"));
+
+        final ExternalResource snippet = fixture.getCachedResource("teaser.en.html", ExternalResourceType.HTML_SNIPPET);
+
+        // the last stylesheets and the first script are inlined, and relative urls are rewritten
+        assertEquals("<style data-app-integration-inline=\"test-app/css/theme.css\">" +
+                ".teaser { background: url(/ext/test-app/img/logo.svg); }\n</style>" +
+                "<style media=\"print\" data-app-integration-inline=\"test-app/css/print.css\">.teaser { color: black; }\n</style>" +
+                "<div>\n <p>Teaser</p>\n</div>" +
+                "<script data-app-integration-inline=\"test-app/js/init.js\">window.teaser = {};\n</script>",
+                IOUtils.toString(snippet.getContentAsReader()));
+
+        final Object[] cssTags = snippet.getMetadata("cssTags", Object[].class);
+        assertEquals(1, cssTags.length);
+        assertTrue(cssTags[0].toString().contains("css/base.css"));
+        final Object[] jsTags = snippet.getMetadata("jsTags", Object[].class);
+        assertEquals(2, jsTags.length);
+        assertTrue(jsTags[0].toString().contains("js/vendor.js"));
+        assertTrue(jsTags[1].toString().contains("js/teaser.js"));
+        assertEquals(Arrays.asList("test-app/css/theme.css", "test-app/css/print.css", "test-app/js/init.js"),
+                Arrays.asList(snippet.getMetadata(InlineResourcesPostProcessor.INLINED_RESOURCES_METADATA, Object[].class)));
+    }
+}
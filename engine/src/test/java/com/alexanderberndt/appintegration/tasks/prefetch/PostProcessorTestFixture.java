@@ -0,0 +1,99 @@
+package com.alexanderberndt.appintegration.tasks.prefetch;
+
+import com.alexanderberndt.appintegration.engine.logging.appender.Slf4jLogAppender;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceRef;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
+import com.alexanderberndt.appintegration.engine.testsupport.TestAppInstance;
+import com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationEngine;
+import com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory;
+import com.alexanderberndt.appintegration.engine.testsupport.TestApplication;
+import com.alexanderberndt.appintegration.pipeline.ProcessingPipeline;
+import com.alexanderberndt.appintegration.pipeline.builder.simple.SimplePipelineBuilder;
+import com.alexanderberndt.appintegration.tasks.cache.ReadFromCacheTask;
+import com.alexanderberndt.appintegration.tasks.load.DownloadTask;
+import org.apache.commons.io.IOUtils;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.UnaryOperator;
+
+import static com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory.CORE_CONTEXT_PROVIDERS;
+import static com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory.SYSTEM_RESOURCE_LOADER_NAME;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Engine with one application of the test-resources (e.g. <code>bundle-app1/server/</code>), which is prefetched
+ * by a pipeline (reading from the cache and downloading, plus the given processing tasks) and post-processed by
+ * the given prefetch post-processors.
+ */
+class PostProcessorTestFixture {
+
+    static final String TEST_APP = "test-app";
+
+    static final String PROXY_PATH = "/ext/test-app/";
+
+    private final URI baseUri;
+
+    private final TestApplication application;
+
+    private final TestAppIntegrationEngine engine;
+
+    PostProcessorTestFixture(@Nonnull String applicationPath, @Nonnull UnaryOperator<SimplePipelineBuilder> processingTasks,
+                             @Nonnull String... postProcessorNames) {
+        baseUri = URI.create("classpath://system/" + applicationPath);
+        application = new TestApplication(TEST_APP, applicationPath + "application-info.json",
+                SYSTEM_RESOURCE_LOADER_NAME, "custom", CORE_CONTEXT_PROVIDERS, null);
+        application.setPrefetchPostProcessorNames(Arrays.asList(postProcessorNames));
+
+        final ProcessingPipeline pipeline = processingTasks.apply(new SimplePipelineBuilder()
+                .addPreparationTask("read-from-cache", new ReadFromCacheTask())
+                .addLoadingTask("download", new DownloadTask()))
+                .build();
+
+        final TestAppIntegrationFactory factory = new TestAppIntegrationFactory();
+        factory.registerApplication(application);
+        factory.registerPipeline("custom", pipeline);
+        engine = new TestAppIntegrationEngine(factory, Slf4jLogAppender::new);
+    }
+
+    @Nonnull
+    TestApplication getApplication() {
+        return application;
+    }
+
+    @Nonnull
+    TestAppIntegrationEngine getEngine() {
+        return engine;
+    }
+
+    @Nonnull
+    URI resolve(@Nonnull String relativePath) {
+        return baseUri.resolve(relativePath);
+    }
+
+    @Nonnull
+    static TestAppInstance createInstance(@Nonnull String componentId) {
+        return new TestAppInstance(TEST_APP, componentId, Collections.singletonMap("language", "en"));
+    }
+
+    void prefetch(@Nonnull TestAppInstance... instances) {
+        engine.prefetch(Arrays.asList(instances));
+    }
+
+    @Nonnull
+    ExternalResource getCachedResource(@Nonnull String relativePath, @Nonnull ExternalResourceType type) {
+        final ExternalResource resource = engine.getExternalResourceCache(TEST_APP).getCachedResource(
+                new ExternalResourceRef(resolve(relativePath), type), engine.getFactory().getExternalResourceFactory());
+        assertNotNull(resource, relativePath);
+        return resource;
+    }
+
+    @Nonnull
+    String getContent(@Nonnull String relativePath) throws IOException {
+        return IOUtils.toString(getCachedResource(relativePath, ExternalResourceType.ANY).getContentAsReader());
+    }
+}
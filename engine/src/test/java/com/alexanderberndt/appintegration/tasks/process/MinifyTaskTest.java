@@ -0,0 +1,65 @@
+package com.alexanderberndt.appintegration.tasks.process;
+
+import com.alexanderberndt.appintegration.engine.logging.appender.Slf4jLogAppender;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.testsupport.*;
+import com.alexanderberndt.appintegration.pipeline.ProcessingPipeline;
+import com.alexanderberndt.appintegration.pipeline.builder.simple.SimplePipelineBuilder;
+import com.alexanderberndt.appintegration.tasks.prepare.ResourceTypeByFileExtensionTask;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory.SYSTEM_RESOURCE_LOADER_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MinifyTaskTest {
+
+    private static final String TEST_APP = "test-app";
+
+    private static final String CSS_CONTENT = "/* newsletter */\n.newsletter {\n    color: #336699;\n    margin: 0 auto;\n}\n";
+
+    @Test
+    void stylesheetIsMinified() throws IOException {
+        final TestAppIntegrationEngine engine = createEngine(false, true);
+
+        final ExternalResource resource = engine.getStaticResource(TEST_APP, "/styles.css");
+        assertEquals(".newsletter{color:#336699;margin:0 auto}", IOUtils.toString(resource.getContentAsReader()));
+    }
+
+    @Test
+    void disabledTypeIsNotMinified() throws IOException {
+        final TestAppIntegrationEngine engine = createEngine(false, false);
+
+        final ExternalResource resource = engine.getStaticResource(TEST_APP, "/styles.css");
+        assertEquals(CSS_CONTENT, IOUtils.toString(resource.getContentAsReader()));
+    }
+
+    @Test
+    void onlyPrefetchedResourcesAreMinified() throws IOException {
+        final TestAppIntegrationEngine engine = createEngine(true, true);
+
+        final ExternalResource resource = engine.getStaticResource(TEST_APP, "/styles.css");
+        assertEquals(CSS_CONTENT, IOUtils.toString(resource.getContentAsReader()));
+    }
+
+    private static TestAppIntegrationEngine createEngine(boolean prefetchOnly, boolean minifyCss) {
+        final TestApplication testApplication = new TestApplication(TEST_APP, "xxx", SYSTEM_RESOURCE_LOADER_NAME, "custom", Collections.emptyList(), null);
+
+        final ProcessingPipeline pipeline = new SimplePipelineBuilder()
+                .addPreparationTask("check-type", new ResourceTypeByFileExtensionTask())
+                .addLoadingTask("load", new TestLoadingTask(CSS_CONTENT))
+                .addProcessingTask("minify", new MinifyTask())
+                .withTaskParam(MinifyTask.PREFETCH_ONLY_PROP, prefetchOnly)
+                .withTaskParam(MinifyTask.MINIFY_CSS_PROP, minifyCss)
+                .build();
+
+        final TestAppIntegrationFactory factory = new TestAppIntegrationFactory();
+        factory.registerApplication(testApplication);
+        factory.registerPipeline("custom", pipeline);
+
+        return new TestAppIntegrationEngine(factory, Slf4jLogAppender::new);
+    }
+}
@@ -0,0 +1,78 @@
+package com.alexanderberndt.appintegration.tasks.process.css;
+
+import com.alexanderberndt.appintegration.engine.logging.appender.Slf4jLogAppender;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceRef;
+import com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationEngine;
+import com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory;
+import com.alexanderberndt.appintegration.engine.testsupport.TestApplication;
+import com.alexanderberndt.appintegration.engine.testsupport.TestLoadingTask;
+import com.alexanderberndt.appintegration.pipeline.ProcessingPipeline;
+import com.alexanderberndt.appintegration.pipeline.builder.simple.SimplePipelineBuilder;
+import com.alexanderberndt.appintegration.tasks.prepare.ResourceTypeByFileExtensionTask;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+import static com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory.SYSTEM_RESOURCE_LOADER_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CssReferencesTaskTest {
+
+    private static final String TEST_APP = "test-app";
+
+    private static final String CSS_CONTENT = "@import 'base.css';\n" +
+            "@font-face { src: url(../fonts/icons.woff2#iefix) format('woff2'); }\n" +
+            ".logo { background: url(\"../img/logo.png?v=2\"); }\n" +
+            ".icon { background: url(data:image/png;base64,iVBORw0KGgo=); }\n" +
+            ".ext { background: url(//cdn.example.com/bg.png); }\n";
+
+    @Test
+    void referencesAreAdded() throws IOException {
+        final ExternalResource resource = createEngine(false).getStaticResource(TEST_APP, "css/styles.css");
+
+        assertEquals(CSS_CONTENT, IOUtils.toString(resource.getContentAsReader()));
+        assertEquals("css/base.css (css), fonts/icons.woff2 (binary), img/logo.png?v=2 (binary)", getReferences(resource));
+    }
+
+    @Test
+    void referencesAreRewritten() throws IOException {
+        final ExternalResource resource = createEngine(true).getStaticResource(TEST_APP, "css/styles.css");
+
+        final String content = IOUtils.toString(resource.getContentAsReader());
+        assertEquals("@import '/ext/test-app/css/base.css';\n" +
+                "@font-face { src: url(/ext/test-app/fonts/icons.woff2) format('woff2'); }\n" +
+                ".logo { background: url(\"/ext/test-app/img/logo.png?v=2\"); }\n" +
+                ".icon { background: url(data:image/png;base64,iVBORw0KGgo=); }\n" +
+                ".ext { background: url(//cdn.example.com/bg.png); }\n", content);
+        assertEquals("css/base.css (css), fonts/icons.woff2 (binary), img/logo.png?v=2 (binary)", getReferences(resource));
+    }
+
+    private static String getReferences(ExternalResource resource) {
+        final String appPrefix = resource.getUri().resolve("..").toString();
+        return resource.getReferencedResources().stream()
+                .map(ref -> ref.getUri().toString().replace(appPrefix, "") + " (" + ref.getExpectedType() + ")")
+                .collect(Collectors.joining(", "));
+    }
+
+    private static TestAppIntegrationEngine createEngine(boolean rewriteUrls) {
+        final TestApplication testApplication = new TestApplication(TEST_APP, "local/application-info.json", SYSTEM_RESOURCE_LOADER_NAME, "custom", Collections.emptyList(), null);
+
+        final ProcessingPipeline pipeline = new SimplePipelineBuilder()
+                .addPreparationTask("check-type", new ResourceTypeByFileExtensionTask())
+                .addLoadingTask("load", new TestLoadingTask(CSS_CONTENT))
+                .addProcessingTask("css-references", new CssReferencesTask())
+                .withTaskParam(CssReferencesTask.REWRITE_URLS_PROP, rewriteUrls)
+                .build();
+
+        final TestAppIntegrationFactory factory = new TestAppIntegrationFactory();
+        factory.registerApplication(testApplication);
+        factory.registerPipeline("custom", pipeline);
+
+        return new TestAppIntegrationEngine(factory, Slf4jLogAppender::new);
+    }
+}
@@ -0,0 +1,79 @@
+package com.alexanderberndt.appintegration.tasks.process.js;
+
+import com.alexanderberndt.appintegration.engine.logging.appender.Slf4jLogAppender;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationEngine;
+import com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory;
+import com.alexanderberndt.appintegration.engine.testsupport.TestApplication;
+import com.alexanderberndt.appintegration.engine.testsupport.TestLoadingTask;
+import com.alexanderberndt.appintegration.pipeline.ProcessingPipeline;
+import com.alexanderberndt.appintegration.pipeline.builder.simple.SimplePipelineBuilder;
+import com.alexanderberndt.appintegration.tasks.prepare.ResourceTypeByFileExtensionTask;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+import static com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory.SYSTEM_RESOURCE_LOADER_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsReferencesTaskTest {
+
+    private static final String TEST_APP = "test-app";
+
+    @Test
+    void importsAndChunksAreAdded() throws IOException {
+        final String script = "import {a} from './lib/a.js';\n" +
+                "import React from 'react';\n" +
+                "import('https://cdn.example.com/x.js');\n" +
+                "r.u=e=>\"static/js/\"+e+\".\"+{7:\"ab12\"}[e]+\".chunk.js\";\n" +
+                "//# sourceMappingURL=main.js.map\n";
+        final ExternalResource resource = createEngine(script).getStaticResource(TEST_APP, "static/js/main.js");
+
+        assertEquals(script, IOUtils.toString(resource.getContentAsReader()));
+        assertEquals("static/js/lib/a.js (javascript), static/js/7.ab12.chunk.js (javascript)", getReferences(resource));
+    }
+
+    @Test
+    void createReactAppManifest() {
+        final ExternalResource resource = createEngine("{\"files\": {\"main.js\": \"./static/js/main.1a.js\", \"main.css\": \"./static/css/main.2b.css\", " +
+                "\"main.js.map\": \"./static/js/main.1a.js.map\"}, \"entrypoints\": [\"static/js/main.1a.js\"]}\n")
+                .getStaticResource(TEST_APP, "asset-manifest.json");
+
+        assertEquals("static/js/main.1a.js (javascript), static/css/main.2b.css (css)", getReferences(resource));
+    }
+
+    @Test
+    void viteManifest() {
+        final ExternalResource resource = createEngine("{\"index.html\": {\"file\": \"assets/index-1a.js\", \"css\": [\"assets/index-2b.css\"], \"imports\": [\"_shared.js\"]}, " +
+                "\"_shared.js\": {\"file\": \"assets/shared-3c.js\", \"assets\": [\"assets/logo-4d.svg\"]}}")
+                .getStaticResource(TEST_APP, ".vite/manifest.json");
+
+        assertEquals("assets/index-1a.js (javascript), assets/index-2b.css (css), assets/shared-3c.js (javascript), assets/logo-4d.svg (any)", getReferences(resource));
+    }
+
+    private static String getReferences(ExternalResource resource) {
+        final String appPrefix = resource.getUri().resolve("/local/").toString();
+        return resource.getReferencedResources().stream()
+                .map(ref -> ref.getUri().toString().replace(appPrefix, "") + " (" + ref.getExpectedType() + ")")
+                .collect(Collectors.joining(", "));
+    }
+
+    private static TestAppIntegrationEngine createEngine(String content) {
+        final TestApplication testApplication = new TestApplication(TEST_APP, "local/application-info.json", SYSTEM_RESOURCE_LOADER_NAME, "custom", Collections.emptyList(), null);
+
+        final ProcessingPipeline pipeline = new SimplePipelineBuilder()
+                .addPreparationTask("check-type", new ResourceTypeByFileExtensionTask())
+                .addLoadingTask("load", new TestLoadingTask(content))
+                .addProcessingTask("js-references", new JsReferencesTask())
+                .build();
+
+        final TestAppIntegrationFactory factory = new TestAppIntegrationFactory();
+        factory.registerApplication(testApplication);
+        factory.registerPipeline("custom", pipeline);
+
+        return new TestAppIntegrationEngine(factory, Slf4jLogAppender::new);
+    }
+}
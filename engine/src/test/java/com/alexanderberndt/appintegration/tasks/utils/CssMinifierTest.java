@@ -0,0 +1,55 @@
+package com.alexanderberndt.appintegration.tasks.utils;
+
+import org.apache.commons.io.output.StringBuilderWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CssMinifierTest {
+
+    @Test
+    void removeCommentsAndWhitespace() throws IOException {
+        final String css = "/* teaser */\n" +
+                ".teaser > .title,\n.teaser .text {\n    color: #336699;\n    margin: 0 auto !important;\n}\n\n" +
+                "@media screen and (min-width: 600px) {\n    .teaser { width: calc(100% - 2rem); }\n}\n";
+
+        assertEquals(".teaser>.title,.teaser .text{color:#336699;margin:0 auto!important}" +
+                "@media screen and (min-width:600px){.teaser{width:calc(100% - 2rem)}}", minify(css));
+    }
+
+    @Test
+    void keepStringsUrlsAndLicenses() throws IOException {
+        final String css = "/*! (c) Example */\n" +
+                ".a::before { content: \"  /* no comment */  \"; }\n" +
+                ".b { background: url(//cdn.example.com/a.png) , url( 'b.png' ); }\n";
+
+        assertEquals("/*! (c) Example */ .a::before{content:\"  /* no comment */  \"}" +
+                ".b{background:url(//cdn.example.com/a.png),url( 'b.png' )}", minify(css));
+    }
+
+    @Test
+    void readerMinifiesWhileReading() throws IOException {
+        final String css = ".a {\n    color: red;\n}\n\n/* b */\n.b { content: \"x  y\"; }\n";
+
+        // read char by char, so the minifier is called step by step
+        final StringBuilder result = new StringBuilder();
+        try (Reader reader = CssMinifier.createReader(new StringReader(css))) {
+            final char[] buffer = new char[1];
+            while (reader.read(buffer, 0, 1) > 0) {
+                result.append(buffer[0]);
+            }
+        }
+        assertEquals(minify(css), result.toString());
+        assertEquals(".a{color:red}.b{content:\"x  y\"}", result.toString());
+    }
+
+    private static String minify(String css) throws IOException {
+        final StringBuilderWriter out = new StringBuilderWriter();
+        CssMinifier.minify(new StringReader(css), out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,60 @@
+package com.alexanderberndt.appintegration.tasks.utils;
+
+import org.apache.commons.io.output.StringBuilderWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CssReferenceScannerTest {
+
+    @Test
+    void findAllUrlForms() throws IOException {
+        final String css = "@import 'base.css';\n" +
+                "@import url(\"theme.css\") screen;\n" +
+                "@font-face { src: url(fonts/icons.woff2) format('woff2'), URL( 'fonts/icons.woff' ); }\n" +
+                ".logo { background: url(  \"img/logo.png\"  ) no-repeat; }\n";
+
+        final List<String> urls = new ArrayList<>();
+        final StringBuilderWriter out = new StringBuilderWriter();
+        final int count = CssReferenceScanner.scan(new StringReader(css), out, (url, isImport) -> {
+            urls.add((isImport ? "import:" : "") + url);
+            return null;
+        });
+
+        assertEquals(5, count);
+        assertEquals("[import:base.css, import:theme.css, fonts/icons.woff2, fonts/icons.woff, img/logo.png]", urls.toString());
+        assertEquals(css, out.toString());
+    }
+
+    @Test
+    void ignoreCommentsStringsAndOtherFunctions() throws IOException {
+        final String css = "/* url(comment.png) @import 'x.css'; **/\n" +
+                ".a::before { content: \"url(string.png)\"; }\n" +
+                ".b { background: myurl(no.png); mask: url(real.svg); }\n";
+
+        final List<String> urls = new ArrayList<>();
+        final StringBuilderWriter out = new StringBuilderWriter();
+        CssReferenceScanner.scan(new StringReader(css), out, (url, isImport) -> {
+            urls.add(url);
+            return null;
+        });
+
+        assertEquals("[real.svg]", urls.toString());
+        assertEquals(css, out.toString());
+    }
+
+    @Test
+    void replaceUrls() throws IOException {
+        final String css = "@import \"base.css\";\n.a { background: url( img/a.png ); }\n.b { background: url('img/b.png'); }";
+
+        final StringBuilderWriter out = new StringBuilderWriter();
+        CssReferenceScanner.scan(new StringReader(css), out, (url, isImport) -> url.startsWith("img/") ? "/ext/app/" + url : null);
+
+        assertEquals("@import \"base.css\";\n.a { background: url( /ext/app/img/a.png ); }\n.b { background: url('/ext/app/img/b.png'); }", out.toString());
+    }
+}
@@ -0,0 +1,41 @@
+package com.alexanderberndt.appintegration.tasks.utils;
+
+import org.apache.commons.io.output.StringBuilderWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HtmlMinifierTest {
+
+    @Test
+    void collapseWhitespaceAndDropComments() throws IOException {
+        final String html = "\n<div   class=\"teaser\"\n     data-title=\"a  b\">\n" +
+                "    <!-- title -->\n" +
+                "    <h2>Hello   <b>World</b> !</h2>\n" +
+                "</div>\n";
+
+        assertEquals("<div class=\"teaser\" data-title=\"a  b\">\n<h2>Hello <b>World</b> !</h2>\n</div>", minify(html));
+    }
+
+    @Test
+    void keepPreformattedContent() throws IOException {
+        final String html = "<PRE>  a\n  <!-- b -->\n</PRE>\n" +
+                "<script>\n  if (a  <  b) { }\n</script>\n" +
+                "<textarea>  x  </textarea>\n" +
+                "<!--[if IE]>  <p>IE</p>  <![endif]-->";
+
+        assertEquals("<PRE>  a\n  <!-- b -->\n</PRE>\n" +
+                "<script>\n  if (a  <  b) { }\n</script>\n" +
+                "<textarea>  x  </textarea>\n" +
+                "<!--[if IE]>  <p>IE</p>  <![endif]-->", minify(html));
+    }
+
+    private static String minify(String html) throws IOException {
+        final StringBuilderWriter out = new StringBuilderWriter();
+        HtmlMinifier.minify(new StringReader(html), out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,56 @@
+package com.alexanderberndt.appintegration.tasks.utils;
+
+import org.apache.commons.io.output.StringBuilderWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsMinifierTest {
+
+    @Test
+    void removeCommentsAndWhitespace() throws IOException {
+        final String js = "// teaser\n" +
+                "function init ( element ) {\n" +
+                "    /* count the clicks */\n" +
+                "    var count = 0 ;\n" +
+                "    element.addEventListener( 'click', function () { count++; } );\n" +
+                "}\n";
+
+        assertEquals("function init(element){var count=0;element.addEventListener('click',function(){count++;});}", minify(js));
+    }
+
+    @Test
+    void keepLineBreaksForSemicolonInsertion() throws IOException {
+        final String js = "var a = 1\n" +
+                "var b = a\n" +
+                "++b\n" +
+                "function f() {\n" +
+                "    return\n" +
+                "        a + + b\n" +
+                "}\n";
+
+        assertEquals("var a=1\nvar b=a\n++b\nfunction f(){return\na+ +b}", minify(js));
+    }
+
+    @Test
+    void keepStringsTemplatesAndRegularExpressions() throws IOException {
+        final String js = "var s = \"a  // b\" + 'c /* d */';\n" +
+                "var t = `x  ${ s + `y  ${ { a: 1 }.a }` }  z`;\n" +
+                "var r = /[/]  \\/x/g.test(s) ? a / 2 : x / y / z;\n" +
+                "if (typeof /x/ === 'object') { r = 1 .toString(); }\n";
+
+        assertEquals("var s=\"a  // b\"+'c /* d */';" +
+                "var t=`x  ${s+`y  ${{a:1}.a}`}  z`;" +
+                "var r=/[/]  \\/x/g.test(s)?a/2:x/y/z;" +
+                "if(typeof/x/==='object'){r=1 .toString();}", minify(js));
+    }
+
+    private static String minify(String js) throws IOException {
+        final StringBuilderWriter out = new StringBuilderWriter();
+        JsMinifier.minify(new StringReader(js), out);
+        return out.toString();
+    }
+}
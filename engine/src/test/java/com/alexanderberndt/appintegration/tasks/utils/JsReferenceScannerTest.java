@@ -0,0 +1,60 @@
+package com.alexanderberndt.appintegration.tasks.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsReferenceScannerTest {
+
+    @Test
+    void findImportsAndExports() throws IOException {
+        assertEquals("[STATIC_IMPORT:./a.js, STATIC_IMPORT:./b.js, STATIC_IMPORT:./c.js, STATIC_IMPORT:react, STATIC_IMPORT:./d.js, DYNAMIC_IMPORT:./e.js, DYNAMIC_IMPORT:./f.js]",
+                scan("import {a, b as c} from './a.js';\n" +
+                        "import * as ns from \"./b.js\";\n" +
+                        "import './c.js';\n" +
+                        "import React,{useState}from\"react\";\n" +
+                        "export { x } from './d.js';\n" +
+                        "const m = await import('./e.js');\n" +
+                        "button.onclick = () => import(`./f.js`).then(m => m.run());\n"));
+    }
+
+    @Test
+    void ignoreCommentsStringsAndNonImports() throws IOException {
+        assertEquals("[]",
+                scan("// import './comment.js'\n" +
+                        "/* import('./block.js') */\n" +
+                        "const s = \"import './string.js'\";\n" +
+                        "const t = `import(${name}) ${'./x.js'}`;\n" +
+                        "const r = /import\\('\\.\\/regex.js'\\)/g;\n" +
+                        "export const from = 'no-import.js';\n" +
+                        "export function load() { return loader.import('./method.js'); }\n" +
+                        "console.log(import.meta.url, a / b / 2);\n" +
+                        "import(variable);\n"));
+    }
+
+    @Test
+    void findWebpackChunkMap() throws IOException {
+        assertEquals("[CHUNK:static/js/12.3fa1.chunk.js, CHUNK:static/js/34.9c2b.chunk.js, CHUNK:static/css/src_a.77aa.chunk.css]",
+                scan("r.u=e=>\"static/js/\"+e+\".\"+{12:\"3fa1\",34:\"9c2b\"}[e]+\".chunk.js\",\n" +
+                        "r.miniCssF=e=>\"static/css/\"+e+\".\"+{\"src_a\":\"77aa\"}[e]+\".chunk.css\",\n" +
+                        "r.x=e=>\"other/\"+e+\".\"+{1:\"a\"}[t]+\".js\"+{}"));
+    }
+
+    @Test
+    void findViteDeps() throws IOException {
+        assertEquals("[CHUNK:assets/About-1a2b.js, CHUNK:assets/About-3c4d.css]",
+                scan("const __vite__mapDeps=(i,m=__vite__mapDeps,d=(m.f||(m.f=[\"assets/About-1a2b.js\",\"assets/About-3c4d.css\"])))=>i.map(i=>d[i]);\n" +
+                        "const x = [\"not\", \"a\", \"dep\"];"));
+    }
+
+    private static String scan(String script) throws IOException {
+        final List<String> references = new ArrayList<>();
+        JsReferenceScanner.scan(new StringReader(script), (url, kind) -> references.add(kind + ":" + url));
+        return references.toString();
+    }
+}
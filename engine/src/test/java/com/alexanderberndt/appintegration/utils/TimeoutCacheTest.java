@@ -0,0 +1,235 @@
+package com.alexanderberndt.appintegration.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeoutCacheTest {
+
+    private final AtomicLong clock = new AtomicLong(1000);
+
+    @Test
+    void freshEntriesAreReturned() {
+        final TimeoutCache<String, String> cache = TimeoutCache.builder().timeout(100).clock(clock::get).build();
+        cache.put("a", "value-a");
+        assertEquals("value-a", cache.get("a"));
+
+        clock.addAndGet(99);
+        assertEquals("value-a", cache.get("a"));
+
+        clock.addAndGet(1);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void staleEntriesAreRetained() {
+        final TimeoutCache<String, String> cache = TimeoutCache.builder().timeout(100).staleRetention(50).clock(clock::get).build();
+        cache.put("a", "value-a");
+
+        clock.addAndGet(120);
+        assertNull(cache.get("a"));
+        final TimeoutCache.Entry<String> entry = cache.getEntry("a");
+        assertNotNull(entry);
+        assertTrue(entry.isExpired());
+        assertEquals("value-a", entry.getValue());
+        assertTrue(cache.containsKey("a"));
+
+        clock.addAndGet(30);
+        assertFalse(cache.containsKey("a"));
+        assertNull(cache.getEntry("a"));
+    }
+
+    @Test
+    void expiredEntriesAreRetainedAsStale() {
+        final TimeoutCache<String, String> cache = TimeoutCache.builder().timeout(100).staleRetention(50).clock(clock::get).build();
+        cache.put("a", "value-a");
+
+        cache.expire("a");
+        assertNull(cache.get("a"));
+        final TimeoutCache.Entry<String> entry = cache.getEntry("a");
+        assertNotNull(entry);
+        assertTrue(entry.isExpired());
+        assertTrue(entry.isRefreshDue());
+        assertEquals("value-a", entry.getValue());
+
+        assertEquals("value-b", cache.get("a", key -> "value-b"));
+        assertFalse(cache.getEntry("a").isExpired());
+
+        clock.addAndGet(150);
+        assertNull(cache.getEntry("a"));
+    }
+
+    @Test
+    void cleanUp() {
+        final TimeoutCache<String, String> cache = TimeoutCache.builder().timeout(100).clock(clock::get).build();
+        cache.put("a", "value-a");
+        clock.addAndGet(50);
+        cache.put("b", "value-b");
+        clock.addAndGet(50);
+
+        cache.cleanUp();
+        assertEquals(1, cache.size());
+        assertEquals("value-b", cache.get("b"));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        final TimeoutCache<String, String> cache = TimeoutCache.builder().maxSize(2).clock(clock::get).build();
+        cache.put("a", "value-a");
+        clock.incrementAndGet();
+        cache.put("b", "value-b");
+        clock.incrementAndGet();
+        cache.get("a");
+        clock.incrementAndGet();
+        cache.put("c", "value-c");
+
+        assertEquals(2, cache.size());
+        assertEquals("value-a", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("value-c", cache.get("c"));
+    }
+
+    @Test
+    void evictionRemovesLeastRecentlyUsedEntriesInBatches() {
+        final TimeoutCache<Integer, String> cache = TimeoutCache.builder().maxSize(20).clock(clock::get).build();
+        for (int i = 0; i < 20; i++) {
+            cache.put(i, "value-" + i);
+            clock.incrementAndGet();
+        }
+        cache.get(0);
+        clock.incrementAndGet();
+        cache.put(20, "value-20");
+
+        // evicts 10% of the max-size at once, so that the next puts don't need to evict
+        assertEquals(18, cache.size());
+        assertEquals("value-0", cache.get(0));
+        assertNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertNull(cache.get(3));
+        assertEquals("value-4", cache.get(4));
+        assertEquals("value-20", cache.get(20));
+    }
+
+    @Test
+    void invalidatedLoadIsNotCached() {
+        final TimeoutCache<String, String> cache = TimeoutCache.builder().clock(clock::get).build();
+
+        assertEquals("outdated", cache.get("a", key -> {
+            // e.g. a new version was committed, while the old one was loaded
+            cache.removeIf((k, v) -> true);
+            return "outdated";
+        }));
+        assertNull(cache.get("a"));
+
+        assertEquals("outdated", cache.get("b", key -> {
+            cache.remove("b");
+            return "outdated";
+        }));
+        assertNull(cache.get("b"));
+        assertEquals("current", cache.get("b", key -> "current"));
+        assertEquals("current", cache.get("b"));
+    }
+
+    @Test
+    void loaderIsCalledOnlyForMissingOrExpiredValues() {
+        final TimeoutCache<String, String> cache = TimeoutCache.builder().timeout(100).clock(clock::get).build();
+        final AtomicInteger loadCounter = new AtomicInteger();
+
+        assertEquals("a1", cache.get("a", key -> key + loadCounter.incrementAndGet()));
+        assertEquals("a1", cache.get("a", key -> key + loadCounter.incrementAndGet()));
+
+        clock.addAndGet(100);
+        assertEquals("a2", cache.get("a", key -> key + loadCounter.incrementAndGet()));
+    }
+
+    @Test
+    void reloadReplacesFreshValue() {
+        final TimeoutCache<String, String> cache = TimeoutCache.builder().clock(clock::get).build();
+        cache.put("a", "old");
+
+        assertEquals("new", cache.reload("a", key -> {
+            assertTrue(cache.isLoading("a"));
+            return "new";
+        }));
+        assertFalse(cache.isLoading("a"));
+        assertEquals("new", cache.get("a"));
+    }
+
+    @Test
+    void staleValueIsUsedIfLoaderFails() {
+        final TimeoutCache<String, String> cache = TimeoutCache.builder().timeout(100).staleRetention(100).clock(clock::get).build();
+        cache.put("a", "value-a");
+        clock.addAndGet(150);
+
+        assertEquals("value-a", cache.get("a", key -> {
+            throw new IllegalStateException("origin down");
+        }));
+
+        clock.addAndGet(50);
+        assertThrows(IllegalStateException.class, () -> cache.get("a", key -> {
+            throw new IllegalStateException("origin down");
+        }));
+    }
+
+    @Test
+    void refreshAheadLoadsInBackground() {
+        final List<Runnable> backgroundTasks = new ArrayList<>();
+        final TimeoutCache<String, String> cache = TimeoutCache.builder()
+                .timeout(100).refreshAhead(80, backgroundTasks::add).clock(clock::get).build();
+        cache.put("a", "old");
+
+        clock.addAndGet(90);
+        assertEquals("old", cache.get("a", key -> "new"));
+        assertEquals(1, backgroundTasks.size());
+
+        backgroundTasks.get(0).run();
+        assertEquals("new", cache.get("a"));
+    }
+
+    @Test
+    void concurrentLoadsAreExecutedOnlyOnce() throws Exception {
+        final TimeoutCache<String, String> cache = new TimeoutCache<>();
+        final AtomicInteger loadCounter = new AtomicInteger();
+        final CountDownLatch loaderStarted = new CountDownLatch(1);
+        final CountDownLatch releaseLoader = new CountDownLatch(1);
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> futureList = new ArrayList<>();
+            futureList.add(executorService.submit(() -> cache.get("a", key -> {
+                loaderStarted.countDown();
+                await(releaseLoader);
+                return "value" + loadCounter.incrementAndGet();
+            })));
+            await(loaderStarted);
+            for (int i = 0; i < 3; i++) {
+                futureList.add(executorService.submit(() -> cache.get("a", key -> "value" + loadCounter.incrementAndGet())));
+            }
+            Thread.sleep(50);
+            releaseLoader.countDown();
+
+            for (Future<String> future : futureList) {
+                assertEquals("value1", future.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loadCounter.get());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        }
+    }
+}
@@ -0,0 +1 @@
+window.analytics = true;
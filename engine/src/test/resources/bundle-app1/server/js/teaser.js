@@ -0,0 +1 @@
+window.shop.teaser = true;
@@ -0,0 +1 @@
+document.querySelectorAll('.teaser').forEach(function (el) { el.classList.add('ready'); });
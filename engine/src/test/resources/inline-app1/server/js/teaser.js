@@ -0,0 +1 @@
+window.vendor.init(document.body);
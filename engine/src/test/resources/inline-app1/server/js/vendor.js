@@ -0,0 +1,6 @@
+(function () {
+    window.vendor = {
+        init: function (element) { element.classList.add('initialized'); },
+        destroy: function (element) { element.classList.remove('initialized'); }
+    };
+})();
@@ -4,22 +4,40 @@ import com.alexanderberndt.appintegration.aem.engine.logging.AemLogAppender;
 import com.alexanderberndt.appintegration.aem.engine.model.SlingApplicationInstance;
 import com.alexanderberndt.appintegration.engine.AbstractAppIntegrationEngine;
 import com.alexanderberndt.appintegration.engine.AppIntegrationEngine;
+import com.alexanderberndt.appintegration.engine.Application;
+import com.alexanderberndt.appintegration.engine.ResourceLoaderException;
 import com.alexanderberndt.appintegration.engine.logging.LogAppender;
 import com.alexanderberndt.appintegration.engine.logging.LogStatus;
+import com.alexanderberndt.appintegration.engine.logging.appender.SamplingLogAppender;
 import com.alexanderberndt.appintegration.engine.logging.appender.Slf4jLogAppender;
 import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceRef;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
 import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.*;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.lang.invoke.MethodHandles;
-import java.util.Collections;
-import java.util.GregorianCalendar;
-import java.util.List;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -32,12 +50,49 @@ public class AemAppIntegrationEngine extends AbstractAppIntegrationEngine<SlingA
 
     public static final String SUB_SERVICE_ID = "engine";
 
+    public static final String APPLICATION_ROOT = "/var/aem-app-integration/%s";
+
+    public static final String LAST_DISCOVERY_ATTR = "lastDiscovery";
+
+    public static final String LAST_INSTANCE_COUNT_ATTR = "lastInstanceCount";
+
+    public static final String LAST_APPLICATION_INFO_HASH_ATTR = "lastApplicationInfoHash";
+
+    private static final int BACKGROUND_THREADS = 2;
+
     @Reference
     private AemAppIntegrationFactory factory;
 
     @Reference
     private ResourceResolverFactory resolverFactory;
 
+    @Reference
+    private AemInstanceDiscovery instanceDiscovery;
+
+    @Reference
+    private DispatcherFlushService flushService;
+
+    private ExecutorService backgroundExecutor;
+
+    @Activate
+    protected void activate() {
+        backgroundExecutor = Executors.newFixedThreadPool(BACKGROUND_THREADS, runnable -> {
+            final Thread thread = new Thread(runnable, "aem-app-integration-background");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // warm-up: load the application-info.json of all configured applications
+        for (String applicationId : factory.getAllApplications().keySet()) {
+            backgroundExecutor.execute(() -> warmUp(applicationId));
+        }
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        backgroundExecutor.shutdownNow();
+    }
+
 
     @Override
     public ExternalResource getHtmlSnippet(@Nonnull SlingApplicationInstance instance) {
@@ -49,6 +104,30 @@ public class AemAppIntegrationEngine extends AbstractAppIntegrationEngine<SlingA
         return callRuntimeMethodWithContext(applicationId, context -> super.getStaticResource(context, relativePath));
     }
 
+    /**
+     * Calls the handler with the cached entry of a static resource (or <code>null</code>, if the resource isn't
+     * cached). The entry is only valid within the handler, so that its content can be streamed directly from the
+     * repository.
+     */
+    public <R> R handleCachedStaticResource(@Nonnull String applicationId, @Nonnull String relativePath,
+                                            @Nonnull CachedEntryHandler<R> handler) throws IOException {
+        try {
+            return callRuntimeMethodWithContext(applicationId, context -> {
+                // don't serve anything outside of the application base-path (e.g. by ../)
+                final URI resourceUri = resolveStaticResourceUri(context.getApplicationInfoUri(), relativePath);
+                final AemExternalResourceCache.CachedEntry entry = ((resourceUri != null) && (context.getExternalResourceCache() instanceof AemExternalResourceCache))
+                        ? ((AemExternalResourceCache) context.getExternalResourceCache()).getCachedEntry(resourceUri) : null;
+                try {
+                    return handler.handle(entry);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
     @Override
     public boolean isDynamicPath(@Nonnull String applicationId, String relativePath) {
         return callRuntimeMethodWithContext(applicationId, context -> super.isDynamicPath(context, relativePath));
@@ -67,9 +146,165 @@ public class AemAppIntegrationEngine extends AbstractAppIntegrationEngine<SlingA
         );
     }
 
+    /**
+     * Drops the cached application-info and resolved snippet-urls of an application, e.g. after a new version
+     * was written to the cache.
+     */
+    public void invalidateApplication(@Nonnull String applicationId) {
+        callRuntimeMethodWithContext(applicationId, context -> {
+            invalidateApplicationCaches(context);
+            return null;
+        });
+    }
+
+    /**
+     * Reads the version of the resource-cache, which was committed by the last successful prefetch.
+     *
+     * @param applicationId application-id
+     * @return committed version, or <code>null</code> if no version was committed yet
+     */
+    @Nullable
+    public String getCommittedVersion(@Nonnull String applicationId) {
+        try (ResourceResolver resolver = resolverFactory.getServiceResourceResolver(Collections.singletonMap(SUBSERVICE, SUB_SERVICE_ID))) {
+            final Resource rootRes = resolver.getResource(String.format(AemExternalResourceCache.CACHE_ROOT, applicationId));
+            return (rootRes != null)
+                    ? StringUtils.defaultIfBlank(rootRes.getValueMap().get(AemExternalResourceCache.VERSION_ATTR, String.class), null)
+                    : null;
+        } catch (LoginException e) {
+            throw new AppIntegrationException("Cannot login to service user session!", e);
+        }
+    }
+
+    /**
+     * Discovers all instances of an application, and prefetches them. In incremental mode, the prefetch is
+     * skipped, if no instance was added, modified or removed since the last run, and the application-info.json
+     * is unchanged (as a new release of the application changes it). As the prefetch writes a complete new
+     * version of the cache, it is always done for all instances.
+     *
+     * @param applicationId application-id
+     * @param incremental   skip the prefetch, if neither the instances nor the application changed since the last run
+     * @return true, if the prefetch was done successfully
+     */
+    public boolean prefetchApplication(@Nonnull String applicationId, boolean incremental) {
+        return prefetchApplication(applicationId, incremental, () -> false);
+    }
+
+    /**
+     * Same as {@link #prefetchApplication(String, boolean)}, but the prefetch is aborted (and its cache version is
+     * rolled back), as soon as the cancellation-flag is set.
+     *
+     * @param applicationId application-id
+     * @param incremental   skip the prefetch, if neither the instances nor the application changed since the last run
+     * @param isCancelled   cancellation-flag, checked before every resource
+     * @return true, if the prefetch was done successfully
+     */
+    public boolean prefetchApplication(@Nonnull String applicationId, boolean incremental, @Nonnull BooleanSupplier isCancelled) {
+        try (ResourceResolver resolver = resolverFactory.getServiceResourceResolver(Collections.singletonMap(SUBSERVICE, SUB_SERVICE_ID))) {
+            final Calendar startTime = Calendar.getInstance();
+            final Resource appRes = ResourceUtil.getOrCreateResource(resolver, String.format(APPLICATION_ROOT, applicationId),
+                    (String) null, null, false);
+            final ValueMap appValueMap = appRes.getValueMap();
+            final Calendar lastDiscovery = appValueMap.get(LAST_DISCOVERY_ATTR, Calendar.class);
+            final String applicationInfoHash = callRuntimeMethodWithContext(applicationId, AemAppIntegrationEngine::loadApplicationInfoHash);
+
+            if (incremental && (lastDiscovery != null)
+                    && applicationInfoHash.equals(appValueMap.get(LAST_APPLICATION_INFO_HASH_ATTR, String.class))
+                    && !instanceDiscovery.hasChangedInstances(resolver, applicationId, lastDiscovery)
+                    && (instanceDiscovery.countInstances(resolver, applicationId) == appValueMap.get(LAST_INSTANCE_COUNT_ATTR, -1))) {
+                LOG.info("Neither the instances nor the application {} changed since last prefetch, skip prefetch", applicationId);
+                return false;
+            }
+
+            // the snippets of every batch are prefetched, while the query continues to discover the next batch
+            final AtomicBoolean prefetched = new AtomicBoolean();
+            final AtomicInteger instanceCount = new AtomicInteger();
+            if (!callBackgroundMethodWithContext(applicationId, context -> prefetched.set(super.prefetchInBatches(context,
+                    batchConsumer -> instanceCount.set(instanceDiscovery.discoverInstances(resolver, applicationId, null, AemInstanceDiscovery.DEFAULT_BATCH_SIZE, batchConsumer)),
+                    isCancelled)))) {
+                throw new AppIntegrationException("Prefetch of application " + applicationId + " failed (see integration-log)");
+            }
+
+            // remember the state only for successful runs, so that a failed run is repeated next time
+            if (prefetched.get()) {
+                final ModifiableValueMap modifiableValueMap = Objects.requireNonNull(appRes.adaptTo(ModifiableValueMap.class));
+                modifiableValueMap.put(LAST_DISCOVERY_ATTR, startTime);
+                modifiableValueMap.put(LAST_INSTANCE_COUNT_ATTR, instanceCount.get());
+                modifiableValueMap.put(LAST_APPLICATION_INFO_HASH_ATTR, applicationInfoHash);
+                resolver.commit();
+            }
+            return prefetched.get();
+
+        } catch (LoginException | PersistenceException e) {
+            throw new AppIntegrationException("Cannot prefetch application " + applicationId, e);
+        }
+    }
+
+    /**
+     * Loads the application-info.json directly from its origin (without the pipeline and the cache), and returns
+     * the hash of its content.
+     */
+    @Nonnull
+    private static String loadApplicationInfoHash(@Nonnull AemGlobalContext context) {
+        final ExternalResourceRef appInfoRef = new ExternalResourceRef(context.getApplicationInfoUri(), ExternalResourceType.APPLICATION_PROPERTIES);
+        try (InputStream in = context.getResourceLoader().load(appInfoRef, context.getResourceFactory()).getContentAsInputStream()) {
+            return DigestUtils.sha256Hex(in);
+        } catch (IOException | ResourceLoaderException e) {
+            throw new AppIntegrationException("Cannot load " + appInfoRef.getUri(), e);
+        }
+    }
+
+    @Override
+    protected void afterPrefetchCommit(@Nonnull AemGlobalContext context, @Nonnull Map<URI, List<SlingApplicationInstance>> snippetInstancesMap, @Nonnull Set<URI> changedUris) {
+        if (!flushService.isEnabled() || changedUris.isEmpty()) {
+            return;
+        }
+
+        final String applicationId = context.getApplicationId();
+        final Set<String> handles = DispatcherFlushService.getFlushHandles(applicationId, context.getApplicationInfoUri(), snippetInstancesMap, changedUris);
+        final String version = (context.getExternalResourceCache() instanceof AemExternalResourceCache)
+                ? ((AemExternalResourceCache) context.getExternalResourceCache()).getVersionId() : null;
+        try {
+            // the new version is already committed, so a failed flush must not fail the prefetch (it can be replayed)
+            final String journalPath = flushService.flush(context.getResourceResolver(), applicationId, version, handles);
+            context.getIntegrationLog().addInfo("Flushed %d handles at dispatcher (journal %s)", handles.size(), journalPath);
+        } catch (PersistenceException | RuntimeException e) {
+            LOG.error("Cannot flush dispatcher for application {}", applicationId, e);
+            context.getIntegrationLog().addWarning("Cannot flush dispatcher: %s", e.getMessage());
+        }
+    }
+
+    @Override
+    protected boolean runInBackground(@Nonnull AemGlobalContext callingContext, @Nonnull Consumer<AemGlobalContext> operation) {
+        final String applicationId = callingContext.getApplicationId();
+        try {
+            backgroundExecutor.execute(() -> callRuntimeMethodWithContext(applicationId, context -> {
+                operation.accept(context);
+                return null;
+            }));
+            return true;
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Cannot run background operation for application {}", applicationId, e);
+            return false;
+        }
+    }
+
+    @FunctionalInterface
+    public interface CachedEntryHandler<R> {
+
+        R handle(@Nullable AemExternalResourceCache.CachedEntry entry) throws IOException;
+    }
+
+    private void warmUp(@Nonnull String applicationId) {
+        try {
+            callRuntimeMethodWithContext(applicationId, context -> getApplicationInfo(context, false));
+        } catch (RuntimeException e) {
+            LOG.warn("Warm-up of application {} failed", applicationId, e);
+        }
+    }
+
     private <R> R callRuntimeMethodWithContext(@Nonnull String applicationId, @Nonnull Function<AemGlobalContext, R> function) {
         try (ResourceResolver resolver = resolverFactory.getServiceResourceResolver(Collections.singletonMap(SUBSERVICE, SUB_SERVICE_ID))) {
-            final LogAppender logAppender = new Slf4jLogAppender();
+            final LogAppender logAppender = createRuntimeLogAppender(applicationId);
             final AemExternalResourceCache cache = new AemExternalResourceCache(resolver, applicationId);
             final AemGlobalContext context = new AemGlobalContext(applicationId, factory, cache, logAppender, resolver);
 
@@ -83,17 +318,25 @@ public class AemAppIntegrationEngine extends AbstractAppIntegrationEngine<SlingA
         }
     }
 
-    private void callBackgroundMethodWithContext(@Nonnull String applicationId, @Nonnull Consumer<AemGlobalContext> consumer) {
+    @Nonnull
+    protected LogAppender createRuntimeLogAppender(@Nonnull String applicationId) {
+        final Application application = factory.getApplication(applicationId);
+        final LogAppender logAppender = new Slf4jLogAppender();
+        return (application != null) ? SamplingLogAppender.forApplication(application, logAppender) : logAppender;
+    }
+
+    private boolean callBackgroundMethodWithContext(@Nonnull String applicationId, @Nonnull Consumer<AemGlobalContext> consumer) {
         try (ResourceResolver logResolver = resolverFactory.getServiceResourceResolver(Collections.singletonMap(SUBSERVICE, SUB_SERVICE_ID))) {
             final LogAppender logAppender = createPersistentLogAppender(logResolver, applicationId);
 
             try (ResourceResolver processingResolver = resolverFactory.getServiceResourceResolver(Collections.singletonMap(SUBSERVICE, SUB_SERVICE_ID))) {
 
-                final AemExternalResourceCache cache = new AemExternalResourceCache(processingResolver, applicationId);
+                final AemExternalResourceCache cache = new AemExternalResourceCache(processingResolver, applicationId, this::createLeaseResolver);
                 final AemGlobalContext context = new AemGlobalContext(applicationId, factory, cache, logAppender, processingResolver);
 
-                callBackgroundMethod(context, cache, consumer);
+                final boolean successful = callBackgroundMethod(context, cache, consumer);
                 processingResolver.commit();
+                return successful;
 
             } finally {
                 logResolver.commit();
@@ -104,9 +347,10 @@ public class AemAppIntegrationEngine extends AbstractAppIntegrationEngine<SlingA
         }
     }
 
-    private void callBackgroundMethod(AemGlobalContext context, AemExternalResourceCache cache, @Nonnull Consumer<AemGlobalContext> consumer) {
+    private boolean callBackgroundMethod(AemGlobalContext context, AemExternalResourceCache cache, @Nonnull Consumer<AemGlobalContext> consumer) {
         try {
             consumer.accept(context);
+            return true;
         } catch (Exception e) {
 
             // write error to log
@@ -116,6 +360,16 @@ public class AemAppIntegrationEngine extends AbstractAppIntegrationEngine<SlingA
             if (cache.isLongRunningWrite()) {
                 cache.rollbackLongRunningWrite();
             }
+            return false;
+        }
+    }
+
+    @Nonnull
+    private ResourceResolver createLeaseResolver() {
+        try {
+            return resolverFactory.getServiceResourceResolver(Collections.singletonMap(SUBSERVICE, SUB_SERVICE_ID));
+        } catch (LoginException e) {
+            throw new AppIntegrationException("Cannot login to service user session!", e);
         }
     }
 
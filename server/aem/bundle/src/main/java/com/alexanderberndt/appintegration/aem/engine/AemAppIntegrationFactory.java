@@ -1,9 +1,11 @@
 package com.alexanderberndt.appintegration.aem.engine;
 
+import com.alexanderberndt.appintegration.aem.engine.context.ContextProviderCache;
 import com.alexanderberndt.appintegration.aem.engine.model.SlingApplicationInstance;
 import com.alexanderberndt.appintegration.engine.AppIntegrationFactory;
 import com.alexanderberndt.appintegration.engine.Application;
 import com.alexanderberndt.appintegration.engine.ContextProvider;
+import com.alexanderberndt.appintegration.engine.PrefetchPostProcessor;
 import com.alexanderberndt.appintegration.engine.ResourceLoader;
 import com.alexanderberndt.appintegration.engine.resources.conversion.TextParser;
 import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
@@ -17,6 +19,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.lang.invoke.MethodHandles;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static org.osgi.service.component.ComponentConstants.COMPONENT_NAME;
@@ -32,10 +35,18 @@ public class AemAppIntegrationFactory implements AppIntegrationFactory<SlingAppl
 
     private final Map<String, AemContextProvider> contextProviderMap = new HashMap<>();
 
+    // context-providers wrapped by the context-provider cache (created lazily)
+    private final Map<String, AemContextProvider> cachingContextProviderMap = new ConcurrentHashMap<>();
+
     private final List<AemProcessingPipelineFactory> processingPipelineFactoryList = new ArrayList<>();
 
     private final List<TextParser> textParserList = new ArrayList<>();
 
+    private final Map<String, PrefetchPostProcessor> prefetchPostProcessorMap = new ConcurrentHashMap<>();
+
+    @Reference
+    private ContextProviderCache contextProviderCache;
+
 
     @Nonnull
     @Override
@@ -52,7 +63,11 @@ public class AemAppIntegrationFactory implements AppIntegrationFactory<SlingAppl
     @Nonnull
     @Override
     public Map<String, ContextProvider<SlingApplicationInstance>> getAllContextProvider() {
-        return Collections.unmodifiableMap(contextProviderMap);
+        final Map<String, ContextProvider<SlingApplicationInstance>> resultMap = new HashMap<>();
+        for (String providerName : contextProviderMap.keySet()) {
+            resultMap.put(providerName, getContextProvider(providerName));
+        }
+        return Collections.unmodifiableMap(resultMap);
     }
 
     @Nonnull
@@ -61,6 +76,12 @@ public class AemAppIntegrationFactory implements AppIntegrationFactory<SlingAppl
         return textParserList;
     }
 
+    @Nonnull
+    @Override
+    public Map<String, PrefetchPostProcessor> getAllPrefetchPostProcessors() {
+        return Collections.unmodifiableMap(prefetchPostProcessorMap);
+    }
+
     /**
      * Create a new instance of an processing pipeline, and updates the context with the default task configuration
      * and logging information.
@@ -98,7 +119,12 @@ public class AemAppIntegrationFactory implements AppIntegrationFactory<SlingAppl
     @Nullable
     @Override
     public ContextProvider<SlingApplicationInstance> getContextProvider(@Nonnull String providerName) {
-        return contextProviderMap.get(providerName);
+        final AemContextProvider contextProvider = contextProviderMap.get(providerName);
+        if (contextProvider == null) {
+            return null;
+        }
+        return cachingContextProviderMap.computeIfAbsent(providerName,
+                name -> contextProviderCache.wrap(name, contextProvider));
     }
 
     @Reference(name = "application", cardinality = ReferenceCardinality.MULTIPLE,
@@ -127,12 +153,23 @@ public class AemAppIntegrationFactory implements AppIntegrationFactory<SlingAppl
     @Reference(name = "contextProvider", cardinality = ReferenceCardinality.MULTIPLE,
             policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY)
     protected void bindContextProvider(final AemContextProvider contextProvider, final Map<String, Object> properties) {
-        contextProviderMap.put(getKebabComponentName(contextProvider, properties, "ContextProvider"), contextProvider);
+        final String providerName = getKebabComponentName(contextProvider, properties, "ContextProvider");
+        contextProviderMap.put(providerName, contextProvider);
+        invalidateContextProvider(providerName);
     }
 
     @SuppressWarnings("unused")
     protected void unbindContextProvider(final AemContextProvider contextProvider) {
+        final List<String> providerNames = getKeysOfValue(contextProviderMap, contextProvider);
         removeValueFromMap(contextProviderMap, contextProvider);
+        providerNames.forEach(this::invalidateContextProvider);
+    }
+
+    private void invalidateContextProvider(@Nonnull String providerName) {
+        cachingContextProviderMap.remove(providerName);
+        if (contextProviderCache != null) {
+            contextProviderCache.invalidateProvider(providerName);
+        }
     }
 
     @Reference(name = "aemProcessingPipelineFactory", cardinality = ReferenceCardinality.MULTIPLE,
@@ -157,6 +194,17 @@ public class AemAppIntegrationFactory implements AppIntegrationFactory<SlingAppl
         textParserList.remove(textParser);
     }
 
+    @Reference(name = "prefetchPostProcessor", cardinality = ReferenceCardinality.MULTIPLE,
+            policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY)
+    protected void bindPrefetchPostProcessor(final PrefetchPostProcessor postProcessor, final Map<String, Object> properties) {
+        prefetchPostProcessorMap.put(getKebabComponentName(postProcessor, properties, "PostProcessor"), postProcessor);
+    }
+
+    @SuppressWarnings("unused")
+    protected void unbindPrefetchPostProcessor(final PrefetchPostProcessor postProcessor) {
+        removeValueFromMap(prefetchPostProcessorMap, postProcessor);
+    }
+
     @Nonnull
     private static String getKebabComponentName(@Nonnull Object component, @Nonnull Map<String, Object> properties, @Nullable String ignorableSuffix) {
         final Object nameObj = properties.get(COMPONENT_NAME);
@@ -167,11 +215,15 @@ public class AemAppIntegrationFactory implements AppIntegrationFactory<SlingAppl
     }
 
     private static <T> void removeValueFromMap(Map<String, T> map, T value) {
-        final List<String> removeKeys = map.entrySet().stream()
+        final List<String> removeKeys = getKeysOfValue(map, value);
+        removeKeys.forEach(map::remove);
+
+    }
+
+    private static <T> List<String> getKeysOfValue(Map<String, T> map, T value) {
+        return map.entrySet().stream()
                 .filter(entry -> entry.getValue() == value)
                 .map(Map.Entry::getKey)
                 .collect(Collectors.toList());
-        removeKeys.forEach(map::remove);
-
     }
 }
@@ -1,6 +1,7 @@
 package com.alexanderberndt.appintegration.aem.engine;
 
 import com.alexanderberndt.appintegration.engine.Application;
+import com.alexanderberndt.appintegration.engine.logging.LogStatus;
 import org.apache.commons.lang3.StringUtils;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -8,15 +9,20 @@ import org.osgi.service.component.annotations.ConfigurationPolicy;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.Designate;
 import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandles;
 import java.util.*;
 
 @Component(service = AemApplication.class, configurationPolicy = ConfigurationPolicy.REQUIRE)
 @Designate(ocd = AemApplication.Configuration.class, factory = true)
 public class AemApplication implements Application {
 
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
     @ObjectClassDefinition(name = "AEM App-Integration - Application")
     @interface Configuration {
 
@@ -56,12 +62,62 @@ public class AemApplication implements Application {
         @Nullable
         String[] contextProviderNames() default {"locale", "tenant"};
 
+        @AttributeDefinition(
+                name = "Prefetch Post-Processor Names",
+                description = "List of post-processors, which are applied to a prefetch before it is committed (e.g. fingerprint, to serve static resources with content-hashed urls)."
+        )
+        String[] prefetchPostProcessorNames() default {};
+
         @AttributeDefinition(
                 name = "Global Properties",
                 description = "List of key=value with global processing properties, which will overwrite the task-properties."
         )
         @Nullable
         String[] globalProperties() default {};
+
+        @AttributeDefinition(
+                name = "Integration-Log Level",
+                description = "Minimal status (INFO, WARNING, ERROR, FAILED) of entries, which are logged for runtime requests (e.g. rendering of snippets)."
+        )
+        String integrationLogLevel() default "WARNING";
+
+        @AttributeDefinition(
+                name = "Integration-Log Sample-Rate",
+                description = "Share of runtime requests (0.0 - 1.0), for which the full integration-log is written regardless of the level."
+        )
+        double integrationLogSampleRate() default 0.01;
+
+        @AttributeDefinition(
+                name = "Prefetch Schedule",
+                description = "Cron-expression (e.g. 0 0 3 * * ?) or interval in seconds (e.g. 3600) for the scheduled prefetch. Leave empty to disable the scheduled prefetch."
+        )
+        String prefetchSchedule() default "";
+
+        @AttributeDefinition(
+                name = "Prefetch Incremental",
+                description = "Skip a scheduled prefetch, if neither the instances nor the application-info.json changed "
+                        + "since the last successful run. Changes of other resources of the application are only picked up "
+                        + "by a full prefetch."
+        )
+        boolean prefetchIncremental() default false;
+
+        @AttributeDefinition(
+                name = "Prefetch Jitter",
+                description = "Max. random delay in seconds, to spread the scheduled prefetches of all applications."
+        )
+        int prefetchJitter() default 300;
+
+        @AttributeDefinition(
+                name = "Prefetch Max-Runtime",
+                description = "Max. runtime of a scheduled prefetch in seconds, before it is aborted."
+        )
+        int prefetchMaxRuntime() default 3600;
+
+        @AttributeDefinition(
+                name = "Prefetch Back-Off",
+                description = "Delay in seconds after a failed prefetch, before the next scheduled prefetch is started (doubled with every further failure)."
+        )
+        int prefetchBackOff() default 600;
     }
 
     private final String applicationId;
@@ -74,8 +130,24 @@ public class AemApplication implements Application {
 
     private final List<String> contextProviderNames;
 
+    private final List<String> prefetchPostProcessorNames;
+
     private final Map<String, Object> globalProperties;
 
+    private final LogStatus integrationLogLevel;
+
+    private final double integrationLogSampleRate;
+
+    private final String prefetchSchedule;
+
+    private final boolean prefetchIncremental;
+
+    private final long prefetchJitterMillis;
+
+    private final long prefetchMaxRuntimeMillis;
+
+    private final long prefetchBackOffMillis;
+
     @Activate
     public AemApplication(@Nonnull Configuration configuration) {
         this.applicationId = configuration.applicationId();
@@ -83,7 +155,15 @@ public class AemApplication implements Application {
         this.resourceLoaderName = configuration.resourceLoaderName();
         this.processingPipelineName = configuration.processingPipelineName();
         this.contextProviderNames = Collections.unmodifiableList(Arrays.asList(configuration.contextProviderNames()));
+        this.prefetchPostProcessorNames = Collections.unmodifiableList(Arrays.asList(configuration.prefetchPostProcessorNames()));
         this.globalProperties = Collections.unmodifiableMap(convertToMap(configuration.globalProperties()));
+        this.integrationLogLevel = parseLogStatus(configuration.integrationLogLevel());
+        this.integrationLogSampleRate = configuration.integrationLogSampleRate();
+        this.prefetchSchedule = parsePrefetchSchedule(configuration.applicationId(), configuration.prefetchSchedule());
+        this.prefetchIncremental = configuration.prefetchIncremental();
+        this.prefetchJitterMillis = Math.max(0, configuration.prefetchJitter()) * 1000L;
+        this.prefetchMaxRuntimeMillis = Math.max(0, configuration.prefetchMaxRuntime()) * 1000L;
+        this.prefetchBackOffMillis = Math.max(0, configuration.prefetchBackOff()) * 1000L;
     }
 
     @Nonnull
@@ -132,12 +212,55 @@ public class AemApplication implements Application {
         return processingPipelineName;
     }
 
+    @Nonnull
+    @Override
+    public List<String> getPrefetchPostProcessorNames() {
+        return prefetchPostProcessorNames;
+    }
+
     @Nullable
     @Override
     public Map<String, Object> getGlobalProperties() {
         return globalProperties;
     }
 
+    @Nonnull
+    @Override
+    public LogStatus getIntegrationLogLevel() {
+        return integrationLogLevel;
+    }
+
+    @Override
+    public double getIntegrationLogSampleRate() {
+        return integrationLogSampleRate;
+    }
+
+    /**
+     * Cron-expression or interval in seconds of the scheduled prefetch.
+     *
+     * @return schedule, or <code>null</code> if the scheduled prefetch is disabled
+     */
+    @Nullable
+    public String getPrefetchSchedule() {
+        return prefetchSchedule;
+    }
+
+    public boolean isPrefetchIncremental() {
+        return prefetchIncremental;
+    }
+
+    public long getPrefetchJitterMillis() {
+        return prefetchJitterMillis;
+    }
+
+    public long getPrefetchMaxRuntimeMillis() {
+        return prefetchMaxRuntimeMillis;
+    }
+
+    public long getPrefetchBackOffMillis() {
+        return prefetchBackOffMillis;
+    }
+
     @Override
     public String toString() {
         return "AemApplication{" +
@@ -146,10 +269,43 @@ public class AemApplication implements Application {
                 ", resourceLoaderName='" + getResourceLoaderName() + '\'' +
                 ", contextProviderNames=" + getContextProviderNames() +
                 ", processingPipelineName='" + getProcessingPipelineName() + '\'' +
+                ", prefetchPostProcessorNames=" + getPrefetchPostProcessorNames() +
                 ", globalProperties=" + getGlobalProperties() +
+                ", integrationLogLevel=" + getIntegrationLogLevel() +
+                ", integrationLogSampleRate=" + getIntegrationLogSampleRate() +
+                ", prefetchSchedule='" + getPrefetchSchedule() + '\'' +
                 '}';
     }
 
+    @Nonnull
+    private static LogStatus parseLogStatus(@Nullable String logLevel) {
+        try {
+            return LogStatus.valueOf(StringUtils.upperCase(StringUtils.trim(logLevel)));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return LogStatus.WARNING;
+        }
+    }
+
+    /**
+     * An interval must be at least one second, as a period of 0 would run the prefetch continuously.
+     */
+    @Nullable
+    private static String parsePrefetchSchedule(@Nullable String applicationId, @Nullable String schedule) {
+        final String trimmedSchedule = StringUtils.trimToNull(schedule);
+        if (StringUtils.isNumeric(trimmedSchedule)) {
+            try {
+                if (Long.parseLong(trimmedSchedule) > 0) {
+                    return trimmedSchedule;
+                }
+            } catch (NumberFormatException e) {
+                // too large
+            }
+            LOG.error("Invalid prefetch-schedule {} of application {}, scheduled prefetch is disabled", trimmedSchedule, applicationId);
+            return null;
+        }
+        return trimmedSchedule;
+    }
+
     private static Map<String, Object> convertToMap(String[] keyValueStrings) {
         final Map<String, Object> map = new HashMap<>();
         for (String keyValueString : keyValueStrings) {
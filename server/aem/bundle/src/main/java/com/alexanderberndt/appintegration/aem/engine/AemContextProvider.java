@@ -3,5 +3,33 @@ package com.alexanderberndt.appintegration.aem.engine;
 import com.alexanderberndt.appintegration.aem.engine.model.SlingApplicationInstance;
 import com.alexanderberndt.appintegration.engine.ContextProvider;
 
+import javax.annotation.Nonnull;
+
 public interface AemContextProvider extends ContextProvider<SlingApplicationInstance> {
+
+    /**
+     * Declares, what the context of an instance depends on. The results are cached by the coarsest
+     * matching key (e.g. once per page), and invalidated if the underlying resources change.
+     */
+    enum Dependency {
+        /** Context is the same for all instances */
+        NONE,
+        /** Context depends on the tenant of the instance (cached per page) */
+        TENANT,
+        /** Context depends on the containing page (or its ancestors) */
+        PAGE,
+        /** Context depends on the instance resource itself */
+        INSTANCE_RESOURCE,
+        /** Context must not be cached */
+        UNCACHEABLE
+    }
+
+    /**
+     * @return the dependency of the context. Default is {@link Dependency#UNCACHEABLE}, so that existing
+     * providers are never cached unintentionally.
+     */
+    @Nonnull
+    default Dependency getDependency() {
+        return Dependency.UNCACHEABLE;
+    }
 }
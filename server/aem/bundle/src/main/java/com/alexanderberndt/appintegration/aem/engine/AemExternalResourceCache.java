@@ -8,32 +8,79 @@ import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
 import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
 import com.alexanderberndt.appintegration.utils.DataMap;
 import com.day.cq.commons.jcr.JcrUtil;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.jackrabbit.util.Text;
 import org.apache.sling.api.resource.*;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 import static org.apache.jackrabbit.JcrConstants.*;
 
+/**
+ * Resource-cache in the JCR. Every prefetch writes a new version, which becomes active with
+ * {@link #commitLongRunningWrite()}. Afterwards, only the active and the previous version are kept. For this,
+ * every version is recorded (with its fencing-token and the paths of its committed entries) below
+ * <code>/var/aem-app-integration/&lt;app&gt;/versions</code>.
+ * <p>
+ * Prefetches are guarded by a lease-lock on the cache root: The lease is renewed by a heartbeat (with an own
+ * resource-resolver, so that pending writes of the prefetch are not committed), and every lock gets a new
+ * fencing-token. A prefetch, which lost its lease (e.g. because the heartbeat was stuck), cannot commit its
+ * version anymore.
+ * <p>
+ * During a long-running write, the stored resources are committed in batches (by count, bytes and time). This
+ * doesn't make anything visible before {@link #commitLongRunningWrite()}, as readers only see entries of the
+ * active version.
+ */
 public class AemExternalResourceCache implements ExternalResourceCache {
 
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
     public static final String CACHE_ROOT = "/var/aem-app-integration/%s/files";
 
-    public static final int MILLIS_UNTIL_LOCKS_EXPIRE = 5 * 60 * 1000; // 5 minutes to expire
+    public static final String VERSIONS_ROOT = "/var/aem-app-integration/%s/versions";
+
+    public static final long LEASE_MILLIS = 5L * 60L * 1000L; // lease expires after 5 minutes without renewal
+
+    public static final long LEASE_RENEWAL_MILLIS = 60L * 1000L; // renew lease every minute
+
+    public static final int DEFAULT_MAX_BATCH_RESOURCES = 100;
+
+    public static final long DEFAULT_MAX_BATCH_BYTES = 10L * 1024L * 1024L;
+
+    public static final long DEFAULT_MAX_BATCH_MILLIS = 10L * 1000L;
+
+    public static final int MAX_COMMIT_RETRIES = 3;
 
     public static final String LOCK_ATTR = "lock";
-    public static final String LOCKED_SINCE_ATTR = "lockedSince";
+    public static final String LEASE_EXPIRES_ATTR = "leaseExpires";
+    public static final String FENCING_TOKEN_ATTR = "fencingToken";
     public static final String VERSION_ATTR = "version";
     public static final String URI_ATTR = "uri";
+    public static final String CONTENT_HASH_ATTR = "contentHash";
+    public static final String CONTENT_LENGTH_ATTR = "contentLength";
     public static final String TYPE_ATTR = "TYPE";
+    public static final String RENDITIONS_NODE = "renditions";
+    public static final String METADATA_NODE = "metadata";
+    public static final String ENTRIES_ATTR = "entries";
     public static final String JCR_PATH_SEPARATOR = "/";
 
     @Nonnull
@@ -43,18 +90,98 @@ public class AemExternalResourceCache implements ExternalResourceCache {
     @Nonnull
     private final String rootPath;
 
+    // records of all versions, e.g. /var/app-integration/<my-app>/versions
+    @Nonnull
+    private final String versionsRootPath;
+
+    // supplies resource-resolvers for the lease heartbeat (without, the lease is renewed inline)
+    @Nullable
+    private final Supplier<ResourceResolver> leaseResolverSupplier;
+
     private final Random random = new Random();
 
     @Nullable
     private String versionId;
 
+    private long fencingToken;
+
+    private volatile boolean leaseLost;
+
+    private long lastLeaseRenewal;
+
+    @Nullable
+    private ScheduledExecutorService heartbeatExecutor;
+
+    @Nullable
+    private ResourceResolver leaseResolver;
+
+    private int maxBatchResources = DEFAULT_MAX_BATCH_RESOURCES;
+
+    private long maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+
+    private long maxBatchMillis = DEFAULT_MAX_BATCH_MILLIS;
+
+    private int batchResources;
+
+    private long batchBytes;
+
+    private long batchStartMillis;
+
+    private final CommitStatistics commitStatistics = new CommitStatistics();
+
+    // active version, when the long-running write was started
+    @Nullable
+    private String previousVersionId;
+
+    private final Set<URI> changedUris = new LinkedHashSet<>();
+
+    // entries stored by this instance, to attach renditions to them
+    private final Map<URI, String> storedEntryPathMap = new HashMap<>();
+
+    // entries created since the last batch, which are recorded with the next batch
+    private final List<String> unrecordedEntryPaths = new ArrayList<>();
+
+    private int recordedBatches;
+
 
     public AemExternalResourceCache(@Nonnull ResourceResolver resolver, @Nonnull String applicationId) {
+        this(resolver, applicationId, null);
+    }
+
+    public AemExternalResourceCache(@Nonnull ResourceResolver resolver, @Nonnull String applicationId,
+                                    @Nullable Supplier<ResourceResolver> leaseResolverSupplier) {
         this.resolver = resolver;
         this.rootPath = String.format(CACHE_ROOT, applicationId);
+        this.versionsRootPath = String.format(VERSIONS_ROOT, applicationId);
+        this.leaseResolverSupplier = leaseResolverSupplier;
     }
 
 
+    /**
+     * Sets the thresholds, when a batch of stored resources is committed during a long-running write.
+     */
+    public void setBatchThresholds(int maxBatchResources, long maxBatchBytes, long maxBatchMillis) {
+        this.maxBatchResources = maxBatchResources;
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxBatchMillis = maxBatchMillis;
+    }
+
+    /**
+     * Statistics of the batch-commits of the current (or last) long-running write.
+     */
+    @Nonnull
+    public CommitStatistics getCommitStatistics() {
+        return commitStatistics;
+    }
+
+    /**
+     * Version of the current (or last committed) long-running write.
+     */
+    @Nullable
+    public String getVersionId() {
+        return versionId;
+    }
+
     @Override
     public boolean isLongRunningWrite() {
         return (this.versionId != null);
@@ -66,52 +193,78 @@ public class AemExternalResourceCache implements ExternalResourceCache {
         try {
             this.versionId = null;
             final Resource rootRes = getOrCreateResource(rootPath);
-            if (canBeLocked(rootRes)) {
+            final long now = System.currentTimeMillis();
+            if (canBeLocked(rootRes, now)) {
                 final String tempVersionId = StringUtils.defaultIfBlank(nameHint, Long.toHexString((long) Math.floor(Math.random() * 0x100000000L)));
                 final ModifiableValueMap valueMap = Objects.requireNonNull(rootRes.adaptTo(ModifiableValueMap.class));
-                valueMap.put(LOCK_ATTR, nameHint);
-                valueMap.put(LOCKED_SINCE_ATTR, Calendar.getInstance());
+                final long tempFencingToken = valueMap.get(FENCING_TOKEN_ATTR, 0L) + 1;
+                valueMap.put(LOCK_ATTR, tempVersionId);
+                valueMap.put(LEASE_EXPIRES_ATTR, toCalendar(now + LEASE_MILLIS));
+                valueMap.put(FENCING_TOKEN_ATTR, tempFencingToken);
+                createVersionRecord(tempVersionId, tempFencingToken);
                 resolver.commit();
+
                 this.versionId = tempVersionId;
+                this.fencingToken = tempFencingToken;
+                this.leaseLost = false;
+                this.lastLeaseRenewal = now;
+                this.previousVersionId = StringUtils.defaultIfBlank(valueMap.get(VERSION_ATTR, String.class), null);
+                this.changedUris.clear();
+                this.storedEntryPathMap.clear();
+                this.unrecordedEntryPaths.clear();
+                this.recordedBatches = 0;
+                this.commitStatistics.reset();
+                resetBatch();
+                startHeartbeat();
                 return true;
             } else {
                 return false;
             }
         } catch (PersistenceException e) {
+            // e.g. conflict with a concurrent lock on another cluster node
+            resolver.revert();
             return false;
         }
     }
 
 
-    // ToDo: Make continueLongRunningWrite implicit
+    /**
+     * Called after every prefetched resource. It doesn't commit anything, but fails fast if the lease was lost.
+     * Without a heartbeat, the lease is renewed here (if due).
+     */
     @Override
     public void continueLongRunningWrite() {
         if (versionId == null) {
-            throw new AppIntegrationException("Cannot refresh lock, as cache is not locked yet!");
+            throw new AppIntegrationException("Cannot continue long-running write, as cache is not locked yet!");
         }
-
-        final Resource rootRes = resolver.getResource(rootPath);
-        if (rootRes == null) {
-            throw new AppIntegrationException("Cannot refresh lock on " + rootPath + ", because path not found!");
+        if (leaseLost) {
+            throw new AppIntegrationException("Lost lease on " + rootPath + ", abort long-running write " + versionId);
         }
-
-        final ModifiableValueMap valueMap = Objects.requireNonNull(rootRes.adaptTo(ModifiableValueMap.class));
-        if (versionId.equals(valueMap.get(LOCK_ATTR, String.class))) {
-            valueMap.put(LOCKED_SINCE_ATTR, Calendar.getInstance());
-            try {
-                resolver.commit();
-            } catch (PersistenceException e) {
-                throw new AppIntegrationException("Cannot refresh lock on " + rootPath, e);
-            }
+        if ((heartbeatExecutor == null) && (System.currentTimeMillis() - lastLeaseRenewal >= LEASE_RENEWAL_MILLIS)) {
+            renewLease(resolver);
         }
     }
 
     @Override
     public void commitLongRunningWrite() {
+        // the heartbeat must not renew the lease concurrently to the last batch and the activation
+        stopHeartbeat();
+        if (versionId != null) {
+            flushBatch();
+        }
+
         final Resource rootRes = resolver.getResource(rootPath);
         if (rootRes == null) {
             throw new AppIntegrationException("cannot find root-path " + rootPath + " to set active version");
         }
+
+        // fencing: only the current lease-holder is allowed to activate its version
+        if ((versionId != null) && !holdsLease(rootRes.getValueMap())) {
+            resolver.revert();
+            leaseLost = true;
+            throw new AppIntegrationException("Lost lease on " + rootPath + ", cannot commit version " + versionId);
+        }
+
         final String curVersion = rootRes.getValueMap().get(VERSION_ATTR, String.class);
         final ModifiableValueMap modifiableValueMap = Objects.requireNonNull(rootRes.adaptTo(ModifiableValueMap.class));
 
@@ -122,14 +275,23 @@ public class AemExternalResourceCache implements ExternalResourceCache {
                 modifiableValueMap.remove(VERSION_ATTR);
             }
         }
-        modifiableValueMap.remove(LOCK_ATTR);
-        modifiableValueMap.remove(LOCKED_SINCE_ATTR);
+        if (versionId == null) {
+            modifiableValueMap.remove(LOCK_ATTR);
+            modifiableValueMap.remove(LEASE_EXPIRES_ATTR);
+        }
 
         try {
             resolver.commit();
         } catch (PersistenceException e) {
             throw new AppIntegrationException("Cannot commit long-running write", e);
         }
+        LOG.info("Committed version {} of {}: {}", versionId, rootPath, commitStatistics);
+
+        // the lease is released after the clean-up, so that no other prefetch can start meanwhile
+        if (versionId != null) {
+            removeOutdatedVersions();
+            releaseLease();
+        }
     }
 
 
@@ -139,23 +301,164 @@ public class AemExternalResourceCache implements ExternalResourceCache {
         if (versionId == null) {
             throw new AppIntegrationException("Cannot rollback long-running write, as long-running write was not started yet!");
         }
+        stopHeartbeat();
+
+        // discard pending writes of this version
+        resolver.revert();
+        resolver.refresh();
 
         final Resource rootRes = resolver.getResource(rootPath);
         if (rootRes != null) {
             final ModifiableValueMap valueMap = Objects.requireNonNull(rootRes.adaptTo(ModifiableValueMap.class));
-            if (this.versionId.equals(valueMap.get(LOCK_ATTR, String.class))) {
-                valueMap.remove(LOCK_ATTR);
-                valueMap.remove(LOCKED_SINCE_ATTR);
+            if (holdsLease(valueMap)) {
                 try {
+                    // remove the batches of this version, which were already committed
+                    for (String entryPath : storedEntryPathMap.values()) {
+                        final Resource entryRes = resolver.getResource(entryPath);
+                        if (entryRes != null) {
+                            resolver.delete(entryRes);
+                        }
+                    }
+                    final Resource versionRes = resolver.getResource(getVersionPath(versionId));
+                    if (versionRes != null) {
+                        resolver.delete(versionRes);
+                    }
+                    valueMap.remove(LOCK_ATTR);
+                    valueMap.remove(LEASE_EXPIRES_ATTR);
                     resolver.commit();
                 } catch (PersistenceException e) {
+                    resolver.revert();
                     throw new AppIntegrationException("Cannot rollback long-running write", e);
                 }
             }
         }
+        storedEntryPathMap.clear();
+    }
+
+    /**
+     * Creates the record of a new version (replacing the record of an earlier version with the same name).
+     */
+    private void createVersionRecord(@Nonnull String newVersionId, long newFencingToken) throws PersistenceException {
+        final Resource existingRes = resolver.getResource(getVersionPath(newVersionId));
+        if (existingRes != null) {
+            resolver.delete(existingRes);
+        }
+        final Resource versionRes = getOrCreateResource(getVersionPath(newVersionId));
+        final ModifiableValueMap valueMap = Objects.requireNonNull(versionRes.adaptTo(ModifiableValueMap.class));
+        valueMap.put(VERSION_ATTR, newVersionId);
+        valueMap.put(FENCING_TOKEN_ATTR, newFencingToken);
+    }
+
+    /**
+     * Records the entries created since the last batch, so that they are committed together.
+     */
+    private void recordEntryPaths() throws PersistenceException {
+        final Resource versionRes = (versionId != null) ? resolver.getResource(getVersionPath(versionId)) : null;
+        if ((versionRes == null) || unrecordedEntryPaths.isEmpty()) {
+            return;
+        }
+        final String batchName = "batch-" + recordedBatches;
+        final Resource existingRes = versionRes.getChild(batchName);
+        if (existingRes != null) {
+            resolver.delete(existingRes);
+        }
+        final Map<String, Object> props = new HashMap<>();
+        props.put(JCR_PRIMARYTYPE, NT_UNSTRUCTURED);
+        props.put(ENTRIES_ATTR, unrecordedEntryPaths.toArray(new String[0]));
+        resolver.create(versionRes, batchName, props);
     }
 
-    private boolean canBeLocked(Resource resource) {
+    @Nonnull
+    private String getVersionPath(@Nonnull String version) {
+        return versionsRootPath + JCR_PATH_SEPARATOR + Text.escapeIllegalJcrChars(version);
+    }
+
+    /**
+     * Removes the entries of all older versions, except the previous one (which may still be read by requests,
+     * that started before the activation). Older versions are the recorded versions with a lower fencing-token,
+     * so this also removes the leftovers of versions, which lost their lease or could not be rolled back. It
+     * must be called while holding the lease: The entries are deleted in batches, and every batch extends the
+     * lease. A failure is only logged, as the new version is already active.
+     */
+    private void removeOutdatedVersions() {
+        final Resource versionsRootRes = resolver.getResource(versionsRootPath);
+        if (versionsRootRes == null) {
+            return;
+        }
+        final List<Resource> outdatedVersions = new ArrayList<>();
+        for (Resource versionRes : versionsRootRes.getChildren()) {
+            final ValueMap valueMap = versionRes.getValueMap();
+            final String version = valueMap.get(VERSION_ATTR, String.class);
+            if ((valueMap.get(FENCING_TOKEN_ATTR, Long.MAX_VALUE) < fencingToken)
+                    && !StringUtils.equals(version, versionId) && !StringUtils.equals(version, previousVersionId)) {
+                outdatedVersions.add(versionRes);
+            }
+        }
+
+        try {
+            int count = 0;
+            for (Resource versionRes : outdatedVersions) {
+                final String version = versionRes.getValueMap().get(VERSION_ATTR, String.class);
+                for (Resource batchRes : versionRes.getChildren()) {
+                    for (String entryPath : batchRes.getValueMap().get(ENTRIES_ATTR, new String[0])) {
+                        final Resource entryRes = resolver.getResource(entryPath);
+                        if ((entryRes != null) && StringUtils.equals(version, entryRes.getValueMap().get(VERSION_ATTR, String.class))) {
+                            resolver.delete(entryRes);
+                            if ((++count % maxBatchResources == 0) && !commitWithLease()) {
+                                return;
+                            }
+                        }
+                    }
+                }
+                resolver.delete(versionRes);
+            }
+            if (commitWithLease() && (count > 0)) {
+                LOG.info("Removed {} entries of {} outdated versions of {}", count, outdatedVersions.size(), rootPath);
+            }
+        } catch (PersistenceException e) {
+            resolver.revert();
+            LOG.warn("Cannot remove outdated versions of {}", rootPath, e);
+        }
+    }
+
+    /**
+     * Commits the pending changes together with an extension of the lease, if this cache still holds the lease
+     * (otherwise the changes are reverted).
+     *
+     * @return true, if the changes were committed
+     */
+    private boolean commitWithLease() throws PersistenceException {
+        resolver.refresh();
+        final Resource rootRes = resolver.getResource(rootPath);
+        final ModifiableValueMap valueMap = (rootRes != null) ? rootRes.adaptTo(ModifiableValueMap.class) : null;
+        if ((valueMap == null) || !holdsLease(valueMap)) {
+            LOG.warn("Lost lease on {} for version {}, stop removing outdated versions", rootPath, versionId);
+            resolver.revert();
+            return false;
+        }
+        valueMap.put(LEASE_EXPIRES_ATTR, toCalendar(System.currentTimeMillis() + LEASE_MILLIS));
+        resolver.commit();
+        return true;
+    }
+
+    private void releaseLease() {
+        try {
+            resolver.refresh();
+            final Resource rootRes = resolver.getResource(rootPath);
+            final ModifiableValueMap valueMap = (rootRes != null) ? rootRes.adaptTo(ModifiableValueMap.class) : null;
+            if ((valueMap != null) && holdsLease(valueMap)) {
+                valueMap.remove(LOCK_ATTR);
+                valueMap.remove(LEASE_EXPIRES_ATTR);
+                resolver.commit();
+            }
+        } catch (PersistenceException e) {
+            // the lease expires anyway
+            resolver.revert();
+            LOG.warn("Cannot release lease on {} for version {}", rootPath, versionId, e);
+        }
+    }
+
+    private boolean canBeLocked(@Nonnull Resource resource, long now) {
         final ValueMap valueMap = resource.getValueMap();
         final String currentLockId = valueMap.get(LOCK_ATTR, String.class);
 
@@ -169,55 +472,143 @@ public class AemExternalResourceCache implements ExternalResourceCache {
             return true;
         }
 
-        // is lock expired?
-        final Calendar now = GregorianCalendar.getInstance();
-        final Calendar lockedSince = valueMap.get(LOCKED_SINCE_ATTR, Calendar.class);
-        if (lockedSince != null) {
-            final long diff = now.getTimeInMillis() - lockedSince.getTimeInMillis();
-            return diff >= MILLIS_UNTIL_LOCKS_EXPIRE;
-        } else {
-            return true;
+        // is lease expired?
+        final Calendar leaseExpires = valueMap.get(LEASE_EXPIRES_ATTR, Calendar.class);
+        return (leaseExpires == null) || (leaseExpires.getTimeInMillis() <= now);
+    }
+
+    private boolean holdsLease(@Nonnull ValueMap valueMap) {
+        return StringUtils.equals(versionId, valueMap.get(LOCK_ATTR, String.class))
+                && (fencingToken == valueMap.get(FENCING_TOKEN_ATTR, 0L));
+    }
+
+    /**
+     * Extends the lease, if this cache still holds it (otherwise marks the lease as lost).
+     */
+    private void renewLease(@Nonnull ResourceResolver leaseResolver) {
+        leaseResolver.refresh();
+        final Resource rootRes = leaseResolver.getResource(rootPath);
+        final ModifiableValueMap valueMap = (rootRes != null) ? rootRes.adaptTo(ModifiableValueMap.class) : null;
+        if ((valueMap == null) || !holdsLease(valueMap)) {
+            LOG.warn("Lost lease on {} for version {}", rootPath, versionId);
+            leaseLost = true;
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        valueMap.put(LEASE_EXPIRES_ATTR, toCalendar(now + LEASE_MILLIS));
+        try {
+            leaseResolver.commit();
+            lastLeaseRenewal = now;
+        } catch (PersistenceException e) {
+            leaseResolver.revert();
+            LOG.warn("Cannot renew lease on {} for version {}", rootPath, versionId, e);
+        }
+    }
+
+    private void startHeartbeat() {
+        if (leaseResolverSupplier == null) {
+            return;
+        }
+        final ResourceResolver leaseResolver = leaseResolverSupplier.get();
+        this.heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "aem-app-integration-lease-" + versionId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeatExecutor.scheduleWithFixedDelay(() -> {
+            if (!leaseLost) {
+                renewLease(leaseResolver);
+            }
+        }, LEASE_RENEWAL_MILLIS, LEASE_RENEWAL_MILLIS, TimeUnit.MILLISECONDS);
+        this.leaseResolver = leaseResolver;
+    }
+
+    private void stopHeartbeat() {
+        if (heartbeatExecutor != null) {
+            heartbeatExecutor.shutdownNow();
+            try {
+                heartbeatExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            heartbeatExecutor = null;
+        }
+        if (leaseResolver != null) {
+            leaseResolver.close();
+            leaseResolver = null;
         }
     }
 
+    @Nonnull
+    private static Calendar toCalendar(long timeMillis) {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timeMillis);
+        return calendar;
+    }
+
 
     @Nonnull
     @Override
     public Supplier<InputStream> storeResource(@Nonnull ExternalResource resource) {
 
         try {
-            // find existing entry
             final String cachePath = getCachePath(resource.getUri());
             final Resource cachePathRes = getOrCreateResource(cachePath);
-            final String hashCode = Integer.toHexString(resource.getUri().toString().hashCode());
-
-            // find new cache-entry name
-            String entryName;
-            int i = 0;
-            do {
-                if (i++ > 20) {
-                    throw new AppIntegrationException("Could NOT create a unique file entry for " + cachePathRes.getPath());
-                }
-                entryName = hashCode + "_" + Integer.toHexString(random.nextInt(0x1000));
-            } while (cachePathRes.getChild(entryName) != null);
-
+            final String fileName = StringUtils.substringAfterLast(cachePath, "/");
 
-            final Resource targetCacheRes = resolver.create(cachePathRes, entryName, null);
+            // a resource stored again within the same version (e.g. by a post-processor) updates its entry in place
+            final String storedEntryPath = storedEntryPathMap.get(resource.getUri());
+            final Resource storedEntryRes = (storedEntryPath != null) ? resolver.getResource(storedEntryPath) : null;
+            final boolean isUpdate = (storedEntryRes != null);
+            final Resource targetCacheRes = isUpdate ? storedEntryRes : createEntry(cachePathRes, resource.getUri());
             final ModifiableValueMap modifiableValueMap = Objects.requireNonNull(targetCacheRes.adaptTo(ModifiableValueMap.class));
-            modifiableValueMap.put(URI_ATTR, resource.getUri().toString());
-            if (StringUtils.isNotBlank(versionId)) {
-                modifiableValueMap.put(VERSION_ATTR, versionId);
+            final String previousContentHash = modifiableValueMap.get(CONTENT_HASH_ATTR, String.class);
+            modifiableValueMap.put(TYPE_ATTR, resource.getType().name());
+
+            final MessageDigest digest = createDigest();
+            final CountingInputStream contentStream = new CountingInputStream(new DigestInputStream(resource.getContentAsInputStream(), digest));
+            final Resource res;
+            if (isUpdate) {
+                res = targetCacheRes.getChild(fileName);
+                final Resource contentRes = (res != null) ? res.getChild(JCR_CONTENT) : null;
+                if (contentRes == null) {
+                    throw new AppIntegrationException("Cannot update resource " + resource.getUri() + ", as " + storedEntryPath + " has no content");
+                }
+                final ModifiableValueMap contentValueMap = Objects.requireNonNull(contentRes.adaptTo(ModifiableValueMap.class));
+                contentValueMap.put(JCR_LASTMODIFIED, Calendar.getInstance());
+                contentValueMap.put(JCR_DATA, contentStream);
+            } else {
+                res = resolver.create(targetCacheRes, fileName, Collections.singletonMap(JCR_PRIMARYTYPE, NT_FILE));
+
+                Map<String, Object> propertiesMap = new HashMap<>();
+                propertiesMap.put(JCR_PRIMARYTYPE, NT_RESOURCE);
+                // ToDo: Get correct mime-type
+                propertiesMap.put(JCR_MIMETYPE, "text/plain");
+                propertiesMap.put(JCR_LASTMODIFIED, Calendar.getInstance());
+                propertiesMap.put(JCR_DATA, contentStream);
+                resolver.create(res, JCR_CONTENT, propertiesMap);
             }
+            storeMetadata(targetCacheRes, resource.getMetadataMap());
 
-            final String fileName = StringUtils.substringAfterLast(cachePath, "/");
-            final Resource res = resolver.create(targetCacheRes, fileName, Collections.singletonMap(JCR_PRIMARYTYPE, NT_FILE));
+            final String contentHash = Hex.encodeHexString(digest.digest());
+            modifiableValueMap.put(CONTENT_HASH_ATTR, contentHash);
+            modifiableValueMap.put(CONTENT_LENGTH_ATTR, contentStream.getByteCount());
 
-            Map<String, Object> propertiesMap = new HashMap<>();
-            propertiesMap.put(JCR_PRIMARYTYPE, NT_RESOURCE);
-            // ToDo: Get correct mime-type
-            propertiesMap.put(JCR_MIMETYPE, "text/plain");
-            propertiesMap.put(JCR_DATA, resource.getContentAsInputStream());
-            resolver.create(res, JCR_CONTENT, propertiesMap);
+            // renditions of the previous content are outdated, and must be stored again (see getWrittenRenditionNames)
+            final boolean isChanged = !contentHash.equals(previousContentHash);
+            final Resource renditionsRes = targetCacheRes.getChild(RENDITIONS_NODE);
+            if (isUpdate && isChanged && (renditionsRes != null)) {
+                resolver.delete(renditionsRes);
+            }
+
+            if (versionId != null) {
+                if (isChanged) {
+                    trackChange(cachePathRes, resource.getUri(), contentHash);
+                }
+                // an updated entry is already counted in its batch, only its new bytes are added
+                addToBatch(isUpdate ? 0 : 1, contentStream.getByteCount());
+            }
 
             return () -> res.adaptTo(InputStream.class);
 
@@ -227,6 +618,246 @@ public class AemExternalResourceCache implements ExternalResourceCache {
     }
 
 
+    @Nonnull
+    private Resource createEntry(@Nonnull Resource cachePathRes, @Nonnull URI uri) throws PersistenceException {
+        final String hashCode = Integer.toHexString(uri.toString().hashCode());
+
+        // find new cache-entry name
+        String entryName;
+        int i = 0;
+        do {
+            if (i++ > 20) {
+                throw new AppIntegrationException("Could NOT create a unique file entry for " + cachePathRes.getPath());
+            }
+            entryName = hashCode + "_" + Integer.toHexString(random.nextInt(0x1000));
+        } while (cachePathRes.getChild(entryName) != null);
+
+        final Resource entryRes = resolver.create(cachePathRes, entryName, null);
+        storedEntryPathMap.put(uri, entryRes.getPath());
+        unrecordedEntryPaths.add(entryRes.getPath());
+        final ModifiableValueMap modifiableValueMap = Objects.requireNonNull(entryRes.adaptTo(ModifiableValueMap.class));
+        modifiableValueMap.put(URI_ATTR, uri.toString());
+        if (StringUtils.isNotBlank(versionId)) {
+            modifiableValueMap.put(VERSION_ATTR, versionId);
+        }
+        return entryRes;
+    }
+
+
+    @Override
+    public boolean storeRendition(@Nonnull URI uri, @Nonnull String renditionName, @Nonnull InputStream content) {
+        final String entryPath = storedEntryPathMap.get(uri);
+        final Resource entryRes = (entryPath != null) ? resolver.getResource(entryPath) : null;
+        if (entryRes == null) {
+            throw new AppIntegrationException("Cannot store rendition " + renditionName + ", as resource " + uri + " is not stored");
+        }
+
+        try {
+            final Resource renditionsRes = getOrCreateChild(entryRes, RENDITIONS_NODE);
+            final Resource res = resolver.create(renditionsRes, renditionName, Collections.singletonMap(JCR_PRIMARYTYPE, NT_FILE));
+
+            final Map<String, Object> propertiesMap = new HashMap<>();
+            propertiesMap.put(JCR_PRIMARYTYPE, NT_RESOURCE);
+            propertiesMap.put(JCR_MIMETYPE, "application/octet-stream");
+            propertiesMap.put(JCR_LASTMODIFIED, Calendar.getInstance());
+            final CountingInputStream contentStream = new CountingInputStream(content);
+            propertiesMap.put(JCR_DATA, contentStream);
+            resolver.create(res, JCR_CONTENT, propertiesMap);
+
+            Objects.requireNonNull(renditionsRes.adaptTo(ModifiableValueMap.class))
+                    .put(renditionName + "." + CONTENT_LENGTH_ATTR, contentStream.getByteCount());
+
+            if (versionId != null) {
+                addToBatch(1, contentStream.getByteCount());
+            }
+            return true;
+
+        } catch (PersistenceException e) {
+            throw new AppIntegrationException("Cannot store rendition " + renditionName + " of " + uri, e);
+        }
+    }
+
+    /**
+     * Stores the metadata (e.g. the <code>cssTags</code> of a snippet) in the <code>metadata</code> child of an entry.
+     * Values, which cannot be stored in the JCR (e.g. lists), are converted to strings or string-arrays.
+     */
+    private void storeMetadata(@Nonnull Resource entryRes, @Nonnull Map<String, Object> metadataMap) throws PersistenceException {
+        final Map<String, Object> propertiesMap = new HashMap<>();
+        for (Map.Entry<String, Object> entry : metadataMap.entrySet()) {
+            final Object value = toJcrValue(entry.getValue());
+            if (value != null) {
+                propertiesMap.put(Text.escapeIllegalJcrChars(entry.getKey()), value);
+            }
+        }
+
+        final Resource metadataRes = entryRes.getChild(METADATA_NODE);
+        if (metadataRes == null) {
+            propertiesMap.put(JCR_PRIMARYTYPE, NT_UNSTRUCTURED);
+            resolver.create(entryRes, METADATA_NODE, propertiesMap);
+            return;
+        }
+        final ModifiableValueMap valueMap = Objects.requireNonNull(metadataRes.adaptTo(ModifiableValueMap.class));
+        for (String key : new ArrayList<>(valueMap.keySet())) {
+            if (!key.startsWith("jcr:") && !propertiesMap.containsKey(key)) {
+                valueMap.remove(key);
+            }
+        }
+        valueMap.putAll(propertiesMap);
+    }
+
+    @Nullable
+    private static Object toJcrValue(@Nullable Object value) {
+        if ((value == null) || (value instanceof String) || (value instanceof Boolean) || (value instanceof Long)
+                || (value instanceof Double) || (value instanceof Calendar) || (value instanceof String[])) {
+            return value;
+        } else if ((value instanceof Integer) || (value instanceof Short) || (value instanceof Byte)) {
+            return ((Number) value).longValue();
+        } else if (value instanceof Float) {
+            return ((Float) value).doubleValue();
+        } else if (value instanceof Object[]) {
+            return Arrays.stream((Object[]) value).map(String::valueOf).toArray(String[]::new);
+        } else if (value instanceof Collection) {
+            return ((Collection<?>) value).stream().map(String::valueOf).toArray(String[]::new);
+        } else {
+            return String.valueOf(value);
+        }
+    }
+
+    @Nonnull
+    private static DataMap readMetadata(@Nonnull Resource entryRes) {
+        final DataMap metadataMap = new DataMap();
+        final Resource metadataRes = entryRes.getChild(METADATA_NODE);
+        if (metadataRes != null) {
+            for (Map.Entry<String, Object> entry : metadataRes.getValueMap().entrySet()) {
+                if (!StringUtils.startsWith(entry.getKey(), "jcr:")) {
+                    metadataMap.put(Text.unescapeIllegalJcrChars(entry.getKey()), entry.getValue());
+                }
+            }
+        }
+        return metadataMap;
+    }
+
+    @Nonnull
+    @Override
+    public Set<String> getWrittenRenditionNames(@Nonnull URI uri) {
+        final String entryPath = storedEntryPathMap.get(uri);
+        final Resource renditionsRes = (entryPath != null) ? resolver.getResource(entryPath + JCR_PATH_SEPARATOR + RENDITIONS_NODE) : null;
+        if (renditionsRes == null) {
+            return Collections.emptySet();
+        }
+        final Set<String> renditionNames = new HashSet<>();
+        for (Resource renditionRes : renditionsRes.getChildren()) {
+            renditionNames.add(renditionRes.getName());
+        }
+        return renditionNames;
+    }
+
+    @Nullable
+    @Override
+    public Supplier<InputStream> getCachedRendition(@Nonnull URI uri, @Nonnull String renditionName) {
+        final CachedEntry entry = getCachedEntry(uri);
+        final CachedEntry rendition = (entry != null) ? entry.getRendition(renditionName) : null;
+        return (rendition != null) ? rendition::openStream : null;
+    }
+
+    @Nonnull
+    @Override
+    public Set<URI> getChangedResourceUris() {
+        return Collections.unmodifiableSet(changedUris);
+    }
+
+    private void trackChange(@Nonnull Resource cachePathRes, @Nonnull URI uri, @Nonnull String contentHash) {
+        final Resource previousEntry = findEntry(cachePathRes, uri.toString(), previousVersionId);
+        if ((previousEntry == null) || !contentHash.equals(previousEntry.getValueMap().get(CONTENT_HASH_ATTR, String.class))) {
+            changedUris.add(uri);
+        } else {
+            changedUris.remove(uri);
+        }
+    }
+
+    @Nullable
+    private static Resource findEntry(@Nonnull Resource cachePathRes, @Nonnull String uri, @Nullable String version) {
+        final Iterator<Resource> cacheResIter = cachePathRes.listChildren();
+        while (cacheResIter.hasNext()) {
+            final Resource res = cacheResIter.next();
+            final ValueMap valueMap = res.getValueMap();
+            if (StringUtils.equals(uri, valueMap.get(URI_ATTR, String.class))
+                    && StringUtils.equals(version, StringUtils.defaultIfBlank(valueMap.get(VERSION_ATTR, String.class), null))) {
+                return res;
+            }
+        }
+        return null;
+    }
+
+    @Nonnull
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AppIntegrationException("SHA-256 is not supported", e);
+        }
+    }
+
+    private void addToBatch(int resources, long bytes) {
+        batchResources += resources;
+        batchBytes += bytes;
+        if ((batchResources >= maxBatchResources) || (batchBytes >= maxBatchBytes)
+                || (System.currentTimeMillis() - batchStartMillis >= maxBatchMillis)) {
+            flushBatch();
+        }
+    }
+
+    /**
+     * Commits the current batch. Conflicts are retried after a refresh (which keeps the pending changes).
+     */
+    private void flushBatch() {
+        if ((batchResources == 0) && !resolver.hasChanges()) {
+            resetBatch();
+            return;
+        }
+        if (leaseLost) {
+            throw new AppIntegrationException("Lost lease on " + rootPath + ", abort long-running write " + versionId);
+        }
+
+        try {
+            recordEntryPaths();
+        } catch (PersistenceException e) {
+            resolver.revert();
+            throw new AppIntegrationException("Cannot record batch of " + rootPath, e);
+        }
+
+        final long startNanos = System.nanoTime();
+        int retries = 0;
+        while (true) {
+            try {
+                resolver.commit();
+                break;
+            } catch (PersistenceException e) {
+                if (retries >= MAX_COMMIT_RETRIES) {
+                    resolver.revert();
+                    throw new AppIntegrationException(String.format("Cannot commit batch of %d resources to %s", batchResources, rootPath), e);
+                }
+                retries++;
+                LOG.warn("Commit of batch with {} resources to {} failed, retry {} of {}", batchResources, rootPath, retries, MAX_COMMIT_RETRIES, e);
+                resolver.refresh();
+            }
+        }
+        final long commitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (!unrecordedEntryPaths.isEmpty()) {
+            unrecordedEntryPaths.clear();
+            recordedBatches++;
+        }
+        commitStatistics.addCommit(batchResources, batchBytes, commitMillis, retries);
+        LOG.debug("Committed batch of {} resources ({} bytes) to {} in {} ms", batchResources, batchBytes, rootPath, commitMillis);
+        resetBatch();
+    }
+
+    private void resetBatch() {
+        batchResources = 0;
+        batchBytes = 0L;
+        batchStartMillis = System.currentTimeMillis();
+    }
+
     @Override
     @Nullable
     public ExternalResource getCachedResource(@Nonnull ExternalResourceRef resourceRef, @Nonnull ExternalResourceFactory resourceFactory) {
@@ -261,15 +892,7 @@ public class AemExternalResourceCache implements ExternalResourceCache {
 
                     // ToDo: Implement futures for actual content
                     final InputStream content = Objects.requireNonNull(dataRes.adaptTo(InputStream.class));
-                    final DataMap metadataMap = Optional.of(res)
-                            .map(r -> r.getChild("metadata"))
-                            .map(Resource::getValueMap)
-                            .map(vm ->
-                                    vm.entrySet().stream()
-                                            .filter(entry -> !StringUtils.startsWith(entry.getKey(), "jcr:"))
-                                            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)))
-                            .map(DataMap::new)
-                            .orElse(null);
+                    final DataMap metadataMap = readMetadata(res);
 
                     return resourceFactory.createExternalResource(uri, type, content, metadataMap);
 
@@ -283,6 +906,41 @@ public class AemExternalResourceCache implements ExternalResourceCache {
         return null;
     }
 
+    @Override
+    @Nullable
+    public ExternalResource getWrittenResource(@Nonnull ExternalResourceRef resourceRef, @Nonnull ExternalResourceFactory resourceFactory) {
+        final String entryPath = storedEntryPathMap.get(resourceRef.getUri());
+        final Resource entryRes = (entryPath != null) ? resolver.getResource(entryPath) : null;
+        final Resource dataRes = (entryRes != null) ? entryRes.getChild(StringUtils.substringAfterLast(getCachePath(resourceRef.getUri()), "/")) : null;
+        final InputStream content = (dataRes != null) ? dataRes.adaptTo(InputStream.class) : null;
+        if (content == null) {
+            return null;
+        }
+        final ExternalResourceType type = ExternalResourceType.parse(entryRes.getValueMap().get(TYPE_ATTR, String.class));
+        return resourceFactory.createExternalResource(resourceRef.getUri(), (type != null) ? type : resourceRef.getExpectedType(),
+                content, readMetadata(entryRes));
+    }
+
+    /**
+     * Returns the entry of the active version, without reading its content (e.g. to answer conditional requests
+     * only by the metadata).
+     */
+    @Nullable
+    public CachedEntry getCachedEntry(@Nonnull URI uri) {
+        final Resource rootRes = resolver.getResource(rootPath);
+        final String cachePath = getCachePath(uri);
+        final Resource cachePathRes = resolver.getResource(cachePath);
+        if ((rootRes == null) || (cachePathRes == null)) {
+            return null;
+        }
+        final String curVersion = StringUtils.defaultIfBlank(rootRes.getValueMap().get(VERSION_ATTR, String.class), null);
+        final Resource entryRes = findEntry(cachePathRes, uri.toString(), curVersion);
+        final Resource dataRes = (entryRes != null) ? entryRes.getChild(StringUtils.substringAfterLast(cachePath, "/")) : null;
+        return (dataRes != null)
+                ? new CachedEntry(uri, entryRes, dataRes, entryRes.getValueMap().get(CONTENT_HASH_ATTR, String.class), entryRes.getValueMap().get(CONTENT_LENGTH_ATTR, -1L))
+                : null;
+    }
+
     @Override
     public void markResourceRefreshed(@Nonnull ExternalResource resource) {
         // ToDo: add implementation
@@ -331,4 +989,161 @@ public class AemExternalResourceCache implements ExternalResourceCache {
         }
         return rootPath + JCR_PATH_SEPARATOR + String.join(JCR_PATH_SEPARATOR, splitPath);
     }
+
+
+    /**
+     * Entry of the cache, whose content is only read on demand.
+     */
+    public static class CachedEntry {
+
+        @Nonnull
+        private final URI uri;
+
+        @Nullable
+        private final String contentHash;
+
+        private final long contentLength;
+
+        @Nullable
+        private final Calendar lastModified;
+
+        @Nonnull
+        private final Resource entryRes;
+
+        @Nonnull
+        private final Resource dataRes;
+
+        private CachedEntry(@Nonnull URI uri, @Nonnull Resource entryRes, @Nonnull Resource dataRes, @Nullable String contentHash, long contentLength) {
+            this.uri = uri;
+            this.contentHash = contentHash;
+            this.contentLength = contentLength;
+            this.lastModified = dataRes.getValueMap().get(JCR_CONTENT + "/" + JCR_LASTMODIFIED, Calendar.class);
+            this.entryRes = entryRes;
+            this.dataRes = dataRes;
+        }
+
+        /**
+         * Returns a rendition (e.g. gzip) of this entry. Its content-hash is derived from the hash of the original
+         * content, so that it can be used as a distinct ETag.
+         */
+        @Nullable
+        public CachedEntry getRendition(@Nonnull String renditionName) {
+            final Resource renditionsRes = entryRes.getChild(RENDITIONS_NODE);
+            final Resource renditionRes = (renditionsRes != null) ? renditionsRes.getChild(renditionName) : null;
+            if (renditionRes == null) {
+                return null;
+            }
+            return new CachedEntry(uri, entryRes, renditionRes,
+                    (contentHash != null) ? contentHash + "-" + renditionName : null,
+                    renditionsRes.getValueMap().get(renditionName + "." + CONTENT_LENGTH_ATTR, -1L));
+        }
+
+        @Nonnull
+        public URI getUri() {
+            return uri;
+        }
+
+        /**
+         * SHA-256 of the content (hex-encoded), or <code>null</code> for entries written by older versions.
+         */
+        @Nullable
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        /**
+         * Length of the content in bytes, or -1 if unknown.
+         */
+        public long getContentLength() {
+            return contentLength;
+        }
+
+        @Nullable
+        public Calendar getLastModified() {
+            return lastModified;
+        }
+
+        @Nonnull
+        public InputStream openStream() {
+            final InputStream content = dataRes.adaptTo(InputStream.class);
+            if (content == null) {
+                throw new AppIntegrationException("Cannot read content of cached " + uri);
+            }
+            return content;
+        }
+    }
+
+
+    /**
+     * Size and latency of the batch-commits of a long-running write.
+     */
+    public static class CommitStatistics {
+
+        private int commitCount;
+
+        private int resourceCount;
+
+        private long byteCount;
+
+        private long totalCommitMillis;
+
+        private long maxCommitMillis;
+
+        private int retryCount;
+
+        private void addCommit(int resources, long bytes, long commitMillis, int retries) {
+            commitCount++;
+            resourceCount += resources;
+            byteCount += bytes;
+            totalCommitMillis += commitMillis;
+            maxCommitMillis = Math.max(maxCommitMillis, commitMillis);
+            retryCount += retries;
+        }
+
+        private void reset() {
+            commitCount = 0;
+            resourceCount = 0;
+            byteCount = 0L;
+            totalCommitMillis = 0L;
+            maxCommitMillis = 0L;
+            retryCount = 0;
+        }
+
+        public int getCommitCount() {
+            return commitCount;
+        }
+
+        public int getResourceCount() {
+            return resourceCount;
+        }
+
+        public long getByteCount() {
+            return byteCount;
+        }
+
+        public long getTotalCommitMillis() {
+            return totalCommitMillis;
+        }
+
+        public long getMaxCommitMillis() {
+            return maxCommitMillis;
+        }
+
+        public int getRetryCount() {
+            return retryCount;
+        }
+
+        @Override
+        public String toString() {
+            return "CommitStatistics{" +
+                    "commitCount=" + commitCount +
+                    ", resourceCount=" + resourceCount +
+                    ", byteCount=" + byteCount +
+                    ", totalCommitMillis=" + totalCommitMillis +
+                    ", maxCommitMillis=" + maxCommitMillis +
+                    ", avgCommitMillis=" + ((commitCount > 0) ? totalCommitMillis / commitCount : 0) +
+                    ", retryCount=" + retryCount +
+                    '}';
+        }
+    }
 }
@@ -0,0 +1,118 @@
+package com.alexanderberndt.appintegration.aem.engine;
+
+import com.alexanderberndt.appintegration.aem.engine.model.SlingApplicationInstance;
+import org.apache.jackrabbit.util.ISO8601;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.osgi.service.component.annotations.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.jcr.query.Query;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Discovers all integrated application instances (resources with the properties <code>application</code> and
+ * <code>component</code>) below <code>/content</code>. The query is backed by the Oak index
+ * <code>/oak:index/aemAppIntegrationInstances</code>, which is shipped with the package module.
+ */
+@Component(service = AemInstanceDiscovery.class)
+public class AemInstanceDiscovery {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    public static final String CONTENT_ROOT = "/content";
+
+    public static final String APPLICATION_PROPERTY = SlingApplicationInstance.APPLICATION_PROPERTY;
+
+    public static final String COMPONENT_PROPERTY = SlingApplicationInstance.COMPONENT_PROPERTY;
+
+    public static final String LAST_MODIFIED_PROPERTY = "jcr:lastModified";
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Queries all instances of an application, and passes them in batches to the consumer.
+     *
+     * @param resolver      resource-resolver, which must stay open until the batches are processed
+     * @param applicationId application-id
+     * @param changedSince  only instances modified after this time, or <code>null</code> for all instances
+     * @param batchSize     max. number of instances per batch
+     * @param batchConsumer consumer of the batches
+     * @return total number of instances
+     */
+    public int discoverInstances(@Nonnull ResourceResolver resolver, @Nonnull String applicationId, @Nullable Calendar changedSince,
+                                 int batchSize, @Nonnull Consumer<List<SlingApplicationInstance>> batchConsumer) {
+
+        final String query = createQuery(applicationId, changedSince);
+        LOG.debug("discover instances with query {}", query);
+
+        int count = 0;
+        List<SlingApplicationInstance> batch = new ArrayList<>(batchSize);
+        final Iterator<Resource> resourceIter = resolver.findResources(query, Query.JCR_SQL2);
+        while (resourceIter.hasNext()) {
+            final SlingApplicationInstance instance = SlingApplicationInstance.fromResource(resourceIter.next());
+            if (instance != null) {
+                batch.add(instance);
+                count++;
+                if (batch.size() >= batchSize) {
+                    batchConsumer.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            batchConsumer.accept(batch);
+        }
+
+        LOG.info("discovered {} instances of application {} (changed since: {})", count, applicationId,
+                (changedSince != null) ? ISO8601.format(changedSince) : "-");
+        return count;
+    }
+
+    /**
+     * Counts all instances of an application (e.g. to detect removed instances).
+     */
+    public int countInstances(@Nonnull ResourceResolver resolver, @Nonnull String applicationId) {
+        int count = 0;
+        final Iterator<Resource> resourceIter = resolver.findResources(createQuery(applicationId, null), Query.JCR_SQL2);
+        while (resourceIter.hasNext()) {
+            if (SlingApplicationInstance.fromResource(resourceIter.next()) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks, if there is any instance of an application, which was modified after the given time.
+     */
+    public boolean hasChangedInstances(@Nonnull ResourceResolver resolver, @Nonnull String applicationId, @Nonnull Calendar changedSince) {
+        return resolver.findResources(createQuery(applicationId, changedSince), Query.JCR_SQL2).hasNext();
+    }
+
+    @Nonnull
+    static String createQuery(@Nonnull String applicationId, @Nullable Calendar changedSince) {
+        final StringBuilder query = new StringBuilder()
+                .append("SELECT * FROM [nt:base] AS instance WHERE ISDESCENDANTNODE(instance, '").append(CONTENT_ROOT).append("')")
+                .append(" AND instance.[").append(APPLICATION_PROPERTY).append("] = '").append(escape(applicationId)).append("'")
+                .append(" AND instance.[").append(COMPONENT_PROPERTY).append("] IS NOT NULL");
+        if (changedSince != null) {
+            query.append(" AND instance.[").append(LAST_MODIFIED_PROPERTY).append("] > CAST('")
+                    .append(ISO8601.format(changedSince)).append("' AS DATE)");
+        }
+        return query.toString();
+    }
+
+    @Nonnull
+    private static String escape(@Nonnull String value) {
+        return value.replace("'", "''");
+    }
+}
@@ -0,0 +1,297 @@
+package com.alexanderberndt.appintegration.aem.engine;
+
+import com.alexanderberndt.appintegration.aem.engine.model.SlingApplicationInstance;
+import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.*;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends targeted invalidation requests to the dispatcher(s), after a prefetch committed a new cache version.
+ * Only the pages, which use a changed snippet, and the changed static resources (<code>/ext/&lt;app-id&gt;/...</code>)
+ * are invalidated.
+ * <p>
+ * The handles are sent in batches, and the requests are rate-limited, so that a large change doesn't flood the
+ * dispatcher. Every flush is written to a journal (<code>/var/aem-app-integration/&lt;app-id&gt;/flush</code>), so it
+ * can be replayed later, e.g. after a failure or against a local stand-in endpoint for testing.
+ */
+@Component(service = DispatcherFlushService.class)
+@Designate(ocd = DispatcherFlushService.Configuration.class)
+public class DispatcherFlushService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    public static final String FLUSH_ROOT = AemAppIntegrationEngine.APPLICATION_ROOT + "/flush";
+
+    public static final String STATIC_RESOURCE_PATH = "/ext/%s/%s";
+
+    public static final String HANDLES_ATTR = "handles";
+
+    public static final String FAILED_HANDLES_ATTR = "failedHandles";
+
+    public static final String STATUS_ATTR = "status";
+
+    public static final String CREATED_ATTR = "created";
+
+    public static final String STATUS_PENDING = "pending";
+
+    public static final String STATUS_DONE = "done";
+
+    public static final String STATUS_FAILED = "failed";
+
+    @ObjectClassDefinition(name = "AEM App-Integration - Dispatcher Flush")
+    @interface Configuration {
+
+        @AttributeDefinition(
+                name = "Flush Endpoints",
+                description = "Invalidation URLs of the dispatchers (e.g. http://dispatcher:80/dispatcher/invalidate.cache). Leave empty to disable the flush."
+        )
+        String[] flushEndpoints() default {};
+
+        @AttributeDefinition(
+                name = "Batch Size",
+                description = "Number of handles, which are sent as one batch (the progress is logged per batch)."
+        )
+        int batchSize() default 50;
+
+        @AttributeDefinition(
+                name = "Max. Requests per Second",
+                description = "Max. number of invalidation requests per second and endpoint."
+        )
+        double maxRequestsPerSecond() default 10.0;
+
+        @AttributeDefinition(
+                name = "Connect Timeout",
+                description = "Connect timeout in milliseconds."
+        )
+        int connectTimeout() default 2000;
+
+        @AttributeDefinition(
+                name = "Read Timeout",
+                description = "Read timeout in milliseconds."
+        )
+        int readTimeout() default 10000;
+    }
+
+    private List<String> flushEndpoints = Collections.emptyList();
+
+    private int batchSize = 50;
+
+    private long minRequestIntervalNanos;
+
+    private int connectTimeout = 2000;
+
+    private int readTimeout = 10000;
+
+    @Activate
+    @Modified
+    protected void activate(@Nonnull Configuration configuration) {
+        configure(configuration.flushEndpoints(), configuration.batchSize(), configuration.maxRequestsPerSecond(),
+                configuration.connectTimeout(), configuration.readTimeout());
+    }
+
+    protected void configure(@Nullable String[] endpoints, int batchSize, double maxRequestsPerSecond, int connectTimeout, int readTimeout) {
+        final List<String> endpointList = new ArrayList<>();
+        if (endpoints != null) {
+            Arrays.stream(endpoints).filter(StringUtils::isNotBlank).map(String::trim).forEach(endpointList::add);
+        }
+        this.flushEndpoints = Collections.unmodifiableList(endpointList);
+        this.batchSize = Math.max(1, batchSize);
+        this.minRequestIntervalNanos = (maxRequestsPerSecond > 0) ? (long) (TimeUnit.SECONDS.toNanos(1) / maxRequestsPerSecond) : 0L;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    public boolean isEnabled() {
+        return !flushEndpoints.isEmpty();
+    }
+
+    /**
+     * Determines the dispatcher handles, which have to be invalidated for the changed resources. A changed snippet
+     * invalidates all pages using it, and any other changed resource is invalidated at its <code>/ext</code> path.
+     * Resources outside of the application base-path are ignored, as they are not served via <code>/ext</code>.
+     *
+     * @param applicationId       application-id
+     * @param applicationInfoUri  uri of the application-info.json (base-path of the application)
+     * @param snippetInstancesMap snippet-uris with the instances using them
+     * @param changedUris         uris of the changed resources
+     * @return sorted set of handles
+     */
+    @Nonnull
+    public static SortedSet<String> getFlushHandles(@Nonnull String applicationId, @Nonnull URI applicationInfoUri,
+                                                    @Nonnull Map<URI, List<SlingApplicationInstance>> snippetInstancesMap,
+                                                    @Nonnull Collection<URI> changedUris) {
+        final URI baseUri = applicationInfoUri.resolve(".");
+        final SortedSet<String> handles = new TreeSet<>();
+        for (URI changedUri : changedUris) {
+            final List<SlingApplicationInstance> instanceList = snippetInstancesMap.get(changedUri);
+            if (instanceList != null) {
+                for (SlingApplicationInstance instance : instanceList) {
+                    handles.add(StringUtils.substringBefore(instance.getResource().getPath(), "/jcr:content"));
+                }
+            } else {
+                final URI relativeUri = baseUri.relativize(changedUri);
+                if (!relativeUri.isAbsolute() && StringUtils.isNotEmpty(relativeUri.getPath())) {
+                    handles.add(String.format(STATIC_RESOURCE_PATH, applicationId, relativeUri.getPath()));
+                }
+            }
+        }
+        return handles;
+    }
+
+    /**
+     * Writes the handles to the flush-journal, and sends them to all configured endpoints.
+     *
+     * @param resolver      resolver to write the journal (changes are committed)
+     * @param applicationId application-id
+     * @param version       cache-version, which caused the flush (used as name of the journal entry)
+     * @param handles       handles to invalidate
+     * @return path of the journal entry
+     */
+    @Nonnull
+    public String flush(@Nonnull ResourceResolver resolver, @Nonnull String applicationId, @Nullable String version,
+                        @Nonnull Collection<String> handles) throws PersistenceException {
+        final Resource flushRootRes = ResourceUtil.getOrCreateResource(resolver, String.format(FLUSH_ROOT, applicationId),
+                (String) null, null, false);
+        final Map<String, Object> props = new HashMap<>();
+        props.put(HANDLES_ATTR, handles.toArray(new String[0]));
+        props.put(STATUS_ATTR, STATUS_PENDING);
+        props.put(CREATED_ATTR, Calendar.getInstance());
+        final Resource journalRes = resolver.create(flushRootRes,
+                ResourceUtil.createUniqueChildName(flushRootRes, StringUtils.defaultIfBlank(version, "flush")), props);
+        resolver.commit();
+
+        send(resolver, journalRes, flushEndpoints, handles);
+        return journalRes.getPath();
+    }
+
+    /**
+     * Re-sends all handles of a journal entry.
+     *
+     * @param resolver    resolver to read and update the journal
+     * @param journalPath path of the journal entry
+     * @param endpoint    endpoint to send the handles to (e.g. a local stand-in), or <code>null</code> for the configured
+     *                    endpoints
+     * @return number of handles, which failed
+     */
+    public int replay(@Nonnull ResourceResolver resolver, @Nonnull String journalPath, @Nullable String endpoint) throws PersistenceException {
+        final Resource journalRes = resolver.getResource(journalPath);
+        if (journalRes == null) {
+            throw new AppIntegrationException("Cannot find flush-journal " + journalPath);
+        }
+        final String[] handles = journalRes.getValueMap().get(HANDLES_ATTR, new String[0]);
+        final List<String> endpointList = StringUtils.isNotBlank(endpoint) ? Collections.singletonList(endpoint) : flushEndpoints;
+        return send(resolver, journalRes, endpointList, Arrays.asList(handles));
+    }
+
+    private int send(@Nonnull ResourceResolver resolver, @Nonnull Resource journalRes, @Nonnull List<String> endpointList,
+                     @Nonnull Collection<String> handles) throws PersistenceException {
+        final Set<String> failedHandles = new TreeSet<>();
+        boolean interrupted = false;
+        for (String endpoint : endpointList) {
+            try {
+                failedHandles.addAll(send(endpoint, handles));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                interrupted = true;
+                failedHandles.addAll(handles);
+                LOG.warn("Flush of {} was interrupted", journalRes.getPath());
+                break;
+            }
+        }
+
+        final ModifiableValueMap valueMap = Objects.requireNonNull(journalRes.adaptTo(ModifiableValueMap.class));
+        valueMap.put(STATUS_ATTR, (failedHandles.isEmpty() && !interrupted) ? STATUS_DONE : STATUS_FAILED);
+        if (failedHandles.isEmpty()) {
+            valueMap.remove(FAILED_HANDLES_ATTR);
+        } else {
+            valueMap.put(FAILED_HANDLES_ATTR, failedHandles.toArray(new String[0]));
+        }
+        resolver.commit();
+
+        LOG.info("Flushed {} handles to {} endpoints ({} failed), journal {}",
+                handles.size(), endpointList.size(), failedHandles.size(), journalRes.getPath());
+        return failedHandles.size();
+    }
+
+    /**
+     * Sends the handles in batches to one endpoint, respecting the max. requests per second.
+     *
+     * @return handles, which couldn't be invalidated
+     */
+    @Nonnull
+    protected List<String> send(@Nonnull String endpoint, @Nonnull Collection<String> handles) throws InterruptedException {
+        final List<String> failedHandles = new ArrayList<>();
+        final List<String> handleList = new ArrayList<>(handles);
+        long nextRequestNanos = System.nanoTime();
+        for (int batchStart = 0; batchStart < handleList.size(); batchStart += batchSize) {
+            final List<String> batch = handleList.subList(batchStart, Math.min(batchStart + batchSize, handleList.size()));
+            for (String handle : batch) {
+                final long waitNanos = nextRequestNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } else if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                nextRequestNanos = System.nanoTime() + minRequestIntervalNanos;
+
+                if (!sendRequest(endpoint, handle)) {
+                    failedHandles.add(handle);
+                }
+            }
+            LOG.debug("Sent batch of {} handles to {}", batch.size(), endpoint);
+        }
+        return failedHandles;
+    }
+
+    protected boolean sendRequest(@Nonnull String endpoint, @Nonnull String handle) {
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(endpoint).openConnection();
+            connection.setRequestMethod("POST");
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
+            connection.setRequestProperty("CQ-Action", "Activate");
+            connection.setRequestProperty("CQ-Handle", handle);
+            connection.setRequestProperty("CQ-Path", handle);
+            connection.setRequestProperty("Content-Length", "0");
+            connection.setDoOutput(true);
+            connection.getOutputStream().close();
+
+            final int status = connection.getResponseCode();
+            try (InputStream in = (status < 400) ? connection.getInputStream() : connection.getErrorStream()) {
+                // consume response, so that the connection can be re-used
+                if (in != null) {
+                    while (in.read() >= 0) {
+                        // skip
+                    }
+                }
+            }
+            if (status >= 300) {
+                LOG.warn("Flush of {} at {} failed with status {}", handle, endpoint, status);
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Flush of {} at {} failed", handle, endpoint, e);
+            return false;
+        }
+    }
+}
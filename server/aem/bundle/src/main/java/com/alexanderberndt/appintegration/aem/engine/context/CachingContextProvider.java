@@ -0,0 +1,54 @@
+package com.alexanderberndt.appintegration.aem.engine.context;
+
+import com.alexanderberndt.appintegration.aem.engine.AemContextProvider;
+import com.alexanderberndt.appintegration.aem.engine.model.SlingApplicationInstance;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memoizing wrapper around a context-provider, backed by the {@link ContextProviderCache}.
+ */
+public class CachingContextProvider implements AemContextProvider {
+
+    @Nonnull
+    private final String providerName;
+
+    @Nonnull
+    private final AemContextProvider delegate;
+
+    @Nonnull
+    private final ContextProviderCache cache;
+
+    public CachingContextProvider(@Nonnull String providerName, @Nonnull AemContextProvider delegate, @Nonnull ContextProviderCache cache) {
+        this.providerName = providerName;
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Nonnull
+    @Override
+    public Dependency getDependency() {
+        return delegate.getDependency();
+    }
+
+    @Nullable
+    @Override
+    public Map<String, String> getContext(SlingApplicationInstance instance) {
+        return cache.getContext(providerName, delegate.getDependency(), instance.getResource(), () -> delegate.getContext(instance));
+    }
+
+    @Nonnull
+    @Override
+    public List<Map<String, String>> getContexts(@Nonnull List<SlingApplicationInstance> instances) {
+        return cache.getContexts(providerName, delegate.getDependency(), instances,
+                SlingApplicationInstance::getResource, delegate::getContexts);
+    }
+
+    @Nonnull
+    public AemContextProvider getDelegate() {
+        return delegate;
+    }
+}
@@ -0,0 +1,317 @@
+package com.alexanderberndt.appintegration.aem.engine.context;
+
+import com.alexanderberndt.appintegration.aem.engine.AemContextProvider;
+import com.alexanderberndt.appintegration.aem.engine.AemContextProvider.Dependency;
+import com.alexanderberndt.appintegration.aem.engine.model.SlingApplicationInstance;
+import com.alexanderberndt.appintegration.utils.TimeoutCache;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.service.component.annotations.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandles;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Caches the context-maps of {@link AemContextProvider}s, keyed by the provider and the path the context depends
+ * on (see {@link AemContextProvider#getDependency()}). Entries are invalidated by resource-change events: A change
+ * invalidates the entries of the changed page and all descendant pages (as page properties could be
+ * inherited), and the entries of changed instance resources. Tenant entries are dropped on any change of the tenant
+ * configuration. The cached keys are indexed by their path, so that a change only visits the entries of the
+ * affected sub-tree.
+ */
+@Component(
+        service = {ContextProviderCache.class, ResourceChangeListener.class},
+        property = {
+                ResourceChangeListener.PATHS + "=" + ContextProviderCache.CONTENT_ROOT,
+                ResourceChangeListener.PATHS + "=" + ContextProviderCache.TENANT_ROOT,
+                ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=CHANGED",
+                ResourceChangeListener.CHANGES + "=REMOVED"
+        })
+public class ContextProviderCache implements ResourceChangeListener, ExternalResourceChangeListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    public static final String CONTENT_ROOT = "/content";
+
+    public static final String TENANT_ROOT = "/etc/tenants";
+
+    private static final String JCR_CONTENT_SEGMENT = "/jcr:content";
+
+    private static final int MAX_SIZE = 20000;
+
+    // safety net, in case a change event is missed
+    private static final long TIMEOUT_MILLIS = 1000L * 60L * 10L;
+
+    // the index is cleaned from evicted or expired keys after every 1/10 of the max-size of loaded keys
+    private static final int INDEX_CLEAN_UP_INTERVAL = MAX_SIZE / 10;
+
+    private static final Comparator<Key> KEY_ORDER = Comparator.comparing((Key key) -> key.path)
+            .thenComparing(key -> key.providerName)
+            .thenComparing(key -> key.dependency);
+
+    private final TimeoutCache<Key, Map<String, String>> cache = TimeoutCache.builder()
+            .timeout(TIMEOUT_MILLIS)
+            .maxSize(MAX_SIZE)
+            .build();
+
+    // cached keys sorted by path, so that the keys of a sub-tree are found by a range query
+    private final NavigableSet<Key> keyIndex = new ConcurrentSkipListSet<>(KEY_ORDER);
+
+    private final AtomicInteger indexedKeyCount = new AtomicInteger();
+
+    /**
+     * Wraps the provider, so that its results are cached.
+     *
+     * @param providerName unique name of the provider
+     * @param provider     provider
+     * @return the caching provider, or the provider itself if it is uncacheable
+     */
+    @Nonnull
+    public AemContextProvider wrap(@Nonnull String providerName, @Nonnull AemContextProvider provider) {
+        if (provider.getDependency() == Dependency.UNCACHEABLE) {
+            return provider;
+        }
+        return new CachingContextProvider(providerName, provider, this);
+    }
+
+    /**
+     * Returns the cached context, or calculates it with the supplier. Concurrent calculations for the same key are
+     * executed only once. A <code>null</code> context is cached and returned as empty map.
+     */
+    @Nonnull
+    Map<String, String> getContext(@Nonnull String providerName, @Nonnull Dependency dependency,
+                                   @Nonnull Resource resource, @Nonnull Supplier<Map<String, String>> supplier) {
+        final Key key = createKey(providerName, dependency, resource);
+        return Objects.requireNonNull(cache.get(key, k -> index(k, supplier.get())));
+    }
+
+    /**
+     * Batch version of {@link #getContext(String, Dependency, Resource, Supplier)}. Only the missing contexts are
+     * calculated by the batch-function (once per distinct key, and at most one batch per call).
+     */
+    @Nonnull
+    <I> List<Map<String, String>> getContexts(@Nonnull String providerName, @Nonnull Dependency dependency,
+                                              @Nonnull List<I> instances, @Nonnull Function<I, Resource> resourceFunction,
+                                              @Nonnull Function<List<I>, List<Map<String, String>>> batchFunction) {
+        final List<Key> keyList = new ArrayList<>(instances.size());
+        final Map<Key, Map<String, String>> contextMap = new HashMap<>();
+        final Map<Key, I> missingInstanceMap = new LinkedHashMap<>();
+        for (I instance : instances) {
+            final Key key = createKey(providerName, dependency, resourceFunction.apply(instance));
+            keyList.add(key);
+            if (!contextMap.containsKey(key) && !missingInstanceMap.containsKey(key)) {
+                final Map<String, String> cachedContext = cache.get(key);
+                if (cachedContext != null) {
+                    contextMap.put(key, cachedContext);
+                } else {
+                    missingInstanceMap.put(key, instance);
+                }
+            }
+        }
+
+        if (!missingInstanceMap.isEmpty()) {
+            // the batch is calculated by the first load, and the other missing keys are loaded from its results
+            // (unless another thread is already loading a key, then its result is taken instead)
+            final Map<Key, Map<String, String>> batchContextMap = new HashMap<>();
+            final Function<Key, Map<String, String>> loader = key -> {
+                if (batchContextMap.isEmpty()) {
+                    final List<Key> missingKeyList = new ArrayList<>(missingInstanceMap.keySet());
+                    final List<Map<String, String>> loadedContextList = batchFunction.apply(new ArrayList<>(missingInstanceMap.values()));
+                    for (int i = 0; i < missingKeyList.size(); i++) {
+                        batchContextMap.put(missingKeyList.get(i), loadedContextList.get(i));
+                    }
+                }
+                return index(key, batchContextMap.get(key));
+            };
+            for (Key key : missingInstanceMap.keySet()) {
+                contextMap.put(key, cache.get(key, loader));
+            }
+        }
+
+        final List<Map<String, String>> resultList = new ArrayList<>(instances.size());
+        for (Key key : keyList) {
+            resultList.add(contextMap.get(key));
+        }
+        return resultList;
+    }
+
+    @Nonnull
+    private static Key createKey(@Nonnull String providerName, @Nonnull Dependency dependency, @Nonnull Resource resource) {
+        return new Key(providerName, dependency, getDependencyPath(dependency, resource.getPath()));
+    }
+
+    /**
+     * Adds the key to the index, and returns the context as it is cached.
+     */
+    @Nonnull
+    private Map<String, String> index(@Nonnull Key key, @Nullable Map<String, String> context) {
+        keyIndex.add(key);
+        if (indexedKeyCount.incrementAndGet() % INDEX_CLEAN_UP_INTERVAL == 0) {
+            keyIndex.removeIf(indexedKey -> !cache.containsKey(indexedKey));
+        }
+        return (context != null) ? Collections.unmodifiableMap(new HashMap<>(context)) : Collections.emptyMap();
+    }
+
+    private void invalidate(@Nonnull Key key) {
+        keyIndex.remove(key);
+        cache.remove(key);
+    }
+
+    /**
+     * Removes all entries of a provider (e.g. if the provider is unregistered).
+     */
+    public void invalidateProvider(@Nonnull String providerName) {
+        keyIndex.stream().filter(key -> key.providerName.equals(providerName)).forEach(this::invalidate);
+    }
+
+    @Override
+    public void onChange(@Nonnull List<ResourceChange> changes) {
+        final Set<String> changedPaths = new HashSet<>();
+        boolean tenantsChanged = false;
+        for (ResourceChange change : changes) {
+            final String path = change.getPath();
+            if (isSameOrDescendant(path, TENANT_ROOT)) {
+                tenantsChanged = true;
+            } else {
+                changedPaths.add(path);
+            }
+        }
+
+        if (tenantsChanged) {
+            LOG.debug("Tenant configuration changed, invalidate all tenant contexts");
+            keyIndex.stream().filter(key -> key.dependency == Dependency.TENANT).forEach(this::invalidate);
+        }
+        for (String changedPath : changedPaths) {
+            final Collection<String> changedPathList = Collections.singletonList(changedPath);
+            // affected are the keys of the containing page and its sub-tree, and the keys of ancestor resources
+            final List<Key> candidateList = new ArrayList<>(getKeysOfSubTree(getDependencyPath(Dependency.PAGE, changedPath)));
+            for (String ancestorPath = getParentPath(changedPath); ancestorPath != null; ancestorPath = getParentPath(ancestorPath)) {
+                candidateList.addAll(getKeysOfPath(ancestorPath));
+            }
+            candidateList.stream().filter(key -> isAffected(key, changedPathList)).forEach(this::invalidate);
+        }
+    }
+
+    /**
+     * Keys of the path and all descendant paths (and some siblings like <code>path-2</code>, as the range ends
+     * before <code>path0</code>).
+     */
+    @Nonnull
+    private Set<Key> getKeysOfSubTree(@Nonnull String path) {
+        return keyIndex.subSet(firstKeyOf(path), true, firstKeyOf(path + '0'), false);
+    }
+
+    @Nonnull
+    private Set<Key> getKeysOfPath(@Nonnull String path) {
+        return keyIndex.subSet(firstKeyOf(path), true, firstKeyOf(path + '\0'), false);
+    }
+
+    @Nonnull
+    private static Key firstKeyOf(@Nonnull String path) {
+        return new Key("", Dependency.values()[0], path);
+    }
+
+    @Nullable
+    private static String getParentPath(@Nonnull String path) {
+        final int lastSlashPos = path.lastIndexOf('/');
+        return (lastSlashPos > 0) ? path.substring(0, lastSlashPos) : null;
+    }
+
+    @Nonnull
+    static String getDependencyPath(@Nonnull Dependency dependency, @Nonnull String resourcePath) {
+        switch (dependency) {
+            case NONE:
+                return "";
+            case INSTANCE_RESOURCE:
+                return resourcePath;
+            default:
+                // path of the containing page
+                return StringUtils.substringBefore(resourcePath, JCR_CONTENT_SEGMENT);
+        }
+    }
+
+    /**
+     * Calculates the contexts once per containing page, and shares them with all instances of the same page.
+     */
+    @Nonnull
+    static List<Map<String, String>> getContextsByPage(@Nonnull List<SlingApplicationInstance> instances,
+                                                       @Nonnull Function<SlingApplicationInstance, Map<String, String>> contextFunction) {
+        final Map<String, Map<String, String>> pageContextMap = new HashMap<>();
+        final List<Map<String, String>> contextList = new ArrayList<>(instances.size());
+        for (SlingApplicationInstance instance : instances) {
+            final String pagePath = getDependencyPath(Dependency.PAGE, instance.getResource().getPath());
+            if (!pageContextMap.containsKey(pagePath)) {
+                pageContextMap.put(pagePath, contextFunction.apply(instance));
+            }
+            contextList.add(pageContextMap.get(pagePath));
+        }
+        return contextList;
+    }
+
+    static boolean isAffected(@Nonnull Key key, @Nonnull Collection<String> changedPaths) {
+        for (String changedPath : changedPaths) {
+            switch (key.dependency) {
+                case NONE:
+                    return false;
+                case INSTANCE_RESOURCE:
+                    // the instance itself, a child or an ancestor (e.g. removed or moved) changed
+                    if (isSameOrDescendant(changedPath, key.path) || isSameOrDescendant(key.path, changedPath)) {
+                        return true;
+                    }
+                    break;
+                default:
+                    // the page itself or an ancestor page changed (page properties could be inherited)
+                    if (isSameOrDescendant(key.path, getDependencyPath(key.dependency, changedPath))) {
+                        return true;
+                    }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSameOrDescendant(@Nonnull String path, @Nonnull String ancestorPath) {
+        return path.startsWith(ancestorPath)
+                && ((path.length() == ancestorPath.length()) || (path.charAt(ancestorPath.length()) == '/'));
+    }
+
+
+    static final class Key {
+
+        private final String providerName;
+
+        private final Dependency dependency;
+
+        private final String path;
+
+        private Key(String providerName, Dependency dependency, String path) {
+            this.providerName = providerName;
+            this.dependency = dependency;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Key key = (Key) o;
+            return providerName.equals(key.providerName) && (dependency == key.dependency) && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(providerName, dependency, path);
+        }
+    }
+}
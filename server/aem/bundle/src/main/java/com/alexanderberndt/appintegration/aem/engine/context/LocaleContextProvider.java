@@ -7,15 +7,23 @@ import com.day.cq.wcm.api.PageManager;
 import org.apache.sling.api.resource.Resource;
 import org.osgi.service.component.annotations.Component;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 @Component
 public class LocaleContextProvider implements AemContextProvider {
 
+    @Nonnull
+    @Override
+    public Dependency getDependency() {
+        return Dependency.PAGE;
+    }
+
     /**
      * Calculates a key-value map, with variables and instance-specific values.
      *
@@ -42,4 +50,13 @@ public class LocaleContextProvider implements AemContextProvider {
                 })
                 .orElseGet(Collections::emptyMap);
     }
+
+    /**
+     * Calculates the context only once per page, as all instances of a page share the same context.
+     */
+    @Nonnull
+    @Override
+    public List<Map<String, String>> getContexts(@Nonnull List<SlingApplicationInstance> instances) {
+        return ContextProviderCache.getContextsByPage(instances, this::getContext);
+    }
 }
@@ -6,6 +6,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.ValueMap;
 import org.osgi.service.component.annotations.Component;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.AbstractMap;
 import java.util.Map;
@@ -14,6 +15,12 @@ import java.util.stream.Collectors;
 @Component
 public class PropertiesContextProvider implements AemContextProvider {
 
+    @Nonnull
+    @Override
+    public Dependency getDependency() {
+        return Dependency.INSTANCE_RESOURCE;
+    }
+
     /**
      * Calculates a key-value map, with variables and instance-specific values.
      *
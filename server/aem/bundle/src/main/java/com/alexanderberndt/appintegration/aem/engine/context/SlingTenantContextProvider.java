@@ -5,15 +5,23 @@ import com.alexanderberndt.appintegration.aem.engine.model.SlingApplicationInsta
 import org.apache.sling.tenant.Tenant;
 import org.osgi.service.component.annotations.Component;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 @Component
 public class SlingTenantContextProvider implements AemContextProvider {
 
+    @Nonnull
+    @Override
+    public Dependency getDependency() {
+        return Dependency.TENANT;
+    }
+
     /**
      * Calculates a key-value map, with variables and instance-specific values.
      *
@@ -40,4 +48,12 @@ public class SlingTenantContextProvider implements AemContextProvider {
         return contextMap;
     }
 
+    /**
+     * Resolves the tenant only once per page, as all instances of a page belong to the same tenant.
+     */
+    @Nonnull
+    @Override
+    public List<Map<String, String>> getContexts(@Nonnull List<SlingApplicationInstance> instances) {
+        return ContextProviderCache.getContextsByPage(instances, this::getContext);
+    }
 }
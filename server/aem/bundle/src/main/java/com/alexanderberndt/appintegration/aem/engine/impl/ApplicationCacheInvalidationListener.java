@@ -0,0 +1,76 @@
+package com.alexanderberndt.appintegration.aem.engine.impl;
+
+import com.alexanderberndt.appintegration.aem.engine.AemAppIntegrationEngine;
+import com.alexanderberndt.appintegration.aem.engine.AemExternalResourceCache;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.lang.invoke.MethodHandles;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Invalidates the cached application-info and snippet-urls of an application, when a prefetch committed a new
+ * version of its resource-cache. The root of the resource-cache also changes by the lock and heartbeats of a
+ * running prefetch, so the caches are only invalidated, if the committed version differs from the last seen one.
+ */
+@Component(
+        service = ResourceChangeListener.class,
+        property = {
+                ResourceChangeListener.PATHS + "=glob:" + ApplicationCacheInvalidationListener.ROOT_PATH + "/*/files",
+                ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=CHANGED"
+        })
+public class ApplicationCacheInvalidationListener implements ResourceChangeListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    public static final String ROOT_PATH = "/var/aem-app-integration";
+
+    @Reference
+    private AemAppIntegrationEngine engine;
+
+    // last seen committed version per application-id
+    private final Map<String, String> lastVersionMap = new ConcurrentHashMap<>();
+
+    @Override
+    public void onChange(@Nonnull List<ResourceChange> changes) {
+        final Set<String> applicationIds = new HashSet<>();
+        for (ResourceChange change : changes) {
+            final String applicationId = getApplicationId(change.getPath());
+            if (applicationId != null) {
+                applicationIds.add(applicationId);
+            }
+        }
+
+        for (String applicationId : applicationIds) {
+            final String version = engine.getCommittedVersion(applicationId);
+            final String lastVersion = (version != null)
+                    ? lastVersionMap.put(applicationId, version) : lastVersionMap.remove(applicationId);
+            if (!Objects.equals(version, lastVersion)) {
+                LOG.debug("Invalidate caches of application {}, as version {} was committed", applicationId, version);
+                engine.invalidateApplication(applicationId);
+            }
+        }
+    }
+
+    // only the cache-root itself (e.g. /var/aem-app-integration/<app-id>/files) holds the active version
+    static String getApplicationId(String path) {
+        final String[] splitPath = StringUtils.split(StringUtils.removeStart(path, ROOT_PATH), '/');
+        if ((splitPath.length == 2)
+                && String.format(AemExternalResourceCache.CACHE_ROOT, splitPath[0]).equals(path)) {
+            return splitPath[0];
+        }
+        return null;
+    }
+}
@@ -0,0 +1,223 @@
+package com.alexanderberndt.appintegration.aem.engine.impl;
+
+import com.alexanderberndt.appintegration.aem.engine.AemAppIntegrationEngine;
+import com.alexanderberndt.appintegration.aem.engine.AemApplication;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.commons.scheduler.ScheduleOptions;
+import org.apache.sling.commons.scheduler.Scheduler;
+import org.osgi.service.component.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.lang.invoke.MethodHandles;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Schedules the prefetch of all applications with a configured prefetch-schedule. The jobs run on the
+ * leader instance only, and additionally the cache-lock prevents concurrent prefetches of an application.
+ * <ul>
+ *     <li><b>jitter</b>: Every run is delayed randomly, so that applications with the same schedule don't start
+ *     at the same moment.</li>
+ *     <li><b>skip-if-running</b>: A run is skipped, if the previous run of the application is still running.</li>
+ *     <li><b>back-off</b>: After a failure, runs are skipped for the back-off time (doubled with every further
+ *     failure).</li>
+ *     <li><b>max-runtime</b>: A prefetch exceeding the max-runtime is cancelled before its next resource (and
+ *     its cache version is rolled back). The thread isn't interrupted, as this would break the I/O of the
+ *     repository.</li>
+ * </ul>
+ */
+@Component(immediate = true)
+public class PrefetchScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    public static final String JOB_NAME_PREFIX = "aem-app-integration-prefetch-";
+
+    private static final long MAX_BACK_OFF_MILLIS = 1000L * 60L * 60L * 24L;
+
+    @Reference
+    private Scheduler scheduler;
+
+    @Reference
+    private AemAppIntegrationEngine engine;
+
+    private final Map<String, PrefetchJob> jobMap = new ConcurrentHashMap<>();
+
+    // used for jitter-delays and the max-runtime watchdog
+    private ScheduledExecutorService timerExecutor;
+
+    // runs the prefetches (unbounded, as there is max. one prefetch per application)
+    private ExecutorService prefetchExecutor;
+
+    private boolean active;
+
+    @Activate
+    protected synchronized void activate() {
+        timerExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> createDaemonThread(runnable, "aem-app-integration-prefetch-timer"));
+        prefetchExecutor = Executors.newCachedThreadPool(runnable -> createDaemonThread(runnable, "aem-app-integration-prefetch"));
+        active = true;
+        jobMap.values().forEach(this::schedule);
+    }
+
+    @Deactivate
+    protected synchronized void deactivate() {
+        active = false;
+        jobMap.values().forEach(this::unschedule);
+        jobMap.values().forEach(PrefetchJob::cancel);
+        timerExecutor.shutdownNow();
+        prefetchExecutor.shutdown();
+    }
+
+    @Reference(name = "application", cardinality = ReferenceCardinality.MULTIPLE,
+            policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY)
+    protected synchronized void bindApplication(final AemApplication application) {
+        final PrefetchJob job = new PrefetchJob(application);
+        final PrefetchJob oldJob = jobMap.put(application.getApplicationId(), job);
+        if (oldJob != null) {
+            unschedule(oldJob);
+        }
+        schedule(job);
+    }
+
+    @SuppressWarnings("unused")
+    protected synchronized void unbindApplication(final AemApplication application) {
+        final PrefetchJob job = jobMap.get(application.getApplicationId());
+        if ((job != null) && (job.application == application)) {
+            jobMap.remove(application.getApplicationId());
+            unschedule(job);
+        }
+    }
+
+    private void schedule(@Nonnull PrefetchJob job) {
+        final String schedule = job.application.getPrefetchSchedule();
+        if (!active || (schedule == null)) {
+            return;
+        }
+
+        final ScheduleOptions options;
+        if (StringUtils.isNumeric(schedule)) {
+            final long periodSeconds = Long.parseLong(schedule);
+            options = scheduler.AT(new Date(System.currentTimeMillis() + periodSeconds * 1000L), -1, periodSeconds);
+        } else {
+            options = scheduler.EXPR(schedule);
+        }
+        options.name(job.getName()).onLeaderOnly(true).canRunConcurrently(false);
+
+        if (scheduler.schedule(job, options)) {
+            LOG.info("Scheduled prefetch of application {} with {}", job.application.getApplicationId(), schedule);
+        } else {
+            LOG.error("Cannot schedule prefetch of application {} with {}", job.application.getApplicationId(), schedule);
+        }
+    }
+
+    private void unschedule(@Nonnull PrefetchJob job) {
+        if (job.application.getPrefetchSchedule() != null) {
+            scheduler.unschedule(job.getName());
+        }
+    }
+
+    @Nonnull
+    private static Thread createDaemonThread(@Nonnull Runnable runnable, @Nonnull String name) {
+        final Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+
+    private class PrefetchJob implements Runnable {
+
+        private final AemApplication application;
+
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        private volatile int failureCount;
+
+        private volatile long backOffUntil;
+
+        // cancellation-flag of the current run
+        private volatile AtomicBoolean cancelled = new AtomicBoolean();
+
+        private PrefetchJob(@Nonnull AemApplication application) {
+            this.application = application;
+        }
+
+        @Nonnull
+        private String getName() {
+            return JOB_NAME_PREFIX + application.getApplicationId();
+        }
+
+        /**
+         * Called by the Sling scheduler. Only delays the actual prefetch by a random jitter.
+         */
+        @Override
+        public void run() {
+            if (running.get()) {
+                LOG.info("Skip prefetch of application {}, as previous run is still running", application.getApplicationId());
+                return;
+            }
+            final long jitterMillis = (application.getPrefetchJitterMillis() > 0)
+                    ? ThreadLocalRandom.current().nextLong(application.getPrefetchJitterMillis()) : 0L;
+            try {
+                timerExecutor.schedule(this::start, jitterMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                LOG.debug("Prefetch scheduler is already deactivated", e);
+            }
+        }
+
+        private void start() {
+            if (!running.compareAndSet(false, true)) {
+                LOG.info("Skip prefetch of application {}, as previous run is still running", application.getApplicationId());
+                return;
+            }
+            if (System.currentTimeMillis() < backOffUntil) {
+                LOG.info("Skip prefetch of application {}, as it failed {} times (back-off until {})",
+                        application.getApplicationId(), failureCount, new Date(backOffUntil));
+                running.set(false);
+                return;
+            }
+
+            try {
+                final AtomicBoolean runCancelled = new AtomicBoolean();
+                this.cancelled = runCancelled;
+                final Future<?> future = prefetchExecutor.submit(() -> prefetch(runCancelled));
+                if (application.getPrefetchMaxRuntimeMillis() > 0) {
+                    timerExecutor.schedule(() -> {
+                        if (!future.isDone()) {
+                            LOG.warn("Prefetch of application {} exceeded max. runtime of {} ms, and is cancelled",
+                                    application.getApplicationId(), application.getPrefetchMaxRuntimeMillis());
+                            runCancelled.set(true);
+                            future.cancel(false);
+                        }
+                    }, application.getPrefetchMaxRuntimeMillis(), TimeUnit.MILLISECONDS);
+                }
+            } catch (RejectedExecutionException e) {
+                running.set(false);
+                LOG.debug("Prefetch scheduler is already deactivated", e);
+            }
+        }
+
+        private void cancel() {
+            cancelled.set(true);
+        }
+
+        private void prefetch(@Nonnull AtomicBoolean runCancelled) {
+            try {
+                engine.prefetchApplication(application.getApplicationId(), application.isPrefetchIncremental(), runCancelled::get);
+                failureCount = 0;
+                backOffUntil = 0L;
+            } catch (RuntimeException e) {
+                failureCount++;
+                final long backOffMillis = Math.min(application.getPrefetchBackOffMillis() << Math.min(failureCount - 1, 16), MAX_BACK_OFF_MILLIS);
+                backOffUntil = System.currentTimeMillis() + backOffMillis;
+                LOG.error("Scheduled prefetch of application {} failed ({} times), back-off for {} ms",
+                        application.getApplicationId(), failureCount, backOffMillis, e);
+            } finally {
+                running.set(false);
+            }
+        }
+    }
+}
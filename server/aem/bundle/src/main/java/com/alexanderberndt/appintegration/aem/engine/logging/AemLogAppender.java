@@ -15,6 +15,10 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Log-appender writing the log-tree into the repository. As the resource-resolver is not thread-safe,
+ * all write operations are synchronized on the resolver.
+ */
 public class AemLogAppender extends AbstractLogAppender<AemLogAppender.AemLogEntry> {
 
     private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
@@ -42,9 +46,11 @@ public class AemLogAppender extends AbstractLogAppender<AemLogAppender.AemLogEnt
 
         try {
             // create log-resource
-            final String entryName = ResourceUtil.createUniqueChildName(parentRes, JcrUtil.escapeIllegalJcrChars(logger.getLoggerName()));
-            final Resource logRes = resolver.create(parentRes, entryName, Collections.singletonMap(TYPE_PROP, logger.getType()));
-            return new AemLogEntry(logRes);
+            synchronized (resolver) {
+                final String entryName = ResourceUtil.createUniqueChildName(parentRes, JcrUtil.escapeIllegalJcrChars(logger.getLoggerName()));
+                final Resource logRes = resolver.create(parentRes, entryName, Collections.singletonMap(TYPE_PROP, logger.getType()));
+                return new AemLogEntry(logRes);
+            }
         } catch (PersistenceException e) {
             LOG.error("Cannot create log-entry at path {}", parentRes.getPath(), e);
             return null;
@@ -58,7 +64,6 @@ public class AemLogAppender extends AbstractLogAppender<AemLogAppender.AemLogEnt
 
         try {
             // create log-resource
-            final String entryName = ResourceUtil.createUniqueChildName(parentRes, MESSAGE_TYPE);
             final Map<String, Object> properties = new HashMap<>();
             properties.put(TYPE_PROP, MESSAGE_TYPE);
             if (status != null) {
@@ -67,7 +72,10 @@ public class AemLogAppender extends AbstractLogAppender<AemLogAppender.AemLogEnt
             if (message != null) {
                 properties.put(MESSAGE_PROP, message);
             }
-            resolver.create(parentRes, entryName, properties);
+            synchronized (resolver) {
+                final String entryName = ResourceUtil.createUniqueChildName(parentRes, MESSAGE_TYPE);
+                resolver.create(parentRes, entryName, properties);
+            }
         } catch (PersistenceException e) {
             LOG.error("Cannot create log-message at path {}", parentRes.getPath(), e);
         }
@@ -103,10 +111,12 @@ public class AemLogAppender extends AbstractLogAppender<AemLogAppender.AemLogEnt
 
         @Override
         public void setProperty(String key, String value) {
-            if (value != null) {
-                valueMap.put(key, value);
-            } else {
-                valueMap.remove(key);
+            synchronized (logResource.getResourceResolver()) {
+                if (value != null) {
+                    valueMap.put(key, value);
+                } else {
+                    valueMap.remove(key);
+                }
             }
         }
 
@@ -1,17 +1,24 @@
 package com.alexanderberndt.appintegration.aem.engine.model;
 
 import com.alexanderberndt.appintegration.engine.ApplicationInstance;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.Resource;
-import org.apache.sling.models.annotations.Model;
-import org.apache.sling.models.annotations.injectorspecific.Self;
+import org.apache.sling.api.resource.ValueMap;
 
 import javax.annotation.Nonnull;
-import javax.inject.Named;
+import javax.annotation.Nullable;
 import java.util.Objects;
 
-@Model(adaptables = Resource.class)
+/**
+ * Integrated application instance, which is a resource with the properties <code>application</code> and
+ * <code>component</code> (as written by the component-dialog, and covered by the instance-index).
+ */
 public class SlingApplicationInstance implements ApplicationInstance  {
 
+    public static final String APPLICATION_PROPERTY = "application";
+
+    public static final String COMPONENT_PROPERTY = "component";
+
     @Nonnull
     private final Resource resource;
 
@@ -21,12 +28,26 @@ public class SlingApplicationInstance implements ApplicationInstance  {
     @Nonnull
     private final String componentId;
 
-    public SlingApplicationInstance(@Self Resource resource, @Named("applicationId") String applicationId, @Named("componentId") String componentId) {
+    public SlingApplicationInstance(@Nonnull Resource resource, @Nonnull String applicationId, @Nonnull String componentId) {
         this.resource = Objects.requireNonNull(resource);
         this.applicationId = Objects.requireNonNull(applicationId);
         this.componentId = Objects.requireNonNull(componentId);
     }
 
+    /**
+     * @return the instance, or <code>null</code> if the application or component is missing
+     */
+    @Nullable
+    public static SlingApplicationInstance fromResource(@Nonnull Resource resource) {
+        final ValueMap valueMap = resource.getValueMap();
+        final String applicationId = valueMap.get(APPLICATION_PROPERTY, String.class);
+        final String componentId = valueMap.get(COMPONENT_PROPERTY, String.class);
+        if (StringUtils.isAnyBlank(applicationId, componentId)) {
+            return null;
+        }
+        return new SlingApplicationInstance(resource, applicationId, componentId);
+    }
+
     @Nonnull
     public Resource getResource() {
         return resource;
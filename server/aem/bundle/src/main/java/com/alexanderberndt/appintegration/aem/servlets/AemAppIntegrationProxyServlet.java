@@ -1,6 +1,15 @@
 package com.alexanderberndt.appintegration.aem.servlets;
 
 import com.alexanderberndt.appintegration.aem.engine.AemAppIntegrationEngine;
+import com.alexanderberndt.appintegration.aem.engine.AemExternalResourceCache;
+import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
+import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
+import com.alexanderberndt.appintegration.tasks.cache.OptimizeImageTask;
+import com.alexanderberndt.appintegration.tasks.cache.PrecompressTask;
+import com.alexanderberndt.appintegration.tasks.prefetch.BundlePostProcessor;
+import com.alexanderberndt.appintegration.tasks.prefetch.FingerprintPostProcessor;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
@@ -8,15 +17,31 @@ import org.osgi.service.component.annotations.ServiceScope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.servlet.Servlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.invoke.MethodHandles;
+import java.util.Calendar;
 
-
+/**
+ * Serves the static resources of the integrated applications at <code>/ext/&lt;app-id&gt;/&lt;path&gt;</code>.
+ * <p>
+ * Cached resources are streamed directly from the repository with a large buffer. Conditional requests
+ * (<code>If-None-Match</code>, <code>If-Modified-Since</code>) are answered only by the metadata of the cache-entry,
+ * without reading the binary. Single byte-ranges are supported for large files.
+ * <p>
+ * If the cache contains a precompressed rendition (see {@link PrecompressTask}), it is served to clients
+ * accepting this encoding, so that the content isn't compressed again per request.
+ * <p>
+ * Static resources, which are not cached, are answered by 404. Only the dynamic paths of the application-info are
+ * loaded from the origin per request.
+ */
 @Component(
         service = Servlet.class,
         scope = ServiceScope.PROTOTYPE,
@@ -30,7 +55,13 @@ public class AemAppIntegrationProxyServlet extends HttpServlet {
 
     private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
-    private final AemAppIntegrationEngine integrationEngine;
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+
+    static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private final transient AemAppIntegrationEngine integrationEngine;
 
     @Activate
     public AemAppIntegrationProxyServlet(@Reference AemAppIntegrationEngine integrationEngine) {
@@ -38,17 +69,235 @@ public class AemAppIntegrationProxyServlet extends HttpServlet {
     }
 
     @Override
-    protected void doGet(HttpServletRequest request, HttpServletResponse response) {
-        response.setContentType("text/plain");
-        response.setCharacterEncoding("utf-8");
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        final String pathInfo = StringUtils.removeStart(request.getPathInfo(), "/");
+        final String applicationId = StringUtils.substringBefore(pathInfo, "/");
+        // fingerprinted urls (e.g. _v/1a2b3c4d5e6f7a8b/css/styles.css) are served from the plain path
+        final String requestedPath = StringUtils.substringAfter(pathInfo, "/");
+        final String relativePath = FingerprintPostProcessor.removeFingerprint(requestedPath);
+        // bundles (e.g. _bundles/1a2b3c4d5e6f7a8b.js) contain the hash in their name
+        final String urlFingerprint = FingerprintPostProcessor.getFingerprint(requestedPath);
+        final String fingerprint = (urlFingerprint != null) ? urlFingerprint : BundlePostProcessor.getBundleHash(relativePath);
+        if (StringUtils.isAnyBlank(applicationId, relativePath)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
         try {
-            PrintWriter out = response.getWriter();
-            out.println("Hello World!");
-            out.println(integrationEngine);
-        } catch (IOException e) {
-            LOG.error("Cannot get writer", e);
+            final boolean served = integrationEngine.handleCachedStaticResource(applicationId, relativePath, entry -> {
+                if (entry == null) {
+                    return false;
+                }
+                if (isMatchingFingerprint(fingerprint, entry.getContentHash())) {
+                    response.setHeader("Cache-Control", IMMUTABLE_CACHE_CONTROL);
+                }
+                // optimized images are served instead of the original (or a resized rendition, e.g. for ?w=640)
+                final String width = request.getParameter(OptimizeImageTask.WIDTH_RENDITION_PREFIX);
+                final AemExternalResourceCache.CachedEntry imageRendition = StringUtils.isNumeric(width)
+                        ? entry.getRendition(OptimizeImageTask.WIDTH_RENDITION_PREFIX + width)
+                        : entry.getRendition(OptimizeImageTask.OPTIMIZED_RENDITION);
+                if (imageRendition != null) {
+                    sendCachedEntry(request, response, imageRendition);
+                    return true;
+                }
+                final AemExternalResourceCache.CachedEntry gzipRendition = entry.getRendition(PrecompressTask.GZIP_RENDITION);
+                if (gzipRendition != null) {
+                    response.setHeader("Vary", "Accept-Encoding");
+                    if (acceptsEncoding(request.getHeader("Accept-Encoding"), "gzip")) {
+                        response.setHeader("Content-Encoding", "gzip");
+                        sendCachedEntry(request, response, gzipRendition);
+                        return true;
+                    }
+                }
+                sendCachedEntry(request, response, entry);
+                return true;
+            });
+            if (!served) {
+                if (integrationEngine.isDynamicPath(applicationId, relativePath)) {
+                    // dynamic resources are never cached, so load it through the processing-pipeline
+                    sendExternalResource(response, integrationEngine.getStaticResource(applicationId, relativePath));
+                } else {
+                    // static resources are only served from the prefetched cache (and not fetched per request)
+                    response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                }
+            }
+        } catch (AppIntegrationException e) {
+            LOG.warn("Cannot serve static resource {} of application {}", relativePath, applicationId, e);
+            if (!response.isCommitted()) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
         }
     }
-}
 
+    protected void sendCachedEntry(@Nonnull HttpServletRequest request, @Nonnull HttpServletResponse response,
+                                   @Nonnull AemExternalResourceCache.CachedEntry entry) throws IOException {
+        final String etag = (entry.getContentHash() != null) ? '"' + entry.getContentHash() + '"' : null;
+        final Calendar lastModified = entry.getLastModified();
+        final long lastModifiedMillis = (lastModified != null) ? lastModified.getTimeInMillis() / 1000L * 1000L : -1L;
+
+        if (etag != null) {
+            response.setHeader("ETag", etag);
+        }
+        if (lastModifiedMillis > 0) {
+            response.setDateHeader("Last-Modified", lastModifiedMillis);
+        }
+
+        if (isNotModified(request, etag, lastModifiedMillis)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
 
+        response.setContentType(getMimeType(entry.getUri().getPath()));
+        final long contentLength = entry.getContentLength();
+        if (contentLength < 0) {
+            // unknown length (e.g. written by an older version), so serve it without range-support
+            try (InputStream content = entry.openStream()) {
+                IOUtils.copyLarge(content, response.getOutputStream(), new byte[BUFFER_SIZE]);
+            }
+            return;
+        }
+
+        response.setHeader("Accept-Ranges", "bytes");
+        final String rangeHeader = request.getHeader("Range");
+        final String ifRange = request.getHeader("If-Range");
+        final boolean useRange = (rangeHeader != null) && ((ifRange == null) || ifRange.equals(etag));
+        final long[] range = useRange ? parseRange(rangeHeader, contentLength) : null;
+
+        if (useRange && (range == null)) {
+            response.setHeader("Content-Range", "bytes */" + contentLength);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+
+        final long offset;
+        final long length;
+        if (range != null) {
+            offset = range[0];
+            length = range[1] - range[0] + 1;
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", String.format("bytes %d-%d/%d", range[0], range[1], contentLength));
+        } else {
+            offset = 0L;
+            length = contentLength;
+        }
+        response.setContentLengthLong(length);
+
+        if (!"HEAD".equals(request.getMethod())) {
+            try (InputStream content = entry.openStream()) {
+                IOUtils.copyLarge(content, response.getOutputStream(), offset, length, new byte[BUFFER_SIZE]);
+            }
+        }
+    }
+
+    protected void sendExternalResource(@Nonnull HttpServletResponse response, @Nonnull ExternalResource resource) throws IOException {
+        response.setContentType(getMimeType(resource.getUri().getPath()));
+        try (InputStream content = resource.getContentAsInputStream()) {
+            final OutputStream out = response.getOutputStream();
+            IOUtils.copyLarge(content, out, new byte[BUFFER_SIZE]);
+        }
+    }
+
+    /**
+     * Checks the conditional headers. <code>If-None-Match</code> takes precedence over <code>If-Modified-Since</code>.
+     */
+    static boolean isNotModified(@Nonnull HttpServletRequest request, @Nullable String etag, long lastModifiedMillis) {
+        final String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            if (etag == null) {
+                return false;
+            }
+            for (String candidate : StringUtils.split(ifNoneMatch, ',')) {
+                final String trimmedCandidate = StringUtils.removeStart(candidate.trim(), "W/");
+                if (trimmedCandidate.equals("*") || trimmedCandidate.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        if (lastModifiedMillis > 0) {
+            try {
+                final long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+                return (ifModifiedSince >= 0) && (lastModifiedMillis <= ifModifiedSince);
+            } catch (IllegalArgumentException e) {
+                // invalid date, so ignore the header
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks, if the fingerprint of the url matches the cached content. Otherwise the url was fingerprinted for
+     * another version (e.g. a relative import of a fingerprinted script), and must not be cached as immutable.
+     */
+    static boolean isMatchingFingerprint(@Nullable String fingerprint, @Nullable String contentHash) {
+        return (fingerprint != null) && (contentHash != null) && contentHash.startsWith(fingerprint)
+                && (fingerprint.length() == FingerprintPostProcessor.FINGERPRINT_LENGTH);
+    }
+
+    /**
+     * Checks, if the <code>Accept-Encoding</code> header contains the encoding (and doesn't exclude it by
+     * <code>q=0</code>).
+     */
+    static boolean acceptsEncoding(@Nullable String acceptEncoding, @Nonnull String encoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String candidate : StringUtils.split(acceptEncoding, ',')) {
+            final String name = StringUtils.substringBefore(candidate, ";").trim();
+            if (name.equalsIgnoreCase(encoding) || name.equals("*")) {
+                final String qValue = StringUtils.substringAfter(StringUtils.deleteWhitespace(candidate), ";q=");
+                try {
+                    return qValue.isEmpty() || (Double.parseDouble(qValue) > 0.0);
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses a single byte-range (e.g. <code>bytes=0-499</code>, <code>bytes=500-</code> or <code>bytes=-500</code>).
+     *
+     * @return first and last byte-position (inclusive), or <code>null</code> if the range is invalid, not
+     * satisfiable or consists of multiple ranges
+     */
+    @Nullable
+    static long[] parseRange(@Nonnull String rangeHeader, long contentLength) {
+        if (!rangeHeader.startsWith("bytes=") || rangeHeader.contains(",")) {
+            return null;
+        }
+        final String range = rangeHeader.substring("bytes=".length()).trim();
+        final String startStr = StringUtils.substringBefore(range, "-").trim();
+        final String endStr = StringUtils.substringAfter(range, "-").trim();
+        if (!range.contains("-") || !(startStr.isEmpty() || StringUtils.isNumeric(startStr))
+                || !(endStr.isEmpty() || StringUtils.isNumeric(endStr)) || (startStr.isEmpty() && endStr.isEmpty())) {
+            return null;
+        }
+
+        try {
+            final long start;
+            final long end;
+            if (startStr.isEmpty()) {
+                // suffix-range: last n bytes
+                start = Math.max(0L, contentLength - Long.parseLong(endStr));
+                end = contentLength - 1;
+            } else {
+                start = Long.parseLong(startStr);
+                end = endStr.isEmpty() ? contentLength - 1 : Math.min(Long.parseLong(endStr), contentLength - 1);
+            }
+            return ((start <= end) && (start < contentLength)) ? new long[]{start, end} : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Nonnull
+    private String getMimeType(@Nullable String path) {
+        final String fileName = StringUtils.substringAfterLast(path, "/");
+        final String mimeType = (getServletConfig() != null) ? getServletContext().getMimeType(fileName) : null;
+        return StringUtils.defaultIfBlank(mimeType, DEFAULT_MIME_TYPE);
+    }
+}
@@ -1,13 +1,27 @@
 package com.alexanderberndt.appintegration.aem.engine;
 
+import com.alexanderberndt.appintegration.engine.PrefetchResult;
 import com.alexanderberndt.appintegration.engine.resources.ExternalResource;
 import com.alexanderberndt.appintegration.engine.resources.ExternalResourceRef;
 import com.alexanderberndt.appintegration.engine.resources.ExternalResourceType;
 import com.alexanderberndt.appintegration.engine.resources.conversion.StringConverter;
+import com.alexanderberndt.appintegration.engine.testsupport.TestAppIntegrationFactory;
+import com.alexanderberndt.appintegration.engine.testsupport.TestApplication;
+import com.alexanderberndt.appintegration.engine.testsupport.TestGlobalContext;
+import com.alexanderberndt.appintegration.exceptions.AppIntegrationException;
+import com.alexanderberndt.appintegration.tasks.cache.PrecompressTask;
+import com.alexanderberndt.appintegration.tasks.prefetch.BundlePostProcessor;
+import com.alexanderberndt.appintegration.tasks.prefetch.FingerprintPostProcessor;
+import com.alexanderberndt.appintegration.tasks.prefetch.InlineResourcesPostProcessor;
+import com.alexanderberndt.appintegration.tasks.process.html.InlineResourcesTask;
 import com.day.cq.commons.jcr.JcrUtil;
 import io.wcm.testing.mock.aem.junit5.AemContext;
 import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ValueMap;
 import org.junit.jupiter.api.Test;
@@ -16,18 +30,29 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.*;
 
 @ExtendWith(AemContextExtension.class)
 class AemExternalResourceCacheTest {
 
+    private static final URI BASE_URI = URI.create("http://www.example.com/app/");
+
     private final AemContext context = new AemContext();
 
     @Nonnull
@@ -54,6 +79,301 @@ class AemExternalResourceCacheTest {
         assertNotNull(cachedRes);
     }
 
+    @Test
+    void storeResourcesInBatches() throws URISyntaxException {
+        context.create().resource("/var/aem-app-integration");
+        final AemExternalResourceCache cache = new AemExternalResourceCache(context.resourceResolver(), "test-app");
+        cache.setBatchThresholds(2, Long.MAX_VALUE, Long.MAX_VALUE);
+
+        assertTrue(cache.startLongRunningWrite("v1"));
+        for (int i = 1; i <= 3; i++) {
+            final ExternalResourceRef resourceRef = new ExternalResourceRef(new URI("http://www.example.com/txt/file" + i + ".txt"), ExternalResourceType.TEXT);
+            cache.storeResource(new ExternalResource(new ByteArrayInputStream("Hello World!".getBytes()), resourceRef, () -> null));
+        }
+        cache.commitLongRunningWrite();
+
+        final AemExternalResourceCache.CommitStatistics statistics = cache.getCommitStatistics();
+        assertEquals(2, statistics.getCommitCount());
+        assertEquals(3, statistics.getResourceCount());
+        assertEquals(36, statistics.getByteCount());
+    }
+
+    @Test
+    void rollbackRemovesCommittedBatches() throws URISyntaxException {
+        context.create().resource("/var/aem-app-integration");
+        final AemExternalResourceCache cache = new AemExternalResourceCache(context.resourceResolver(), "test-app");
+        cache.setBatchThresholds(1, Long.MAX_VALUE, Long.MAX_VALUE);
+        final ExternalResourceRef resourceRef = new ExternalResourceRef(new URI("http://www.example.com/txt/file.txt"), ExternalResourceType.TEXT);
+
+        assertTrue(cache.startLongRunningWrite("v1"));
+        cache.storeResource(new ExternalResource(new ByteArrayInputStream("Hello World!".getBytes()), resourceRef, () -> null));
+        assertEquals(1, cache.getCommitStatistics().getCommitCount());
+        cache.rollbackLongRunningWrite();
+
+        assertEquals(0, countEntries("/var/aem-app-integration/test-app/files/txt/file.txt"));
+        assertTrue(cache.startLongRunningWrite("v2"));
+    }
+
+    @Test
+    void outdatedVersionsAreRemoved() throws URISyntaxException {
+        context.create().resource("/var/aem-app-integration");
+        final AemExternalResourceCache cache = new AemExternalResourceCache(context.resourceResolver(), "test-app");
+        final ExternalResourceRef resourceRef = new ExternalResourceRef(new URI("http://www.example.com/txt/file.txt"), ExternalResourceType.TEXT);
+
+        for (String version : new String[]{"v1", "v2", "v3"}) {
+            assertTrue(cache.startLongRunningWrite(version));
+            cache.storeResource(new ExternalResource(new ByteArrayInputStream(version.getBytes()), resourceRef, () -> null));
+            cache.commitLongRunningWrite();
+        }
+
+        // the previous version is kept, as it may still be read
+        final Resource cachePathRes = context.resourceResolver().getResource("/var/aem-app-integration/test-app/files/txt/file.txt");
+        assertNotNull(cachePathRes);
+        final Set<String> versions = new HashSet<>();
+        for (Resource entryRes : cachePathRes.getChildren()) {
+            versions.add(entryRes.getValueMap().get(AemExternalResourceCache.VERSION_ATTR, String.class));
+        }
+        assertEquals(new HashSet<>(Arrays.asList("v2", "v3")), versions);
+    }
+
+    @Test
+    void outdatedVersionsAreRemovedBeforeReleasingTheLease() throws URISyntaxException, PersistenceException {
+        context.create().resource("/var/aem-app-integration");
+        final ExternalResourceRef resourceRef = new ExternalResourceRef(new URI("http://www.example.com/txt/file.txt"), ExternalResourceType.TEXT);
+        final AemExternalResourceCache cache1 = new AemExternalResourceCache(context.resourceResolver(), "test-app");
+        final AemExternalResourceCache cache2 = new AemExternalResourceCache(context.resourceResolver(), "test-app");
+        cache1.setBatchThresholds(1, Long.MAX_VALUE, Long.MAX_VALUE);
+        cache2.setBatchThresholds(1, Long.MAX_VALUE, Long.MAX_VALUE);
+
+        for (String version : new String[]{"v1", "v2"}) {
+            assertTrue(cache1.startLongRunningWrite(version));
+            cache1.storeResource(new ExternalResource(new ByteArrayInputStream(version.getBytes()), resourceRef, () -> null));
+            cache1.commitLongRunningWrite();
+        }
+
+        // v3 loses its lease after its first batch, and v4 takes over
+        assertTrue(cache1.startLongRunningWrite("v3"));
+        cache1.storeResource(new ExternalResource(new ByteArrayInputStream("v3".getBytes()), resourceRef, () -> null));
+        final Resource rootRes = Objects.requireNonNull(context.resourceResolver().getResource("/var/aem-app-integration/test-app/files"));
+        Objects.requireNonNull(rootRes.adaptTo(ModifiableValueMap.class)).put(AemExternalResourceCache.LEASE_EXPIRES_ATTR, Calendar.getInstance());
+        context.resourceResolver().commit();
+        assertTrue(cache2.startLongRunningWrite("v4"));
+        cache2.storeResource(new ExternalResource(new ByteArrayInputStream("v4".getBytes()), resourceRef, () -> null));
+        assertThrows(AppIntegrationException.class, cache1::commitLongRunningWrite);
+        cache2.commitLongRunningWrite();
+
+        final Resource cachePathRes = context.resourceResolver().getResource("/var/aem-app-integration/test-app/files/txt/file.txt");
+        assertNotNull(cachePathRes);
+        final Set<String> versions = new HashSet<>();
+        for (Resource entryRes : cachePathRes.getChildren()) {
+            versions.add(entryRes.getValueMap().get(AemExternalResourceCache.VERSION_ATTR, String.class));
+        }
+        assertEquals(new HashSet<>(Arrays.asList("v2", "v4")), versions);
+
+        final Set<String> recordedVersions = new HashSet<>();
+        for (Resource versionRes : Objects.requireNonNull(context.resourceResolver().getResource("/var/aem-app-integration/test-app/versions")).getChildren()) {
+            recordedVersions.add(versionRes.getName());
+        }
+        assertEquals(new HashSet<>(Arrays.asList("v2", "v4")), recordedVersions);
+
+        // the lease was released
+        assertNull(rootRes.getValueMap().get(AemExternalResourceCache.LOCK_ATTR, String.class));
+    }
+
+    @Test
+    void staleLeaseHolderCannotCommit() throws PersistenceException {
+        context.create().resource("/var/aem-app-integration");
+        final AemExternalResourceCache cache1 = new AemExternalResourceCache(context.resourceResolver(), "test-app");
+        final AemExternalResourceCache cache2 = new AemExternalResourceCache(context.resourceResolver(), "test-app");
+
+        assertTrue(cache1.startLongRunningWrite("v1"));
+        assertFalse(cache2.startLongRunningWrite("v2"));
+
+        // let the lease of v1 expire, so that v2 can take over
+        final Resource rootRes = Objects.requireNonNull(context.resourceResolver().getResource("/var/aem-app-integration/test-app/files"));
+        Objects.requireNonNull(rootRes.adaptTo(ModifiableValueMap.class)).put(AemExternalResourceCache.LEASE_EXPIRES_ATTR, Calendar.getInstance());
+        context.resourceResolver().commit();
+
+        assertTrue(cache2.startLongRunningWrite("v2"));
+        assertThrows(AppIntegrationException.class, cache1::commitLongRunningWrite);
+
+        cache2.commitLongRunningWrite();
+        assertEquals("v2", rootRes.getValueMap().get(AemExternalResourceCache.VERSION_ATTR, String.class));
+    }
+
+    @Test
+    void metadataIsStoredWithResource() throws URISyntaxException, IOException {
+        context.create().resource("/var/aem-app-integration");
+        final AemExternalResourceCache cache = new AemExternalResourceCache(context.resourceResolver(), "test-app");
+        final ExternalResourceRef snippetRef = new ExternalResourceRef(new URI("http://www.example.com/teaser.html"), ExternalResourceType.HTML_SNIPPET);
+
+        final Map<String, Object> metadataMap = new HashMap<>();
+        metadataMap.put("cssTags", new Object[]{"<link rel=\"stylesheet\" href=\"css/teaser.css\">"});
+        metadataMap.put("inlineMaxSize", 2048);
+        metadataMap.put("HttpHeader.Content-Type", "text/html");
+        metadataMap.put("custom:name", "value");
+
+        assertTrue(cache.startLongRunningWrite("v1"));
+        cache.storeResource(createExternalResource(snippetRef.getUri(), ExternalResourceType.HTML_SNIPPET,
+                new ByteArrayInputStream("<div>Teaser</div>".getBytes()), metadataMap));
+
+        // post-processors read the written resource, and store it again with changed metadata
+        final ExternalResource writtenRes = cache.getWrittenResource(snippetRef, this::createExternalResource);
+        assertNotNull(writtenRes);
+        assertEquals(ExternalResourceType.HTML_SNIPPET, writtenRes.getType());
+        assertArrayEquals(new String[]{"<link rel=\"stylesheet\" href=\"css/teaser.css\">"}, writtenRes.getMetadata("cssTags", String[].class));
+        writtenRes.setMetadata("cssTags", new String[]{"<link rel=\"stylesheet\" href=\"/ext/test-app/_v/1a2b3c4d5e6f7a8b/css/teaser.css\">"});
+        cache.storeResource(writtenRes);
+        cache.commitLongRunningWrite();
+
+        final ExternalResource cachedRes = cache.getCachedResource(snippetRef, this::createExternalResource);
+        assertNotNull(cachedRes);
+        assertEquals(ExternalResourceType.HTML_SNIPPET, cachedRes.getType());
+        assertEquals("<div>Teaser</div>", IOUtils.toString(cachedRes.getContentAsInputStream(), StandardCharsets.UTF_8));
+        assertArrayEquals(new String[]{"<link rel=\"stylesheet\" href=\"/ext/test-app/_v/1a2b3c4d5e6f7a8b/css/teaser.css\">"},
+                cachedRes.getMetadata("cssTags", String[].class));
+        assertEquals(Long.valueOf(2048L), cachedRes.getMetadata("inlineMaxSize", Long.class));
+        assertEquals("text/html", cachedRes.getMetadata("HttpHeader.Content-Type", String.class));
+        assertEquals("value", cachedRes.getMetadata("custom:name", String.class));
+    }
+
+    @Test
+    void bundlesAreStoredInCache() throws IOException {
+        context.create().resource("/var/aem-app-integration");
+        final AemExternalResourceCache cache = new AemExternalResourceCache(context.resourceResolver(), "test-app");
+        final PrefetchResult prefetchResult = new PrefetchResult();
+
+        assertTrue(cache.startLongRunningWrite("v1"));
+        final ExternalResourceRef teaserRef = storeSnippet(cache, prefetchResult, "teaser.en.html", Collections.singletonMap("cssTags",
+                new String[]{"<link rel=\"stylesheet\" href=\"css/base.css\">", "<link rel=\"stylesheet\" href=\"css/teaser.css\">"}));
+        storeReference(cache, prefetchResult, "css/base.css", ExternalResourceType.CSS, "body { margin: 0; }");
+        storeReference(cache, prefetchResult, "css/teaser.css", ExternalResourceType.CSS, ".teaser { color: red; }");
+
+        new BundlePostProcessor().postProcess(createGlobalContext(cache), prefetchResult);
+        cache.commitLongRunningWrite();
+
+        final ExternalResource teaser = cache.getCachedResource(teaserRef, this::createExternalResource);
+        assertNotNull(teaser);
+        final String[] cssTags = teaser.getMetadata("cssTags", String[].class);
+        assertEquals(1, cssTags.length);
+        final String bundlePath = StringUtils.substringBetween(cssTags[0], "href=\"/ext/test-app/", "\"");
+        assertTrue(bundlePath.startsWith("_bundles/"), cssTags[0]);
+
+        final ExternalResource bundle = cache.getCachedResource(
+                new ExternalResourceRef(BASE_URI.resolve(bundlePath), ExternalResourceType.CSS), this::createExternalResource);
+        assertNotNull(bundle);
+        assertEquals("body { margin: 0; }\n.teaser { color: red; }\n", IOUtils.toString(bundle.getContentAsInputStream(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void inlinedResourcesAreStoredInCache() throws IOException {
+        context.create().resource("/var/aem-app-integration");
+        final AemExternalResourceCache cache = new AemExternalResourceCache(context.resourceResolver(), "test-app");
+        final PrefetchResult prefetchResult = new PrefetchResult();
+
+        final Map<String, Object> metadataMap = new HashMap<>();
+        metadataMap.put(InlineResourcesTask.INLINE_MAX_SIZE_METADATA, 2048);
+        metadataMap.put("cssTags", new Object[]{"<link rel=\"stylesheet\" href=\"css/teaser.css\">"});
+        metadataMap.put("jsTags", new Object[]{"<script src=\"js/teaser.js\"></script>"});
+
+        assertTrue(cache.startLongRunningWrite("v1"));
+        final ExternalResourceRef teaserRef = storeSnippet(cache, prefetchResult, "teaser.en.html", metadataMap);
+        storeReference(cache, prefetchResult, "css/teaser.css", ExternalResourceType.CSS, ".teaser { color: red; }");
+        storeReference(cache, prefetchResult, "js/teaser.js", ExternalResourceType.JAVASCRIPT, "window.teaser = true;");
+
+        new InlineResourcesPostProcessor().postProcess(createGlobalContext(cache), prefetchResult);
+        cache.commitLongRunningWrite();
+
+        final ExternalResource teaser = cache.getCachedResource(teaserRef, this::createExternalResource);
+        assertNotNull(teaser);
+        assertEquals("<style data-app-integration-inline=\"test-app/css/teaser.css\">.teaser { color: red; }</style>"
+                        + "<div>Snippet</div>"
+                        + "<script data-app-integration-inline=\"test-app/js/teaser.js\">window.teaser = true;</script>",
+                IOUtils.toString(teaser.getContentAsInputStream(), StandardCharsets.UTF_8));
+        assertArrayEquals(new String[]{"test-app/css/teaser.css", "test-app/js/teaser.js"},
+                teaser.getMetadata(InlineResourcesPostProcessor.INLINED_RESOURCES_METADATA, String[].class));
+        assertArrayEquals(new String[0], teaser.getMetadata("cssTags", String[].class));
+        assertArrayEquals(new String[0], teaser.getMetadata("jsTags", String[].class));
+    }
+
+    @Test
+    void fingerprintsUpdateEntriesInPlace() throws IOException {
+        context.create().resource("/var/aem-app-integration");
+        final AemExternalResourceCache cache = new AemExternalResourceCache(context.resourceResolver(), "test-app");
+        final PrefetchResult prefetchResult = new PrefetchResult();
+
+        assertTrue(cache.startLongRunningWrite("v1"));
+        final ExternalResourceRef teaserRef = storeSnippet(cache, prefetchResult, "teaser.en.html", Collections.singletonMap("cssTags",
+                new String[]{"<link rel=\"stylesheet\" href=\"css/teaser.css\">"}));
+        storeReference(cache, prefetchResult, "css/teaser.css", ExternalResourceType.CSS, ".teaser { background: url(../img/logo.png); }");
+        storeReference(cache, prefetchResult, "img/logo.png", ExternalResourceType.BINARY, "logo");
+        cache.storeRendition(BASE_URI.resolve("css/teaser.css"), PrecompressTask.GZIP_RENDITION,
+                new ByteArrayInputStream(PrecompressTask.gzip(".teaser { background: url(../img/logo.png); }".getBytes())));
+
+        new FingerprintPostProcessor().postProcess(createGlobalContext(cache), prefetchResult);
+        cache.commitLongRunningWrite();
+
+        // the rewritten snippet and stylesheet are not counted twice (only their renditions, which are stored again)
+        assertEquals(6, cache.getCommitStatistics().getResourceCount());
+        assertEquals(1, countEntries("/var/aem-app-integration/test-app/files/app/css/teaser.css"));
+
+        final String logoFingerprint = DigestUtils.sha256Hex("logo").substring(0, FingerprintPostProcessor.FINGERPRINT_LENGTH);
+        final ExternalResource stylesheet = cache.getCachedResource(
+                new ExternalResourceRef(BASE_URI.resolve("css/teaser.css"), ExternalResourceType.CSS), this::createExternalResource);
+        assertNotNull(stylesheet);
+        final String stylesheetContent = IOUtils.toString(stylesheet.getContentAsInputStream(), StandardCharsets.UTF_8);
+        assertTrue(stylesheetContent.contains("_v/" + logoFingerprint + "/img/logo.png"), stylesheetContent);
+
+        // the gzip-rendition is compressed again from the rewritten stylesheet
+        final Supplier<InputStream> rendition = cache.getCachedRendition(stylesheet.getUri(), PrecompressTask.GZIP_RENDITION);
+        assertNotNull(rendition);
+        try (InputStream in = new GZIPInputStream(rendition.get())) {
+            assertEquals(stylesheetContent, IOUtils.toString(in, StandardCharsets.UTF_8));
+        }
+
+        final String stylesheetFingerprint = DigestUtils.sha256Hex(stylesheetContent).substring(0, FingerprintPostProcessor.FINGERPRINT_LENGTH);
+        final ExternalResource teaser = cache.getCachedResource(teaserRef, this::createExternalResource);
+        assertNotNull(teaser);
+        assertArrayEquals(new String[]{"<link rel=\"stylesheet\" href=\"/ext/test-app/_v/" + stylesheetFingerprint + "/css/teaser.css\">"},
+                teaser.getMetadata("cssTags", String[].class));
+    }
+
+    @Nonnull
+    private ExternalResourceRef storeSnippet(@Nonnull AemExternalResourceCache cache, @Nonnull PrefetchResult prefetchResult,
+                                             @Nonnull String path, @Nonnull Map<String, Object> metadataMap) {
+        final ExternalResourceRef snippetRef = new ExternalResourceRef(BASE_URI.resolve(path), ExternalResourceType.HTML_SNIPPET);
+        cache.storeResource(createExternalResource(snippetRef.getUri(), ExternalResourceType.HTML_SNIPPET,
+                new ByteArrayInputStream("<div>Snippet</div>".getBytes()), metadataMap));
+        prefetchResult.addSnippet(snippetRef);
+        return snippetRef;
+    }
+
+    private void storeReference(@Nonnull AemExternalResourceCache cache, @Nonnull PrefetchResult prefetchResult,
+                                @Nonnull String path, @Nonnull ExternalResourceType type, @Nonnull String content) {
+        final ExternalResourceRef resourceRef = new ExternalResourceRef(BASE_URI.resolve(path), type);
+        cache.storeResource(createExternalResource(resourceRef.getUri(), type, new ByteArrayInputStream(content.getBytes()), null));
+        prefetchResult.addResource(resourceRef);
+    }
+
+    @Nonnull
+    private static TestGlobalContext createGlobalContext(@Nonnull AemExternalResourceCache cache) {
+        final TestAppIntegrationFactory factory = new TestAppIntegrationFactory();
+        factory.registerApplication(new TestApplication("test-app", BASE_URI.resolve("application-info.json").toString(),
+                TestAppIntegrationFactory.SYSTEM_RESOURCE_LOADER_NAME, "custom", Collections.emptyList(), null));
+        return new TestGlobalContext("test-app", factory, cache, null);
+    }
+
+    private int countEntries(@Nonnull String cachePath) {
+        final Resource cachePathRes = context.resourceResolver().getResource(cachePath);
+        int count = 0;
+        if (cachePathRes != null) {
+            for (Resource ignored : cachePathRes.getChildren()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     private void dumpResource(Resource resource) {
         System.out.println(resource.getPath());
         ValueMap valueMap = resource.getValueMap();
@@ -0,0 +1,104 @@
+package com.alexanderberndt.appintegration.aem.engine;
+
+import com.alexanderberndt.appintegration.aem.engine.model.SlingApplicationInstance;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.jcr.query.Query;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(AemContextExtension.class)
+class AemInstanceDiscoveryTest {
+
+    private final AemContext context = new AemContext();
+
+    @Test
+    void createQuery() {
+        assertEquals("SELECT * FROM [nt:base] AS instance WHERE ISDESCENDANTNODE(instance, '/content')"
+                        + " AND instance.[application] = 'news''letter' AND instance.[component] IS NOT NULL",
+                AemInstanceDiscovery.createQuery("news'letter", null));
+    }
+
+    @Test
+    void createIncrementalQuery() {
+        final Calendar changedSince = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        changedSince.clear();
+        changedSince.set(2020, Calendar.SEPTEMBER, 24, 12, 30, 0);
+
+        assertEquals("SELECT * FROM [nt:base] AS instance WHERE ISDESCENDANTNODE(instance, '/content')"
+                        + " AND instance.[application] = 'newsletter' AND instance.[component] IS NOT NULL"
+                        + " AND instance.[jcr:lastModified] > CAST('2020-09-24T12:30:00.000Z' AS DATE)",
+                AemInstanceDiscovery.createQuery("newsletter", changedSince));
+    }
+
+    @Test
+    void discoverInstancesInBatches() {
+        // 5 instances with the properties of the component-dialog, and a resource which isn't an instance
+        final List<Resource> resourceList = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            final String path = "/content/site/en/page" + i + "/jcr:content/par/newsletter";
+            resourceList.add((i == 2)
+                    ? context.create().resource(path, "component", "subscribe")
+                    : context.create().resource(path, "application", "newsletter", "component", "subscribe"));
+        }
+
+        // counts the query-results, which were read so far
+        final AtomicInteger readCount = new AtomicInteger();
+        final Iterator<Resource> resourceIter = resourceList.iterator();
+        final ResourceResolver resolver = mock(ResourceResolver.class);
+        when(resolver.findResources(anyString(), eq(Query.JCR_SQL2))).thenReturn(new Iterator<Resource>() {
+            @Override
+            public boolean hasNext() {
+                return resourceIter.hasNext();
+            }
+
+            @Override
+            public Resource next() {
+                readCount.incrementAndGet();
+                return resourceIter.next();
+            }
+        });
+
+        final List<SlingApplicationInstance> instanceList = new ArrayList<>();
+        final List<Integer> batchSizeList = new ArrayList<>();
+        final List<Integer> readCountList = new ArrayList<>();
+        final int count = new AemInstanceDiscovery().discoverInstances(resolver, "newsletter", null, 2, batch -> {
+            instanceList.addAll(batch);
+            batchSizeList.add(batch.size());
+            readCountList.add(readCount.get());
+        });
+
+        assertEquals(5, count);
+        assertEquals(Arrays.asList(2, 2, 1), batchSizeList);
+        // every batch is passed on, before the next query-results are read
+        assertEquals(Arrays.asList(2, 5, 6), readCountList);
+
+        final SlingApplicationInstance instance = instanceList.get(2);
+        assertEquals("newsletter", instance.getApplicationId());
+        assertEquals("subscribe", instance.getComponentId());
+        assertEquals("/content/site/en/page3/jcr:content/par/newsletter", instance.getResource().getPath());
+    }
+
+    @Test
+    void countInstances() {
+        final List<Resource> resourceList = Arrays.asList(
+                context.create().resource("/content/site/en/jcr:content/par/newsletter", "application", "newsletter", "component", "subscribe"),
+                context.create().resource("/content/site/de/jcr:content/par/newsletter", "application", "newsletter"),
+                context.create().resource("/content/site/fr/jcr:content/par/newsletter", "application", "newsletter", "component", "unsubscribe"));
+        final ResourceResolver resolver = mock(ResourceResolver.class);
+        when(resolver.findResources(anyString(), eq(Query.JCR_SQL2))).thenReturn(resourceList.iterator());
+
+        assertEquals(2, new AemInstanceDiscovery().countInstances(resolver, "newsletter"));
+    }
+}
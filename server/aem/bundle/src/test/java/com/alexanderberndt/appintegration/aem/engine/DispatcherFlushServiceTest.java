@@ -0,0 +1,74 @@
+package com.alexanderberndt.appintegration.aem.engine;
+
+import com.alexanderberndt.appintegration.aem.engine.model.SlingApplicationInstance;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.sling.api.resource.Resource;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DispatcherFlushServiceTest {
+
+    @Test
+    void getFlushHandles() {
+        final URI snippetUri = URI.create("http://localhost:8080/newsletter/subscribe.en.html");
+        final Map<URI, List<SlingApplicationInstance>> snippetInstancesMap = new HashMap<>();
+        snippetInstancesMap.put(snippetUri, Arrays.asList(
+                createInstance("/content/site/en/news/jcr:content/par/newsletter"),
+                createInstance("/content/site/en/jcr:content/footer/newsletter")));
+
+        final Set<String> handles = DispatcherFlushService.getFlushHandles("newsletter",
+                URI.create("http://localhost:8080/newsletter/application-info.json"), snippetInstancesMap,
+                Arrays.asList(snippetUri,
+                        URI.create("http://localhost:8080/newsletter/css/styles.css"),
+                        URI.create("http://cdn.example.com/lib.js")));
+
+        assertEquals(new TreeSet<>(Arrays.asList("/content/site/en", "/content/site/en/news", "/ext/newsletter/css/styles.css")), handles);
+    }
+
+    @Test
+    void sendToStandInEndpoint() throws Exception {
+        final List<String> receivedHandles = Collections.synchronizedList(new ArrayList<>());
+        final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/dispatcher/invalidate.cache", exchange -> {
+            assertEquals("POST", exchange.getRequestMethod());
+            assertEquals("Activate", exchange.getRequestHeaders().getFirst("CQ-Action"));
+            final String handle = exchange.getRequestHeaders().getFirst("CQ-Handle");
+            receivedHandles.add(handle);
+            exchange.sendResponseHeaders(handle.contains("fail") ? 500 : 200, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            final DispatcherFlushService flushService = new DispatcherFlushService();
+            flushService.configure(null, 2, 50.0, 1000, 1000);
+            final String endpoint = "http://localhost:" + server.getAddress().getPort() + "/dispatcher/invalidate.cache";
+
+            final long startTime = System.nanoTime();
+            final List<String> failedHandles = flushService.send(endpoint, Arrays.asList("/content/a", "/content/fail", "/ext/app/b.css"));
+            final long durationMillis = (System.nanoTime() - startTime) / 1000000L;
+
+            assertEquals(Arrays.asList("/content/a", "/content/fail", "/ext/app/b.css"), receivedHandles);
+            assertEquals(Collections.singletonList("/content/fail"), failedHandles);
+            // 3 requests with max. 50 requests/second take at least 2 intervals of 20ms
+            assertTrue(durationMillis >= 40, "rate-limit not respected: " + durationMillis + "ms");
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static SlingApplicationInstance createInstance(String path) {
+        final Resource resource = mock(Resource.class);
+        when(resource.getPath()).thenReturn(path);
+        final SlingApplicationInstance instance = mock(SlingApplicationInstance.class);
+        when(instance.getResource()).thenReturn(resource);
+        return instance;
+    }
+}
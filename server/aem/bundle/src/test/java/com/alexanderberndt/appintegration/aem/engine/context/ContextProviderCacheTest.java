@@ -0,0 +1,159 @@
+package com.alexanderberndt.appintegration.aem.engine.context;
+
+import com.alexanderberndt.appintegration.aem.engine.AemContextProvider;
+import com.alexanderberndt.appintegration.aem.engine.AemContextProvider.Dependency;
+import com.alexanderberndt.appintegration.aem.engine.model.SlingApplicationInstance;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ContextProviderCacheTest {
+
+    private final ContextProviderCache cache = new ContextProviderCache();
+
+    @Test
+    void getDependencyPath() {
+        assertEquals("/content/site/en/page", ContextProviderCache.getDependencyPath(Dependency.PAGE, "/content/site/en/page/jcr:content/par/app"));
+        assertEquals("/content/site/en/page", ContextProviderCache.getDependencyPath(Dependency.TENANT, "/content/site/en/page"));
+        assertEquals("/content/site/en/page/jcr:content/par/app", ContextProviderCache.getDependencyPath(Dependency.INSTANCE_RESOURCE, "/content/site/en/page/jcr:content/par/app"));
+        assertEquals("", ContextProviderCache.getDependencyPath(Dependency.NONE, "/content/site/en/page"));
+    }
+
+    @Test
+    void pageContextIsCachedPerPage() {
+        final CountingContextProvider provider = new CountingContextProvider(Dependency.PAGE);
+        final AemContextProvider cachingProvider = cache.wrap("counting", provider);
+
+        cachingProvider.getContext(createInstance("/content/site/en/page/jcr:content/par/app1"));
+        cachingProvider.getContext(createInstance("/content/site/en/page/jcr:content/par/app2"));
+        assertEquals(1, provider.counter.get());
+
+        cachingProvider.getContext(createInstance("/content/site/de/page/jcr:content/par/app1"));
+        assertEquals(2, provider.counter.get());
+    }
+
+    @Test
+    void changeOfAncestorPageInvalidatesDescendants() {
+        final CountingContextProvider provider = new CountingContextProvider(Dependency.PAGE);
+        final AemContextProvider cachingProvider = cache.wrap("counting", provider);
+        final SlingApplicationInstance enInstance = createInstance("/content/site/en/page/jcr:content/par/app");
+        final SlingApplicationInstance deInstance = createInstance("/content/site/de/page/jcr:content/par/app");
+
+        cachingProvider.getContext(enInstance);
+        cachingProvider.getContext(deInstance);
+        assertEquals(2, provider.counter.get());
+
+        cache.onChange(Collections.singletonList(
+                new ResourceChange(ResourceChange.ChangeType.CHANGED, "/content/site/en/jcr:content", false)));
+
+        cachingProvider.getContext(enInstance);
+        cachingProvider.getContext(deInstance);
+        assertEquals(3, provider.counter.get());
+    }
+
+    @Test
+    void changeOfInstanceResourceInvalidatesOnlyItsEntry() {
+        final CountingContextProvider provider = new CountingContextProvider(Dependency.INSTANCE_RESOURCE);
+        final AemContextProvider cachingProvider = cache.wrap("counting", provider);
+        final SlingApplicationInstance instance1 = createInstance("/content/site/en/page/jcr:content/par/app1");
+        final SlingApplicationInstance instance2 = createInstance("/content/site/en/page/jcr:content/par/app2");
+
+        cachingProvider.getContext(instance1);
+        cachingProvider.getContext(instance2);
+        assertEquals(2, provider.counter.get());
+
+        cache.onChange(Collections.singletonList(
+                new ResourceChange(ResourceChange.ChangeType.CHANGED, "/content/site/en/page/jcr:content/par/app1/settings", false)));
+        cachingProvider.getContext(instance1);
+        cachingProvider.getContext(instance2);
+        assertEquals(3, provider.counter.get());
+
+        cache.onChange(Collections.singletonList(
+                new ResourceChange(ResourceChange.ChangeType.REMOVED, "/content/site/en", false)));
+        cachingProvider.getContext(instance1);
+        cachingProvider.getContext(instance2);
+        assertEquals(5, provider.counter.get());
+    }
+
+    @Test
+    void missingContextIsCachedAsEmptyMap() {
+        final AtomicInteger counter = new AtomicInteger();
+        final Resource resource = createInstance("/content/site/en/page/jcr:content/par/app").getResource();
+
+        assertEquals(Collections.emptyMap(), cache.getContext("null", Dependency.PAGE, resource, () -> {
+            counter.incrementAndGet();
+            return null;
+        }));
+        assertEquals(Collections.emptyMap(), cache.getContext("null", Dependency.PAGE, resource, () -> {
+            counter.incrementAndGet();
+            return null;
+        }));
+        assertEquals(1, counter.get());
+    }
+
+    @Test
+    void batchContextsAreCalculatedOncePerPage() {
+        final CountingContextProvider provider = new CountingContextProvider(Dependency.PAGE);
+        final AemContextProvider cachingProvider = cache.wrap("counting", provider);
+        final List<SlingApplicationInstance> instances = Arrays.asList(
+                createInstance("/content/site/en/page/jcr:content/par/app1"),
+                createInstance("/content/site/de/page/jcr:content/par/app1"),
+                createInstance("/content/site/en/page/jcr:content/par/app2"));
+
+        final List<Map<String, String>> contexts = cachingProvider.getContexts(instances);
+        assertEquals(3, contexts.size());
+        assertEquals(2, provider.counter.get());
+        assertEquals(contexts.get(0), contexts.get(2));
+
+        assertEquals(contexts, cachingProvider.getContexts(instances));
+        assertEquals(2, provider.counter.get());
+    }
+
+    @Test
+    void uncacheableProvidersAreNotWrapped() {
+        final CountingContextProvider provider = new CountingContextProvider(Dependency.UNCACHEABLE);
+        assertSame(provider, cache.wrap("counting", provider));
+    }
+
+    @Nonnull
+    private SlingApplicationInstance createInstance(@Nonnull String path) {
+        final Resource resource = mock(Resource.class);
+        when(resource.getPath()).thenReturn(path);
+        return new SlingApplicationInstance(resource, "test-app", "test-component");
+    }
+
+
+    private static class CountingContextProvider implements AemContextProvider {
+
+        private final Dependency dependency;
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private CountingContextProvider(Dependency dependency) {
+            this.dependency = dependency;
+        }
+
+        @Nonnull
+        @Override
+        public Dependency getDependency() {
+            return dependency;
+        }
+
+        @Override
+        public Map<String, String> getContext(SlingApplicationInstance instance) {
+            return Collections.singletonMap("count", Integer.toString(counter.incrementAndGet()));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.alexanderberndt.appintegration.aem.servlets;
+
+import com.alexanderberndt.appintegration.aem.engine.AemAppIntegrationEngine;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AemAppIntegrationProxyServletTest {
+
+    @Test
+    void parseRange() {
+        assertArrayEquals(new long[]{0, 499}, AemAppIntegrationProxyServlet.parseRange("bytes=0-499", 1000));
+        assertArrayEquals(new long[]{500, 999}, AemAppIntegrationProxyServlet.parseRange("bytes=500-", 1000));
+        assertArrayEquals(new long[]{900, 999}, AemAppIntegrationProxyServlet.parseRange("bytes=-100", 1000));
+        assertArrayEquals(new long[]{900, 999}, AemAppIntegrationProxyServlet.parseRange("bytes=900-5000", 1000));
+
+        assertNull(AemAppIntegrationProxyServlet.parseRange("bytes=1000-", 1000));
+        assertNull(AemAppIntegrationProxyServlet.parseRange("bytes=500-100", 1000));
+        assertNull(AemAppIntegrationProxyServlet.parseRange("bytes=0-1,5-6", 1000));
+        assertNull(AemAppIntegrationProxyServlet.parseRange("bytes=-", 1000));
+        assertNull(AemAppIntegrationProxyServlet.parseRange("items=0-1", 1000));
+    }
+
+    @Test
+    void isNotModifiedByEtag() {
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("If-None-Match")).thenReturn("\"abc\", W/\"def\"");
+
+        assertTrue(AemAppIntegrationProxyServlet.isNotModified(request, "\"def\"", -1L));
+        assertFalse(AemAppIntegrationProxyServlet.isNotModified(request, "\"xyz\"", -1L));
+        assertFalse(AemAppIntegrationProxyServlet.isNotModified(request, null, -1L));
+    }
+
+    @Test
+    void isNotModifiedByDate() {
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getDateHeader("If-Modified-Since")).thenReturn(2000L);
+
+        assertTrue(AemAppIntegrationProxyServlet.isNotModified(request, "\"abc\"", 2000L));
+        assertFalse(AemAppIntegrationProxyServlet.isNotModified(request, "\"abc\"", 3000L));
+    }
+
+    @Test
+    void acceptsEncoding() {
+        assertTrue(AemAppIntegrationProxyServlet.acceptsEncoding("gzip, deflate, br", "gzip"));
+        assertTrue(AemAppIntegrationProxyServlet.acceptsEncoding("br;q=1.0, GZIP;q=0.5", "gzip"));
+        assertTrue(AemAppIntegrationProxyServlet.acceptsEncoding("*", "gzip"));
+        assertFalse(AemAppIntegrationProxyServlet.acceptsEncoding("gzip;q=0", "gzip"));
+        assertFalse(AemAppIntegrationProxyServlet.acceptsEncoding("deflate, br", "gzip"));
+        assertFalse(AemAppIntegrationProxyServlet.acceptsEncoding(null, "gzip"));
+    }
+
+    @Test
+    void isMatchingFingerprint() {
+        final String contentHash = "1a2b3c4d5e6f7a8b9c0d1e2f3a4b5c6d7e8f9a0b1c2d3e4f5a6b7c8d9e0f1a2b";
+        assertTrue(AemAppIntegrationProxyServlet.isMatchingFingerprint("1a2b3c4d5e6f7a8b", contentHash));
+        assertFalse(AemAppIntegrationProxyServlet.isMatchingFingerprint("0000000000000000", contentHash));
+        assertFalse(AemAppIntegrationProxyServlet.isMatchingFingerprint("1a2b", contentHash));
+        assertFalse(AemAppIntegrationProxyServlet.isMatchingFingerprint(null, contentHash));
+        assertFalse(AemAppIntegrationProxyServlet.isMatchingFingerprint("1a2b3c4d5e6f7a8b", null));
+    }
+
+    @Test
+    void uncachedStaticResourcesAreNotFetchedFromOrigin() throws IOException {
+        final AemAppIntegrationEngine engine = mock(AemAppIntegrationEngine.class);
+        when(engine.handleCachedStaticResource(eq("app1"), anyString(), any())).thenReturn(false);
+        when(engine.isDynamicPath("app1", "css/styles.css")).thenReturn(false);
+
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getPathInfo()).thenReturn("/app1/css/styles.css");
+        final HttpServletResponse response = mock(HttpServletResponse.class);
+
+        new AemAppIntegrationProxyServlet(engine).doGet(request, response);
+
+        verify(response).sendError(HttpServletResponse.SC_NOT_FOUND);
+        verify(engine, never()).getStaticResource(anyString(), anyString());
+    }
+}